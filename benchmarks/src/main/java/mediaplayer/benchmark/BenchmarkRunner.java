@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suites headlessly and writes machine-readable results.
+ * <p>
+ * Usage: {@code java -jar target/benchmarks.jar [include-regex]}. Results are written as JSON
+ * to the file named by -Dbenchmark.result (default target/jmh-result.json). With -Dbenchmark.gc=true
+ * the GC profiler is added, reporting allocation per operation ({@code gc.alloc.rate.norm}).
+ */
+public class BenchmarkRunner
+{
+    private static final String DEFAULT_INCLUDE = "mediaplayer\\.benchmark\\..*";
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    /**
+     * Main entry to the benchmark runner.
+     *
+     * @param args
+     *         Optional regular expression selecting the benchmarks to run
+     * @throws RunnerException
+     *         if a benchmark fails
+     */
+    public static void main(String[] args) throws RunnerException
+    {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : DEFAULT_INCLUDE)
+                .jvmArgsAppend("-Djava.awt.headless=true", "-Dlog4j.configuration=log4j-benchmark.xml")
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("benchmark.result", DEFAULT_RESULT));
+        if (Boolean.getBoolean("benchmark.gc"))
+        {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
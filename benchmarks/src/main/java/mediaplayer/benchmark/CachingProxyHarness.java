@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mediaplayer.cache.BlockCache;
+import mediaplayer.cache.CachingProxy;
+
+/**
+ * Checks the remote media cache end to end against a stub origin on loopback.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar mediaplayer.benchmark.CachingProxyHarness}.
+ * The stub origin serves generated media of a few blocks with byte ranges, and one file
+ * without. Through a {@link CachingProxy} the harness checks whole, partial, suffix and
+ * unsatisfiable range requests and HEAD, that replays do not ask the origin again,
+ * read-ahead, eviction down to the cache limit, and that a proxy restarted on the same
+ * cache still serves media cached in full, or in part, once the origin is down. Prints one
+ * line per check and exits with status 1 if any failed. Needs neither a display nor JavaFX.
+ */
+public class CachingProxyHarness
+{
+    private static final int BLOCK = BlockCache.BLOCK_SIZE;
+    private static final int MEDIA_LENGTH = 3 * BLOCK + 12345;
+    private static final String CONTENT_TYPE = "video/mp4";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final long READ_AHEAD_WAIT_MILLIS = 5000;
+
+    private final byte[] media = new byte[MEDIA_LENGTH];
+    /** Range headers of the requests the origin answered, "-" for none */
+    private final List<String> originRequests = new CopyOnWriteArrayList<>();
+    private HttpServer origin;
+    private String originUrl;
+    private int failures;
+
+    /**
+     * Main entry to the harness.
+     *
+     * @param args
+     *         Not used
+     * @throws IOException
+     *         if the stub origin, the proxy or a temporary cache directory cannot be set up
+     * @throws InterruptedException
+     *         if interrupted waiting for read-ahead
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int failures = new CachingProxyHarness().run();
+        System.out.println(failures == 0 ? "All checks passed." : failures + " checks failed.");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private int run() throws IOException, InterruptedException
+    {
+        for (int i = 0; i < media.length; i++)
+        {
+            media[i] = (byte) (i * 31 + (i >>> 11));
+        }
+        startOrigin();
+        Path cacheDirectory = Files.createTempDirectory("proxy-harness");
+        Path smallCacheDirectory = Files.createTempDirectory("proxy-harness-small");
+        try
+        {
+            checkRanges(cacheDirectory);
+            checkReadAhead();
+            checkEviction(smallCacheDirectory);
+            checkOriginDown(cacheDirectory);
+        }
+        finally
+        {
+            origin.stop(0);
+            deleteAll(cacheDirectory);
+            deleteAll(smallCacheDirectory);
+        }
+        return failures;
+    }
+
+    private void checkRanges(Path cacheDirectory) throws IOException
+    {
+        CachingProxy proxy = startProxy(cacheDirectory, Long.MAX_VALUE, 0);
+        try
+        {
+            String plain = originUrl + "plain.mp4";
+            check("origin without byte ranges is played directly", plain.equals(proxy.route(plain)));
+
+            String routed = proxy.route(originUrl + "media.mp4");
+            check("media is routed through the proxy", !routed.startsWith(originUrl));
+
+            Response whole = request(routed, "GET", null);
+            check("whole media: 200 and every byte", whole.status == 200 && Arrays.equals(whole.body, media));
+            check("whole media: origin content type", CONTENT_TYPE.equals(whole.contentType));
+
+            Response partial = request(routed, "GET", "bytes=1000-2999");
+            check("partial range: 206 and its bytes", partial.status == 206
+                    && Arrays.equals(partial.body, Arrays.copyOfRange(media, 1000, 3000))
+                    && ("bytes 1000-2999/" + MEDIA_LENGTH).equals(partial.contentRange));
+
+            Response across = request(routed, "GET", "bytes=" + (BLOCK - 10) + "-" + (2 * BLOCK + 9));
+            check("range across blocks: its bytes", across.status == 206
+                    && Arrays.equals(across.body, Arrays.copyOfRange(media, BLOCK - 10, 2 * BLOCK + 10)));
+
+            Response open = request(routed, "GET", "bytes=" + (MEDIA_LENGTH - 100) + "-");
+            check("open-ended range: to the end", open.status == 206
+                    && Arrays.equals(open.body, Arrays.copyOfRange(media, MEDIA_LENGTH - 100, MEDIA_LENGTH)));
+
+            Response suffix = request(routed, "GET", "bytes=-500");
+            check("suffix range: the last bytes", suffix.status == 206
+                    && Arrays.equals(suffix.body, Arrays.copyOfRange(media, MEDIA_LENGTH - 500, MEDIA_LENGTH)));
+
+            Response beyond = request(routed, "GET", "bytes=" + MEDIA_LENGTH + "-");
+            check("range beyond the end: 416 with the length", beyond.status == 416
+                    && ("bytes */" + MEDIA_LENGTH).equals(beyond.contentRange));
+
+            Response head = request(routed, "HEAD", null);
+            check("HEAD: length and no body", head.status == 200 && head.body.length == 0
+                    && head.contentLength == MEDIA_LENGTH);
+
+            int before = originRequests.size();
+            Response replay = request(routed, "GET", null);
+            check("replay: served from the cache", Arrays.equals(replay.body, media)
+                    && originRequests.size() == before);
+
+            proxy.release(routed);
+            check("released route: no longer served", request(routed, "GET", null).status == 404);
+        }
+        finally
+        {
+            proxy.stop();
+        }
+    }
+
+    private void checkReadAhead() throws IOException, InterruptedException
+    {
+        Path directory = Files.createTempDirectory("proxy-harness-read-ahead");
+        BlockCache cache = new BlockCache(directory, Long.MAX_VALUE);
+        CachingProxy proxy = new CachingProxy(cache, 2);
+        proxy.start();
+        try
+        {
+            String routed = proxy.route(originUrl + "media.mp4");
+            request(routed, "GET", "bytes=0-99");
+            // The block served and the two after it
+            long deadline = System.currentTimeMillis() + READ_AHEAD_WAIT_MILLIS;
+            while (cache.getSizeBytes() < 3L * BLOCK && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(20);
+            }
+            String second = "bytes=" + BLOCK + "-" + (2 * BLOCK - 1);
+            String third = "bytes=" + 2 * BLOCK + "-" + (3 * BLOCK - 1);
+            check("read-ahead: the next two blocks are fetched and cached", cache.getSizeBytes() >= 3L * BLOCK
+                    && originRequests.contains(second) && originRequests.contains(third));
+        }
+        finally
+        {
+            proxy.stop();
+            deleteAll(directory);
+        }
+    }
+
+    private void checkEviction(Path cacheDirectory) throws IOException
+    {
+        BlockCache cache = new BlockCache(cacheDirectory, 2L * BLOCK);
+        CachingProxy proxy = new CachingProxy(cache, 0);
+        proxy.start();
+        try
+        {
+            String routed = proxy.route(originUrl + "media.mp4");
+            Response whole = request(routed, "GET", null);
+            check("eviction: media larger than the cache still served", Arrays.equals(whole.body, media));
+            check("eviction: cache held to its limit", cache.getSizeBytes() <= 2L * BLOCK);
+        }
+        finally
+        {
+            proxy.stop();
+        }
+    }
+
+    private void checkOriginDown(Path cacheDirectory) throws IOException
+    {
+        // Only the first block of the copy is cached before the origin goes away
+        CachingProxy proxy = startProxy(cacheDirectory, Long.MAX_VALUE, 0);
+        try
+        {
+            request(proxy.route(originUrl + "copy.mp4"), "GET", "bytes=0-99");
+        }
+        finally
+        {
+            proxy.stop();
+        }
+        origin.stop(0);
+
+        proxy = startProxy(cacheDirectory, Long.MAX_VALUE, 0);
+        try
+        {
+            String routed = proxy.route(originUrl + "media.mp4");
+            Response whole = request(routed, "GET", null);
+            check("origin down: media cached in full still served", !routed.startsWith(originUrl)
+                    && whole.status == 200 && Arrays.equals(whole.body, media)
+                    && CONTENT_TYPE.equals(whole.contentType));
+
+            String copy = proxy.route(originUrl + "copy.mp4");
+            Response cached = request(copy, "GET", "bytes=0-" + (BLOCK - 1));
+            check("origin down: cached part of other media still served", !copy.startsWith(originUrl)
+                    && cached.status == 206 && Arrays.equals(cached.body, Arrays.copyOf(media, BLOCK)));
+        }
+        finally
+        {
+            proxy.stop();
+        }
+    }
+
+    private void check(String name, boolean passed)
+    {
+        System.out.println((passed ? "ok    " : "FAIL  ") + name);
+        if (!passed)
+        {
+            failures++;
+        }
+    }
+
+    private static CachingProxy startProxy(Path cacheDirectory, long maxBytes, int readAheadBlocks)
+            throws IOException
+    {
+        CachingProxy proxy = new CachingProxy(new BlockCache(cacheDirectory, maxBytes), readAheadBlocks);
+        proxy.start();
+        return proxy;
+    }
+
+    /**
+     * Starts the stub origin: media.mp4 and copy.mp4 with byte ranges, plain.mp4 without.
+     */
+    private void startOrigin() throws IOException
+    {
+        origin = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        origin.createContext("/", this::serveOrigin);
+        origin.start();
+        originUrl = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                + origin.getAddress().getPort() + "/";
+    }
+
+    private void serveOrigin(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            originRequests.add(range != null ? range : "-");
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            Matcher matcher = range == null ? null : RANGE.matcher(range);
+            if (exchange.getRequestURI().getPath().equals("/plain.mp4") || matcher == null || !matcher.matches())
+            {
+                exchange.sendResponseHeaders(200, media.length);
+                try (OutputStream out = exchange.getResponseBody())
+                {
+                    out.write(media);
+                }
+                return;
+            }
+            int first = Integer.parseInt(matcher.group(1));
+            int last = matcher.group(2).isEmpty() ? media.length - 1
+                    : Math.min(media.length - 1, Integer.parseInt(matcher.group(2)));
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + media.length);
+            exchange.sendResponseHeaders(206, last - first + 1);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(media, first, last - first + 1);
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the response, with status -1 if the request failed, so a check fails rather than the harness
+     */
+    private static Response request(String url, String method, String range)
+    {
+        Response response = new Response();
+        response.status = -1;
+        response.body = new byte[0];
+        try
+        {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod(method);
+            if (range != null)
+            {
+                connection.setRequestProperty("Range", range);
+            }
+            int status = connection.getResponseCode();
+            response.contentType = connection.getContentType();
+            response.contentRange = connection.getHeaderField("Content-Range");
+            response.contentLength = connection.getContentLengthLong();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null)
+            {
+                try (InputStream stream = in)
+                {
+                    byte[] buffer = new byte[64 * 1024];
+                    int count;
+                    while ((count = stream.read(buffer)) >= 0)
+                    {
+                        body.write(buffer, 0, count);
+                    }
+                }
+            }
+            response.status = status;
+            response.body = body.toByteArray();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("      " + method + " " + url + " failed: " + ex);
+        }
+        return response;
+    }
+
+    private static void deleteAll(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private static final class Response
+    {
+        private int status;
+        private String contentType;
+        private String contentRange;
+        private long contentLength;
+        private byte[] body;
+    }
+}
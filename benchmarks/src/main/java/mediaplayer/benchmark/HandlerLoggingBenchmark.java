@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.FileAppender;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.PatternLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mediaplayer.journal.JournalEvent;
+import mediaplayer.journal.PlaybackJournal;
+import mediaplayer.playback.PlaybackCommand;
+import mediaplayer.playback.PlaybackEngine;
+import mediaplayer.progress.ElapsedTimeFormatter;
+
+/**
+ * Latency of the slider click handler as the FX thread sees it: submitting a seek,
+ * the pulse that applies it, and the handler's log line. Logging is measured off,
+ * synchronous to a file (the previous configuration) and through the AsyncAppender,
+ * with and without the playback journal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerLoggingBenchmark
+{
+    private static final double DURATION_SECONDS = 2 * 60 * 60;
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss} [%-5p] %c - %m%n";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Param({"off", "sync", "async"})
+    private String logging;
+
+    @Param({"false", "true"})
+    private boolean journaling;
+
+    private Path directory;
+    private PlaybackJournal journal;
+    private PlaybackEngine engine;
+    private double position;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("handler-logging");
+        org.apache.log4j.Logger root = LogManager.getRootLogger();
+        root.removeAllAppenders();
+        if ("off".equals(logging))
+        {
+            root.setLevel(org.apache.log4j.Level.OFF);
+        }
+        else
+        {
+            root.setLevel(org.apache.log4j.Level.DEBUG);
+            FileAppender file = new FileAppender(new PatternLayout(PATTERN),
+                                                 directory.resolve("handler.log").toString(), false);
+            if ("async".equals(logging))
+            {
+                AsyncAppender async = new AsyncAppender();
+                async.setBufferSize(1024);
+                async.setBlocking(false);
+                async.addAppender(file);
+                root.addAppender(async);
+            }
+            else
+            {
+                root.addAppender(file);
+            }
+        }
+
+        if (journaling)
+        {
+            journal = new PlaybackJournal(directory.resolve("handler.jnl"));
+        }
+        engine = new PlaybackEngine(new NoOpBackend());
+        engine.submit(PlaybackCommand.mediaReady(DURATION_SECONDS));
+        engine.pulse();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        if (journal != null)
+        {
+            journal.close();
+        }
+        LogManager.shutdown();
+        try (java.util.stream.Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private double nextPosition()
+    {
+        position += 97.3;
+        if (position > DURATION_SECONDS)
+        {
+            position -= DURATION_SECONDS;
+        }
+        return position;
+    }
+
+    /**
+     * The click handler before: eager String.format regardless of the log level.
+     */
+    @Benchmark
+    public boolean sliderClickEagerFormat()
+    {
+        double seconds = nextPosition();
+        engine.submit(PlaybackCommand.seek(seconds));
+        logger.info(String.format("Slider clicked at %s.", ElapsedTimeFormatter.toHhMmSs(seconds)));
+        return handle(seconds);
+    }
+
+    /**
+     * The click handler now: formatting only when the level is enabled.
+     */
+    @Benchmark
+    public boolean sliderClick()
+    {
+        double seconds = nextPosition();
+        engine.submit(PlaybackCommand.seek(seconds));
+        if (logger.isInfoEnabled())
+        {
+            logger.info("Slider clicked at {}.", ElapsedTimeFormatter.toHhMmSs(seconds));
+        }
+        return handle(seconds);
+    }
+
+    private boolean handle(double seconds)
+    {
+        if (journal != null)
+        {
+            journal.record(JournalEvent.SEEK, seconds);
+        }
+        engine.updatePosition(seconds);
+        return engine.pulse();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.control.Button;
+import javafx.scene.image.ImageView;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mediaplayer.icon.Icon;
+import mediaplayer.icon.IconAtlas;
+
+/**
+ * Play/pause click re-skinning the play button, alternating between the two icons.
+ * <p>
+ * The original handler gave the button a new ImageView of the icon's classpath URL on every
+ * click; the atlas moves the viewport of the button's existing view. Run with
+ * -Dbenchmark.gc=true to see the allocation per click. Starts the FX toolkit, so the
+ * headless Monocle platform is needed where there is no display.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IconBenchmark
+{
+    private Button button;
+    private IconAtlas icons;
+    private boolean playing;
+
+    @Setup
+    public void setUp()
+    {
+        // Starts the FX toolkit, which decoding images needs
+        new JFXPanel();
+        button = new Button();
+        icons = IconAtlas.getInstance();
+        icons.skin(button, Icon.PLAY);
+    }
+
+    /**
+     * Original handler: decodes the icon PNG into a new image and view on every click.
+     */
+    @Benchmark
+    public Button newImageView()
+    {
+        playing = !playing;
+        button.setGraphic(new ImageView(playing ? "/images/pause-button.png" : "/images/play-button.png"));
+        return button;
+    }
+
+    @Benchmark
+    public Button atlasSkin()
+    {
+        playing = !playing;
+        icons.skin(button, playing ? Icon.PAUSE : Icon.PLAY);
+        return button;
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mediaplayer.metrics.LatencyHistogram;
+
+/**
+ * Cost of recording a duration, as paid by the FX pulse, single-threaded and
+ * with the metrics endpoint's reader thread competing for the same histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyHistogramBenchmark
+{
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long value = 16666666;
+
+    @Benchmark
+    public void record()
+    {
+        histogram.record(value++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended()
+    {
+        histogram.record(16666666);
+    }
+
+    @Benchmark
+    public long quantile()
+    {
+        return histogram.getQuantileNanos(0.99);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import mediaplayer.playback.PlaybackBackend;
+
+/**
+ * Backend that records the last seek and rate so the JIT cannot discard engine work.
+ */
+class NoOpBackend implements PlaybackBackend
+{
+    double lastSeek;
+    double lastRate = 1.0;
+    boolean muted;
+
+    @Override
+    public void play()
+    {
+    }
+
+    @Override
+    public void pause()
+    {
+    }
+
+    @Override
+    public void stop()
+    {
+    }
+
+    @Override
+    public void seek(double seconds)
+    {
+        lastSeek = seconds;
+    }
+
+    @Override
+    public void setRate(double rate)
+    {
+        lastRate = rate;
+    }
+
+    @Override
+    public void setMute(boolean muted)
+    {
+        this.muted = muted;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mediaplayer.playback.PlaybackCommand;
+import mediaplayer.playback.PlaybackEngine;
+
+/**
+ * Seek-point lookup and rate-ladder stepping through the playback engine,
+ * each measured as one submitted command plus the pulse that applies it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaybackEngineBenchmark
+{
+    private static final double DURATION_SECONDS = 2 * 60 * 60;
+
+    private NoOpBackend backend;
+    private PlaybackEngine engine;
+    private double position;
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        backend = new NoOpBackend();
+        engine = new PlaybackEngine(backend);
+        engine.submit(PlaybackCommand.mediaReady(DURATION_SECONDS));
+        engine.pulse();
+    }
+
+    private double nextPosition()
+    {
+        position += 97.3;
+        if (position > DURATION_SECONDS)
+        {
+            position -= DURATION_SECONDS;
+        }
+        return position;
+    }
+
+    @Benchmark
+    public double skipForward()
+    {
+        engine.updatePosition(nextPosition());
+        engine.submit(PlaybackCommand.SKIP_FORWARD);
+        engine.pulse();
+        return backend.lastSeek;
+    }
+
+    @Benchmark
+    public double skipBackward()
+    {
+        engine.updatePosition(nextPosition());
+        engine.submit(PlaybackCommand.SKIP_BACKWARD);
+        engine.submit(PlaybackCommand.TOGGLE_PLAY);
+        engine.pulse();
+        return backend.lastSeek;
+    }
+
+    @Benchmark
+    public double rateLadder()
+    {
+        engine.submit(PlaybackCommand.FAST_FORWARD);
+        engine.pulse();
+        return backend.lastRate;
+    }
+
+    @Benchmark
+    public boolean idlePulse()
+    {
+        return engine.pulse();
+    }
+}
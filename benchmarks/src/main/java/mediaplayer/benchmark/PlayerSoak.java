@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.scene.media.MediaView;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import mediaplayer.media.MediaOpener;
+import mediaplayer.media.OpenedMedia;
+import mediaplayer.media.PlayerLifecycle;
+
+/**
+ * Soak test of the player lifecycle: opens media one after another into a media view,
+ * plays each briefly and replaces it, the way repeated drops do, printing the memory
+ * footprint every 100 opens after a full GC.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar mediaplayer.benchmark.PlayerSoak <media-dir> [opens] [--leak]}.
+ * The media directory is cycled through until the number of opens (default 1000) is reached.
+ * With --leak replaced players are only paused, as before the lifecycle manager, for comparison.
+ * Needs a display and the JavaFX media stack, unlike the JMH suites.
+ */
+public class PlayerSoak extends Application
+{
+    private static final int REPORT_INTERVAL = 100;
+    private static final Duration PLAY_TIME = Duration.millis(150);
+
+    private final PlayerLifecycle players = new PlayerLifecycle(PlayerLifecycle.DEFAULT_WARM_PLAYERS);
+    private final MediaOpener opener = new MediaOpener(players);
+    private final MediaView mediaView = new MediaView();
+    private final List<String> firstAndLast = new ArrayList<>();
+
+    private List<String> urls;
+    private int opens;
+    private boolean leak;
+    private int opened;
+    private OpenedMedia current;
+
+    @Override
+    public void start(Stage stage) throws IOException
+    {
+        List<String> args = getParameters().getUnnamed().stream()
+                                           .filter(arg -> !arg.startsWith("--"))
+                                           .collect(Collectors.toList());
+        if (args.isEmpty())
+        {
+            System.err.println("Usage: PlayerSoak <media-dir> [opens] [--leak]");
+            Platform.exit();
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(Paths.get(args.get(0))))
+        {
+            urls = paths.filter(Files::isRegularFile)
+                        .filter(path -> MediaOpener.isSupported(path.toString()))
+                        .sorted()
+                        .map(path -> path.toUri().toString())
+                        .collect(Collectors.toList());
+        }
+        if (urls.isEmpty())
+        {
+            System.err.println("No playable media in " + args.get(0));
+            Platform.exit();
+            return;
+        }
+        opens = args.size() > 1 ? Integer.parseInt(args.get(1)) : 1000;
+        leak = getParameters().getRaw().contains("--leak");
+
+        mediaView.setFitWidth(320);
+        mediaView.setFitHeight(180);
+        stage.setScene(new Scene(new StackPane(mediaView), 320, 180));
+        stage.setTitle("Player soak");
+        stage.show();
+
+        report();
+        openNext();
+    }
+
+    private void openNext()
+    {
+        if (opened == opens)
+        {
+            finish();
+            return;
+        }
+        String url = urls.get(opened % urls.size());
+        opened++;
+        OpenedMedia warmMedia = leak ? null : players.takeWarm(url);
+        CompletableFuture<OpenedMedia> open = warmMedia != null ? CompletableFuture.completedFuture(warmMedia)
+                                                                : opener.open(url);
+        open.whenCompleteAsync((openedMedia, ex) ->
+        {
+            if (ex != null)
+            {
+                System.err.println("Failed to open " + url + ": " + ex);
+                next();
+                return;
+            }
+            replaceCurrent(openedMedia);
+            current.getMediaPlayer().play();
+            PauseTransition playing = new PauseTransition(PLAY_TIME);
+            playing.setOnFinished(event -> next());
+            playing.play();
+        }, Platform::runLater);
+    }
+
+    private void next()
+    {
+        if (opened % REPORT_INTERVAL == 0)
+        {
+            report();
+        }
+        openNext();
+    }
+
+    private void replaceCurrent(OpenedMedia openedMedia)
+    {
+        if (current != null)
+        {
+            if (leak)
+            {
+                current.getMediaPlayer().pause();
+            }
+            else
+            {
+                mediaView.setMediaPlayer(null);
+                players.release(current);
+            }
+        }
+        current = openedMedia;
+        mediaView.setMediaPlayer(openedMedia != null ? openedMedia.getMediaPlayer() : null);
+    }
+
+    private void report()
+    {
+        System.gc();
+        String line = String.format("opens=%d %s", opened, players.describeFootprint());
+        System.out.println(line);
+        if (firstAndLast.size() < 2)
+        {
+            firstAndLast.add(line);
+        }
+        else
+        {
+            firstAndLast.set(1, line);
+        }
+    }
+
+    private void finish()
+    {
+        replaceCurrent(null);
+        if (!leak)
+        {
+            players.clear();
+        }
+        report();
+        System.out.println("first: " + firstAndLast.get(0));
+        System.out.println("last:  " + firstAndLast.get(firstAndLast.size() - 1));
+        opener.shutdown();
+        Platform.exit();
+    }
+
+    /**
+     * Main entry to the soak test.
+     *
+     * @param args
+     *         Media directory, optional number of opens and optional --leak
+     */
+    public static void main(String[] args)
+    {
+        launch(args);
+    }
+}
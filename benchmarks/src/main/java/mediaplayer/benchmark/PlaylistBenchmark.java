@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mediaplayer.playlist.Playlist;
+
+/**
+ * Import, shuffle and search of a generated M3U8 playlist with 100,000 entries, each with
+ * an {@code #EXTINF} title and a path in one of a few thousand album folders.
+ * <p>
+ * Searches cover a rare phrase, a common word matching an eighth of the entries and a
+ * single letter matching most of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class PlaylistBenchmark
+{
+    private static final String[] WORDS = {"love", "night", "blue", "fire", "dream", "river", "city", "gold",
+                                           "rain", "heart", "road", "ghost", "summer", "echo", "Ångström"};
+
+    @Param("100000")
+    private int entries;
+
+    private Path file;
+    private Playlist playlist;
+    private int[] positions;
+    private int keep;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        file = Files.createTempFile("playlist-benchmark", ".m3u8");
+        writePlaylist(file, entries);
+        playlist = Playlist.importM3u(file);
+        positions = new int[playlist.size()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Writes a playlist like the one benchmarked.
+     *
+     * @param file
+     *         File to write
+     * @param entries
+     *         Number of entries
+     * @throws IOException
+     *         if the file cannot be written
+     */
+    public static void writePlaylist(Path file, int entries) throws IOException
+    {
+        Random random = new Random(3);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            writer.write("#EXTM3U\n");
+            for (int i = 0; i < entries; i++)
+            {
+                String artist = "Artist " + i / 100;
+                String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                        + " " + i;
+                writer.write("#EXTINF:" + (120 + random.nextInt(300)) + "," + artist + " - " + title + "\n");
+                writer.write("Music/" + artist + "/Album " + i / 12 + "/" + String.format("%02d", i % 12) + " "
+                             + title + ".mp3\n");
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Playlist importM3u() throws IOException
+    {
+        return Playlist.importM3u(file);
+    }
+
+    @Benchmark
+    public int shuffle()
+    {
+        playlist.shuffle(keep);
+        keep = (keep + 1) % playlist.size();
+        return playlist.getEntry(keep);
+    }
+
+    @Benchmark
+    public int searchRare()
+    {
+        return playlist.search("gold rain 5", positions);
+    }
+
+    @Benchmark
+    public int searchCommon()
+    {
+        return playlist.search("river", positions);
+    }
+
+    @Benchmark
+    public int searchLetter()
+    {
+        return playlist.search("e", positions);
+    }
+}
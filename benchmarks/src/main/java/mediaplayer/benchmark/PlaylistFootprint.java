@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import mediaplayer.playlist.Playlist;
+
+/**
+ * Measures the import time and memory per entry of a generated playlist, the same one
+ * {@link PlaylistBenchmark} uses.
+ * <p>
+ * Usage: {@code java -Xmx1g -cp target/benchmarks.jar mediaplayer.benchmark.PlaylistFootprint [entries] [rounds]}.
+ * Imports the playlist the given number of times (default 5) and prints, for each round, the
+ * import time, the growth of the heap after a full GC divided by the entry count, and the
+ * store's own count of the bytes it holds. Later rounds show the time once the JIT has warmed up.
+ */
+public class PlaylistFootprint
+{
+    private static final int DEFAULT_ENTRIES = 100000;
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /**
+     * Main entry to the measurement.
+     *
+     * @param args
+     *         Optional number of entries and rounds
+     * @throws IOException
+     *         if the playlist cannot be written or read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ENTRIES;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        Path file = Files.createTempFile("playlist-footprint", ".m3u8");
+        try
+        {
+            PlaylistBenchmark.writePlaylist(file, entries);
+            System.out.printf("%d entries, %d bytes of M3U8%n", entries, Files.size(file));
+            for (int round = 1; round <= rounds; round++)
+            {
+                long heapBefore = usedHeapAfterGc();
+                long startNanos = System.nanoTime();
+                Playlist playlist = Playlist.importM3u(file);
+                long importNanos = System.nanoTime() - startNanos;
+                long heapAfter = usedHeapAfterGc();
+                System.out.printf("round %d: import %.1f ms, heap %.1f bytes per entry, store %.1f bytes per entry%n",
+                                  round, importNanos / 1e6, (heapAfter - heapBefore) / (double) playlist.size(),
+                                  playlist.getStore().getFootprintBytes() / (double) playlist.size());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long usedHeapAfterGc()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mediaplayer.progress.ElapsedTimeFormatter;
+
+/**
+ * Per-tick recomputation of the elapsed / remaining label. Ticks advance by one
+ * 60 Hz frame, so most ticks do not change the displayed second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressBenchmark
+{
+    private static final double FRAME_SECONDS = 1.0 / 60;
+    private static final double DURATION_SECONDS = 2 * 60 * 60;
+
+    private final ElapsedTimeFormatter formatter = new ElapsedTimeFormatter();
+    private double position;
+
+    private double nextPosition()
+    {
+        position += FRAME_SECONDS;
+        if (position > DURATION_SECONDS)
+        {
+            position = 0;
+        }
+        return position;
+    }
+
+    /**
+     * Original binding: two String.format calls and a concatenating format on every tick.
+     */
+    @Benchmark
+    public String bindingRecompute()
+    {
+        double elapsed = nextPosition();
+        return String.format("%s / %s", format((long) elapsed), format((long) (DURATION_SECONDS - (long) elapsed)));
+    }
+
+    @Benchmark
+    public boolean formatterUpdate()
+    {
+        return formatter.update(nextPosition(), DURATION_SECONDS);
+    }
+
+    @Benchmark
+    public String formatterUpdateAndText()
+    {
+        return formatter.update(nextPosition(), DURATION_SECONDS) ? formatter.getText() : null;
+    }
+
+    private static String format(long seconds)
+    {
+        return String.format("%02d:%02d:%02d", (seconds / 3600) % 24, (seconds / 60) % 60, seconds % 60);
+    }
+}
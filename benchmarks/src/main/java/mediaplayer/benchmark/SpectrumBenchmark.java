@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mediaplayer.visualizer.SpectrumBands;
+
+/**
+ * Spectrum listener path: smoothing a new set of magnitudes into the band levels.
+ * Run with -Dbenchmark.gc=true to confirm it allocates nothing per update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectrumBenchmark
+{
+    private static final int FRAMES = 64;
+
+    @Param({"64", "256"})
+    private int bandCount;
+
+    private SpectrumBands bands;
+    private float[][] frames;
+    private int frame;
+
+    @Setup
+    public void setUp()
+    {
+        bands = new SpectrumBands(bandCount, 0.6f, -60);
+        Random random = new Random(42);
+        frames = new float[FRAMES][bandCount];
+        for (float[] magnitudes : frames)
+        {
+            for (int i = 0; i < bandCount; i++)
+            {
+                magnitudes[i] = -60 * random.nextFloat();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean update()
+    {
+        bands.update(frames[frame++ & (FRAMES - 1)]);
+        return bands.takeDirty();
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mediaplayer.progress.ElapsedTimeFormatter;
+
+/**
+ * HH:MM:SS formatting, comparing the original String.format based
+ * convertSecondsToHhMmSs against the buffer based formatter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeFormatBenchmark
+{
+    private static final String TIME_FORMAT = "%02d:%02d:%02d";
+
+    private final char[] buffer = new char[8];
+    private double seconds = 3723.4;
+
+    /**
+     * Original implementation, kept as the baseline.
+     */
+    private static String convertSecondsToHhMmSs(double seconds)
+    {
+        long secondsLong = (long) seconds;
+        long s = secondsLong % 60;
+        long m = (secondsLong / 60) % 60;
+        long h = (secondsLong / (60 * 60)) % 24;
+        return String.format(TIME_FORMAT, h, m, s);
+    }
+
+    @Benchmark
+    public String stringFormat()
+    {
+        seconds += 1;
+        return convertSecondsToHhMmSs(seconds);
+    }
+
+    @Benchmark
+    public String toHhMmSs()
+    {
+        seconds += 1;
+        return ElapsedTimeFormatter.toHhMmSs(seconds);
+    }
+
+    @Benchmark
+    public char[] writeIntoBuffer()
+    {
+        seconds += 1;
+        ElapsedTimeFormatter.writeHhMmSs((long) seconds, buffer, 0);
+        return buffer;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Location of files the player keeps between runs.
+ * Defaults to ~/.mediaplayer and can be overridden with -Dmediaplayer.dataDir.
+ */
+public final class AppDataDirectory
+{
+    private static final Path ROOT = Paths.get(System.getProperty("mediaplayer.dataDir",
+            Paths.get(System.getProperty("user.home"), ".mediaplayer").toString()));
+
+    private AppDataDirectory()
+    {
+    }
+
+    /**
+     * Returns a sub-directory of the data directory, creating it if needed.
+     *
+     * @param name
+     *         Sub-directory name
+     * @return existing directory
+     * @throws IOException
+     *         if the directory cannot be created
+     */
+    public static Path resolve(String name) throws IOException
+    {
+        return Files.createDirectories(ROOT.resolve(name));
+    }
+}
@@ -3,9 +3,13 @@
  */
 package mediaplayer;
 
+import java.io.IOException;
 import java.net.URL;
+import java.util.List;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -17,7 +21,15 @@ import javafx.stage.StageStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import mediaplayer.cache.CachingProxy;
 import mediaplayer.controller.JFXMediaPlayerController;
+import mediaplayer.instance.SingleInstance;
+import mediaplayer.journal.PlaybackJournal;
+import mediaplayer.library.MediaLibrary;
+import mediaplayer.metrics.MetricsServer;
+import mediaplayer.metrics.PlaybackMetrics;
+import mediaplayer.resume.ResumeStore;
+import mediaplayer.wall.VideoWall;
 
 /*
  * JavaFx Media Player example (cobbled together from various sources)
@@ -36,8 +48,19 @@ public class JFXMediaPlayer extends Application
     private static final int DEFAULT_WIDTH = 640;
     private static final int DEFAULT_HEIGHT = 420;
 
+    /** Build the view in code rather than from FXML (-Dmediaplayer.fastStart=true) */
+    private static final boolean FAST_START = Boolean.getBoolean("mediaplayer.fastStart");
+
     private Stage primaryStage = null;
     private String styleSheet = null;
+    private MediaLibrary mediaLibrary = null;
+    private MetricsServer metricsServer = null;
+    private PlaybackJournal playbackJournal = null;
+    private SingleInstance singleInstance = null;
+    private ResumeStore resumeStore = null;
+    private CachingProxy cachingProxy = null;
+    private JFXMediaPlayerController controller = null;
+    private VideoWall videoWall = null;
 
     /**
      * Setups and shows application stage.
@@ -55,17 +78,37 @@ public class JFXMediaPlayer extends Application
             logger.debug("Starting application stage");
 
             this.primaryStage = primaryStage;
+            StartupTimer.mark(StartupTimer.Milestone.FX_START);
+
+            playbackJournal = PlaybackJournal.fromSystemProperties();
+
+            if (VideoWall.isRequested(getParameters().getRaw()))
+            {
+                startVideoWall();
+                return;
+            }
+
+            // Claim the port early so that launches during start-up queue up for this instance
+            bindSingleInstance();
 
             // Load stylesheet
             styleSheet = getClass().getResource(STYLESHEET).toExternalForm();
 
-            // Setup controller, view (FXML)
-            JFXMediaPlayerController controller = new JFXMediaPlayerController();
+            // Setup controller, view (built in code for fast start, otherwise from FXML)
+            controller = new JFXMediaPlayerController();
             controller.setMainApp(this);
-            URL fxmlUrl = getClass().getResource(FXML);
-            FXMLLoader fxmlLoader = new FXMLLoader(fxmlUrl, null);
-            fxmlLoader.setController(controller);
-            Parent root = fxmlLoader.load();
+            Parent root;
+            if (FAST_START)
+            {
+                root = controller.createView();
+            }
+            else
+            {
+                URL fxmlUrl = getClass().getResource(FXML);
+                FXMLLoader fxmlLoader = new FXMLLoader(fxmlUrl, null);
+                fxmlLoader.setController(controller);
+                root = fxmlLoader.load();
+            }
 
             // Setup scene, stage
             Scene scene = new Scene(root, DEFAULT_WIDTH, DEFAULT_HEIGHT, Color.TRANSPARENT);
@@ -76,9 +119,23 @@ public class JFXMediaPlayer extends Application
             primaryStage.centerOnScreen();
 
             controller.setupSceneEventHandlers();
+            StartupTimer.mark(StartupTimer.Milestone.SCENE_BUILT);
 
             // Show main stage
             primaryStage.show();
+            StartupTimer.mark(StartupTimer.Milestone.SHOWN);
+
+            // Everything not needed for the first frame waits until it has been rendered
+            afterFirstFrame(() ->
+            {
+                StartupTimer.mark(StartupTimer.Milestone.FIRST_FRAME);
+                startDeferred(controller);
+                StartupTimer.mark(StartupTimer.Milestone.DEFERRED_SETUP);
+                if (StartupTimer.finish())
+                {
+                    Platform.exit();
+                }
+            });
         }
         catch (Exception ex)
         {
@@ -89,6 +146,151 @@ public class JFXMediaPlayer extends Application
         }
     }
 
+    /**
+     * Runs a task on the FX thread once the first frame of the shown stage has been rendered.
+     * An animation timer runs at the start of each pulse, before that pulse renders, so the
+     * first frame is complete when the timer fires for the second time.
+     */
+    private static void afterFirstFrame(Runnable task)
+    {
+        new AnimationTimer()
+        {
+            private int pulses;
+
+            @Override
+            public void handle(long now)
+            {
+                if (++pulses == 2)
+                {
+                    stop();
+                    task.run();
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Shows the video wall in place of the player. The wall takes no hand-offs from later
+     * launches, but publishes the same metrics.
+     */
+    private void startVideoWall()
+    {
+        videoWall = VideoWall.fromArguments(primaryStage, getParameters().getRaw());
+        videoWall.show();
+        PlaybackMetrics.getInstance().registerMBean();
+        metricsServer = MetricsServer.startFromSystemProperties();
+    }
+
+    /**
+     * Binds the single-instance port if single-instance mode is enabled.
+     */
+    private void bindSingleInstance()
+    {
+        if (!SingleInstance.isEnabled())
+        {
+            return;
+        }
+        try
+        {
+            singleInstance = SingleInstance.bind(SingleInstance.getPort());
+            if (singleInstance == null)
+            {
+                logger.info("Another instance holds port {}; running as a separate instance.",
+                            SingleInstance.getPort());
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not bind single-instance port", ex);
+        }
+    }
+
+    /**
+     * Starts everything that is not needed to show the first frame.
+     */
+    private void startDeferred(JFXMediaPlayerController controller)
+    {
+        resumeStore = ResumeStore.fromSystemProperties();
+        cachingProxy = CachingProxy.startFromSystemProperties();
+        controller.setupDeferredFeatures();
+
+        // Media named on the command line, then media handed over by later launches
+        List<String> args = getParameters().getRaw();
+        if (!args.isEmpty())
+        {
+            controller.openArguments(args);
+        }
+        if (singleInstance != null)
+        {
+            singleInstance.start(handedOff -> Platform.runLater(() ->
+            {
+                primaryStage.setIconified(false);
+                primaryStage.toFront();
+                controller.openArguments(handedOff);
+            }));
+        }
+
+        // Publish playback metrics through JMX and, if configured, a loopback HTTP endpoint
+        PlaybackMetrics.getInstance().registerMBean();
+        metricsServer = MetricsServer.startFromSystemProperties();
+
+        // Load the media library index and bring it up to date in the background
+        try
+        {
+            mediaLibrary = MediaLibrary.fromSystemProperties();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Media library unavailable, continuing without it", ex);
+        }
+        if (mediaLibrary != null)
+        {
+            mediaLibrary.start();
+        }
+    }
+
+    /**
+     * Disposes media players of the player or video wall, releases the single-instance port,
+     * saves the media library and resume positions, stops the metrics endpoint and the remote
+     * media cache and closes the playback journal before the application exits.
+     */
+    @Override
+    public void stop()
+    {
+        if (controller != null)
+        {
+            controller.shutdown();
+        }
+        if (videoWall != null)
+        {
+            videoWall.shutdown();
+        }
+        if (singleInstance != null)
+        {
+            singleInstance.close();
+        }
+        if (mediaLibrary != null)
+        {
+            mediaLibrary.shutdown();
+        }
+        if (metricsServer != null)
+        {
+            metricsServer.stop();
+        }
+        if (cachingProxy != null)
+        {
+            cachingProxy.stop();
+        }
+        if (playbackJournal != null)
+        {
+            playbackJournal.close();
+        }
+        if (resumeStore != null)
+        {
+            resumeStore.close();
+        }
+    }
+
     /**
      * Gets primary stage for application.
      *
@@ -99,6 +301,46 @@ public class JFXMediaPlayer extends Application
         return primaryStage;
     }
 
+    /**
+     * Gets the media library.
+     *
+     * @return Media library, or null if no library roots are configured
+     */
+    public MediaLibrary getMediaLibrary()
+    {
+        return mediaLibrary;
+    }
+
+    /**
+     * Gets the playback journal.
+     *
+     * @return Playback journal, or null if journaling is disabled
+     */
+    public PlaybackJournal getPlaybackJournal()
+    {
+        return playbackJournal;
+    }
+
+    /**
+     * Gets the store of resume positions.
+     *
+     * @return Resume store, or null if resuming is disabled
+     */
+    public ResumeStore getResumeStore()
+    {
+        return resumeStore;
+    }
+
+    /**
+     * Gets the proxy remote media are cached through.
+     *
+     * @return Caching proxy, or null if caching is disabled
+     */
+    public CachingProxy getCachingProxy()
+    {
+        return cachingProxy;
+    }
+
     /**
      * Returns Cascading Style-Sheet for main application.
      *
@@ -119,6 +361,7 @@ public class JFXMediaPlayer extends Application
     {
         try
         {
+            StartupTimer.mark(StartupTimer.Milestone.MAIN);
             logger.info("Starting Video Player");
             launch(args);
             logger.info("Closing Video Player");
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import mediaplayer.instance.SingleInstance;
+import mediaplayer.wall.VideoWall;
+
+/**
+ * Entry point of the executable jar.
+ * <p>
+ * In single-instance mode a launch first offers its arguments to the running player
+ * and exits if it takes them. This class must stay free of JavaFX and logging so that
+ * a handoff costs no more than a JVM start and a loopback round trip. A video wall
+ * launch always starts its own instance; the option constant is inlined at compile
+ * time, so checking for it loads no wall classes.
+ */
+public final class Launcher
+{
+    private Launcher()
+    {
+    }
+
+    /**
+     * Hands the arguments to a running instance, or starts the player.
+     *
+     * @param args
+     *         Media files, folders or URLs to open
+     */
+    public static void main(String[] args)
+    {
+        StartupTimer.mark(StartupTimer.Milestone.MAIN);
+        if (SingleInstance.isEnabled() && !Arrays.asList(args).contains(VideoWall.WALL_OPTION))
+        {
+            List<String> resolved = SingleInstance.resolveArguments(args);
+            if (SingleInstance.handOff(SingleInstance.getPort(), resolved))
+            {
+                StartupTimer.mark(StartupTimer.Milestone.HANDOFF);
+                if (StartupTimer.isMeasuring())
+                {
+                    StartupTimer.finish();
+                }
+                return;
+            }
+        }
+        JFXMediaPlayer.main(args);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Milestones of a cold start, from JVM start to the first rendered frame.
+ * <p>
+ * Marks only read the clock; the JVM start time is looked up through the management
+ * API when the report is built, after the window is up, so that measuring does not
+ * slow down what is measured.
+ * <p>
+ * With -Dmediaplayer.startup.exit=true the application prints the report to standard
+ * output and exits after the first frame, for repeated measurement and for the CDS
+ * training run. A launch handed off to a running instance prints its report too.
+ */
+public final class StartupTimer
+{
+    /**
+     * Startup milestones, in order.
+     */
+    public enum Milestone
+    {
+        /** main() entered */
+        MAIN,
+        /** Arguments handed to an already running instance; the launch ends here */
+        HANDOFF,
+        /** Application.start() entered on the FX thread */
+        FX_START,
+        /** Scene graph built and wired */
+        SCENE_BUILT,
+        /** Stage shown */
+        SHOWN,
+        /** First frame of the stage rendered */
+        FIRST_FRAME,
+        /** Setup deferred until after the first frame completed */
+        DEFERRED_SETUP
+    }
+
+    private static final long MAIN_MILLIS = System.currentTimeMillis();
+    private static final long MAIN_NANOS = System.nanoTime();
+    private static final Map<Milestone, Long> milestoneNanos = new EnumMap<>(Milestone.class);
+
+    private StartupTimer()
+    {
+    }
+
+    /**
+     * Records a milestone. Only the first call for a milestone counts.
+     *
+     * @param milestone
+     *         Milestone just reached
+     */
+    public static synchronized void mark(Milestone milestone)
+    {
+        milestoneNanos.putIfAbsent(milestone, milestone == Milestone.MAIN ? MAIN_NANOS : System.nanoTime());
+    }
+
+    /**
+     * @param milestone
+     *         Milestone to query
+     * @return milliseconds from JVM start to the milestone, or -1 if it has not been reached
+     */
+    public static synchronized long getMillisSinceJvmStart(Milestone milestone)
+    {
+        Long nanos = milestoneNanos.get(milestone);
+        if (nanos == null)
+        {
+            return -1;
+        }
+        long jvmToMainMillis = MAIN_MILLIS - ManagementFactory.getRuntimeMXBean().getStartTime();
+        return jvmToMainMillis + (nanos - MAIN_NANOS) / 1000000;
+    }
+
+    /**
+     * @return milestones reached so far as "milestone=ms" pairs, measured from JVM start
+     */
+    public static synchronized String report()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Milestone milestone : Milestone.values())
+        {
+            long millis = getMillisSinceJvmStart(milestone);
+            if (millis >= 0)
+            {
+                if (sb.length() > 0)
+                {
+                    sb.append(", ");
+                }
+                sb.append(milestone.name().toLowerCase()).append('=').append(millis).append("ms");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return whether start-up is being measured (-Dmediaplayer.startup.exit=true)
+     */
+    public static boolean isMeasuring()
+    {
+        return Boolean.getBoolean("mediaplayer.startup.exit");
+    }
+
+    /**
+     * Prints the report and asks the caller to exit when measuring, otherwise logs it.
+     * The logger is only created here, so printing never initializes logging.
+     *
+     * @return whether the application should exit now
+     */
+    public static boolean finish()
+    {
+        String report = report();
+        if (isMeasuring())
+        {
+            System.out.println("startup " + report);
+            return true;
+        }
+        Logger logger = LoggerFactory.getLogger(StartupTimer.class);
+        logger.info("Startup from JVM start: {}.", report);
+        return false;
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixed-size blocks of remote media kept on disk, evicted least recently used first.
+ * <p>
+ * Each block is a file named after the source key and the block index, so a block is
+ * read or replaced without touching any other. Use order is held in memory and carried
+ * across runs by the files' modification times, which are bumped on every hit. Blocks
+ * are written to a temporary file and moved into place, so a reader never sees a partly
+ * written block. Safe to use from any thread; file I/O happens outside the lock.
+ */
+public class BlockCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(BlockCache.class);
+
+    /** Bytes per block; the last block of a source may be shorter */
+    public static final int BLOCK_SIZE = 1 << 20;
+
+    private static final String SUFFIX = ".blk";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // Guarded by this; file name to block size, in use order
+    private final LinkedHashMap<String, Long> blocks = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Opens the cache, picking up blocks written by earlier runs.
+     *
+     * @param directory
+     *         Directory holding the block files
+     * @param maxBytes
+     *         Size the blocks are evicted down to
+     * @throws IOException
+     *         if the directory cannot be listed
+     */
+    public BlockCache(Path directory, long maxBytes) throws IOException
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        // Temporary files are left over from writes interrupted by an earlier exit
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TEMPORARY_SUFFIX))
+        {
+            for (Path file : stream)
+            {
+                Files.deleteIfExists(file);
+            }
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX))
+        {
+            stream.forEach(files::add);
+        }
+        try
+        {
+            files.sort(Comparator.comparing(BlockCache::lastModified));
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+        for (Path file : files)
+        {
+            long size = Files.size(file);
+            blocks.put(file.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        deleteAll(evict());
+        logger.debug("Opened block cache {} with {} blocks ({} bytes).", directory, blocks.size(), totalBytes);
+    }
+
+    /**
+     * @param sourceKey
+     *         Key of the source
+     * @param index
+     *         Block index within the source
+     * @return the block, or null if it is not cached
+     */
+    public byte[] read(long sourceKey, long index)
+    {
+        String name = fileName(sourceKey, index);
+        synchronized (this)
+        {
+            if (blocks.get(name) == null)
+            {
+                return null;
+            }
+        }
+        Path file = directory.resolve(name);
+        try
+        {
+            byte[] data = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return data;
+        }
+        catch (NoSuchFileException ex)
+        {
+            // Evicted between the lookup and the read
+            forget(name);
+            return null;
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not read cached block " + file, ex);
+            forget(name);
+            return null;
+        }
+    }
+
+    /**
+     * @param sourceKey
+     *         Key of the source
+     * @param index
+     *         Block index within the source
+     * @return whether the block is cached, without counting as a use
+     */
+    public synchronized boolean contains(long sourceKey, long index)
+    {
+        return blocks.containsKey(fileName(sourceKey, index));
+    }
+
+    /**
+     * Stores a block, evicting the least recently used blocks beyond the size limit.
+     *
+     * @param sourceKey
+     *         Key of the source
+     * @param index
+     *         Block index within the source
+     * @param data
+     *         Block contents
+     * @throws IOException
+     *         if the block cannot be written
+     */
+    public void write(long sourceKey, long index, byte[] data) throws IOException
+    {
+        String name = fileName(sourceKey, index);
+        Path temporary = Files.createTempFile(directory, name, TEMPORARY_SUFFIX);
+        try
+        {
+            Files.write(temporary, data);
+            Files.move(temporary, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+
+        List<String> evicted;
+        synchronized (this)
+        {
+            Long previous = blocks.put(name, (long) data.length);
+            totalBytes += data.length - (previous != null ? previous : 0);
+            evicted = evict();
+        }
+        deleteAll(evicted);
+    }
+
+    /**
+     * @return bytes held by cached blocks
+     */
+    public synchronized long getSizeBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * Drops least recently used blocks until the cache fits its limit.
+     *
+     * @return file names of the dropped blocks, to be deleted outside the lock
+     */
+    private List<String> evict()
+    {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = blocks.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext())
+        {
+            Map.Entry<String, Long> entry = eldest.next();
+            totalBytes -= entry.getValue();
+            evicted.add(entry.getKey());
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    private synchronized void forget(String name)
+    {
+        Long size = blocks.remove(name);
+        if (size != null)
+        {
+            totalBytes -= size;
+        }
+    }
+
+    private void deleteAll(List<String> names)
+    {
+        for (String name : names)
+        {
+            try
+            {
+                Files.deleteIfExists(directory.resolve(name));
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Could not delete evicted block " + name, ex);
+            }
+        }
+    }
+
+    private static String fileName(long sourceKey, long index)
+    {
+        return String.format("%016x-%d%s", sourceKey, index, SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file)
+    {
+        try
+        {
+            return Files.getLastModifiedTime(file);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
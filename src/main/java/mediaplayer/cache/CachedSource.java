@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.cache;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Remote media served through the cache: its origin, length and content type, and the
+ * range requests that fetch its blocks.
+ * <p>
+ * Only origins that answer range requests with 206 Partial Content and a known total
+ * length can be cached; {@link #open(String)} rejects any other. The length and content
+ * type learnt from the origin are stored in the {@link BlockCache} as a small block of
+ * their own, under {@link #metadataKey(String)} and {@link #METADATA_BLOCK}, so the media
+ * can be served from cached blocks without the origin. Immutable and safe to use from
+ * any thread.
+ */
+final class CachedSource
+{
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+    /** Block index of the length and content type, under the {@link #metadataKey(String)} of the URL */
+    static final long METADATA_BLOCK = -1;
+
+    private final URL origin;
+    private final long length;
+    private final String contentType;
+    private final long key;
+
+    private CachedSource(URL origin, long length, String contentType)
+    {
+        this.origin = origin;
+        this.length = length;
+        this.contentType = contentType;
+        // The length keys the blocks too, so a replaced file of another size is not mixed with the old one
+        this.key = hash(origin + "#" + length);
+    }
+
+    /**
+     * Asks the origin for the first byte to learn the length and whether ranges are served.
+     *
+     * @param url
+     *         HTTP or HTTPS URL of the media
+     * @return the source
+     * @throws IOException
+     *         if the origin cannot be reached or does not serve byte ranges
+     */
+    static CachedSource open(String url) throws IOException
+    {
+        URL origin = new URL(url);
+        HttpURLConnection connection = connect(origin, 0, 0);
+        try
+        {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+            {
+                throw new IOException("Origin does not serve byte ranges: HTTP "
+                                      + connection.getResponseCode());
+            }
+            String contentRange = connection.getHeaderField("Content-Range");
+            Matcher matcher = contentRange == null ? null : CONTENT_RANGE.matcher(contentRange);
+            if (matcher == null || !matcher.matches())
+            {
+                throw new IOException("Origin does not report the media length: " + contentRange);
+            }
+            CachedSource source = new CachedSource(origin, Long.parseLong(matcher.group(1)),
+                                                   connection.getContentType());
+            drain(connection);
+            return source;
+        }
+        catch (IOException ex)
+        {
+            // Not draining a refusal, which may be the whole file
+            connection.disconnect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Restores a source from what was learnt of its origin before.
+     *
+     * @param url
+     *         HTTP or HTTPS URL of the media
+     * @param metadata
+     *         Block written from {@link #toMetadata()}, or null
+     * @return the source, or null without metadata or if it is unreadable
+     * @throws IOException
+     *         if the URL is malformed
+     */
+    static CachedSource fromMetadata(String url, byte[] metadata) throws IOException
+    {
+        if (metadata == null)
+        {
+            return null;
+        }
+        String[] lines = new String(metadata, StandardCharsets.UTF_8).split("\n", -1);
+        if (lines.length != 2)
+        {
+            return null;
+        }
+        try
+        {
+            return new CachedSource(new URL(url), Long.parseLong(lines[0]), lines[1].isEmpty() ? null : lines[1]);
+        }
+        catch (NumberFormatException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @param url
+     *         HTTP or HTTPS URL of the media
+     * @return key the metadata of the URL is cached under, with block index {@link #METADATA_BLOCK}
+     */
+    static long metadataKey(String url)
+    {
+        return hash(url);
+    }
+
+    /**
+     * @return length and content type, for {@link #fromMetadata(String, byte[])}
+     */
+    byte[] toMetadata()
+    {
+        return (length + "\n" + (contentType != null ? contentType : "")).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fetches a block from the origin.
+     *
+     * @param index
+     *         Block index
+     * @return block contents, {@link BlockCache#BLOCK_SIZE} bytes except for the last block
+     * @throws IOException
+     *         if the origin fails or sends less than asked for
+     */
+    byte[] fetch(long index) throws IOException
+    {
+        long first = index * BlockCache.BLOCK_SIZE;
+        byte[] data = new byte[getBlockLength(index)];
+        HttpURLConnection connection = connect(origin, first, first + data.length - 1);
+        try
+        {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+            {
+                throw new IOException("Origin did not serve block " + index + ": HTTP "
+                                      + connection.getResponseCode());
+            }
+            try (InputStream in = connection.getInputStream())
+            {
+                int read = 0;
+                while (read < data.length)
+                {
+                    int count = in.read(data, read, data.length - read);
+                    if (count < 0)
+                    {
+                        throw new EOFException("Origin sent " + read + " of " + data.length
+                                               + " bytes of block " + index);
+                    }
+                    read += count;
+                }
+            }
+            return data;
+        }
+        catch (IOException ex)
+        {
+            connection.disconnect();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return total length of the media in bytes
+     */
+    long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return content type reported by the origin, or null
+     */
+    String getContentType()
+    {
+        return contentType;
+    }
+
+    /**
+     * @return key of the blocks of this source in the {@link BlockCache}
+     */
+    long getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return last path segment of the origin URL, so the proxied URL keeps the file name and extension
+     */
+    String getFileName()
+    {
+        String path = origin.getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return number of blocks
+     */
+    long getBlockCount()
+    {
+        return (length + BlockCache.BLOCK_SIZE - 1) / BlockCache.BLOCK_SIZE;
+    }
+
+    /**
+     * @param index
+     *         Block index
+     * @return bytes in the block
+     */
+    int getBlockLength(long index)
+    {
+        return (int) Math.min(BlockCache.BLOCK_SIZE, length - index * BlockCache.BLOCK_SIZE);
+    }
+
+    @Override
+    public String toString()
+    {
+        return origin.toString();
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with a bit mixer. Block files on disk are
+     * named by these keys, so changing the hash orphans every cached block.
+     */
+    private static long hash(String text)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    private static HttpURLConnection connect(URL origin, long first, long last) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) origin.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setRequestProperty("Range", "bytes=" + first + "-" + last);
+        // Range offsets must refer to the stored bytes, not a compressed transfer
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return connection;
+    }
+
+    /**
+     * Reads what is left of a short response so the connection can be kept alive for the next request.
+     */
+    private static void drain(HttpURLConnection connection) throws IOException
+    {
+        try (InputStream in = connection.getInputStream())
+        {
+            byte[] buffer = new byte[64];
+            while (in.read(buffer) >= 0)
+            {
+                // Discard
+            }
+        }
+    }
+}
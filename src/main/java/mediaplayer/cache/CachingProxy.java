@@ -0,0 +1,543 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mediaplayer.AppDataDirectory;
+import mediaplayer.metrics.PlaybackMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loopback HTTP proxy that serves remote media to the media stack from a {@link BlockCache}.
+ * <p>
+ * {@link #route(String)} registers an HTTP or HTTPS URL and returns a loopback URL for it.
+ * The media stack's range requests to that URL are answered block by block: cached blocks
+ * from disk, others fetched from the origin with a range request and cached on the way
+ * through. Each block served queues the following {@value #DEFAULT_READ_AHEAD_BLOCKS}
+ * (-Dmediaplayer.cache.readAheadBlocks) blocks for background fetching, so playback runs
+ * ahead of the network; queued blocks that a seek has left behind are skipped. Replays and
+ * seeks into played media are served without the network at all.
+ * <p>
+ * The length and content type of each URL are cached next to its blocks. Media cached in
+ * full are routed without asking the origin, and media whose origin cannot be reached are
+ * still routed, playing as far as their cached blocks go. Routes are released once the
+ * player of the media is disposed.
+ * <p>
+ * Every time a request has to wait for the origin is a stall, recorded in the playback
+ * metrics along with the bytes served and fetched, the difference being the bytes saved.
+ * Origins that do not answer range requests, and HLS playlists whose segments are
+ * addressed relative to the playlist, are played directly.
+ */
+public class CachingProxy
+{
+    private static final Logger logger = LoggerFactory.getLogger(CachingProxy.class);
+
+    static final int DEFAULT_READ_AHEAD_BLOCKS = 8;
+
+    private static final long DEFAULT_MAX_MEGABYTES = 1024;
+    private static final int FETCH_THREADS = 2;
+    private static final String CONTEXT = "/media/";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private final BlockCache cache;
+    private final int readAheadBlocks;
+    private final HttpServer server;
+    private final String baseUrl;
+    private final PlaybackMetrics metrics = PlaybackMetrics.getInstance();
+    private final Map<String, CachedSource> sources = new ConcurrentHashMap<>();
+    /** Routes not yet released, by source id; guarded by itself */
+    private final Map<String, Integer> routeCounts = new HashMap<>();
+    private final Map<String, CompletableFuture<byte[]>> fetches = new ConcurrentHashMap<>();
+    private final Map<Long, Long> playheads = new ConcurrentHashMap<>();
+    private final ExecutorService readAhead = Executors.newFixedThreadPool(FETCH_THREADS, runnable ->
+    {
+        Thread thread = new Thread(runnable, "cache-read-ahead");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param cache
+     *         Blocks of remote media
+     * @param readAheadBlocks
+     *         Blocks to fetch ahead of each block served
+     * @throws IOException
+     *         if no loopback port can be bound
+     */
+    public CachingProxy(BlockCache cache, int readAheadBlocks) throws IOException
+    {
+        this.cache = cache;
+        this.readAheadBlocks = readAheadBlocks;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        InetAddress address = server.getAddress().getAddress();
+        String host = address.getHostAddress();
+        this.baseUrl = "http://" + (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":"
+                + server.getAddress().getPort() + CONTEXT;
+        server.createContext(CONTEXT, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(runnable ->
+        {
+            Thread thread = new Thread(runnable, "cache-proxy");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Starts the proxy with its cache in the data directory unless -Dmediaplayer.cache=false.
+     * The cache is limited to -Dmediaplayer.cache.maxMegabytes (default 1024).
+     *
+     * @return running proxy, or null if disabled or it cannot be started
+     */
+    public static CachingProxy startFromSystemProperties()
+    {
+        if (!Boolean.parseBoolean(System.getProperty("mediaplayer.cache", "true")))
+        {
+            return null;
+        }
+        try
+        {
+            long maxBytes = Long.getLong("mediaplayer.cache.maxMegabytes", DEFAULT_MAX_MEGABYTES) << 20;
+            BlockCache cache = new BlockCache(AppDataDirectory.resolve("cache"), maxBytes);
+            CachingProxy proxy = new CachingProxy(cache, Integer.getInteger("mediaplayer.cache.readAheadBlocks",
+                                                                            DEFAULT_READ_AHEAD_BLOCKS));
+            proxy.start();
+            return proxy;
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Remote media will not be cached", ex);
+            return null;
+        }
+    }
+
+    public void start()
+    {
+        server.start();
+        logger.info("Caching remote media through {}.", baseUrl);
+    }
+
+    public void stop()
+    {
+        server.stop(0);
+        readAhead.shutdownNow();
+        logger.info("Remote media cache served {} bytes, fetched {}, stalled {} times; {} bytes on disk.",
+                    metrics.getCacheServedBytes(), metrics.getCacheFetchedBytes(), metrics.getCacheStallCount(),
+                    cache.getSizeBytes());
+    }
+
+    /**
+     * @param url
+     *         Media URL
+     * @return whether the media can be served through the proxy
+     */
+    public static boolean isCacheable(String url)
+    {
+        URI uri;
+        try
+        {
+            uri = URI.create(url);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return false;
+        }
+        String scheme = uri.getScheme();
+        String path = uri.getPath();
+        return ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))
+                && path != null && !path.toLowerCase(Locale.ROOT).endsWith(".m3u8");
+    }
+
+    /**
+     * Routes media through the proxy. Unless the media are cached in full, asks the origin
+     * for their length, so must not be called on the FX application thread. Every routed URL
+     * must be released with {@link #release(String)} once no player uses it.
+     *
+     * @param url
+     *         Media URL
+     * @return loopback URL serving the media, or the URL itself if it cannot be cached
+     */
+    public String route(String url)
+    {
+        if (!isCacheable(url))
+        {
+            return url;
+        }
+        CachedSource remembered;
+        try
+        {
+            remembered = CachedSource.fromMetadata(url, cache.read(CachedSource.metadataKey(url),
+                                                                   CachedSource.METADATA_BLOCK));
+        }
+        catch (IOException ex)
+        {
+            logger.info("Playing {} without caching: {}", url, ex.getMessage());
+            return url;
+        }
+        CachedSource source;
+        if (remembered != null && isCachedInFull(remembered))
+        {
+            source = remembered;
+        }
+        else
+        {
+            try
+            {
+                source = CachedSource.open(url);
+                remember(url, source, remembered);
+            }
+            catch (IOException ex)
+            {
+                if (remembered == null)
+                {
+                    logger.info("Playing {} without caching: {}", url, ex.getMessage());
+                    return url;
+                }
+                logger.info("Playing {} from what is cached, the origin failed: {}", url, ex.getMessage());
+                source = remembered;
+            }
+        }
+        String id = Long.toHexString(source.getKey());
+        synchronized (routeCounts)
+        {
+            routeCounts.merge(id, 1, Integer::sum);
+            sources.put(id, source);
+        }
+        String proxied = baseUrl + id + "/" + source.getFileName();
+        logger.debug("Routing {} ({} bytes) through {}.", url, source.getLength(), proxied);
+        return proxied;
+    }
+
+    /**
+     * Releases a route, forgetting its source once no route to it is left.
+     *
+     * @param routedUrl
+     *         URL returned by {@link #route(String)}; other URLs are ignored
+     */
+    public void release(String routedUrl)
+    {
+        if (!routedUrl.startsWith(baseUrl))
+        {
+            return;
+        }
+        String path = routedUrl.substring(baseUrl.length());
+        int slash = path.indexOf('/');
+        String id = slash < 0 ? path : path.substring(0, slash);
+        synchronized (routeCounts)
+        {
+            Integer count = routeCounts.get(id);
+            if (count == null)
+            {
+                return;
+            }
+            if (count > 1)
+            {
+                routeCounts.put(id, count - 1);
+                return;
+            }
+            routeCounts.remove(id);
+            CachedSource source = sources.remove(id);
+            playheads.remove(source.getKey());
+        }
+    }
+
+    /**
+     * @return whether every block of the source is cached
+     */
+    private boolean isCachedInFull(CachedSource source)
+    {
+        for (long index = 0; index < source.getBlockCount(); index++)
+        {
+            if (!cache.contains(source.getKey(), index))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Caches the length and content type of a source unless they are cached already.
+     */
+    private void remember(String url, CachedSource source, CachedSource remembered)
+    {
+        byte[] metadata = source.toMetadata();
+        if (remembered != null && Arrays.equals(metadata, remembered.toMetadata()))
+        {
+            return;
+        }
+        try
+        {
+            cache.write(CachedSource.metadataKey(url), CachedSource.METADATA_BLOCK, metadata);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not cache the length of " + url, ex);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method))
+            {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+            int slash = path.indexOf('/');
+            CachedSource source = sources.get(slash < 0 ? path : path.substring(0, slash));
+            if (source == null)
+            {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            long length = source.getLength();
+            long first = 0;
+            long last = length - 1;
+            boolean partial = false;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null)
+            {
+                Matcher matcher = RANGE.matcher(range.trim());
+                if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty()))
+                {
+                    if (matcher.group(1).isEmpty())
+                    {
+                        // Suffix range: the last n bytes
+                        first = Math.max(0, length - Long.parseLong(matcher.group(2)));
+                    }
+                    else
+                    {
+                        first = Long.parseLong(matcher.group(1));
+                        if (!matcher.group(2).isEmpty())
+                        {
+                            last = Math.min(last, Long.parseLong(matcher.group(2)));
+                        }
+                    }
+                    partial = true;
+                }
+                // Multiple or malformed ranges are answered with the whole media, as the range header allows
+            }
+            if (first > last)
+            {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+
+            if (source.getContentType() != null)
+            {
+                exchange.getResponseHeaders().set("Content-Type", source.getContentType());
+            }
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            if (partial)
+            {
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + length);
+            }
+            int status = partial ? 206 : 200;
+            if ("HEAD".equals(method))
+            {
+                exchange.getResponseHeaders().set("Content-Length", Long.toString(last - first + 1));
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, last - first + 1);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                serve(source, first, last, out);
+            }
+        }
+        catch (IOException ex)
+        {
+            // Usually the media stack dropping a connection after a seek
+            logger.debug("Proxy request {} ended: {}", exchange.getRequestURI(), ex.getMessage());
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes a byte range of the media, block by block.
+     */
+    private void serve(CachedSource source, long first, long last, OutputStream out) throws IOException
+    {
+        for (long index = first / BlockCache.BLOCK_SIZE; index <= last / BlockCache.BLOCK_SIZE; index++)
+        {
+            playheads.put(source.getKey(), index);
+            byte[] block = block(source, index);
+            scheduleReadAhead(source, index);
+
+            long blockStart = index * BlockCache.BLOCK_SIZE;
+            int from = (int) Math.max(0, first - blockStart);
+            int to = (int) Math.min(block.length, last - blockStart + 1);
+            out.write(block, from, to - from);
+            metrics.recordCacheServed(to - from);
+        }
+    }
+
+    /**
+     * @return the block from the cache, otherwise from a fetch already under way or a new
+     *         one on the calling thread
+     */
+    private byte[] block(CachedSource source, long index) throws IOException
+    {
+        byte[] cached = cache.read(source.getKey(), index);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        long stallStart = System.nanoTime();
+        try
+        {
+            while (true)
+            {
+                CompletableFuture<byte[]> fetch = new CompletableFuture<>();
+                CompletableFuture<byte[]> running = fetches.putIfAbsent(blockKey(source, index), fetch);
+                if (running == null)
+                {
+                    fetch(source, index, fetch);
+                    return fetch.join();
+                }
+                try
+                {
+                    return running.get();
+                }
+                catch (CancellationException ex)
+                {
+                    // Read-ahead skipped the block after all; fetch it here
+                }
+            }
+        }
+        catch (CompletionException | ExecutionException ex)
+        {
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for block " + index + " of " + source, ex);
+        }
+        finally
+        {
+            long stallNanos = System.nanoTime() - stallStart;
+            metrics.recordCacheStall(stallNanos);
+            logger.debug("Waited {} ms for block {} of {}.", stallNanos / 1000000, index, source);
+        }
+    }
+
+    /**
+     * Fetches a block from the origin and caches it, completing the future registered for it.
+     */
+    private void fetch(CachedSource source, long index, CompletableFuture<byte[]> result)
+    {
+        try
+        {
+            byte[] data = source.fetch(index);
+            metrics.recordCacheFetched(data.length);
+            try
+            {
+                cache.write(source.getKey(), index, data);
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Could not cache block " + index + " of " + source, ex);
+            }
+            result.complete(data);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            result.completeExceptionally(ex);
+        }
+        finally
+        {
+            fetches.remove(blockKey(source, index), result);
+        }
+    }
+
+    /**
+     * Queues the blocks after the one being served that are neither cached nor being fetched.
+     */
+    private void scheduleReadAhead(CachedSource source, long index)
+    {
+        long end = Math.min(source.getBlockCount(), index + 1 + readAheadBlocks);
+        for (long next = index + 1; next < end; next++)
+        {
+            if (cache.contains(source.getKey(), next))
+            {
+                continue;
+            }
+            CompletableFuture<byte[]> fetch = new CompletableFuture<>();
+            if (fetches.putIfAbsent(blockKey(source, next), fetch) != null)
+            {
+                continue;
+            }
+            long block = next;
+            try
+            {
+                readAhead.execute(() ->
+                {
+                    if (isNearPlayhead(source, block))
+                    {
+                        fetch(source, block, fetch);
+                    }
+                    else
+                    {
+                        // A seek moved the playhead away; a request for the block will fetch it itself
+                        fetches.remove(blockKey(source, block), fetch);
+                        fetch.cancel(false);
+                    }
+                });
+            }
+            catch (RejectedExecutionException ex)
+            {
+                fetches.remove(blockKey(source, block), fetch);
+                fetch.cancel(false);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether the block is still within read-ahead of the last block served from the source
+     */
+    private boolean isNearPlayhead(CachedSource source, long index)
+    {
+        Long playhead = playheads.get(source.getKey());
+        return playhead != null && index >= playhead && index <= playhead + readAheadBlocks;
+    }
+
+    private static String blockKey(CachedSource source, long index)
+    {
+        return source.getKey() + ":" + index;
+    }
+}
@@ -3,29 +3,51 @@
  */
 package mediaplayer.controller;
 
-import java.net.MalformedURLException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.PauseTransition;
-import javafx.beans.binding.Bindings;
-import javafx.beans.binding.StringBinding;
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.ObservableMap;
 import javafx.fxml.FXML;
 import javafx.geometry.Point2D;
+import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Button;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.SeparatorMenuItem;
 import javafx.scene.control.Slider;
-import javafx.scene.image.ImageView;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.control.Tooltip;
+import javafx.scene.control.Toggle;
+import javafx.scene.control.ToggleGroup;
 import javafx.scene.input.Dragboard;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.media.Media;
+import javafx.scene.layout.Pane;
 import javafx.scene.media.MediaPlayer;
 import javafx.scene.media.MediaView;
 import javafx.stage.Stage;
@@ -33,6 +55,36 @@ import javafx.stage.WindowEvent;
 import javafx.util.Duration;
 
 import mediaplayer.JFXMediaPlayer;
+import mediaplayer.icon.Icon;
+import mediaplayer.icon.IconAtlas;
+import mediaplayer.journal.JournalEvent;
+import mediaplayer.journal.PlaybackJournal;
+import mediaplayer.loop.MediaLoop;
+import mediaplayer.media.MediaOpener;
+import mediaplayer.media.OpenTimings;
+import mediaplayer.media.OpenedMedia;
+import mediaplayer.media.PlayQueue;
+import mediaplayer.media.PlayerLifecycle;
+import mediaplayer.media.ProbeResult;
+import mediaplayer.media.UnsupportedMediaException;
+import mediaplayer.metrics.PlaybackMetrics;
+import mediaplayer.playback.PlaybackBackend;
+import mediaplayer.playback.PlaybackCommand;
+import mediaplayer.playback.PlaybackEngine;
+import mediaplayer.playback.PlaybackState;
+import mediaplayer.playback.PlaybackStatus;
+import mediaplayer.playback.RateTier;
+import mediaplayer.playback.SeekIndex;
+import mediaplayer.playlist.M3uParser;
+import mediaplayer.playlist.PlaylistPanel;
+import mediaplayer.preview.ScrubPreview;
+import mediaplayer.progress.ElapsedTimeFormatter;
+import mediaplayer.progress.ProgressRenderer;
+import mediaplayer.progress.SliderTrack;
+import mediaplayer.resume.ResumeStore;
+import mediaplayer.subtitle.SubtitleLoader;
+import mediaplayer.subtitle.SubtitleOverlay;
+import mediaplayer.visualizer.SpectrumVisualizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,14 +94,64 @@ import org.slf4j.LoggerFactory;
 public class JFXMediaPlayerController
 {
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final static String TIME_FORMAT = "%02d:%02d:%02d";
+
+    /** Minimum movement between resume checkpoints */
+    private static final double RESUME_CHECKPOINT_SECONDS = 1.0;
+    /** Positions this close to either end of the media are not worth resuming */
+    private static final double RESUME_MARGIN_SECONDS = 10.0;
+    /** Rates offered by the rate menu of the rewind and fast-forward buttons */
+    private static final double[] MENU_RATES = {-32, -16, -8, -4, -2, -1, 0.5, 1, 1.5, 2, 4, 8, 16, 32, 64};
+    /** Seek of the arrow keys, and with shift held */
+    private static final double KEY_SEEK_SECONDS = 5;
+    private static final double KEY_LONG_SEEK_SECONDS = 30;
+    /** Frame rate stepped by when the probe could not read one */
+    private static final double DEFAULT_FRAME_RATE = 25;
 
     private JFXMediaPlayer mainApp;  // Reference to main application
     private MediaPlayer mediaPlayer;
     private Point2D anchorPt;
     private Point2D previousLocation;
-    private ChangeListener<Duration> progressListener;
-    private SimpleDoubleProperty elapsedSecondsProperty = new SimpleDoubleProperty();
+    private IconAtlas icons;
+    private PlaybackEngine playbackEngine;
+    private AnimationTimer pulseTimer;
+    private ProgressRenderer progressRenderer;
+    private ScrubPreview scrubPreview;
+    private final PlayerLifecycle players = new PlayerLifecycle(PlayerLifecycle.DEFAULT_WARM_PLAYERS);
+    private final MediaOpener mediaOpener = new MediaOpener(players);
+    private OpenedMedia currentMedia;
+    private OpenTimings pendingOpenTimings;
+    private final PlayQueue playQueue = new PlayQueue(mediaOpener, PlayQueue.DEFAULT_LOOKAHEAD);
+    private CompletableFuture<OpenedMedia> currentOpen;
+    private long endOfMediaNanos;
+    private SubtitleOverlay subtitleOverlay;
+    private final SubtitleLoader subtitleLoader = new SubtitleLoader();
+    private Path subtitleFile;
+    private SpectrumVisualizer spectrumVisualizer;
+    private final MediaLoop mediaLoop = new MediaLoop();
+    private PlaylistPanel playlistPanel;
+    /** Keys held down, to tell auto-repeat from new presses */
+    private final Set<KeyCode> keysDown = EnumSet.noneOf(KeyCode.class);
+    private final PlaybackMetrics metrics = PlaybackMetrics.getInstance();
+    private PlaybackJournal journal;
+    private ResumeStore resumeStore;
+    private long resumeKey;
+    private CompletableFuture<Double> resumeLookup;
+    private double lastCheckpointSeconds;
+    private long lastPulseNanos = -1;
+    private long stallStartNanos;
+    private final ChangeListener<MediaPlayer.Status> stallListener = (observable, oldStatus, newStatus) ->
+    {
+        if (newStatus == MediaPlayer.Status.STALLED)
+        {
+            stallStartNanos = System.nanoTime();
+            metrics.recordStallStart();
+            logger.info("Playback stalled.");
+        }
+        else if (oldStatus == MediaPlayer.Status.STALLED)
+        {
+            metrics.recordStallEnd(System.nanoTime() - stallStartNanos);
+        }
+    };
 
     @FXML
     private AnchorPane mainAnchorPane;
@@ -70,20 +172,15 @@ public class JFXMediaPlayerController
     @FXML
     private Button btnStop;
     @FXML
+    private Button btnLoop;
+    @FXML
     private Label lblTimeElapsedAndRemaining;
-
-    private static int numSeekPoints = 3;
-
-    private List<Double> seekPointsList;
-
-    private static String convertSecondsToHhMmSs(double seconds)
-    {
-        long secondsLong = (long) seconds;
-        long s = secondsLong % 60;
-        long m = (secondsLong / 60) % 60;
-        long h = (secondsLong / (60 * 60)) % 24;
-        return String.format(TIME_FORMAT, h, m, s);
-    }
+    @FXML
+    private Label lblSubtitle;
+    @FXML
+    private Pane spectrumPane;
+    @FXML
+    private Canvas cnvSpectrum;
 
     /**
      * Initializes scene event handlers.
@@ -92,6 +189,12 @@ public class JFXMediaPlayerController
     {
         try
         {
+            // Decode button icons once and move buttons onto the shared atlas
+            initButtonIcons();
+
+            // Playback state machine driven from the FX pulse
+            initPlaybackEngine();
+
             // Initialize stage to be movable via mouse
             initMovablePlayer();
 
@@ -101,28 +204,149 @@ public class JFXMediaPlayerController
             // Initialize stage for various clicks to scene
             initMouseClickMeanings();
 
+            // Transport keys
+            initKeyboardControl();
+
             // Create event handlers for buttons
             setupButtonEventHandlers();
 
             // Configure position slider
             configSlider();
+        }
+        catch (Exception ex)
+        {
+            logger.warn("Could not setup scene event handlers", ex);
+        }
+    }
+
+    /**
+     * Sets up the parts of the player that are not visible until media is opened.
+     * Called once the stage has been shown, before any media can be opened. Each feature is
+     * set up on its own, so one that fails is left out without taking the others with it.
+     */
+    public void setupDeferredFeatures()
+    {
+        // Positions to resume media from
+        resumeStore = mainApp.getResumeStore();
+
+        // Remote media dropped or handed over play through the loopback cache
+        mediaOpener.setCachingProxy(mainApp.getCachingProxy());
 
-            // Update slider and elapsed seconds as video is progressing
-            progressListener = (observable, oldValue, newValue) ->
+        // Thumbnails above the slider while hovering or dragging
+        setupDeferredFeature("scrub previews", () -> scrubPreview = new ScrubPreview(mvMediaView, sldSlider));
+
+        // Subtitle cues over the media view
+        setupDeferredFeature("subtitles", () -> subtitleOverlay = new SubtitleOverlay(lblSubtitle));
+
+        // Imported playlists, played through the queue without copying them
+        setupDeferredFeature("playlists", () ->
+        {
+            playlistPanel = new PlaylistPanel(mainApp.getPrimaryStage(), new PlaylistPanel.Listener()
             {
-                sldSlider.setValue(newValue.toSeconds());
-                elapsedSecondsProperty.set(newValue.toSeconds());
-            };
+                @Override
+                public void onPlay(int position)
+                {
+                    playMedia(playQueue.play(playlistPanel.getUrls(), position));
+                }
+
+                @Override
+                public void onReorder(int playingPosition)
+                {
+                    if (playQueue.getItems() == playlistPanel.getUrls())
+                    {
+                        playQueue.reorder(playingPosition);
+                    }
+                }
+            });
+        });
+
+        // Spectrum in place of the blank view while audio-only media plays
+        setupDeferredFeature("the spectrum", () ->
+        {
+            cnvSpectrum.widthProperty().bind(spectrumPane.widthProperty());
+            cnvSpectrum.heightProperty().bind(spectrumPane.heightProperty());
+            spectrumVisualizer = new SpectrumVisualizer(cnvSpectrum);
+        });
 
-            // Initializing to accept files dragged over surface to load media
-            initFileDragNDrop();
+        // Initializing to accept files dragged over surface to load media
+        setupDeferredFeature("drag and drop", this::initFileDragNDrop);
+    }
+
+    /**
+     * Runs the setup of one deferred feature, logging rather than propagating a failure.
+     *
+     * @param feature
+     *         Name of the feature, for the log
+     * @param setup
+     *         Sets the feature up
+     */
+    private void setupDeferredFeature(String feature, Runnable setup)
+    {
+        try
+        {
+            setup.run();
         }
-        catch (Exception ex)
+        catch (RuntimeException ex)
         {
-            logger.warn("Could not setup scene event handlers", ex);
+            logger.warn("Could not set up " + feature + "; continuing without it", ex);
+        }
+    }
+
+    /**
+     * Saves the thumbnails of the open media, disposes the current and all warm players and
+     * stops background threads.
+     */
+    public void shutdown()
+    {
+        if (scrubPreview != null)
+        {
+            scrubPreview.detach();
+            scrubPreview.shutdown();
+        }
+        if (mediaPlayer != null)
+        {
+            checkpointPosition(mediaPlayer.getCurrentTime().toSeconds(), true);
+            mvMediaView.setMediaPlayer(null);
+            players.dispose(mediaPlayer);
+            mediaPlayer = null;
+            currentMedia = null;
+        }
+        playQueue.clear();
+        players.clear();
+        mediaOpener.shutdown();
+        subtitleLoader.shutdown();
+        if (playlistPanel != null)
+        {
+            playlistPanel.shutdown();
         }
     }
 
+    /**
+     * Builds the view in code instead of loading MediaPlayer.fxml.
+     *
+     * @return Root of the view
+     */
+    public Parent createView()
+    {
+        MediaPlayerView view = new MediaPlayerView();
+        mainAnchorPane = view.getMainAnchorPane();
+        mvMediaView = view.getMediaView();
+        sldSlider = view.getSlider();
+        btnPlay = view.getPlayButton();
+        btnFfwd = view.getFastForwardButton();
+        btnRewind = view.getRewindButton();
+        btnSkipFwd = view.getSkipForwardButton();
+        btnSkipBkwd = view.getSkipBackwardButton();
+        btnStop = view.getStopButton();
+        btnLoop = view.getLoopButton();
+        lblTimeElapsedAndRemaining = view.getTimeLabel();
+        lblSubtitle = view.getSubtitleLabel();
+        spectrumPane = view.getSpectrumPane();
+        cnvSpectrum = view.getSpectrumCanvas();
+        initialize();
+        return mainAnchorPane;
+    }
+
     /**
      * Initializes controller after view loaded.
      */
@@ -173,44 +397,107 @@ public class JFXMediaPlayerController
         });
     }
 
-    private void doubleClickToggleFullscreenMode(Stage stage)
+    /**
+     * Keyboard transport: space plays and pauses, left and right seek 5 seconds (30 with shift),
+     * comma and period step a frame back or forward and the brackets step through the menu rates.
+     * A held seek or step key repeats; each repeat seeks on from the newest target, and the engine
+     * coalesces them into one pending seek, so a held arrow issues one seek per landed seek rather
+     * than one per repeat.
+     */
+    private void initKeyboardControl()
     {
-        logger.debug(stage.isFullScreen() ? "Setting stage to default dimensions with double-click."
-                                          : "Setting stage to fullscreen with double-click.");
-        stage.setFullScreen(!stage.isFullScreen());
+        Stage stage = mainApp.getPrimaryStage();
+        Scene scene = stage.getScene();
+        // Filters, so that a focused button or the slider does not take space or the arrows for itself
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, this::handleKeyPressed);
+        scene.addEventFilter(KeyEvent.KEY_RELEASED, keyEvent -> keysDown.remove(keyEvent.getCode()));
+        // Releases are not delivered to an unfocused window
+        stage.focusedProperty().addListener((observable, wasFocused, focused) -> keysDown.clear());
     }
 
-    /**
-     * Pausing and playing media can be regulated by single clicks on the stage.
-     */
-    private void singleClickPauseAndPlay()
+    private void handleKeyPressed(KeyEvent keyEvent)
     {
-        if (mediaPlayer != null)
+        long pressedNanos = System.nanoTime();
+        boolean repeat = !keysDown.add(keyEvent.getCode());
+        switch (keyEvent.getCode())
         {
-            if (mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING)
-            {
-                int rate = (int) (mediaPlayer.getRate() * 10);
-
-                logger.debug("Pausing video with single-click.");
-
-                if (rate == 130)
+            case SPACE:
+                if (!repeat)
                 {
-                    btnPlay.setGraphic(new ImageView("/images/1.3x-play-button.png"));
+                    playbackEngine.submit(PlaybackCommand.TOGGLE_PLAY);
                 }
-                else
+                break;
+            case LEFT:
+            case RIGHT:
+                double seconds = keyEvent.isShiftDown() ? KEY_LONG_SEEK_SECONDS : KEY_SEEK_SECONDS;
+                playbackEngine.submit(PlaybackCommand.seekBy(keyEvent.getCode() == KeyCode.LEFT ? -seconds : seconds,
+                                                             pressedNanos));
+                break;
+            case COMMA:
+            case PERIOD:
+                playbackEngine.submit(PlaybackCommand.stepFrames(keyEvent.getCode() == KeyCode.COMMA ? -1 : 1,
+                                                                 getFrameRate(), pressedNanos));
+                break;
+            case OPEN_BRACKET:
+            case CLOSE_BRACKET:
+                if (!repeat)
                 {
-                    btnPlay.setGraphic(new ImageView("/images/play-button.png"));
+                    stepRate(keyEvent.getCode() == KeyCode.CLOSE_BRACKET);
                 }
-                mediaPlayer.pause();
+                break;
+            default:
+                return;
+        }
+        keyEvent.consume();
+    }
 
-            }
-            else
+    /**
+     * @return frame rate of the current media as probed, or a common rate if unknown
+     */
+    private double getFrameRate()
+    {
+        ProbeResult probe = currentMedia != null ? currentMedia.getProbe() : null;
+        return probe != null && probe.getFrameRate() > 0 ? probe.getFrameRate() : DEFAULT_FRAME_RATE;
+    }
+
+    /**
+     * Plays at the next menu rate above or below the current one.
+     *
+     * @param faster
+     *         Whether to go up rather than down
+     */
+    private void stepRate(boolean faster)
+    {
+        double currentRate = playbackEngine.getState().getRate();
+        double nextRate = currentRate;
+        for (int i = 0; i < MENU_RATES.length; i++)
+        {
+            double rate = MENU_RATES[faster ? i : MENU_RATES.length - 1 - i];
+            if (faster ? rate > currentRate : rate < currentRate)
             {
-                logger.debug("Playing video with single-click.");
-                mediaPlayer.play();
-                btnPlay.setGraphic(new ImageView("/images/pause-button.png"));
+                nextRate = rate;
+                break;
             }
         }
+        if (nextRate != currentRate)
+        {
+            playbackEngine.submit(PlaybackCommand.setRate(nextRate));
+        }
+    }
+
+    private void doubleClickToggleFullscreenMode(Stage stage)
+    {
+        logger.debug(stage.isFullScreen() ? "Setting stage to default dimensions with double-click."
+                                          : "Setting stage to fullscreen with double-click.");
+        stage.setFullScreen(!stage.isFullScreen());
+    }
+
+    /**
+     * Pausing and playing media can be regulated by single clicks on the stage.
+     */
+    private void singleClickPauseAndPlay()
+    {
+        playbackEngine.submit(PlaybackCommand.TOGGLE_PLAY);
     }
 
     /**
@@ -266,27 +553,35 @@ public class JFXMediaPlayerController
         {
             Dragboard db = dragEvent.getDragboard();
             boolean success = false;
-            String filePath = null;
-            if (db.hasFiles())
+            if (db.hasFiles() && db.getFiles().size() == 1
+                    && SubtitleLoader.isSubtitleFile(db.getFiles().get(0).getName()))
+            {
+                // Subtitles for the current media
+                success = true;
+                loadSubtitles(db.getFiles().get(0).toPath());
+                logger.info("Loading dropped subtitle file {}.", db.getFiles().get(0));
+            }
+            else if (db.hasFiles() && db.getFiles().size() == 1 && isImportablePlaylist(db.getFiles().get(0)))
             {
                 success = true;
-                if (db.getFiles().size() > 0)
+                logger.info("Importing dropped playlist {}.", db.getFiles().get(0));
+                playlistPanel.importFile(db.getFiles().get(0).toPath());
+            }
+            else if (db.hasFiles())
+            {
+                success = true;
+                List<String> urls = collectMediaUrls(db.getFiles());
+                String first = playQueue.replace(urls);
+                if (first != null)
                 {
-                    try
-                    {
-                        filePath = db.getFiles().get(0).toURI().toURL().toString();
-                        playMedia(filePath);
-                    }
-                    catch (MalformedURLException ex)
-                    {
-                        ex.printStackTrace();
-                    }
+                    logger.info("Queued {} dropped media files.", urls.size());
+                    playMedia(first);
                 }
             }
             else
             {
                 // audio file from some host or jar
-                playMedia(db.getUrl());
+                playMedia(playQueue.replace(Collections.singletonList(db.getUrl())));
                 logger.info("File loaded from host or jar loaded.");
                 success = true;
             }
@@ -297,371 +592,710 @@ public class JFXMediaPlayerController
     }
 
     /**
-     * Sets up event handlers for play, pause and stop buttons.
+     * Opens media named on the command line or handed over by another launch.
+     * Files and folders are expanded like dropped ones and replace the queue; with
+     * "--enqueue" they are appended instead while something is playing or opening.
+     * A lone subtitle file applies to the current media and a lone M3U playlist is imported.
+     *
+     * @param args
+     *         Absolute paths or URLs, optionally with "--enqueue"
      */
-    private void setupButtonEventHandlers()
+    public void openArguments(List<String> args)
     {
-        // STOP setOnMousePressed() EventHandler
-        btnStop.setOnMousePressed(mouseEvent ->
+        boolean enqueue = false;
+        List<String> urls = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        for (String arg : args)
         {
-            if (mediaPlayer != null)
+            if ("--enqueue".equals(arg))
             {
-                if (mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING ||
-                        mediaPlayer.getStatus() == MediaPlayer.Status.PAUSED)
-                {
-                    mediaPlayer.stop();
-                }
+                enqueue = true;
             }
-        });
+            else if (arg.startsWith("--"))
+            {
+                logger.debug("Ignoring option {}.", arg);
+            }
+            else if (arg.contains(":/"))
+            {
+                urls.add(arg);
+            }
+            else
+            {
+                File file = new File(arg);
+                files.add(file);
+                urls.addAll(collectMediaUrls(Collections.singletonList(file)));
+            }
+        }
 
-        btnStop.setOnMouseClicked(mouseEvent ->
+        if (urls.size() == 1 && files.size() == 1 && isImportablePlaylist(files.get(0)))
         {
-            if (mediaPlayer != null)
+            logger.info("Importing playlist {} from the command line.", files.get(0));
+            playlistPanel.importFile(files.get(0).toPath());
+            return;
+        }
+        if (urls.isEmpty())
+        {
+            if (files.size() == 1 && SubtitleLoader.isSubtitleFile(files.get(0).getName()))
             {
-                btnPlay.setGraphic(new ImageView("/images/play-button.png"));
-                btnFfwd.setGraphic(new ImageView("/images/ffwd-button.png"));
-                logger.debug("Media stopped.");
+                logger.info("Loading subtitle file {} from the command line.", files.get(0));
+                loadSubtitles(files.get(0).toPath());
             }
-        });
+            return;
+        }
 
-        // PLAY/PAUSE setOnMousePressed() EventHandler
-        btnPlay.setOnMousePressed(mouseEvent ->
+        PlaybackStatus status = playbackEngine.getState().getStatus();
+        boolean busy = status == PlaybackStatus.PLAYING || status == PlaybackStatus.PAUSED
+                || currentOpen != null && !currentOpen.isDone();
+        if (enqueue && busy)
         {
-            if (mediaPlayer != null)
+            playQueue.addAll(urls);
+            logger.info("Queued {} media from the command line.", urls.size());
+        }
+        else
+        {
+            logger.info("Playing {} media from the command line.", urls.size());
+            playMedia(playQueue.replace(urls));
+        }
+    }
+
+    /**
+     * @param file
+     *         Dropped or named file
+     * @return whether the file is an M3U playlist to import, rather than an HLS playlist to play as media;
+     *         false without the playlist window
+     */
+    private boolean isImportablePlaylist(File file)
+    {
+        if (playlistPanel == null || !file.isFile() || !M3uParser.isPlaylistFile(file.getName()))
+        {
+            return false;
+        }
+        try
+        {
+            return !M3uParser.isHls(file.toPath());
+        }
+        catch (IOException ex)
+        {
+            logger.debug("Could not read playlist " + file, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Converts dropped files to media URLs. Dropped folders are expanded to the
+     * playable files they contain, sorted by path.
+     *
+     * @param files
+     *         Dropped files and folders
+     * @return URLs in play order
+     */
+    private List<String> collectMediaUrls(List<File> files)
+    {
+        List<String> urls = new ArrayList<>();
+        for (File file : files)
+        {
+            if (file.isDirectory())
             {
-                if (mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING)
+                try (Stream<Path> paths = Files.walk(file.toPath()))
                 {
-                    mediaPlayer.pause();
+                    paths.filter(Files::isRegularFile)
+                         .filter(path -> MediaOpener.isSupported(path.toString()))
+                         .sorted()
+                         .forEach(path -> urls.add(path.toUri().toString()));
                 }
-                else
+                catch (IOException | UncheckedIOException ex)
                 {
-                    mediaPlayer.play();
-                    mediaPlayer.setRate(1.0);
-                    mediaPlayer.setMute(false);
+                    logger.warn("Could not list dropped folder " + file, ex);
                 }
             }
-        });
+            else if (!SubtitleLoader.isSubtitleFile(file.getName()))
+            {
+                urls.add(file.toURI().toString());
+            }
+        }
+        return urls;
+    }
 
-        btnPlay.setOnMouseClicked(mouseEvent ->
+    /**
+     * Replaces the FXML button graphics with views onto the preloaded icon atlas.
+     */
+    private void initButtonIcons()
+    {
+        icons = IconAtlas.getInstance();
+        icons.skin(btnRewind, Icon.SKIP_BKWD);
+        icons.skin(btnSkipBkwd, Icon.REWIND);
+        icons.skin(btnPlay, Icon.PLAY);
+        icons.skin(btnFfwd, Icon.FFWD);
+        icons.skin(btnSkipFwd, Icon.SKIP_FWD);
+        icons.skin(btnStop, Icon.STOP);
+        icons.skin(btnLoop, Icon.LOOP);
+    }
+
+    /**
+     * Sets up event handlers for play, pause and stop buttons.
+     * Buttons only queue commands; icons are rendered from the resulting engine state.
+     * Rewind and fast-forward step through the rate ladders and offer any rate on right-click.
+     */
+    private void setupButtonEventHandlers()
+    {
+        btnStop.setOnMousePressed(mouseEvent -> playbackEngine.submit(PlaybackCommand.STOP));
+        btnPlay.setOnMousePressed(mouseEvent -> playbackEngine.submit(PlaybackCommand.PLAY_PAUSE));
+        btnSkipFwd.setOnMouseClicked(mouseEvent -> playbackEngine.submit(PlaybackCommand.SKIP_FORWARD));
+        btnSkipBkwd.setOnMouseClicked(mouseEvent -> playbackEngine.submit(PlaybackCommand.SKIP_BACKWARD));
+        btnRewind.setOnMousePressed(mouseEvent ->
         {
-            if (mediaPlayer != null)
+            if (mouseEvent.getButton() == MouseButton.PRIMARY)
             {
-                if (mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING)
-                {
-                    logger.debug("Playing media at regular speed.");
-                    btnPlay.setGraphic(new ImageView("/images/pause-button.png"));
-                }
-                else
-                {
-                    logger.debug("Pausing media.");
-                    btnPlay.setGraphic(new ImageView("/images/play-button.png"));
-                    btnFfwd.setGraphic(new ImageView("/images/ffwd-button.png"));
-                }
+                playbackEngine.submit(PlaybackCommand.REWIND);
             }
         });
-
-        btnSkipFwd.setOnMouseClicked(mouseEvent ->
+        btnFfwd.setOnMousePressed(mouseEvent ->
         {
-            if (mediaPlayer != null)
+            if (mouseEvent.getButton() == MouseButton.PRIMARY)
             {
-                normalizePlayBack();
-                normalizePlaybackButtons();
-
-                logger.debug("Skipping forward.");
-                setForwardSeekPointBasedOnCurrentLocation(mediaPlayer.getCurrentTime().toSeconds());
+                playbackEngine.submit(PlaybackCommand.FAST_FORWARD);
+            }
+        });
 
+        ContextMenu rateMenu = createRateMenu();
+        btnRewind.setContextMenu(rateMenu);
+        btnFfwd.setContextMenu(rateMenu);
 
+        // Loop clears an A-B loop if one is set, otherwise toggles repeat of the whole media
+        btnLoop.setOnMouseClicked(mouseEvent ->
+        {
+            if (mouseEvent.getButton() != MouseButton.PRIMARY)
+            {
+                return;
+            }
+            if (mediaLoop.hasRange())
+            {
+                mediaLoop.clearPoints();
+            }
+            else
+            {
+                mediaLoop.setRepeat(!mediaLoop.isRepeat());
             }
+            renderLoopState();
         });
+        renderLoopState();
+    }
+
+    /**
+     * Shows whether the loop button is engaged, with the loop range as its tooltip.
+     */
+    private void renderLoopState()
+    {
+        btnLoop.setOpacity(mediaLoop.isRepeat() || mediaLoop.hasRange() ? 1.0 : 0.5);
+        btnLoop.setTooltip(new Tooltip(mediaLoop.describe()));
+    }
 
-        btnSkipBkwd.setOnMouseClicked(mouseEvent ->
+    /**
+     * Builds the menu of playback rates. Rates the player cannot play natively, backwards or
+     * beyond 8x, are scanned from keyframe to keyframe by the engine.
+     *
+     * @return menu with preset rates, checked against the current rate when shown, and a custom rate entry
+     */
+    private ContextMenu createRateMenu()
+    {
+        ContextMenu rateMenu = new ContextMenu();
+        ToggleGroup rateGroup = new ToggleGroup();
+        for (double rate : MENU_RATES)
         {
-            if (mediaPlayer != null)
+            RadioMenuItem item = new RadioMenuItem(formatRate(rate));
+            item.setUserData(rate);
+            item.setToggleGroup(rateGroup);
+            item.setOnAction(event -> playbackEngine.submit(PlaybackCommand.setRate(rate)));
+            rateMenu.getItems().add(item);
+        }
+        MenuItem customItem = new MenuItem("Other rate...");
+        customItem.setOnAction(event -> promptForRate());
+        rateMenu.getItems().addAll(new SeparatorMenuItem(), customItem);
+
+        rateMenu.setOnShowing(event ->
+        {
+            double currentRate = playbackEngine.getState().getRate();
+            rateGroup.selectToggle(null);
+            for (Toggle toggle : rateGroup.getToggles())
             {
-                if (mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING ||
-                        mediaPlayer.getStatus() == MediaPlayer.Status.PAUSED)
-                {
-                    if (mediaPlayer.getCurrentTime().toSeconds() == 0.0)
-                    {
-                        btnPlay.setGraphic(new ImageView("/images/play-button.png"));
-                        mediaPlayer.stop();
-                        logger.debug("Already at start of media.");
-                    }
-                    else
-                    {
-                        logger.debug("Skipping backward.");
-                        setBackwardSeekPointBasedOnCurrentLocation(mediaPlayer.getCurrentTime().toSeconds());
-                    }
-                }
-                else if (mediaPlayer.getStatus() == MediaPlayer.Status.STOPPED)
+                if ((Double) toggle.getUserData() == currentRate)
                 {
-                    btnPlay.setGraphic(new ImageView("/images/play-button.png"));
+                    rateGroup.selectToggle(toggle);
                 }
             }
         });
+        return rateMenu;
+    }
 
-        btnRewind.setOnMousePressed(mouseEvent ->
+    /**
+     * Asks for a playback rate, such as -3 or 24, and plays at it.
+     */
+    private void promptForRate()
+    {
+        TextInputDialog dialog = new TextInputDialog(formatRate(playbackEngine.getState().getRate()));
+        dialog.setTitle("Playback rate");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Rate (negative scans backwards):");
+        dialog.initOwner(mainApp.getPrimaryStage());
+        dialog.showAndWait().ifPresent(text ->
         {
-            if (mediaPlayer != null)
+            try
             {
-                mediaPlayer.seek(Duration.ZERO);
-                logger.debug("Rewinding media.");
-                mediaPlayer.play();
-                logger.debug("Playing media from start.");
-                btnPlay.setGraphic(new ImageView("/images/pause-button.png"));
+                playbackEngine.submit(PlaybackCommand.setRate(Double.parseDouble(text.trim().replace("x", ""))));
+            }
+            catch (IllegalArgumentException ex)
+            {
+                logger.info("Ignoring invalid playback rate '{}'.", text);
             }
         });
+    }
 
-        btnFfwd.setOnMousePressed(mouseEvent ->
+    private static String formatRate(double rate)
+    {
+        return (rate == Math.rint(rate) ? String.valueOf((long) rate) : String.valueOf(rate)) + "x";
+    }
+
+    /**
+     * Creates the playback engine and drives it from the FX pulse.
+     */
+    private void initPlaybackEngine()
+    {
+        journal = mainApp.getPlaybackJournal();
+        playbackEngine = new PlaybackEngine(new MediaPlayerBackend());
+        progressRenderer = new ProgressRenderer(sldSlider, lblTimeElapsedAndRemaining);
+        playbackEngine.setListener(this::renderPlaybackState);
+        playbackEngine.getSeekScheduler().setLatencyListener(metrics::recordSeek);
+        playbackEngine.getSeekScheduler().setInputLatencyListener(nanos ->
         {
-            // Permits fast-forwarding from a paused state
-            if (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PAUSED)
-            {
-                logger.debug("Fast-forwarding from paused state.");
-                mediaPlayer.setRate(1.3);
-                mediaPlayer.setMute(false);
-                mediaPlayer.play();
-                btnFfwd.setGraphic(new ImageView("/images/1.3x-play-button.png"));
-                btnPlay.setGraphic(new ImageView("/images/pause-button.png"));
-            }
+            metrics.recordKeySeek(nanos);
+            logger.debug("Key seek landed {} ms after the key press.", nanos / 1000000.0);
+        });
 
-            // Permits increasing rate on each mouse-click, returning to normal play after max is reached
-            if (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING)
+        pulseTimer = new AnimationTimer()
+        {
+            @Override
+            public void handle(long now)
             {
-                int rate = (int) (mediaPlayer.getRate() * 10);
-                switch (rate)
-                {
-                    case 80:
-                        mediaPlayer.setRate(16.0);
-                        mediaPlayer.setMute(true);
-                        logger.debug("Playing media at 16x.");
-                        btnFfwd.setGraphic(new ImageView("/images/16x-play-button.png"));
-                        break;
-                    case 40:
-                        mediaPlayer.setRate(8.0);
-                        mediaPlayer.setMute(true);
-                        logger.debug("Playing media at 8x.");
-                        btnFfwd.setGraphic(new ImageView("/images/8x-play-button.png"));
-                        break;
-                    case 20:
-                        mediaPlayer.setRate(4.0);
-                        mediaPlayer.setMute(true);
-                        logger.debug("Playing media at 4x.");
-                        btnFfwd.setGraphic(new ImageView("/images/4x-play-button.png"));
-                        break;
-                    case 13:
-                        mediaPlayer.setRate(2.0);
-                        mediaPlayer.setMute(true);
-                        logger.debug("Playing media at 2x.");
-                        btnFfwd.setGraphic(new ImageView("/images/2x-play-button.png"));
-                        break;
-                    case 10:
-                        mediaPlayer.setRate(1.3);
-                        mediaPlayer.setMute(false);
-                        logger.debug("Playing media at 1.3x.");
-                        btnFfwd.setGraphic(new ImageView("/images/1.3x-play-button.png"));
-                        break;
-                    case 160:
-                        normalizePlayBack();
-                        logger.debug("Playing media at regular speed.");
-                        btnFfwd.setGraphic(new ImageView("/images/ffwd-button.png"));
-                        break;
-                }
+                long startNanos = System.nanoTime();
+                samplePosition();
+                playbackEngine.pulse();
+                metrics.recordPulse(System.nanoTime() - startNanos, lastPulseNanos < 0 ? -1 : now - lastPulseNanos);
+                lastPulseNanos = now;
             }
-        });
+        };
+        pulseTimer.start();
     }
 
-    private void setBackwardSeekPointBasedOnCurrentLocation(double currentLocation)
+    /**
+     * Samples the media position once per pulse and feeds it to the engine and
+     * the progress renderer.
+     */
+    private void samplePosition()
     {
-        if (currentLocation > seekPointsList.get(2))
+        if (mediaPlayer == null)
         {
-            mediaPlayer.seek(Duration.seconds(seekPointsList.get(2)));
-            btnPlay.setGraphic(new ImageView("/images/play-button.png"));
-            mediaPlayer.pause();
+            return;
         }
-        else if (currentLocation > seekPointsList.get(1))
+        Duration currentTime = mediaPlayer.getCurrentTime();
+        double positionSeconds = currentTime.toSeconds();
+        playbackEngine.updatePosition(positionSeconds);
+        Duration bufferProgress = mediaPlayer.getBufferProgressTime();
+        if (bufferProgress != null && !bufferProgress.isUnknown())
         {
-            mediaPlayer.seek(Duration.seconds(seekPointsList.get(1)));
-            btnPlay.setGraphic(new ImageView("/images/play-button.png"));
-            mediaPlayer.pause();
+            metrics.setBufferAheadSeconds(Math.max(0, bufferProgress.toSeconds() - positionSeconds));
         }
-        else if (currentLocation > seekPointsList.get(0))
+        progressRenderer.render(positionSeconds);
+        if (scrubPreview != null)
         {
-            mediaPlayer.seek(Duration.seconds(seekPointsList.get(0)));
-            btnPlay.setGraphic(new ImageView("/images/play-button.png"));
-            mediaPlayer.pause();
+            scrubPreview.onPulse(positionSeconds, playbackEngine.getState().getStatus() == PlaybackStatus.PLAYING);
         }
-        else
+        if (subtitleOverlay != null)
         {
-            mediaPlayer.seek(Duration.ZERO);
-            if (mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING)
-            {
-                btnPlay.setGraphic(new ImageView("/images/pause-button.png"));
-            }
-            else
-            {
-                btnPlay.setGraphic(new ImageView("/images/play-button.png"));
-            }
-            logger.debug("Start of media.");
+            subtitleOverlay.onPulse(positionSeconds);
         }
-
-    }
-
-    private void setForwardSeekPointBasedOnCurrentLocation(double currentLocation)
-    {
-        if (mediaPlayer.getCurrentRate() > 1.0)
+        if (spectrumVisualizer != null)
         {
-            normalizePlayBack();
-            normalizePlaybackButtons();
+            spectrumVisualizer.onPulse();
         }
+        checkpointPosition(positionSeconds, false);
+        mediaLoop.onSample(positionSeconds, mediaPlayer.getRate(), System.nanoTime());
 
-        if (currentLocation < seekPointsList.get(0))
+        if (pendingOpenTimings != null && positionSeconds > 0)
         {
-            mediaPlayer.seek(Duration.seconds(seekPointsList.get(0)));
-            logger.debug("Skipping to first seek point.");
+            pendingOpenTimings.markEnd(OpenTimings.Stage.FIRST_FRAME);
+            logger.info("Time to first frame {} ms ({}).",
+                        pendingOpenTimings.getElapsedNanos(OpenTimings.Stage.FIRST_FRAME) / 1000000,
+                        pendingOpenTimings);
+            pendingOpenTimings = null;
         }
-        else if (currentLocation < seekPointsList.get(1))
+    }
+
+    /**
+     * Skins the transport buttons from the engine state.
+     *
+     * @param state
+     *         State published by the engine
+     */
+    private void renderPlaybackState(PlaybackState state)
+    {
+        if (state.getStatus() == PlaybackStatus.PLAYING)
         {
-            mediaPlayer.seek(Duration.seconds(seekPointsList.get(1)));
-            logger.debug("Skipping to second seek point.");
+            icons.skin(btnPlay, Icon.PAUSE);
         }
-        else if (currentLocation < seekPointsList.get(2))
+        else if (state.getStatus() == PlaybackStatus.PAUSED && state.getRateTier() == RateTier.X1_3)
         {
-            mediaPlayer.seek(Duration.seconds(seekPointsList.get(2)));
-            logger.debug("Skipping to third seek point.");
+            icons.skin(btnPlay, Icon.PLAY_1_3X);
         }
         else
         {
-            //mediaPlayer.stop();
-            logger.debug("End of media reached, setting back to start.");
-            mediaPlayer.seek(Duration.ZERO);
+            icons.skin(btnPlay, Icon.PLAY);
         }
-        mediaPlayer.play();
+        icons.skin(btnFfwd, Icon.forRate(state.getRate()));
+        icons.skin(btnRewind, state.getRate() < 0 ? Icon.REWIND : Icon.SKIP_BKWD);
     }
 
-    private void normalizePlayBack()
+    /**
+     * After a file is dragged onto the application a new MediaPlayer
+     * instance is opened in the background with a media file.
+     * Dropping another file before the open completes cancels it.
+     *
+     * @param url
+     *         The URL pointing to an audio file
+     */
+    private void playMedia(String url)
     {
-        mediaPlayer.setRate(1.0);
-        mediaPlayer.setMute(false);
+        OpenedMedia warmMedia = players.takeWarm(url);
+        if (warmMedia != null)
+        {
+            // Abandon any open still in flight; the warm player takes its place
+            if (currentOpen != null)
+            {
+                currentOpen.cancel(false);
+            }
+            playOpen(url, CompletableFuture.completedFuture(warmMedia));
+            return;
+        }
+        playOpen(url, mediaOpener.open(url, probe -> Platform.runLater(() -> showProbe(url, probe))));
     }
 
-    private void normalizePlaybackButtons()
+    /**
+     * Fills in the duration from the container probe while the player is still opening.
+     *
+     * @param url
+     *         URL being opened
+     * @param probe
+     *         Container details read by the probe
+     */
+    private void showProbe(String url, ProbeResult probe)
     {
-        btnPlay.setGraphic(new ImageView("/images/pause-button.png"));
-        btnFfwd.setGraphic(new ImageView("/images/ffwd-button.png"));
+        if (mediaPlayer != null || currentOpen == null || currentOpen.isDone())
+        {
+            return;
+        }
+        logger.info("Opening {} ({}).", url, probe);
+        progressRenderer.start(probe.getDurationMicros() / 1000000.0);
     }
 
     /**
-     * After a file is dragged onto the application a new MediaPlayer
-     * instance is created with a media file.
+     * Replaces the current media with the result of an open once it completes.
      *
      * @param url
-     *         The URL pointing to an audio file
+     *         URL being opened, for error reporting
+     * @param open
+     *         Pending or completed open
      */
-    private void playMedia(String url)
+    private void playOpen(String url, CompletableFuture<OpenedMedia> open)
     {
-        try
+        // Initialize media player
+        if (mediaPlayer != null)
         {
-            // Initialize media player
-            if (mediaPlayer != null)
+            checkpointPosition(mediaPlayer.getCurrentTime().toSeconds(), true);
+            mediaPlayer.statusProperty().removeListener(stallListener);
+            if (spectrumVisualizer != null)
             {
-                mediaPlayer.pause();
-                mediaPlayer.setOnPaused(null);
-                mediaPlayer.setOnPlaying(null);
-                mediaPlayer.setOnReady(null);
-                mediaPlayer.currentTimeProperty().removeListener(progressListener);
-                mediaPlayer.setAudioSpectrumListener(null);
-                normalizePlaybackButtons();
+                spectrumVisualizer.detach();
+            }
+            if (scrubPreview != null)
+            {
+                scrubPreview.detach();
             }
+            mvMediaView.setMediaPlayer(null);
+            mediaLoop.detach();
+            // Kept warm for a quick reopen or disposed, never left to the garbage collector
+            players.release(currentMedia);
+            mediaPlayer = null;
+            currentMedia = null;
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Released player: {}.", players.describeFootprint());
+            }
+        }
+        playbackEngine.submit(PlaybackCommand.RESET);
+        progressRenderer.stop();
+        loadSubtitles(SubtitleLoader.sidecarFor(url));
 
-            // Set the media to the URL of the item dragged onto the player
-            Media media = new Media(url);
+        // Nothing to checkpoint until the new media is attached; its position is looked up meanwhile
+        resumeKey = 0;
+        resumeLookup = resumeStore != null ? resumeStore.lookup(ResumeStore.keyFor(url)) : null;
 
-            // Create a new media player
-            mediaPlayer = new MediaPlayer(media);
+        currentOpen = open;
+        if (playlistPanel != null)
+        {
+            boolean fromPlaylist = playQueue.getItems() == playlistPanel.getUrls()
+                    && url.equals(playQueue.getCurrent());
+            playlistPanel.setPlaying(fromPlaylist ? playQueue.getCurrentIndex() : -1);
+        }
+        open.whenCompleteAsync((openedMedia, ex) ->
+        {
+            if (open != currentOpen)
+            {
+                // A later drop replaced this open while it was completing
+                if (ex == null)
+                {
+                    players.dispose(openedMedia.getMediaPlayer());
+                }
+            }
+            else if (ex == null)
+            {
+                attachMedia(openedMedia);
+            }
+            else
+            {
+                handleOpenFailure(url, ex);
+            }
+        }, Platform::runLater);
+    }
 
-            // Set the mediaPlayer to display video
-            mvMediaView.setMediaPlayer(mediaPlayer);
+    /**
+     * Continues with the next queued item, or stops at the end of the queue.
+     */
+    private void playNextOrStop()
+    {
+        // Played to the end, so start from the beginning next time
+        if (resumeStore != null && resumeKey != 0)
+        {
+            resumeStore.remove(resumeKey);
+        }
+        if (playQueue.hasNext())
+        {
+            endOfMediaNanos = System.nanoTime();
+            CompletableFuture<OpenedMedia> next = playQueue.advance();
+            logger.info("Playing next queued media {}.", playQueue.getCurrent());
+            playOpen(playQueue.getCurrent(), next);
+        }
+        else
+        {
+            playbackEngine.submit(PlaybackCommand.END_OF_MEDIA);
+        }
+        journal(JournalEvent.END, playbackEngine.getPosition(), null);
+    }
 
-            // Listener moves the slider for progress as the media is playing
-            mediaPlayer.currentTimeProperty().addListener(progressListener);
+    /**
+     * Hands a ready media player to the view and starts playback.
+     *
+     * @param openedMedia
+     *         Media player that reached READY
+     */
+    private void attachMedia(OpenedMedia openedMedia)
+    {
+        currentMedia = openedMedia;
+        mediaPlayer = openedMedia.getMediaPlayer();
+        pendingOpenTimings = openedMedia.getTimings();
+        journal(JournalEvent.OPEN, mediaPlayer.getMedia().getDuration().toSeconds(), openedMedia.getUrl());
+        metrics.recordOpenToReady(pendingOpenTimings.getStageNanos(OpenTimings.Stage.CONSTRUCT)
+                                          + pendingOpenTimings.getStageNanos(OpenTimings.Stage.READY));
+
+        // Set the mediaPlayer to display video
+        mvMediaView.setMediaPlayer(mediaPlayer);
+
+        // Media is ready, set slider to span the duration of it; progress is sampled each pulse
+        double mediaDurationInSeconds = mediaPlayer.getMedia().getDuration().toSeconds();
+        progressRenderer.start(mediaDurationInSeconds);
+        boolean hasVideo = mediaPlayer.getMedia().getWidth() > 0;
+        if (scrubPreview != null)
+        {
+            scrubPreview.attach(openedMedia.getUrl(), hasVideo);
+        }
+        if (spectrumVisualizer != null)
+        {
+            spectrumVisualizer.attach(mediaPlayer, !hasVideo);
+        }
 
-            // When media is ready, set slider to span the duration of it
-            mediaPlayer.setOnReady(() ->
-                                   {
-                                       sldSlider.setValue(0);
-                                       double mediaDurationInSeconds = mediaPlayer.getMedia().getDuration().toSeconds();
-                                       sldSlider.setMax(mediaDurationInSeconds);
+        DisplayMetadata();
 
-                                       // Bind elapsed / remaining time label
-                                       lblTimeElapsedAndRemaining.textProperty().bind(
-                                               createBindingTimeElapsedAndRemaining());
+        // Seek to the saved position while the player is still READY, before the engine starts playback
+        resumeKey = ResumeStore.keyFor(openedMedia.getUrl());
+        restorePosition(openedMedia.getUrl(), mediaDurationInSeconds);
 
-                                       // Create seek points for quicker segmented navigation of media
-                                       createSeekPoints(mediaDurationInSeconds);
+        // Arm repeat before playback starts, so the first boundary is already gapless
+        mediaLoop.attach(mediaPlayer);
+        renderLoopState();
 
-                                       DisplayMetadata();
+        // Engine skips between chapters or markers (evenly spaced points if there are none), scans
+        // from keyframe to keyframe and starts playback
+        playbackEngine.submit(PlaybackCommand.mediaReady(mediaDurationInSeconds, createSeekIndex(openedMedia),
+                                                         SeekIndex.of(openedMedia.getKeyframes())));
 
-                                       //Set appropriate icon (pause instead of play)
-                                       btnPlay.setGraphic(new ImageView("/images/pause-button.png"));
+        // Continue with the queue, or set media back to the beginning when done
+        mediaPlayer.setOnEndOfMedia(this::playNextOrStop);
 
-                                       mediaPlayer.play();
-                                       logger.debug("Playing media at regular speed.");
-                                   });
+        MediaPlayer attachedPlayer = mediaPlayer;
+        mediaPlayer.setOnError(() ->
+        {
+            metrics.recordError();
+            logger.warn("Playback error", attachedPlayer.getError());
+        });
+        mediaPlayer.statusProperty().addListener(stallListener);
 
+        if (endOfMediaNanos != 0)
+        {
+            long endNanos = endOfMediaNanos;
+            endOfMediaNanos = 0;
+            MediaPlayer nextPlayer = mediaPlayer;
+            nextPlayer.setOnPlaying(() ->
+            {
+                nextPlayer.setOnPlaying(null);
+                logger.info("Inter-track gap {} ms.", (System.nanoTime() - endNanos) / 1000000.0);
+            });
+        }
+    }
 
-            // Set media back to the beginning when done
-            mediaPlayer.setOnEndOfMedia(() ->
-                                        {
-                                            mediaPlayer.stop();
-                                            logger.info("End of media reached.");
-                                            btnPlay.setGraphic(new ImageView("/images/play-button.png"));
+    /**
+     * Seeks the just attached player to where its media was left, if anywhere worth resuming.
+     *
+     * @param url
+     *         URL of the attached media
+     * @param durationSeconds
+     *         Duration of the attached media
+     */
+    private void restorePosition(String url, double durationSeconds)
+    {
+        // The lookup finishes long before the player is READY; if not, start from the beginning
+        double resumeSeconds = resumeLookup != null ? resumeLookup.getNow(0.0) : 0;
+        resumeLookup = null;
+        lastCheckpointSeconds = 0;
+        if (resumeSeconds >= RESUME_MARGIN_SECONDS && resumeSeconds < durationSeconds - RESUME_MARGIN_SECONDS)
+        {
+            mediaPlayer.seek(Duration.seconds(resumeSeconds));
+            playbackEngine.updatePosition(resumeSeconds);
+            lastCheckpointSeconds = resumeSeconds;
+            logger.info("Resuming {} at {}.", url, ElapsedTimeFormatter.toHhMmSs(resumeSeconds));
+        }
+    }
 
-                                        });
+    /**
+     * Records the position of the current media for resuming. Recording is cheap, but
+     * is still skipped until the position has moved noticeably.
+     *
+     * @param seconds
+     *         Current position
+     * @param force
+     *         Record even if the position barely moved, e.g. when the media is replaced
+     */
+    private void checkpointPosition(double seconds, boolean force)
+    {
+        if (resumeStore == null || resumeKey == 0
+                || !force && Math.abs(seconds - lastCheckpointSeconds) < RESUME_CHECKPOINT_SECONDS)
+        {
+            return;
         }
-        catch (Exception ex)
+        lastCheckpointSeconds = seconds;
+        double durationSeconds = playbackEngine.getDuration();
+        if (seconds < RESUME_MARGIN_SECONDS || durationSeconds > 0 && seconds > durationSeconds - RESUME_MARGIN_SECONDS)
         {
-            if (url.endsWith(".mp4"))
-            {
-                mediaPlayer.setOnError(()->
-                                               System.out.println("media error: "+mediaPlayer.getError().toString()));
-                logger.info("Failed to play mp4 file.");
-            }
-            else if (url.endsWith(".mp3"))
-            {
-                logger.info("Failed to play audio file.");
-            }
-            else if (url.endsWith(".srt"))
-            {
-                logger.info("Failed to load subtitle file.");
-            }
-            else
-            {
-                logger.info("Attempted to load unsupported file type.");
-            }
+            resumeStore.remove(resumeKey);
+        }
+        else
+        {
+            resumeStore.checkpoint(resumeKey, seconds);
         }
-
     }
 
-    // Add seek points to media
-    private void createSeekPoints(double mediaDurationInSeconds)
+    private void handleOpenFailure(String url, Throwable ex)
     {
-        seekPointsList = new ArrayList<Double>();
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof CancellationException)
+        {
+            logger.debug("Superseded open of {} cancelled.", url);
+            return;
+        }
+        metrics.recordOpenFailure();
 
-        for (int i = 1; i < numSeekPoints + 1; i++)
+        if (cause instanceof UnsupportedMediaException)
+        {
+            logger.info("Rejected {}: {}", url, cause.getMessage());
+        }
+        else if (url.endsWith(".mp4"))
+        {
+            logger.info("Failed to play mp4 file.", cause);
+        }
+        else if (url.endsWith(".mp3"))
         {
-            seekPointsList.add(mediaDurationInSeconds / 4 * i);
+            logger.info("Failed to play audio file.", cause);
         }
+        else
+        {
+            logger.info("Attempted to load unsupported file type.");
+        }
+
+        // Skip a queued item that failed to open
+        if (url.equals(playQueue.getCurrent()) && playQueue.hasNext())
+        {
+            playNextOrStop();
+        }
+    }
 
+    /**
+     * Replaces the shown subtitles with those of a file, loaded in the background.
+     *
+     * @param file
+     *         SRT file, or null to show no subtitles
+     */
+    private void loadSubtitles(Path file)
+    {
+        if (subtitleOverlay == null)
+        {
+            return;
+        }
+        subtitleFile = file;
+        subtitleOverlay.clear();
+        if (file == null)
+        {
+            subtitleLoader.cancel();
+            return;
+        }
+        subtitleLoader.load(file, cues -> Platform.runLater(() ->
+        {
+            if (file.equals(subtitleFile))
+            {
+                subtitleOverlay.setCues(cues);
+            }
+        }));
     }
 
-    @SuppressWarnings("unused")
-    private void SetMarkers(Media media)
+    /**
+     * Builds the seek index for opened media from its chapters, falling back to
+     * the markers the media stack exposes.
+     *
+     * @param openedMedia
+     *         Media that finished opening
+     * @return seek index, empty if the media has neither chapters nor markers
+     */
+    private SeekIndex createSeekIndex(OpenedMedia openedMedia)
     {
-        ObservableMap<String, Duration> markers = media.getMarkers();
-        markers.put("START", Duration.ZERO);
-        markers.put("INTERVAL", media.getDuration().divide(2.0));
-        markers.put("END", media.getDuration());
+        if (openedMedia.getChapters().length > 0)
+        {
+            return SeekIndex.of(openedMedia.getChapters());
+        }
+
+        ObservableMap<String, Duration> markers = openedMedia.getMediaPlayer().getMedia().getMarkers();
+        double[] markerSeconds = new double[markers.size()];
+        int i = 0;
+        for (Duration marker : markers.values())
+        {
+            markerSeconds[i++] = marker.toSeconds();
+        }
+        return SeekIndex.of(markerSeconds);
     }
 
     private void DisplayMetadata()
@@ -700,6 +1334,7 @@ public class JFXMediaPlayerController
         // sometimes loading errors occur
         mvMediaView.setOnError(mediaErrorEvent ->
         {
+            metrics.recordError();
             mediaErrorEvent.getMediaError().printStackTrace();
         });
     }
@@ -707,6 +1342,7 @@ public class JFXMediaPlayerController
     /**
      * A position slider to seek backward and forward
      * that is bound to a media player control.
+     * Seeks go through the engine's scheduler, so scrubbing keeps at most one seek in flight.
      */
     private void configSlider()
     {
@@ -714,35 +1350,137 @@ public class JFXMediaPlayerController
         {
             if (sldSlider.isValueChanging())
             {
-                if (mediaPlayer != null)
-                {
-                    // convert seconds to millis
-                    double dur = sldSlider.getValue() * 1000;
-                    mediaPlayer.seek(Duration.millis(dur));
-                    logger.debug("Slider configured.");
-                }
+                playbackEngine.submit(PlaybackCommand.seek(sldSlider.getValue()));
             }
         });
 
         // Added mouse click event for slider.
         sldSlider.setOnMouseClicked(event ->
         {
-            Duration duration = Duration.seconds(sldSlider.getValue());
-            mediaPlayer.seek(duration);
-            logger.info(String.format("Slider clicked at %s.", convertSecondsToHhMmSs(duration.toSeconds())));
+            if (event.getButton() != MouseButton.PRIMARY)
+            {
+                return;
+            }
+            double seconds = sldSlider.getValue();
+            playbackEngine.submit(PlaybackCommand.seek(seconds));
+            if (logger.isInfoEnabled())
+            {
+                logger.info("Slider clicked at {}.", ElapsedTimeFormatter.toHhMmSs(seconds));
+            }
+        });
+
+        // Right-click sets the A-B loop points at the clicked position
+        MenuItem setPointA = new MenuItem();
+        MenuItem setPointB = new MenuItem();
+        MenuItem clearPoints = new MenuItem("Clear A-B loop");
+        ContextMenu loopMenu = new ContextMenu(setPointA, setPointB, new SeparatorMenuItem(), clearPoints);
+        double[] clickedSeconds = new double[1];
+        setPointA.setOnAction(event -> applyLoopPoint(() -> mediaLoop.setPointA(clickedSeconds[0])));
+        setPointB.setOnAction(event -> applyLoopPoint(() -> mediaLoop.setPointB(clickedSeconds[0])));
+        clearPoints.setOnAction(event -> applyLoopPoint(mediaLoop::clearPoints));
+        sldSlider.setOnContextMenuRequested(event ->
+        {
+            if (mediaPlayer == null)
+            {
+                return;
+            }
+            clickedSeconds[0] = SliderTrack.valueAt(sldSlider, event.getX());
+            String at = ElapsedTimeFormatter.toHhMmSs(clickedSeconds[0]);
+            setPointA.setText("Set loop start (A) at " + at);
+            setPointB.setText("Set loop end (B) at " + at);
+            clearPoints.setDisable(!mediaLoop.hasRange());
+            loopMenu.show(sldSlider, event.getScreenX(), event.getScreenY());
+            event.consume();
         });
     }
 
     /**
-     * @return single StringBinding for time elapsed and time remaining for current media being played.
+     * Changes the loop points, then moves playback into the loop if it is outside.
+     *
+     * @param change
+     *         Change to the loop points
+     */
+    private void applyLoopPoint(Runnable change)
+    {
+        change.run();
+        if (mediaLoop.isOutsideRange(playbackEngine.getPosition()))
+        {
+            playbackEngine.submit(PlaybackCommand.seek(mediaLoop.getLoopStart()));
+        }
+        renderLoopState();
+    }
+
+    /**
+     * Records a playback event if the journal is enabled.
      */
-    private StringBinding createBindingTimeElapsedAndRemaining()
+    private void journal(JournalEvent event, double value, String text)
     {
-        return Bindings.createStringBinding(() ->
-                        String.format("%s / %s", convertSecondsToHhMmSs(elapsedSecondsProperty.longValue()),
-                                convertSecondsToHhMmSs(
-                                        mediaPlayer.getMedia().getDuration().toSeconds() - elapsedSecondsProperty.longValue())),
-                elapsedSecondsProperty);
+        if (journal != null)
+        {
+            journal.record(event, value, text);
+        }
     }
 
+    /**
+     * Adapts the current JavaFX MediaPlayer to the playback engine.
+     */
+    private class MediaPlayerBackend implements PlaybackBackend
+    {
+        @Override
+        public void play()
+        {
+            if (mediaPlayer != null)
+            {
+                mediaPlayer.play();
+                journal(JournalEvent.PLAY, playbackEngine.getPosition(), null);
+            }
+        }
+
+        @Override
+        public void pause()
+        {
+            if (mediaPlayer != null)
+            {
+                mediaPlayer.pause();
+                journal(JournalEvent.PAUSE, playbackEngine.getPosition(), null);
+            }
+        }
+
+        @Override
+        public void stop()
+        {
+            if (mediaPlayer != null)
+            {
+                mediaPlayer.stop();
+                journal(JournalEvent.STOP, playbackEngine.getPosition(), null);
+            }
+        }
+
+        @Override
+        public void seek(double seconds)
+        {
+            if (mediaPlayer != null)
+            {
+                mediaPlayer.seek(Duration.seconds(seconds));
+                journal(JournalEvent.SEEK, seconds, null);
+            }
+        }
+
+        @Override
+        public void setRate(double rate)
+        {
+            if (mediaPlayer != null && mediaPlayer.getRate() != rate)
+            {
+                mediaPlayer.setRate(rate);
+                metrics.recordRateChange();
+                journal(JournalEvent.RATE, rate, null);
+            }
+        }
+
+        @Override
+        public void setMute(boolean muted)
+        {
+            if (mediaPlayer != null) mediaPlayer.setMute(muted);
+        }
+    }
 }
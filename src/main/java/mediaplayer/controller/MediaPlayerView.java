@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.controller;
+
+import javafx.geometry.HPos;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.RowConstraints;
+import javafx.scene.layout.StackPane;
+import javafx.scene.media.MediaView;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * The scene graph of MediaPlayer.fxml built in code, for fast start.
+ * <p>
+ * Building the nodes directly skips the FXML parser and its reflective property and
+ * field injection. As in the FXML, button graphics are left empty for the controller to
+ * skin from the icon atlas. Changes to MediaPlayer.fxml must be mirrored here.
+ */
+final class MediaPlayerView
+{
+    private static final Insets BUTTON_INSETS = new Insets(4.0);
+
+    private final AnchorPane mainAnchorPane = new AnchorPane();
+    private final MediaView mvMediaView = new MediaView();
+    private final Pane spectrumPane = new Pane();
+    private final Canvas cnvSpectrum = new Canvas();
+    private final Label lblSubtitle = new Label();
+    private final Slider sldSlider = new Slider();
+    private final Button btnRewind = button("btnRewind", "Skip backwards");
+    private final Button btnSkipBkwd = button("btnSkipBkwd", "Rewind");
+    private final Button btnPlay = button("btnPlay", "Play");
+    private final Button btnFfwd = button("btnFfwd", "Fast Forward");
+    private final Button btnSkipFwd = button("btnSkipFwd", "Skip forwards");
+    private final Button btnStop = button("btnStop", "Stop");
+    private final Button btnLoop = button("btnLoop", "Loop");
+    private final Label lblTimeElapsedAndRemaining = new Label("00:00:00 <> 00:00:00");
+
+    MediaPlayerView()
+    {
+        mainAnchorPane.setId("mainAnchorPane");
+        mainAnchorPane.setPrefSize(640.0, 420.0);
+        mainAnchorPane.getChildren().addAll(createMediaGrid(), createControls());
+    }
+
+    private GridPane createMediaGrid()
+    {
+        mvMediaView.setId("mvMediaView");
+        mvMediaView.setPreserveRatio(true);
+        BorderPane mediaPane = new BorderPane(mvMediaView);
+        HBox.setHgrow(mediaPane, Priority.ALWAYS);
+        HBox mediaBox = new HBox(mediaPane);
+        mediaBox.setAlignment(Pos.CENTER);
+        mediaBox.setSnapToPixel(false);
+        GridPane.setConstraints(mediaBox, 0, 0, 1, 1, null, null, Priority.ALWAYS, Priority.ALWAYS);
+
+        spectrumPane.setId("spectrumPane");
+        spectrumPane.setMouseTransparent(true);
+        cnvSpectrum.setId("cnvSpectrum");
+        spectrumPane.getChildren().add(cnvSpectrum);
+        GridPane.setRowIndex(spectrumPane, 0);
+
+        lblSubtitle.setId("lblSubtitle");
+        lblSubtitle.getStyleClass().add("subtitle");
+        lblSubtitle.setTextAlignment(TextAlignment.CENTER);
+        lblSubtitle.setWrapText(true);
+        GridPane.setConstraints(lblSubtitle, 0, 0, 1, 1, HPos.CENTER, VPos.BOTTOM, null, null,
+                                new Insets(0.0, 24.0, 12.0, 24.0));
+
+        GridPane grid = new GridPane();
+        grid.setAlignment(Pos.CENTER);
+        grid.setLayoutX(3.0);
+        ColumnConstraints column = new ColumnConstraints();
+        column.setHgrow(Priority.SOMETIMES);
+        column.setMinWidth(10.0);
+        grid.getColumnConstraints().add(column);
+        grid.getRowConstraints().addAll(row(10.0, 356.0, 359.0), row(0.0, 18.0, 22.0), row(46.0, 46.0, 68.0));
+        grid.getChildren().addAll(mediaBox, spectrumPane, lblSubtitle);
+        anchor(grid);
+        return grid;
+    }
+
+    private BorderPane createControls()
+    {
+        sldSlider.setId("sldSlider");
+        HBox.setHgrow(sldSlider, Priority.ALWAYS);
+        HBox sliderBox = new HBox(sldSlider);
+        sliderBox.setAlignment(Pos.TOP_CENTER);
+        sliderBox.setFillHeight(false);
+        sliderBox.setPrefHeight(15.0);
+
+        lblTimeElapsedAndRemaining.setId("lblTimeElapsedAndRemaining");
+        lblTimeElapsedAndRemaining.setAlignment(Pos.CENTER_RIGHT);
+        lblTimeElapsedAndRemaining.setPrefSize(161.0, 50.0);
+        lblTimeElapsedAndRemaining.setFont(new Font(16.0));
+        HBox buttonBox = new HBox(btnRewind, btnSkipBkwd, btnPlay, btnFfwd, btnSkipFwd, btnStop, btnLoop,
+                                  lblTimeElapsedAndRemaining);
+        buttonBox.setAlignment(Pos.BOTTOM_CENTER);
+        buttonBox.setFillHeight(false);
+        buttonBox.setPrefSize(600.0, 65.0);
+
+        StackPane controls = new StackPane(sliderBox, buttonBox);
+        BorderPane.setAlignment(controls, Pos.CENTER);
+        BorderPane controlPane = new BorderPane();
+        controlPane.setPrefSize(640.0, 420.0);
+        controlPane.setBottom(controls);
+        anchor(controlPane);
+        return controlPane;
+    }
+
+    private static Button button(String id, String accessibleText)
+    {
+        Button button = new Button();
+        button.setId(id);
+        button.setAccessibleText(accessibleText);
+        button.setMnemonicParsing(false);
+        button.setPadding(BUTTON_INSETS);
+        HBox.setMargin(button, BUTTON_INSETS);
+        return button;
+    }
+
+    private static RowConstraints row(double minHeight, double prefHeight, double maxHeight)
+    {
+        RowConstraints row = new RowConstraints(minHeight, prefHeight, maxHeight);
+        row.setVgrow(Priority.SOMETIMES);
+        return row;
+    }
+
+    private static void anchor(Node node)
+    {
+        AnchorPane.setTopAnchor(node, 0.0);
+        AnchorPane.setRightAnchor(node, 0.0);
+        AnchorPane.setBottomAnchor(node, 0.0);
+        AnchorPane.setLeftAnchor(node, 0.0);
+    }
+
+    AnchorPane getMainAnchorPane()
+    {
+        return mainAnchorPane;
+    }
+
+    MediaView getMediaView()
+    {
+        return mvMediaView;
+    }
+
+    Pane getSpectrumPane()
+    {
+        return spectrumPane;
+    }
+
+    Canvas getSpectrumCanvas()
+    {
+        return cnvSpectrum;
+    }
+
+    Label getSubtitleLabel()
+    {
+        return lblSubtitle;
+    }
+
+    Slider getSlider()
+    {
+        return sldSlider;
+    }
+
+    Button getRewindButton()
+    {
+        return btnRewind;
+    }
+
+    Button getSkipBackwardButton()
+    {
+        return btnSkipBkwd;
+    }
+
+    Button getPlayButton()
+    {
+        return btnPlay;
+    }
+
+    Button getFastForwardButton()
+    {
+        return btnFfwd;
+    }
+
+    Button getSkipForwardButton()
+    {
+        return btnSkipFwd;
+    }
+
+    Button getStopButton()
+    {
+        return btnStop;
+    }
+
+    Button getLoopButton()
+    {
+        return btnLoop;
+    }
+
+    Label getTimeLabel()
+    {
+        return lblTimeElapsedAndRemaining;
+    }
+}
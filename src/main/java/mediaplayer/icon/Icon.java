@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.icon;
+
+/**
+ * Button icons shipped in /images, in the order they are packed into the {@link IconAtlas}.
+ */
+public enum Icon
+{
+    PLAY("play-button.png"),
+    PAUSE("pause-button.png"),
+    STOP("stop-button.png"),
+    FFWD("ffwd-button.png"),
+    REWIND("rewind-button.png"),
+    SKIP_FWD("skip-fwd-button.png"),
+    SKIP_BKWD("skip-bkwd-button.png"),
+    LOOP("loop-button.png"),
+    POWER("power-button.png"),
+    PLAY_FAST("play-fast-button.png"),
+    PLAY_1_3X("1.3x-play-button.png"),
+    PLAY_2X("2x-play-button.png"),
+    PLAY_4X("4x-play-button.png"),
+    PLAY_8X("8x-play-button.png"),
+    PLAY_16X("16x-play-button.png");
+
+    private static final String IMAGE_DIR = "/images/";
+
+    private final String fileName;
+
+    Icon(String fileName)
+    {
+        this.fileName = fileName;
+    }
+
+    /**
+     * @return classpath location of the icon image
+     */
+    public String getResourcePath()
+    {
+        return IMAGE_DIR + fileName;
+    }
+
+    /**
+     * Returns the fast-forward button icon matching a playback rate.
+     *
+     * @param rate
+     *         Current playback rate
+     * @return Rate icon, or {@link #FFWD} at regular speed
+     */
+    public static Icon forRate(double rate)
+    {
+        int tenths = (int) Math.round(rate * 10);
+        switch (tenths)
+        {
+            case 13:
+                return PLAY_1_3X;
+            case 20:
+                return PLAY_2X;
+            case 40:
+                return PLAY_4X;
+            case 80:
+                return PLAY_8X;
+            case 160:
+                return PLAY_16X;
+            default:
+                return FFWD;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.icon;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.control.Button;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes every {@link Icon} once and packs them into a single image.
+ * Buttons are re-skinned by moving the viewport of their existing ImageView,
+ * so switching icons neither touches the classpath nor allocates.
+ */
+public final class IconAtlas
+{
+    private static final Logger logger = LoggerFactory.getLogger(IconAtlas.class);
+
+    private static IconAtlas instance;
+
+    private final WritableImage atlas;
+    private final Map<Icon, Rectangle2D> viewports = new EnumMap<>(Icon.class);
+
+    private IconAtlas()
+    {
+        long start = System.nanoTime();
+
+        Icon[] icons = Icon.values();
+        Image[] images = new Image[icons.length];
+        int cellWidth = 0;
+        int cellHeight = 0;
+        for (int i = 0; i < icons.length; i++)
+        {
+            images[i] = new Image(icons[i].getResourcePath());
+            cellWidth = Math.max(cellWidth, (int) images[i].getWidth());
+            cellHeight = Math.max(cellHeight, (int) images[i].getHeight());
+        }
+
+        // Icons are stacked vertically, one cell per icon
+        atlas = new WritableImage(cellWidth, cellHeight * icons.length);
+        for (int i = 0; i < icons.length; i++)
+        {
+            int width = (int) images[i].getWidth();
+            int height = (int) images[i].getHeight();
+            int y = i * cellHeight;
+            PixelReader reader = images[i].getPixelReader();
+            atlas.getPixelWriter().setPixels(0, y, width, height, reader, 0, 0);
+            viewports.put(icons[i], new Rectangle2D(0, y, width, height));
+        }
+
+        logger.debug("Packed {} icons into atlas in {} us.", icons.length, (System.nanoTime() - start) / 1000);
+    }
+
+    /**
+     * Returns the shared atlas, decoding the icons on first use.
+     * Must be called from the FX application thread.
+     *
+     * @return Shared icon atlas
+     */
+    public static IconAtlas getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new IconAtlas();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the icon shown by a button. The first call replaces the button graphic
+     * with a view onto the atlas; subsequent calls only move its viewport.
+     *
+     * @param button
+     *         Button to skin
+     * @param icon
+     *         Icon to show
+     */
+    public void skin(Button button, Icon icon)
+    {
+        Rectangle2D viewport = viewports.get(icon);
+        if (button.getGraphic() instanceof ImageView && ((ImageView) button.getGraphic()).getImage() == atlas)
+        {
+            ImageView view = (ImageView) button.getGraphic();
+            if (view.getViewport() != viewport)
+            {
+                view.setViewport(viewport);
+            }
+        }
+        else
+        {
+            ImageView view = new ImageView(atlas);
+            view.setViewport(viewport);
+            view.setPreserveRatio(true);
+            view.setPickOnBounds(true);
+            button.setGraphic(view);
+        }
+    }
+}
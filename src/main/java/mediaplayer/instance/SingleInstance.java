@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.instance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the arguments of a second launch to the instance that is already running.
+ * <p>
+ * The running instance listens on a fixed loopback port (-Dmediaplayer.instance.port,
+ * default 47391). A new launch first tries to connect; if that succeeds it sends its
+ * arguments, waits for the acknowledgement and exits without ever starting JavaFX.
+ * <p>
+ * The port is bound early in start-up but connections are only accepted once the
+ * player is ready; launches arriving in between wait in the socket backlog instead
+ * of starting a second instance. A launch that gets no answer within ten seconds
+ * starts a player of its own, so the running instance drops handoffs that waited
+ * in the backlog for longer than {@value #STALE_MILLIS} ms rather than opening the
+ * same arguments a second time. The margin covers the time to answer.
+ * <p>
+ * Protocol: the magic "MPIN", the protocol version, the wall-clock time the handoff was
+ * sent, the argument count, then each argument as modified UTF-8. The running instance
+ * answers with a single byte once the arguments are queued, and closes the connection
+ * without answering if it drops them.
+ */
+public class SingleInstance
+{
+    static final int MAGIC = 0x4D50494E;  // "MPIN"
+    static final int VERSION = 2;
+    private static final int ACCEPTED = 1;
+    private static final int MAX_ARGUMENTS = 4096;
+
+    private static final int DEFAULT_PORT = 47391;
+    private static final int CONNECT_TIMEOUT_MILLIS = 200;
+    private static final int ACK_TIMEOUT_MILLIS = 10000;
+    static final int STALE_MILLIS = ACK_TIMEOUT_MILLIS - 2000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ServerSocket serverSocket;
+    private Thread acceptor;
+
+    private SingleInstance(ServerSocket serverSocket)
+    {
+        this.serverSocket = serverSocket;
+    }
+
+    /**
+     * @return whether single-instance mode is enabled (-Dmediaplayer.singleInstance=true)
+     */
+    public static boolean isEnabled()
+    {
+        return Boolean.getBoolean("mediaplayer.singleInstance");
+    }
+
+    /**
+     * @return loopback port of the running instance
+     */
+    public static int getPort()
+    {
+        return Integer.getInteger("mediaplayer.instance.port", DEFAULT_PORT);
+    }
+
+    /**
+     * Makes file arguments absolute, since the running instance has its own working
+     * directory. URLs and options are passed on unchanged.
+     *
+     * @param args
+     *         Command-line arguments
+     * @return arguments to hand off
+     */
+    public static List<String> resolveArguments(String[] args)
+    {
+        List<String> resolved = new ArrayList<>(args.length);
+        for (String arg : args)
+        {
+            if (arg.startsWith("--") || arg.contains(":/"))
+            {
+                resolved.add(arg);
+            }
+            else
+            {
+                resolved.add(Paths.get(arg).toAbsolutePath().normalize().toString());
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Sends arguments to the running instance. Deliberately free of logging and
+     * JavaFX so that a handoff stays cheap.
+     *
+     * @param port
+     *         Loopback port of the running instance
+     * @param args
+     *         Arguments to hand off
+     * @return whether a running instance accepted the arguments; false if it did not answer
+     *         in time, in which case it will drop them
+     */
+    public static boolean handOff(int port, List<String> args)
+    {
+        try (Socket socket = new Socket())
+        {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(ACK_TIMEOUT_MILLIS);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(args.size());
+            for (String arg : args)
+            {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            return socket.getInputStream().read() == ACCEPTED;
+        }
+        catch (IOException ex)
+        {
+            // No instance running, or it did not answer in time
+            return false;
+        }
+    }
+
+    /**
+     * Claims the single-instance port without accepting connections yet.
+     *
+     * @param port
+     *         Loopback port to bind
+     * @return bound instance, or null if another instance holds the port
+     * @throws IOException
+     *         if the port cannot be bound for any other reason
+     */
+    public static SingleInstance bind(int port) throws IOException
+    {
+        ServerSocket serverSocket = new ServerSocket();
+        try
+        {
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            return new SingleInstance(serverSocket);
+        }
+        catch (BindException ex)
+        {
+            serverSocket.close();
+            return null;
+        }
+        catch (IOException ex)
+        {
+            serverSocket.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Starts accepting handoffs, including those already waiting.
+     *
+     * @param handler
+     *         Receives the arguments of each handoff on the acceptor thread
+     */
+    public void start(Consumer<List<String>> handler)
+    {
+        acceptor = new Thread(() -> acceptLoop(handler), "single-instance");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Accepting launches on port {}.", serverSocket.getLocalPort());
+    }
+
+    /**
+     * Stops accepting handoffs and releases the port.
+     */
+    public void close()
+    {
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException ex)
+        {
+            logger.debug("Failed to close single-instance socket", ex);
+        }
+    }
+
+    private void acceptLoop(Consumer<List<String>> handler)
+    {
+        while (!serverSocket.isClosed())
+        {
+            try (Socket socket = serverSocket.accept())
+            {
+                socket.setSoTimeout(ACK_TIMEOUT_MILLIS);
+                long start = System.nanoTime();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                {
+                    throw new IOException("Not a launch handoff of this version");
+                }
+                long waitedMillis = System.currentTimeMillis() - in.readLong();
+                List<String> args = readArguments(in);
+                if (waitedMillis > STALE_MILLIS)
+                {
+                    logger.warn("Dropped {} arguments from a launch that waited {} ms and started its own player.",
+                                args.size(), waitedMillis);
+                    continue;
+                }
+                handler.accept(args);
+                socket.getOutputStream().write(ACCEPTED);
+                logger.info("Took {} arguments from another launch in {} us.", args.size(),
+                            (System.nanoTime() - start) / 1000);
+            }
+            catch (IOException ex)
+            {
+                if (!serverSocket.isClosed())
+                {
+                    logger.warn("Rejected a launch handoff", ex);
+                }
+            }
+        }
+    }
+
+    private static List<String> readArguments(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ARGUMENTS)
+        {
+            throw new IOException("Bad argument count " + count);
+        }
+        List<String> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            args.add(in.readUTF());
+        }
+        return Collections.unmodifiableList(args);
+    }
+}
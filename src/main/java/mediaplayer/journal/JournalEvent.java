@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.journal;
+
+/**
+ * Playback events recorded in the journal. The code is the byte stored in the file,
+ * so existing codes must never change.
+ */
+public enum JournalEvent
+{
+    /** Media attached; value is the duration in seconds, text the URL */
+    OPEN(1),
+    /** Playback started; value is the position in seconds */
+    PLAY(2),
+    /** Playback paused; value is the position in seconds */
+    PAUSE(3),
+    /** Playback stopped; value is the position in seconds */
+    STOP(4),
+    /** Seek issued; value is the target in seconds */
+    SEEK(5),
+    /** Rate changed; value is the new rate */
+    RATE(6),
+    /** End of media reached; value is the position in seconds */
+    END(7);
+
+    private static final JournalEvent[] BY_CODE = new JournalEvent[8];
+
+    static
+    {
+        for (JournalEvent event : values())
+        {
+            BY_CODE[event.code] = event;
+        }
+    }
+
+    private final int code;
+
+    JournalEvent(int code)
+    {
+        this.code = code;
+    }
+
+    public int getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @param code
+     *         Code read from a journal file
+     * @return event for the code, or null if unknown
+     */
+    public static JournalEvent forCode(int code)
+    {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * @return whether records of this event carry a text field
+     */
+    public boolean hasText()
+    {
+        return this == OPEN;
+    }
+}
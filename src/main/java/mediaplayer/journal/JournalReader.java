@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Reads playback journals written by {@link PlaybackJournal}.
+ * <p>
+ * Run as {@code java -cp media-player.jar mediaplayer.journal.JournalReader <file>...}
+ * to print each event with its time offset, followed by per-event counts.
+ */
+public final class JournalReader
+{
+    /**
+     * Receives the events of a journal in recording order.
+     */
+    @FunctionalInterface
+    public interface JournalVisitor
+    {
+        /**
+         * @param event
+         *         Event type
+         * @param nanos
+         *         Nanoseconds since the journal was started
+         * @param value
+         *         Event value, see {@link JournalEvent}
+         * @param text
+         *         Event text, or null for events without one
+         */
+        void event(JournalEvent event, long nanos, double value, String text);
+    }
+
+    private JournalReader()
+    {
+    }
+
+    /**
+     * Replays a journal file. A record cut short by a crash ends the replay quietly.
+     *
+     * @param file
+     *         Journal file
+     * @param visitor
+     *         Receives each event
+     * @return wall-clock start time of the journal in milliseconds
+     * @throws IOException
+     *         if the file cannot be read, is not a journal or contains an unknown event
+     */
+    public static long read(Path file, JournalVisitor visitor) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != PlaybackJournal.MAGIC)
+            {
+                throw new IOException(file + " is not a playback journal");
+            }
+            int version = in.readInt();
+            if (version != PlaybackJournal.VERSION)
+            {
+                throw new IOException("Unsupported journal version " + version);
+            }
+            long startMillis = in.readLong();
+            while (true)
+            {
+                int code = in.read();
+                if (code < 0)
+                {
+                    break;
+                }
+                JournalEvent event = JournalEvent.forCode(code);
+                if (event == null)
+                {
+                    throw new IOException("Unknown journal event " + code);
+                }
+                try
+                {
+                    long nanos = in.readLong();
+                    double value = in.readDouble();
+                    String text = event.hasText() ? in.readUTF() : null;
+                    visitor.event(event, nanos, value, text);
+                }
+                catch (EOFException ex)
+                {
+                    break;
+                }
+            }
+            return startMillis;
+        }
+    }
+
+    /**
+     * Prints journals as text.
+     *
+     * @param args
+     *         Journal files
+     * @throws IOException
+     *         if a journal cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: JournalReader <journal-file>...");
+            return;
+        }
+        for (String arg : args)
+        {
+            Map<JournalEvent, Integer> counts = new EnumMap<>(JournalEvent.class);
+            StringBuilder lines = new StringBuilder();
+            long startMillis = read(Paths.get(arg), (event, nanos, value, text) ->
+            {
+                counts.merge(event, 1, Integer::sum);
+                lines.append(String.format("%12.3f  %-5s  %10.3f", nanos / 1e9, event, value));
+                if (text != null)
+                {
+                    lines.append("  ").append(text);
+                }
+                lines.append('\n');
+            });
+            System.out.println(arg + " (started " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                    .format(new Date(startMillis)) + ")");
+            System.out.print(lines);
+            System.out.println("Events: " + counts);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import mediaplayer.AppDataDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact binary journal of playback events.
+ * <p>
+ * The recording thread (the FX thread) only writes an event into a preallocated
+ * single-producer ring buffer; a background thread drains the ring to the journal
+ * file. When the ring is full, events are dropped and counted rather than blocking
+ * the caller.
+ * <p>
+ * File format: the magic "MPJN", a format version, the wall-clock start time in
+ * milliseconds, then one record per event: the event code byte, nanoseconds since the
+ * start, the event value as a double and, for events with text, a modified UTF-8
+ * string. {@link JournalReader} reads the files back.
+ * <p>
+ * Enabled with -Dmediaplayer.journal=true; files are written to the journal
+ * sub-directory of the data directory, one per run.
+ */
+public class PlaybackJournal
+{
+    private static final Logger logger = LoggerFactory.getLogger(PlaybackJournal.class);
+
+    static final int MAGIC = 0x4D504A4E;  // "MPJN"
+    static final int VERSION = 1;
+
+    private static final int CAPACITY = 4096;  // power of two
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final long[] times = new long[CAPACITY];
+    private final byte[] codes = new byte[CAPACITY];
+    private final double[] values = new double[CAPACITY];
+    private final String[] texts = new String[CAPACITY];
+
+    /** Next slot the producer writes; published after the slot is filled */
+    private final AtomicLong head = new AtomicLong();
+    /** Next slot the writer reads; published after the slot is consumed */
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final long startNanos = System.nanoTime();
+    private final DataOutputStream out;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * @param file
+     *         Journal file to create
+     * @throws IOException
+     *         if the file cannot be created
+     */
+    public PlaybackJournal(Path file) throws IOException
+    {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        writer = new Thread(this::drainLoop, "playback-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens a journal for this run if -Dmediaplayer.journal=true.
+     *
+     * @return journal, or null if disabled or the file cannot be created
+     */
+    public static PlaybackJournal fromSystemProperties()
+    {
+        if (!Boolean.getBoolean("mediaplayer.journal"))
+        {
+            return null;
+        }
+        try
+        {
+            String name = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jnl";
+            Path file = AppDataDirectory.resolve("journal").resolve(name);
+            logger.info("Writing playback journal to {}.", file);
+            return new PlaybackJournal(file);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not create playback journal", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Records an event. Must only be called from one thread at a time.
+     *
+     * @param event
+     *         Event type
+     * @param value
+     *         Event value, see {@link JournalEvent}
+     */
+    public void record(JournalEvent event, double value)
+    {
+        record(event, value, null);
+    }
+
+    /**
+     * Records an event with text. Must only be called from one thread at a time.
+     *
+     * @param event
+     *         Event type
+     * @param value
+     *         Event value, see {@link JournalEvent}
+     * @param text
+     *         Text of events that carry one, otherwise null
+     */
+    public void record(JournalEvent event, double value, String text)
+    {
+        long position = head.get();
+        if (position - tail.get() == CAPACITY)
+        {
+            dropped.incrementAndGet();
+            return;
+        }
+        int slot = (int) position & (CAPACITY - 1);
+        times[slot] = System.nanoTime() - startNanos;
+        codes[slot] = (byte) event.getCode();
+        values[slot] = value;
+        texts[slot] = text;
+        head.lazySet(position + 1);
+    }
+
+    /**
+     * @return number of events dropped because the ring was full
+     */
+    public long getDroppedEvents()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Writes all recorded events and closes the file.
+     */
+    public void close()
+    {
+        running = false;
+        LockSupport.unpark(writer);
+        try
+        {
+            writer.join(TimeUnit.SECONDS.toMillis(2));
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop()
+    {
+        try
+        {
+            while (running)
+            {
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                if (drain())
+                {
+                    out.flush();
+                }
+            }
+            drain();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Playback journal stopped", ex);
+        }
+        finally
+        {
+            try
+            {
+                out.close();
+            }
+            catch (IOException ex)
+            {
+                logger.debug("Failed to close playback journal", ex);
+            }
+        }
+        if (dropped.get() > 0)
+        {
+            logger.info("Playback journal dropped {} events.", dropped.get());
+        }
+    }
+
+    /**
+     * @return whether any events were written
+     */
+    private boolean drain() throws IOException
+    {
+        long start = tail.get();
+        long end = head.get();
+        for (long position = start; position < end; position++)
+        {
+            int slot = (int) position & (CAPACITY - 1);
+            JournalEvent event = JournalEvent.forCode(codes[slot]);
+            out.writeByte(codes[slot]);
+            out.writeLong(times[slot]);
+            out.writeDouble(values[slot]);
+            if (event != null && event.hasText())
+            {
+                String text = texts[slot];
+                out.writeUTF(text != null ? text : "");
+            }
+            texts[slot] = null;
+            tail.lazySet(position + 1);
+        }
+        return end > start;
+    }
+}
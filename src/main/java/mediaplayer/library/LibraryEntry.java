@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.library;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A media file known to the library, as of its last scan.
+ */
+public final class LibraryEntry
+{
+    private final String path;
+    private final long size;
+    private final long lastModified;
+    private final long durationMicros;
+    private final Map<String, String> tags;
+
+    /**
+     * @param path
+     *         Absolute file path
+     * @param size
+     *         File size in bytes
+     * @param lastModified
+     *         Modification time in milliseconds since the epoch
+     * @param durationMicros
+     *         Media duration, 0 if unknown
+     * @param tags
+     *         Title, artist and other tags, possibly empty
+     */
+    public LibraryEntry(String path, long size, long lastModified, long durationMicros, Map<String, String> tags)
+    {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.durationMicros = durationMicros;
+        this.tags = tags.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(tags);
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public long getDurationMicros()
+    {
+        return durationMicros;
+    }
+
+    public Map<String, String> getTags()
+    {
+        return tags;
+    }
+
+    /**
+     * @param otherSize
+     *         Current file size
+     * @param otherLastModified
+     *         Current modification time
+     * @return whether the file is unchanged since this entry was made
+     */
+    public boolean isCurrent(long otherSize, long otherLastModified)
+    {
+        return size == otherSize && lastModified == otherLastModified;
+    }
+
+    @Override
+    public String toString()
+    {
+        return path + " (" + size + " bytes, " + durationMicros + "us, " + tags + ")";
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread-safe map of library entries by path, with a compact binary file format.
+ * <p>
+ * Entries are written grouped by directory so each directory path is stored once,
+ * followed by the file names, sizes, modification times, durations and tags of its files.
+ */
+public class LibraryIndex
+{
+    private static final int MAGIC = 0x4D504C49;  // "MPLI"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Longest tag value kept; modified UTF-8 strings are limited to 65535 bytes */
+    private static final int MAX_TAG_LENGTH = 16 * 1024;
+
+    private final ConcurrentHashMap<String, LibraryEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * @param path
+     *         Absolute file path
+     * @return entry for the path, or null if it is not in the library
+     */
+    public LibraryEntry get(String path)
+    {
+        return entries.get(path);
+    }
+
+    /**
+     * Adds or replaces an entry.
+     *
+     * @param entry
+     *         Entry to store
+     */
+    public void put(LibraryEntry entry)
+    {
+        entries.put(entry.getPath(), entry);
+        dirty.set(true);
+    }
+
+    /**
+     * Removes a file.
+     *
+     * @param path
+     *         Absolute file path
+     * @return whether the file was in the library
+     */
+    public boolean remove(String path)
+    {
+        if (entries.remove(path) == null)
+        {
+            return false;
+        }
+        dirty.set(true);
+        return true;
+    }
+
+    /**
+     * Removes every file below a directory.
+     *
+     * @param directory
+     *         Absolute directory path
+     * @return number of entries removed
+     */
+    public int removeTree(String directory)
+    {
+        int removed = 0;
+        String prefix = directory.endsWith(File.separator) ? directory : directory + File.separator;
+        for (String key : entries.keySet())
+        {
+            if (key.startsWith(prefix) && entries.remove(key) != null)
+            {
+                removed++;
+            }
+        }
+        if (removed > 0)
+        {
+            dirty.set(true);
+        }
+        return removed;
+    }
+
+    /**
+     * @return live view of all entries
+     */
+    public Collection<LibraryEntry> entries()
+    {
+        return entries.values();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return whether entries changed since the index was loaded or last saved
+     */
+    public boolean isDirty()
+    {
+        return dirty.get();
+    }
+
+    /**
+     * Loads an index file.
+     *
+     * @param file
+     *         Index file
+     * @return loaded index, empty if the file does not exist or has another format version
+     * @throws IOException
+     *         if the file exists but cannot be read
+     */
+    public static LibraryIndex load(Path file) throws IOException
+    {
+        LibraryIndex index = new LibraryIndex();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return index;
+            }
+            int directoryCount = in.readInt();
+            for (int d = 0; d < directoryCount; d++)
+            {
+                String directory = in.readUTF();
+                int fileCount = in.readInt();
+                for (int f = 0; f < fileCount; f++)
+                {
+                    String path = directory + File.separator + in.readUTF();
+                    long size = in.readLong();
+                    long lastModified = in.readLong();
+                    long durationMicros = in.readLong();
+                    int tagCount = in.readUnsignedByte();
+                    Map<String, String> tags = tagCount == 0 ? new HashMap<>(0) : new HashMap<>(tagCount * 2);
+                    for (int t = 0; t < tagCount; t++)
+                    {
+                        tags.put(in.readUTF(), in.readUTF());
+                    }
+                    index.entries.put(path, new LibraryEntry(path, size, lastModified, durationMicros, tags));
+                }
+            }
+        }
+        catch (NoSuchFileException ex)
+        {
+            // First run
+        }
+        return index;
+    }
+
+    /**
+     * Saves the index, replacing the file atomically.
+     *
+     * @param file
+     *         Index file
+     * @throws IOException
+     *         if the file cannot be written
+     */
+    public void save(Path file) throws IOException
+    {
+        dirty.set(false);
+        Map<String, List<LibraryEntry>> byDirectory = new HashMap<>();
+        for (LibraryEntry entry : entries.values())
+        {
+            String path = entry.getPath();
+            int separator = path.lastIndexOf(File.separatorChar);
+            byDirectory.computeIfAbsent(path.substring(0, Math.max(separator, 0)), key -> new ArrayList<>())
+                    .add(entry);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(byDirectory.size());
+            for (Map.Entry<String, List<LibraryEntry>> directory : byDirectory.entrySet())
+            {
+                int nameStart = directory.getKey().length() + 1;
+                out.writeUTF(directory.getKey());
+                out.writeInt(directory.getValue().size());
+                for (LibraryEntry entry : directory.getValue())
+                {
+                    out.writeUTF(entry.getPath().substring(nameStart));
+                    out.writeLong(entry.getSize());
+                    out.writeLong(entry.getLastModified());
+                    out.writeLong(entry.getDurationMicros());
+                    out.writeByte(Math.min(entry.getTags().size(), 255));
+                    int written = 0;
+                    for (Map.Entry<String, String> tag : entry.getTags().entrySet())
+                    {
+                        if (written++ == 255)
+                        {
+                            break;
+                        }
+                        writeString(out, tag.getKey());
+                        writeString(out, tag.getValue());
+                    }
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            dirty.set(true);
+            throw ex;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeUTF(value.length() > MAX_TAG_LENGTH ? value.substring(0, MAX_TAG_LENGTH) : value);
+    }
+}
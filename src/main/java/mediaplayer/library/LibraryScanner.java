@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.library;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+import mediaplayer.media.MediaOpener;
+import mediaplayer.media.MediaProbe;
+import mediaplayer.media.ProbeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks directory trees in parallel on a fork-join pool, one task per directory,
+ * and brings the {@link LibraryIndex} up to date. Files whose size and modification
+ * time match their index entry are not probed again.
+ */
+public class LibraryScanner
+{
+    private static final Logger logger = LoggerFactory.getLogger(LibraryScanner.class);
+
+    private final LibraryIndex index;
+    private final ForkJoinPool pool;
+    private final Consumer<Path> directoryListener;
+
+    /**
+     * @param index
+     *         Index to update
+     * @param pool
+     *         Pool running the directory tasks
+     * @param directoryListener
+     *         Called with every directory visited, e.g. to watch it for changes
+     */
+    public LibraryScanner(LibraryIndex index, ForkJoinPool pool, Consumer<Path> directoryListener)
+    {
+        this.index = index;
+        this.pool = pool;
+        this.directoryListener = directoryListener;
+    }
+
+    /**
+     * Scans a directory tree, adding new and changed media files and removing
+     * entries below the directory whose files no longer exist.
+     *
+     * @param root
+     *         Directory to scan
+     * @return number of entries added, updated or removed
+     */
+    public int scan(Path root)
+    {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        Set<String> unreadable = ConcurrentHashMap.newKeySet();
+        int changed = pool.invoke(new DirectoryTask(root, seen, unreadable));
+
+        // Entries of directories that could not be listed are kept until a later scan can check them
+        List<String> missing = new ArrayList<>();
+        for (LibraryEntry entry : index.entries())
+        {
+            String path = entry.getPath();
+            if (isBelow(path, root.toString()) && !seen.contains(path) && !isBelowAny(path, unreadable))
+            {
+                missing.add(path);
+            }
+        }
+        for (String path : missing)
+        {
+            if (index.remove(path))
+            {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isBelow(String path, String directory)
+    {
+        return path.length() > directory.length() && path.startsWith(directory)
+                && path.charAt(directory.length()) == File.separatorChar;
+    }
+
+    private static boolean isBelowAny(String path, Set<String> directories)
+    {
+        for (String directory : directories)
+        {
+            if (isBelow(path, directory))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Brings the entry of a single file up to date.
+     *
+     * @param file
+     *         File that was created or modified
+     * @return whether the index changed
+     */
+    public boolean scanFile(Path file)
+    {
+        try
+        {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile() && update(file, attributes);
+        }
+        catch (NoSuchFileException ex)
+        {
+            return index.remove(file.toString());
+        }
+        catch (IOException ex)
+        {
+            logger.debug("Cannot read attributes of {}", file, ex);
+            return false;
+        }
+    }
+
+    private boolean update(Path file, BasicFileAttributes attributes)
+    {
+        if (!MediaOpener.isSupported(file.getFileName().toString()))
+        {
+            return false;
+        }
+        String path = file.toString();
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        LibraryEntry existing = index.get(path);
+        if (existing != null && existing.isCurrent(size, lastModified))
+        {
+            return false;
+        }
+
+        long durationMicros = 0;
+        Map<String, String> tags = new HashMap<>();
+        if (MediaProbe.canProbe(file))
+        {
+            try
+            {
+                ProbeResult probe = MediaProbe.probe(file);
+                durationMicros = probe.getDurationMicros();
+                tags.putAll(probe.getTags());
+            }
+            catch (IOException ex)
+            {
+                logger.debug("Cannot probe {}: {}", file, ex.getMessage());
+            }
+        }
+        index.put(new LibraryEntry(path, size, lastModified, durationMicros, tags));
+        return true;
+    }
+
+    private class DirectoryTask extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final Set<String> seen;
+        private final Set<String> unreadable;
+
+        DirectoryTask(Path directory, Set<String> seen, Set<String> unreadable)
+        {
+            this.directory = directory;
+            this.seen = seen;
+            this.unreadable = unreadable;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            directoryListener.accept(directory);
+
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            int changed = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+            {
+                for (Path child : stream)
+                {
+                    BasicFileAttributes attributes;
+                    try
+                    {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class,
+                                                          LinkOption.NOFOLLOW_LINKS);
+                    }
+                    catch (IOException ex)
+                    {
+                        continue;
+                    }
+                    if (attributes.isDirectory())
+                    {
+                        DirectoryTask task = new DirectoryTask(child, seen, unreadable);
+                        task.fork();
+                        subdirectories.add(task);
+                    }
+                    else if (attributes.isRegularFile() && MediaOpener.isSupported(child.getFileName().toString()))
+                    {
+                        seen.add(child.toString());
+                        if (update(child, attributes))
+                        {
+                            changed++;
+                        }
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                unreadable.add(directory.toString());
+                logger.debug("Cannot list {}: {}", directory, ex.getMessage());
+            }
+
+            for (DirectoryTask task : subdirectories)
+            {
+                changed += task.join();
+            }
+            return changed;
+        }
+    }
+}
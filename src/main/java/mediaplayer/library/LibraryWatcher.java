@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.library;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the library index current by watching every scanned directory and
+ * rescanning only the files and directories that change.
+ */
+public class LibraryWatcher
+{
+    private static final Logger logger = LoggerFactory.getLogger(LibraryWatcher.class);
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private LibraryScanner scanner;
+    private LibraryIndex index;
+    private Runnable changeListener;
+    private volatile boolean registrationFailed;
+
+    /**
+     * @throws IOException
+     *         if the platform has no file watch service
+     */
+    public LibraryWatcher() throws IOException
+    {
+        watchService = FileSystems.getDefault().newWatchService();
+        thread = new Thread(this::run, "library-watcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Watches a directory (not its subdirectories) for changes.
+     * Safe to call from scanner threads.
+     *
+     * @param directory
+     *         Directory to watch
+     */
+    public void register(Path directory)
+    {
+        try
+        {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                              StandardWatchEventKinds.ENTRY_DELETE,
+                                              StandardWatchEventKinds.ENTRY_MODIFY);
+            directories.put(key, directory);
+        }
+        catch (ClosedWatchServiceException ex)
+        {
+            // Shutting down
+        }
+        catch (IOException ex)
+        {
+            if (!registrationFailed)
+            {
+                registrationFailed = true;
+                logger.warn("Cannot watch {}; changes below it need a rescan ({})", directory, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts processing change events.
+     *
+     * @param libraryScanner
+     *         Scanner used to update changed files and new directories
+     * @param libraryIndex
+     *         Index updated for deleted files
+     * @param listener
+     *         Called on the watcher thread after the index changed
+     */
+    public void start(LibraryScanner libraryScanner, LibraryIndex libraryIndex, Runnable listener)
+    {
+        this.scanner = libraryScanner;
+        this.index = libraryIndex;
+        this.changeListener = listener;
+        thread.start();
+    }
+
+    /**
+     * Stops watching.
+     */
+    public void shutdown()
+    {
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException ex)
+        {
+            logger.debug("Failed to close watch service", ex);
+        }
+    }
+
+    private void run()
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = watchService.take();
+                Path directory = directories.get(key);
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    if (directory != null)
+                    {
+                        changed |= handle(directory, event);
+                    }
+                }
+                if (!key.reset())
+                {
+                    directories.remove(key);
+                }
+                if (changed)
+                {
+                    changeListener.run();
+                }
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException ex)
+        {
+            logger.debug("Library watcher stopped.");
+        }
+    }
+
+    private boolean handle(Path directory, WatchEvent<?> event)
+    {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+        {
+            // Events were lost; fall back to rescanning the directory
+            logger.debug("Watch events lost for {}, rescanning.", directory);
+            return scanner.scan(directory) > 0;
+        }
+
+        Path child = directory.resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)
+        {
+            boolean removed = index.remove(child.toString());
+            return index.removeTree(child.toString()) > 0 || removed;
+        }
+        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+        {
+            // New or moved-in directory: scanning it also registers it and its subdirectories
+            return event.kind() == StandardWatchEventKinds.ENTRY_CREATE && scanner.scan(child) > 0;
+        }
+        return scanner.scanFile(child);
+    }
+}
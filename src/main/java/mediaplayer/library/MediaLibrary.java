@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.library;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import mediaplayer.AppDataDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Media library built from one or more root directories.
+ * <p>
+ * Startup loads the saved index, then rescans the roots in the background (only new
+ * or changed files are probed) and watches every directory for changes. The index
+ * is saved a few seconds after the last change and on shutdown.
+ * <p>
+ * Settings: -Dmediaplayer.library.roots (directories separated by the platform path
+ * separator) and -Dmediaplayer.library.threads (scanner parallelism, default number of cores).
+ */
+public class MediaLibrary
+{
+    private static final Logger logger = LoggerFactory.getLogger(MediaLibrary.class);
+
+    private static final String INDEX_FILE = "library.idx";
+    private static final long SAVE_DELAY_SECONDS = 5;
+
+    private final List<Path> roots;
+    private final Path indexFile;
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "media-library");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LibraryIndex index = new LibraryIndex();
+    private LibraryWatcher watcher;
+    private ScheduledFuture<?> pendingSave;
+
+    /**
+     * @param roots
+     *         Directories the library is built from
+     * @param indexFile
+     *         File the index is saved to
+     * @param parallelism
+     *         Number of scanner threads
+     */
+    public MediaLibrary(List<Path> roots, Path indexFile, int parallelism)
+    {
+        this.roots = roots;
+        this.indexFile = indexFile;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Creates a library from the system properties.
+     *
+     * @return configured library, or null if no roots are configured
+     * @throws IOException
+     *         if the data directory cannot be created
+     */
+    public static MediaLibrary fromSystemProperties() throws IOException
+    {
+        String property = System.getProperty("mediaplayer.library.roots", "").trim();
+        if (property.isEmpty())
+        {
+            return null;
+        }
+        List<Path> roots = new ArrayList<>();
+        for (String root : property.split(File.pathSeparator))
+        {
+            if (!root.trim().isEmpty())
+            {
+                roots.add(Paths.get(root.trim()).toAbsolutePath().normalize());
+            }
+        }
+        int parallelism = Integer.getInteger("mediaplayer.library.threads",
+                                             Runtime.getRuntime().availableProcessors());
+        return new MediaLibrary(roots, AppDataDirectory.resolve("library").resolve(INDEX_FILE), parallelism);
+    }
+
+    /**
+     * Loads the saved index on the calling thread and starts the background rescan and watch.
+     */
+    public void start()
+    {
+        long startNanos = System.nanoTime();
+        try
+        {
+            index = LibraryIndex.load(indexFile);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Library index unreadable, rebuilding it", ex);
+        }
+        logger.info("Loaded library index of {} entries in {} ms.", index.size(),
+                    (System.nanoTime() - startNanos) / 1000000);
+
+        try
+        {
+            watcher = new LibraryWatcher();
+        }
+        catch (IOException | UnsupportedOperationException ex)
+        {
+            logger.warn("File watching unavailable, library only updates on startup", ex);
+        }
+        LibraryScanner scanner = new LibraryScanner(index, pool,
+                                                    watcher != null ? watcher::register : directory -> { });
+        executor.execute(() -> scanRoots(scanner));
+    }
+
+    private void scanRoots(LibraryScanner scanner)
+    {
+        long startNanos = System.nanoTime();
+        int changed = 0;
+        for (Path root : roots)
+        {
+            if (Files.isDirectory(root))
+            {
+                changed += scanner.scan(root);
+            }
+            else
+            {
+                logger.warn("Library root {} is not a directory", root);
+            }
+        }
+        logger.info("Scanned library in {} ms: {} entries, {} changed.",
+                    (System.nanoTime() - startNanos) / 1000000, index.size(), changed);
+        if (changed > 0)
+        {
+            save();
+        }
+        if (watcher != null)
+        {
+            watcher.start(scanner, index, this::scheduleSave);
+        }
+    }
+
+    /**
+     * Saves the index shortly after the last of a burst of changes.
+     */
+    private synchronized void scheduleSave()
+    {
+        if (pendingSave != null)
+        {
+            pendingSave.cancel(false);
+        }
+        pendingSave = executor.schedule(this::save, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void save()
+    {
+        if (!index.isDirty())
+        {
+            return;
+        }
+        try
+        {
+            long startNanos = System.nanoTime();
+            index.save(indexFile);
+            logger.debug("Saved library index of {} entries in {} ms.", index.size(),
+                         (System.nanoTime() - startNanos) / 1000000);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Failed to save library index", ex);
+        }
+    }
+
+    /**
+     * @return index of the library's media files
+     */
+    public LibraryIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Stops scanning and watching and saves any unsaved changes.
+     */
+    public void shutdown()
+    {
+        if (watcher != null)
+        {
+            watcher.shutdown();
+        }
+        pool.shutdownNow();
+        executor.shutdownNow();
+        save();
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.loop;
+
+/**
+ * Measures the time lost at loop boundaries from the positions sampled each pulse.
+ * <p>
+ * A wrap shows up as a sample just after the loop start following one just before the
+ * loop end. The media time played across the boundary is the distance from the earlier
+ * sample to the end plus from the start to the later sample; at the current rate it
+ * accounts for part of the wall time between the two samples, and whatever is left is
+ * the gap the jump back cost. Measuring between samples rather than from the repeat
+ * event keeps the delivery delay of that event out of the figure.
+ */
+final class LoopBoundary
+{
+    /** How close to either end of the loop the samples around a wrap must be */
+    private static final double EDGE_SECONDS = 1.0;
+    /** Backwards movement smaller than this is sampling jitter, not a wrap */
+    private static final double WRAP_TOLERANCE_SECONDS = 0.05;
+    /** Samples further apart than this missed pulses, so the gap between them says nothing */
+    private static final long MAX_SAMPLE_INTERVAL_NANOS = 250000000L;
+
+    private double lastPosition = Double.NaN;
+    private long lastNanos;
+
+    /**
+     * Forgets the last sample, e.g. after the loop range changed.
+     */
+    void reset()
+    {
+        lastPosition = Double.NaN;
+    }
+
+    /**
+     * @param position
+     *         Sampled media position in seconds
+     * @param rate
+     *         Playback rate
+     * @param loopStart
+     *         Start of the loop in seconds
+     * @param loopEnd
+     *         End of the loop in seconds
+     * @param nowNanos
+     *         Sample time
+     * @return time lost at the boundary in nanoseconds if this sample is the first after a
+     *         wrap, otherwise -1
+     */
+    long onSample(double position, double rate, double loopStart, double loopEnd, long nowNanos)
+    {
+        double previous = lastPosition;
+        long elapsedNanos = nowNanos - lastNanos;
+        lastPosition = position;
+        lastNanos = nowNanos;
+        if (Double.isNaN(previous) || rate <= 0 || elapsedNanos > MAX_SAMPLE_INTERVAL_NANOS
+                || position > previous - WRAP_TOLERANCE_SECONDS)
+        {
+            return -1;
+        }
+        if (previous < loopEnd - EDGE_SECONDS || position > loopStart + EDGE_SECONDS)
+        {
+            // Moved backwards, but by a seek rather than across the boundary
+            return -1;
+        }
+        double mediaSeconds = Math.max(0, loopEnd - previous) + Math.max(0, position - loopStart);
+        long playedNanos = (long) (mediaSeconds / rate * 1e9);
+        return Math.max(0, elapsedNanos - playedNanos);
+    }
+}
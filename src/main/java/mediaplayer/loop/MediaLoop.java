@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.loop;
+
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+import mediaplayer.metrics.LatencyHistogram;
+import mediaplayer.metrics.PlaybackMetrics;
+import mediaplayer.progress.ElapsedTimeFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Whole-file repeat and A-B loops, played by the media player itself.
+ * <p>
+ * Rather than seeking back when the end of media is reported, the loop is armed on the
+ * player ahead of time through its start time, stop time and an indefinite cycle count,
+ * so the media stack jumps back at the boundary without a round trip through the FX
+ * thread. The range is re-armed whenever it changes and when media is attached, before
+ * playback starts.
+ * <p>
+ * The time lost at each boundary is measured by {@link LoopBoundary}, recorded in the
+ * playback metrics and summarised in the log every {@value #REPORT_INTERVAL} cycles.
+ * Repeat stays on across media; A-B points belong to the media they were set on.
+ * Must only be used from the FX application thread.
+ */
+public class MediaLoop
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** Shortest A-B range, so the player is not asked to loop a single frame */
+    private static final double MIN_RANGE_SECONDS = 0.1;
+    private static final int REPORT_INTERVAL = 100;
+
+    private final PlaybackMetrics metrics = PlaybackMetrics.getInstance();
+    private final LoopBoundary boundary = new LoopBoundary();
+    private LatencyHistogram cycleGaps = new LatencyHistogram();
+
+    private MediaPlayer mediaPlayer;
+    private double durationSeconds;
+    private boolean repeat;
+    private double pointA = Double.NaN;
+    private double pointB = Double.NaN;
+
+    /**
+     * Arms the loop on newly opened media, clearing A-B points of earlier media.
+     *
+     * @param mediaPlayer
+     *         Player of the media, before playback starts
+     */
+    public void attach(MediaPlayer mediaPlayer)
+    {
+        this.mediaPlayer = mediaPlayer;
+        Duration duration = mediaPlayer.getMedia().getDuration();
+        durationSeconds = duration == null || duration.isUnknown() || duration.isIndefinite()
+                ? 0 : duration.toSeconds();
+        pointA = Double.NaN;
+        pointB = Double.NaN;
+        arm();
+    }
+
+    /**
+     * Returns the player to playing its whole media once, so it can be reused.
+     */
+    public void detach()
+    {
+        if (mediaPlayer == null)
+        {
+            return;
+        }
+        playWhole();
+        mediaPlayer.setCycleCount(1);
+        pointA = Double.NaN;
+        pointB = Double.NaN;
+        boundary.reset();
+        mediaPlayer = null;
+    }
+
+    /**
+     * @param repeat
+     *         Whether to repeat the whole media when no A-B loop is set
+     */
+    public void setRepeat(boolean repeat)
+    {
+        this.repeat = repeat;
+        arm();
+    }
+
+    public boolean isRepeat()
+    {
+        return repeat;
+    }
+
+    /**
+     * Sets the start of the A-B loop. The loop plays once both points are set.
+     *
+     * @param seconds
+     *         Loop start
+     */
+    public void setPointA(double seconds)
+    {
+        pointA = clamp(seconds);
+        arm();
+    }
+
+    /**
+     * Sets the end of the A-B loop. The loop plays once both points are set.
+     *
+     * @param seconds
+     *         Loop end
+     */
+    public void setPointB(double seconds)
+    {
+        pointB = clamp(seconds);
+        arm();
+    }
+
+    /**
+     * Clears both A-B points, returning to repeat or single play.
+     */
+    public void clearPoints()
+    {
+        pointA = Double.NaN;
+        pointB = Double.NaN;
+        arm();
+    }
+
+    /**
+     * @return whether an A-B loop is playing
+     */
+    public boolean hasRange()
+    {
+        return !Double.isNaN(pointA) && !Double.isNaN(pointB) && Math.abs(pointB - pointA) >= MIN_RANGE_SECONDS;
+    }
+
+    /**
+     * @return whether the player loops, over an A-B range or the whole media
+     */
+    public boolean isLooping()
+    {
+        return mediaPlayer != null && (repeat || hasRange());
+    }
+
+    /**
+     * @return start of the playing loop, 0 when repeating the whole media
+     */
+    public double getLoopStart()
+    {
+        return hasRange() ? Math.min(pointA, pointB) : 0;
+    }
+
+    /**
+     * @return end of the playing loop, the duration when repeating the whole media
+     */
+    public double getLoopEnd()
+    {
+        return hasRange() ? Math.max(pointA, pointB) : durationSeconds;
+    }
+
+    /**
+     * @param position
+     *         Media position in seconds
+     * @return whether the position lies outside the A-B loop, so playback should move to its start
+     */
+    public boolean isOutsideRange(double position)
+    {
+        return hasRange() && (position < getLoopStart() || position > getLoopEnd());
+    }
+
+    /**
+     * Measures the boundary gap from the position sampled this pulse.
+     *
+     * @param position
+     *         Media position in seconds
+     * @param rate
+     *         Playback rate
+     * @param nowNanos
+     *         Sample time
+     */
+    public void onSample(double position, double rate, long nowNanos)
+    {
+        if (!isLooping())
+        {
+            return;
+        }
+        long gapNanos = boundary.onSample(position, rate, getLoopStart(), getLoopEnd(), nowNanos);
+        if (gapNanos < 0)
+        {
+            return;
+        }
+        metrics.recordLoopBoundary(gapNanos);
+        cycleGaps.record(gapNanos);
+        if (cycleGaps.getCount() % REPORT_INTERVAL == 0)
+        {
+            logger.info("Loop boundary over the last {} cycles: mean {} ms, p99 {} ms, max {} ms.",
+                        cycleGaps.getCount(), toMillis(cycleGaps.getMeanNanos()),
+                        toMillis(cycleGaps.getQuantileNanos(0.99)), toMillis(cycleGaps.getMaxNanos()));
+            cycleGaps = new LatencyHistogram();
+        }
+        else if (logger.isDebugEnabled())
+        {
+            logger.debug("Loop boundary gap {} ms.", toMillis(gapNanos));
+        }
+    }
+
+    /**
+     * @return the loop state in words, e.g. for a tooltip
+     */
+    public String describe()
+    {
+        if (hasRange())
+        {
+            return String.format("Looping %s - %s", ElapsedTimeFormatter.toHhMmSs(getLoopStart()),
+                                 ElapsedTimeFormatter.toHhMmSs(getLoopEnd()));
+        }
+        String points = "";
+        if (!Double.isNaN(pointA))
+        {
+            points = String.format(" (A at %s, set B on the slider)", ElapsedTimeFormatter.toHhMmSs(pointA));
+        }
+        else if (!Double.isNaN(pointB))
+        {
+            points = String.format(" (B at %s, set A on the slider)", ElapsedTimeFormatter.toHhMmSs(pointB));
+        }
+        return (repeat ? "Repeating" : "Repeat off") + points;
+    }
+
+    /**
+     * Applies the current range and cycle count to the player.
+     */
+    private void arm()
+    {
+        boundary.reset();
+        if (mediaPlayer == null)
+        {
+            return;
+        }
+        // Open up the whole media first, so the start never passes the stop on the way
+        playWhole();
+        if (hasRange())
+        {
+            mediaPlayer.setStopTime(Duration.seconds(getLoopEnd()));
+            mediaPlayer.setStartTime(Duration.seconds(getLoopStart()));
+        }
+        mediaPlayer.setCycleCount(isLooping() ? MediaPlayer.INDEFINITE : 1);
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("{}.", describe());
+        }
+    }
+
+    private void playWhole()
+    {
+        mediaPlayer.setStartTime(Duration.ZERO);
+        if (durationSeconds > 0)
+        {
+            mediaPlayer.setStopTime(Duration.seconds(durationSeconds));
+        }
+    }
+
+    private double clamp(double seconds)
+    {
+        double clamped = Math.max(0, seconds);
+        return durationSeconds > 0 ? Math.min(durationSeconds, clamped) : clamped;
+    }
+
+    private static String toMillis(long nanos)
+    {
+        return String.format("%.1f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads chapter start times for local media.
+ * <p>
+ * A sidecar file with the media's base name and a {@code .chapters} extension takes
+ * precedence; otherwise MP4 files are searched for an embedded chapter list.
+ * Sidecar lines are either {@code HH:MM:SS[.mmm] [title]} or OGM style
+ * {@code CHAPTERnn=HH:MM:SS.mmm}; other lines are ignored.
+ */
+public final class ChapterLoader
+{
+    private static final Logger logger = LoggerFactory.getLogger(ChapterLoader.class);
+
+    private static final String SIDECAR_EXTENSION = ".chapters";
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "^(?:CHAPTER\\d+=)?(\\d+):(\\d{1,2}):(\\d{1,2})(?:[.,](\\d{1,3}))?(?:\\s.*)?$");
+
+    private ChapterLoader()
+    {
+    }
+
+    /**
+     * @param url
+     *         Media URL
+     * @return chapter start times in seconds; empty for remote media or media without chapters
+     */
+    public static double[] load(String url)
+    {
+        URI uri = URI.create(url);
+        if (!"file".equals(uri.getScheme()))
+        {
+            return new double[0];
+        }
+        Path media = new File(uri).toPath();
+        try
+        {
+            Path sidecar = sidecarFor(media);
+            if (Files.isReadable(sidecar))
+            {
+                double[] chapters = readSidecar(sidecar);
+                logger.debug("Loaded {} chapters from {}.", chapters.length, sidecar);
+                return chapters;
+            }
+            String name = media.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".mp4") || name.endsWith(".m4v") || name.endsWith(".m4a"))
+            {
+                return Mp4ChapterReader.read(media);
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            logger.warn("Could not read chapters for " + media, ex);
+        }
+        return new double[0];
+    }
+
+    private static Path sidecarFor(Path media)
+    {
+        String name = media.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return media.resolveSibling(base + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Reads a sidecar chapter file line by line.
+     *
+     * @param sidecar
+     *         Chapter file
+     * @return chapter start times in seconds, in file order
+     * @throws IOException
+     *         if the file cannot be read
+     */
+    public static double[] readSidecar(Path sidecar) throws IOException
+    {
+        double[] chapters = new double[64];
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                Matcher matcher = TIMESTAMP.matcher(line.trim());
+                if (!matcher.matches())
+                {
+                    continue;
+                }
+                double seconds = Integer.parseInt(matcher.group(1)) * 3600
+                        + Integer.parseInt(matcher.group(2)) * 60
+                        + Integer.parseInt(matcher.group(3));
+                if (matcher.group(4) != null)
+                {
+                    String fraction = matcher.group(4);
+                    seconds += Integer.parseInt(fraction) / Math.pow(10, fraction.length());
+                }
+                if (count == chapters.length)
+                {
+                    chapters = Arrays.copyOf(chapters, count * 2);
+                }
+                chapters[count++] = seconds;
+            }
+        }
+        return Arrays.copyOf(chapters, count);
+    }
+}
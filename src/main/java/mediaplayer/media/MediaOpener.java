@@ -0,0 +1,351 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+
+import mediaplayer.cache.CachingProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens media off the FX application thread.
+ * <p>
+ * An open runs through resolve, probe (including chapter lookup) and construct stages on a background thread and
+ * completes once the new MediaPlayer reports READY. Local MP4 and MP3 files are probed by
+ * {@link MediaProbe}, so files with unsupported codecs fail before a player is constructed. Each call to {@link #open(String)}
+ * supersedes any open still in flight: the earlier future is cancelled and its player,
+ * if already constructed, is disposed. Remote media are routed through the
+ * {@link CachingProxy}, if one is set.
+ * <p>
+ * Preloads run on a thread of their own at low priority, so the open the user asked for
+ * never waits behind the preload of a queued item.
+ */
+public class MediaOpener
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final Set<String> SUPPORTED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "mp4", "m4v", "m4a", "mp3", "wav", "aif", "aiff", "fxm", "flv", "m3u8"));
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "media-opener");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService preloadExecutor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "media-preloader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final AtomicLong generation = new AtomicLong();
+    private final PlayerLifecycle players;
+    private volatile CachingProxy cachingProxy;
+
+    /**
+     * Opener whose players are disposed as soon as they are discarded.
+     */
+    public MediaOpener()
+    {
+        this(new PlayerLifecycle(0));
+    }
+
+    /**
+     * @param players
+     *         Creates and disposes the players of this opener
+     */
+    public MediaOpener(PlayerLifecycle players)
+    {
+        this.players = players;
+    }
+
+    /**
+     * @param cachingProxy
+     *         Proxy that remote media are played through from now on, or null to play them directly;
+     *         routes are released as their players are disposed
+     */
+    public void setCachingProxy(CachingProxy cachingProxy)
+    {
+        this.cachingProxy = cachingProxy;
+        players.setDisposeListener(cachingProxy != null ? cachingProxy::release : null);
+    }
+
+    /**
+     * @return lifecycle that creates and disposes the players of this opener
+     */
+    public PlayerLifecycle getPlayers()
+    {
+        return players;
+    }
+
+    /**
+     * Opens media, cancelling any earlier open that has not completed yet.
+     *
+     * @param url
+     *         URL or file path of the media
+     * @return future completed with the ready player, or cancelled if superseded
+     */
+    public CompletableFuture<OpenedMedia> open(String url)
+    {
+        return open(url, null);
+    }
+
+    /**
+     * Opens media, cancelling any earlier open that has not completed yet.
+     *
+     * @param url
+     *         URL or file path of the media
+     * @param probeListener
+     *         Called on the opener thread with the probe result of a local file, before the
+     *         player is constructed; may be null
+     * @return future completed with the ready player, or cancelled if superseded
+     */
+    public CompletableFuture<OpenedMedia> open(String url, Consumer<ProbeResult> probeListener)
+    {
+        long openGeneration = generation.incrementAndGet();
+        CompletableFuture<OpenedMedia> result = new CompletableFuture<>();
+        start(executor, url, result, () -> generation.get() != openGeneration || result.isCancelled(),
+              probeListener);
+        return result;
+    }
+
+    /**
+     * Opens media ahead of time without affecting or delaying other opens. The open is only
+     * abandoned when the returned future is cancelled; a caller discarding a future
+     * that already completed must dispose its player through {@link #getPlayers()}.
+     *
+     * @param url
+     *         URL or file path of the media
+     * @return future completed with the ready player
+     */
+    public CompletableFuture<OpenedMedia> preload(String url)
+    {
+        CompletableFuture<OpenedMedia> result = new CompletableFuture<>();
+        start(preloadExecutor, url, result, result::isCancelled, null);
+        return result;
+    }
+
+    /**
+     * @param path
+     *         File path or URL
+     * @return whether the file type is one the JavaFX media stack can play
+     */
+    public static boolean isSupported(String path)
+    {
+        String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return SUPPORTED_EXTENSIONS.contains(extension);
+    }
+
+    private void start(ExecutorService stages, String url, CompletableFuture<OpenedMedia> result,
+                       Superseded superseded, Consumer<ProbeResult> probeListener)
+    {
+        OpenTimings timings = new OpenTimings();
+
+        stages.execute(() ->
+        {
+            MediaPlayer mediaPlayer = null;
+            try
+            {
+                String resolvedUrl = resolve(url);
+                timings.markEnd(OpenTimings.Stage.RESOLVE);
+                checkSuperseded(superseded);
+
+                ProbeResult probe = probe(resolvedUrl);
+                double[] chapters = ChapterLoader.load(resolvedUrl);
+                double[] keyframes = loadKeyframes(resolvedUrl, probe);
+                timings.markEnd(OpenTimings.Stage.PROBE);
+                checkSuperseded(superseded);
+                if (probe != null && probeListener != null)
+                {
+                    probeListener.accept(probe);
+                }
+
+                // Remote media play through the cache; the opened media keep their own URL
+                CachingProxy proxy = cachingProxy;
+                String source = proxy != null ? proxy.route(resolvedUrl) : resolvedUrl;
+                try
+                {
+                    mediaPlayer = players.create(new Media(source));
+                }
+                catch (RuntimeException ex)
+                {
+                    if (proxy != null)
+                    {
+                        proxy.release(source);
+                    }
+                    throw ex;
+                }
+                timings.markEnd(OpenTimings.Stage.CONSTRUCT);
+                checkSuperseded(superseded);
+
+                awaitReady(resolvedUrl, mediaPlayer, probe, chapters, keyframes, timings, superseded, result);
+            }
+            catch (Exception ex)
+            {
+                if (mediaPlayer != null)
+                {
+                    players.dispose(mediaPlayer);
+                }
+                result.completeExceptionally(ex);
+            }
+        });
+    }
+
+    /**
+     * Turns a file path or URL into a URL the media stack accepts,
+     * checking that local files are readable.
+     */
+    private String resolve(String url) throws IOException
+    {
+        URI uri;
+        try
+        {
+            uri = new URI(url);
+        }
+        catch (URISyntaxException ex)
+        {
+            uri = null;
+        }
+
+        if (uri == null || uri.getScheme() == null || uri.getScheme().length() == 1)
+        {
+            // Plain path (or Windows drive letter)
+            uri = new File(url).toURI();
+        }
+
+        if ("file".equals(uri.getScheme()))
+        {
+            File file = new File(uri);
+            if (!file.canRead())
+            {
+                throw new IOException("Cannot read media file " + file);
+            }
+        }
+        return uri.toString();
+    }
+
+    /**
+     * Rejects local files the JavaFX media stack cannot play. Remote URLs often carry no
+     * extension, so they are left to the media stack.
+     *
+     * @return container details of a local MP4 or MP3 file, null for other media
+     */
+    private ProbeResult probe(String url) throws IOException
+    {
+        URI uri = URI.create(url);
+        if (!"file".equals(uri.getScheme()))
+        {
+            return null;
+        }
+        String path = uri.getPath();
+        if (path == null || !isSupported(path))
+        {
+            throw new UnsupportedMediaException("Unsupported media type: " + url);
+        }
+        Path file = Paths.get(uri);
+        if (!MediaProbe.canProbe(file))
+        {
+            return null;
+        }
+        ProbeResult probe = MediaProbe.probe(file);
+        logger.debug("Probed {}: {}.", url, probe);
+        return probe;
+    }
+
+    /**
+     * @return keyframe times of probed MP4 video, empty for other media or if unreadable
+     */
+    private double[] loadKeyframes(String url, ProbeResult probe)
+    {
+        if (probe == null || !"mp4".equals(probe.getContainer()) || probe.getVideoCodec() == null)
+        {
+            return new double[0];
+        }
+        try
+        {
+            double[] keyframes = Mp4KeyframeReader.read(Paths.get(URI.create(url)));
+            logger.debug("Read {} keyframes of {}.", keyframes.length, url);
+            return keyframes;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            logger.warn("Could not read keyframes of " + url, ex);
+            return new double[0];
+        }
+    }
+
+    private void awaitReady(String url, MediaPlayer mediaPlayer, ProbeResult probe, double[] chapters,
+                            double[] keyframes, OpenTimings timings, Superseded superseded, CompletableFuture<OpenedMedia> result)
+    {
+        mediaPlayer.setOnReady(() ->
+        {
+            mediaPlayer.setOnReady(null);
+            mediaPlayer.setOnError(null);
+            timings.markEnd(OpenTimings.Stage.READY);
+            if (superseded.isSuperseded())
+            {
+                players.dispose(mediaPlayer);
+                result.completeExceptionally(new CancellationException("Open superseded: " + url));
+            }
+            else
+            {
+                logger.debug("Opened {} ({}).", url, timings);
+                result.complete(new OpenedMedia(url, mediaPlayer, probe, chapters, keyframes, timings));
+            }
+        });
+        mediaPlayer.setOnError(() ->
+        {
+            mediaPlayer.setOnReady(null);
+            mediaPlayer.setOnError(null);
+            Exception error = mediaPlayer.getError();
+            players.dispose(mediaPlayer);
+            result.completeExceptionally(error != null ? error : new IOException("Failed to open " + url));
+        });
+    }
+
+    private static void checkSuperseded(Superseded superseded)
+    {
+        if (superseded.isSuperseded())
+        {
+            throw new CancellationException("Open superseded");
+        }
+    }
+
+    /**
+     * Shuts down the background opener and preloader threads.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+        preloadExecutor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface Superseded
+    {
+        boolean isSuperseded();
+    }
+}
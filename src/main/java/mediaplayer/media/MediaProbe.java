@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Lightweight, pure-Java probe for MP4 and MP3 files.
+ * <p>
+ * Reads container headers through memory-mapped I/O and returns codec, duration,
+ * dimensions and bitrate without touching the JavaFX media stack, so unsupported
+ * files can be rejected immediately and the UI filled in before a player is ready.
+ */
+public final class MediaProbe
+{
+    private static final Set<String> MP4_EXTENSIONS = new HashSet<>(Arrays.asList("mp4", "m4v", "m4a"));
+
+    /** Sample entry types of the codecs JavaFX can decode from MP4 */
+    private static final Set<String> PLAYABLE_MP4_CODECS = new HashSet<>(Arrays.asList("avc1", "avc3", "mp4a"));
+
+    private MediaProbe()
+    {
+    }
+
+    /**
+     * @param file
+     *         Local media file
+     * @return whether {@link #probe(Path)} understands the file's extension
+     */
+    public static boolean canProbe(Path file)
+    {
+        String extension = extensionOf(file);
+        return MP4_EXTENSIONS.contains(extension) || "mp3".equals(extension);
+    }
+
+    /**
+     * Probes a local MP4 or MP3 file.
+     *
+     * @param file
+     *         Local media file
+     * @return probe result
+     * @throws UnsupportedMediaException
+     *         if the file is malformed, of an unknown type, or uses codecs JavaFX cannot play
+     * @throws IOException
+     *         if the file cannot be read
+     */
+    public static ProbeResult probe(Path file) throws IOException
+    {
+        String extension = extensionOf(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (MP4_EXTENSIONS.contains(extension))
+            {
+                ProbeResult result = Mp4Probe.probe(channel);
+                checkPlayable(result.getVideoCodec());
+                checkPlayable(result.getAudioCodec());
+                return result;
+            }
+            if ("mp3".equals(extension))
+            {
+                return Mp3Probe.probe(channel);
+            }
+        }
+        throw new UnsupportedMediaException("Cannot probe " + file);
+    }
+
+    private static void checkPlayable(String codec) throws UnsupportedMediaException
+    {
+        if (codec != null && !PLAYABLE_MP4_CODECS.contains(codec))
+        {
+            throw new UnsupportedMediaException("Unsupported codec " + codec);
+        }
+    }
+
+    private static String extensionOf(Path file)
+    {
+        String name = file.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+}
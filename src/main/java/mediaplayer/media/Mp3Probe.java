@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads ID3v2 tags, the first MPEG audio frame header and any Xing/Info header
+ * from a memory-mapped MP3 file.
+ */
+final class Mp3Probe
+{
+    /** Bytes after the ID3 tag searched for the first frame sync */
+    private static final int SYNC_SEARCH_BYTES = 64 * 1024;
+
+    private static final int[][] BITRATES_KBPS = {
+            // MPEG-1 Layer III
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 0},
+            // MPEG-2 and 2.5 Layer III
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, 0}};
+
+    private static final int[][] SAMPLE_RATES = {
+            {44100, 48000, 32000},  // MPEG-1
+            {22050, 24000, 16000},  // MPEG-2
+            {11025, 12000, 8000}};  // MPEG-2.5
+
+    private static final int XING = Mp4Boxes.fourCc("Xing");
+    private static final int INFO = Mp4Boxes.fourCc("Info");
+
+    private static final Map<String, String> TAG_NAMES = new HashMap<>();
+
+    static
+    {
+        TAG_NAMES.put("TIT2", "title");
+        TAG_NAMES.put("TPE1", "artist");
+        TAG_NAMES.put("TALB", "album");
+        TAG_NAMES.put("TCON", "genre");
+        TAG_NAMES.put("TYER", "year");
+        TAG_NAMES.put("TDRC", "year");
+        TAG_NAMES.put("TRCK", "track");
+    }
+
+    private Mp3Probe()
+    {
+    }
+
+    /**
+     * @param channel
+     *         Open MP3 file
+     * @return probe result
+     * @throws IOException
+     *         if the file cannot be read or contains no MPEG audio frame
+     */
+    static ProbeResult probe(FileChannel channel) throws IOException
+    {
+        long fileSize = channel.size();
+        ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, Integer.MAX_VALUE));
+
+        Map<String, String> tags = new HashMap<>();
+        int audioStart = readId3v2(file, tags);
+
+        int frame = findFrameSync(file, audioStart);
+        if (frame < 0)
+        {
+            throw new UnsupportedMediaException("No MPEG audio frame found");
+        }
+        int header = file.getInt(frame);
+        int versionBits = (header >>> 19) & 0x3;     // 0 = 2.5, 2 = 2, 3 = 1
+        int layerBits = (header >>> 17) & 0x3;       // 1 = Layer III
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int sampleRateIndex = (header >>> 10) & 0x3;
+        boolean mono = ((header >>> 6) & 0x3) == 3;
+        if (layerBits != 1)
+        {
+            throw new UnsupportedMediaException("Only MPEG Layer III audio is supported");
+        }
+
+        boolean mpeg1 = versionBits == 3;
+        int sampleRate = SAMPLE_RATES[mpeg1 ? 0 : versionBits == 2 ? 1 : 2][sampleRateIndex];
+        int samplesPerFrame = mpeg1 ? 1152 : 576;
+        long bitrate = BITRATES_KBPS[mpeg1 ? 0 : 1][bitrateIndex] * 1000L;
+
+        // A Xing/Info header after the side information carries the frame count of VBR files
+        int sideInfo = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        int xing = frame + 4 + sideInfo;
+        long durationMicros = 0;
+        if (xing + 12 <= file.limit() && (file.getInt(xing) == XING || file.getInt(xing) == INFO)
+                && (file.getInt(xing + 4) & 0x1) != 0)
+        {
+            long frames = file.getInt(xing + 8) & 0xFFFFFFFFL;
+            durationMicros = frames * samplesPerFrame * 1000000L / sampleRate;
+            if (durationMicros > 0)
+            {
+                bitrate = (fileSize - frame) * 8 * 1000000 / durationMicros;
+            }
+        }
+        else if (bitrate > 0)
+        {
+            durationMicros = (fileSize - frame) * 8 * 1000000 / bitrate;
+        }
+
+        return new ProbeResult("mp3", null, "mp3", durationMicros, 0, 0, bitrate, 0, tags);
+    }
+
+    /**
+     * Reads text frames of an ID3v2.3/2.4 tag at the start of the file.
+     *
+     * @return offset of the first byte after the tag, 0 if there is none
+     */
+    private static int readId3v2(ByteBuffer file, Map<String, String> tags)
+    {
+        if (file.limit() < 10 || file.get(0) != 'I' || file.get(1) != 'D' || file.get(2) != '3')
+        {
+            return 0;
+        }
+        int majorVersion = file.get(3);
+        int tagSize = syncSafe(file.getInt(6));
+        int end = Math.min(file.limit(), 10 + tagSize);
+        if (majorVersion < 3)
+        {
+            return end;  // ID3v2.2 uses three-character frame ids; tags are skipped
+        }
+
+        int position = 10;
+        while (position + 10 <= end && file.get(position) != 0)
+        {
+            byte[] id = new byte[4];
+            for (int i = 0; i < 4; i++)
+            {
+                id[i] = file.get(position + i);
+            }
+            int frameSize = majorVersion == 4 ? syncSafe(file.getInt(position + 4)) : file.getInt(position + 4);
+            int payload = position + 10;
+            if (frameSize <= 0 || payload + frameSize > end)
+            {
+                break;
+            }
+            String name = TAG_NAMES.get(new String(id, StandardCharsets.ISO_8859_1));
+            if (name != null && frameSize > 1)
+            {
+                tags.putIfAbsent(name, readText(file, payload, frameSize));
+            }
+            position = payload + frameSize;
+        }
+        return end;
+    }
+
+    private static String readText(ByteBuffer file, int offset, int length)
+    {
+        Charset charset;
+        switch (file.get(offset))
+        {
+            case 1:
+                charset = StandardCharsets.UTF_16;
+                break;
+            case 2:
+                charset = StandardCharsets.UTF_16BE;
+                break;
+            case 3:
+                charset = StandardCharsets.UTF_8;
+                break;
+            default:
+                charset = StandardCharsets.ISO_8859_1;
+                break;
+        }
+        byte[] text = new byte[length - 1];
+        for (int i = 0; i < text.length; i++)
+        {
+            text[i] = file.get(offset + 1 + i);
+        }
+        return new String(text, charset).replace("\u0000", "").trim();
+    }
+
+    private static int findFrameSync(ByteBuffer file, int start)
+    {
+        int end = Math.min(file.limit() - 4, start + SYNC_SEARCH_BYTES);
+        for (int i = start; i < end; i++)
+        {
+            if ((file.get(i) & 0xFF) == 0xFF && (file.get(i + 1) & 0xE0) == 0xE0)
+            {
+                int header = file.getInt(i);
+                int versionBits = (header >>> 19) & 0x3;
+                int bitrateIndex = (header >>> 12) & 0xF;
+                int sampleRateIndex = (header >>> 10) & 0x3;
+                if (versionBits != 1 && bitrateIndex != 0xF && sampleRateIndex != 3)
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int syncSafe(int value)
+    {
+        return (value & 0x7F) | ((value >> 8) & 0x7F) << 7 | ((value >> 16) & 0x7F) << 14
+                | ((value >> 24) & 0x7F) << 21;
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for walking ISO base media (MP4) boxes.
+ * <p>
+ * Top-level boxes are located by reading headers only, so a multi-gigabyte
+ * {@code mdat} is skipped without being touched; the {@code moov} box is then
+ * memory-mapped and its children are walked as buffer slices.
+ */
+final class Mp4Boxes
+{
+    static final int MOOV = fourCc("moov");
+
+    private Mp4Boxes()
+    {
+    }
+
+    /**
+     * Memory-maps the payload of the top-level {@code moov} box.
+     *
+     * @param channel
+     *         Open MP4 file
+     * @return mapped payload, or null if the file has no moov box
+     * @throws IOException
+     *         if the file cannot be read or the moov box is implausibly large
+     */
+    static MappedByteBuffer mapMoov(FileChannel channel) throws IOException
+    {
+        long[] moov = findTopLevel(channel, MOOV);
+        if (moov == null)
+        {
+            return null;
+        }
+        long size = moov[1] - moov[0];
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IOException("MP4 moov box too large: " + size);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, moov[0], size);
+    }
+
+    /**
+     * Finds the first top-level box of a type by reading box headers.
+     *
+     * @return {payload start, box end}, or null if not found
+     */
+    static long[] findTopLevel(FileChannel channel, int type) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        long end = channel.size();
+        long position = 0;
+        while (position + 8 <= end)
+        {
+            header.clear();
+            readFully(channel, header, position);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            int boxType = header.getInt(4);
+            int headerSize = 8;
+            if (size == 1)
+            {
+                header.clear();
+                readFully(channel, header, position + 8);
+                size = header.getLong(0);
+                headerSize = 16;
+            }
+            else if (size == 0)
+            {
+                size = end - position;
+            }
+            if (size < headerSize)
+            {
+                return null;  // corrupt box
+            }
+            if (boxType == type)
+            {
+                return new long[]{position + headerSize, Math.min(end, position + size)};
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    /**
+     * @param parent
+     *         Payload of the parent box, positioned at its first child
+     * @param type
+     *         Child box type
+     * @return payload of the first child of the type, or null if there is none
+     */
+    static ByteBuffer child(ByteBuffer parent, int type)
+    {
+        List<ByteBuffer> children = children(parent, type, true);
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    /**
+     * @param parent
+     *         Payload of the parent box, positioned at its first child
+     * @param type
+     *         Child box type
+     * @return payloads of all children of the type
+     */
+    static List<ByteBuffer> children(ByteBuffer parent, int type)
+    {
+        return children(parent, type, false);
+    }
+
+    private static List<ByteBuffer> children(ByteBuffer parent, int type, boolean firstOnly)
+    {
+        List<ByteBuffer> found = new ArrayList<>();
+        int position = parent.position();
+        int end = parent.limit();
+        while (position + 8 <= end)
+        {
+            long size = parent.getInt(position) & 0xFFFFFFFFL;
+            int boxType = parent.getInt(position + 4);
+            int headerSize = 8;
+            if (size == 1 && position + 16 <= end)
+            {
+                size = parent.getLong(position + 8);
+                headerSize = 16;
+            }
+            else if (size == 0)
+            {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end)
+            {
+                break;  // corrupt or truncated box
+            }
+            if (boxType == type)
+            {
+                ByteBuffer payload = parent.duplicate();
+                payload.limit((int) (position + size)).position(position + headerSize);
+                found.add(payload.slice());
+                if (firstOnly)
+                {
+                    break;
+                }
+            }
+            position += (int) size;
+        }
+        return found;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Unexpected end of MP4 file");
+            }
+        }
+    }
+
+    static int fourCc(String type)
+    {
+        byte[] bytes = type.getBytes(StandardCharsets.US_ASCII);
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+
+    static String fourCcString(int type)
+    {
+        return new String(new byte[]{(byte) (type >>> 24), (byte) (type >>> 16), (byte) (type >>> 8), (byte) type},
+                          StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads Nero-style chapter lists ({@code moov/udta/chpl}) from MP4 files.
+ */
+public final class Mp4ChapterReader
+{
+    private static final int UDTA = Mp4Boxes.fourCc("udta");
+    private static final int CHPL = Mp4Boxes.fourCc("chpl");
+
+    /** chpl start times are in 100 ns units */
+    private static final double CHPL_TIME_UNITS_PER_SECOND = 10000000.0;
+
+    private Mp4ChapterReader()
+    {
+    }
+
+    /**
+     * @param file
+     *         MP4 file
+     * @return chapter start times in seconds, empty if the file has no chapter list
+     * @throws IOException
+     *         if the file cannot be read
+     */
+    public static double[] read(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer moov = Mp4Boxes.mapMoov(channel);
+            return moov == null ? new double[0] : read(moov);
+        }
+    }
+
+    /**
+     * @param moov
+     *         Payload of the moov box
+     * @return chapter start times in seconds, empty if there is no chapter list
+     */
+    static double[] read(ByteBuffer moov)
+    {
+        ByteBuffer udta = Mp4Boxes.child(moov, UDTA);
+        ByteBuffer chpl = udta == null ? null : Mp4Boxes.child(udta, CHPL);
+        return chpl == null ? new double[0] : parseChpl(chpl);
+    }
+
+    private static double[] parseChpl(ByteBuffer payload)
+    {
+        int version = payload.get() & 0xFF;
+        payload.position(payload.position() + 3);  // flags
+        if (version == 1)
+        {
+            payload.getInt();  // reserved
+        }
+        int count = payload.get() & 0xFF;
+        double[] starts = new double[count];
+        int read = 0;
+        while (read < count && payload.remaining() >= 9)
+        {
+            starts[read++] = payload.getLong() / CHPL_TIME_UNITS_PER_SECOND;
+            int titleLength = payload.get() & 0xFF;
+            payload.position(Math.min(payload.limit(), payload.position() + titleLength));
+        }
+        return read == count ? starts : Arrays.copyOf(starts, read);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads keyframe times of the first video track of an MP4 file from its sync sample
+ * table ({@code stss}), timed through the decoding time-to-sample table ({@code stts}).
+ * <p>
+ * Times are decode times; composition offsets and edit lists are ignored, which moves
+ * a keyframe by at most a few frames. A track without a sync sample table has only
+ * keyframes, and yields no times at all so that callers do not snap positions.
+ */
+public final class Mp4KeyframeReader
+{
+    private static final int TRAK = Mp4Boxes.fourCc("trak");
+    private static final int MDIA = Mp4Boxes.fourCc("mdia");
+    private static final int MDHD = Mp4Boxes.fourCc("mdhd");
+    private static final int HDLR = Mp4Boxes.fourCc("hdlr");
+    private static final int MINF = Mp4Boxes.fourCc("minf");
+    private static final int STBL = Mp4Boxes.fourCc("stbl");
+    private static final int STSS = Mp4Boxes.fourCc("stss");
+    private static final int STTS = Mp4Boxes.fourCc("stts");
+    private static final int VIDE = Mp4Boxes.fourCc("vide");
+
+    private Mp4KeyframeReader()
+    {
+    }
+
+    /**
+     * @param file
+     *         MP4 file
+     * @return keyframe times in seconds in ascending order, empty if the file has no video
+     *         track or every frame is a keyframe
+     * @throws IOException
+     *         if the file cannot be read
+     */
+    public static double[] read(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer moov = Mp4Boxes.mapMoov(channel);
+            return moov == null ? new double[0] : read(moov);
+        }
+    }
+
+    /**
+     * @param moov
+     *         Payload of the moov box
+     * @return keyframe times in seconds in ascending order, empty if there is no video
+     *         track or every frame is a keyframe
+     */
+    static double[] read(ByteBuffer moov)
+    {
+        for (ByteBuffer trak : Mp4Boxes.children(moov, TRAK))
+        {
+            ByteBuffer mdia = Mp4Boxes.child(trak, MDIA);
+            ByteBuffer hdlr = mdia == null ? null : Mp4Boxes.child(mdia, HDLR);
+            if (hdlr == null || hdlr.remaining() < 12 || hdlr.getInt(8) != VIDE)
+            {
+                continue;
+            }
+            ByteBuffer mdhd = Mp4Boxes.child(mdia, MDHD);
+            ByteBuffer minf = Mp4Boxes.child(mdia, MINF);
+            ByteBuffer stbl = minf == null ? null : Mp4Boxes.child(minf, STBL);
+            ByteBuffer stss = stbl == null ? null : Mp4Boxes.child(stbl, STSS);
+            ByteBuffer stts = stbl == null ? null : Mp4Boxes.child(stbl, STTS);
+            if (mdhd == null || stss == null || stts == null)
+            {
+                return new double[0];
+            }
+            long timescale = (mdhd.get(0) == 1 ? mdhd.getInt(20) : mdhd.getInt(12)) & 0xFFFFFFFFL;
+            return timescale == 0 ? new double[0] : keyframeTimes(stss, stts, timescale);
+        }
+        return new double[0];
+    }
+
+    /**
+     * Walks the sync sample numbers and the time-to-sample runs together.
+     */
+    private static double[] keyframeTimes(ByteBuffer stss, ByteBuffer stts, long timescale)
+    {
+        int syncCount = (int) Math.min(stss.getInt(4) & 0xFFFFFFFFL, (stss.limit() - 8) / 4);
+        int runCount = (int) Math.min(stts.getInt(4) & 0xFFFFFFFFL, (stts.limit() - 8) / 8);
+        double[] times = new double[syncCount];
+        int found = 0;
+
+        int run = 0;
+        long runFirstSample = 1;
+        long runSamples = runCount > 0 ? stts.getInt(8) & 0xFFFFFFFFL : 0;
+        long runDelta = runCount > 0 ? stts.getInt(12) & 0xFFFFFFFFL : 0;
+        long runStartTime = 0;
+        for (int i = 0; i < syncCount; i++)
+        {
+            long sample = stss.getInt(8 + i * 4) & 0xFFFFFFFFL;
+            // Sync samples are listed in ascending order; advance to the run holding this one
+            while (run < runCount && sample >= runFirstSample + runSamples)
+            {
+                runStartTime += runSamples * runDelta;
+                runFirstSample += runSamples;
+                if (++run < runCount)
+                {
+                    runSamples = stts.getInt(8 + run * 8) & 0xFFFFFFFFL;
+                    runDelta = stts.getInt(12 + run * 8) & 0xFFFFFFFFL;
+                }
+            }
+            if (run == runCount)
+            {
+                break;  // sample beyond the table
+            }
+            times[found++] = (runStartTime + (sample - runFirstSample) * runDelta) / (double) timescale;
+        }
+        return found == syncCount ? times : Arrays.copyOf(times, found);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * Reads duration, tracks and codecs from the memory-mapped {@code moov} box of an MP4 file.
+ */
+final class Mp4Probe
+{
+    private static final int MVHD = Mp4Boxes.fourCc("mvhd");
+    private static final int TRAK = Mp4Boxes.fourCc("trak");
+    private static final int TKHD = Mp4Boxes.fourCc("tkhd");
+    private static final int MDIA = Mp4Boxes.fourCc("mdia");
+    private static final int MDHD = Mp4Boxes.fourCc("mdhd");
+    private static final int HDLR = Mp4Boxes.fourCc("hdlr");
+    private static final int MINF = Mp4Boxes.fourCc("minf");
+    private static final int STBL = Mp4Boxes.fourCc("stbl");
+    private static final int STSD = Mp4Boxes.fourCc("stsd");
+    private static final int STTS = Mp4Boxes.fourCc("stts");
+    private static final int VIDE = Mp4Boxes.fourCc("vide");
+    private static final int SOUN = Mp4Boxes.fourCc("soun");
+
+    private Mp4Probe()
+    {
+    }
+
+    /**
+     * @param channel
+     *         Open MP4 file
+     * @return probe result
+     * @throws IOException
+     *         if the file cannot be read or is not a valid MP4 file
+     */
+    static ProbeResult probe(FileChannel channel) throws IOException
+    {
+        ByteBuffer moov = Mp4Boxes.mapMoov(channel);
+        if (moov == null)
+        {
+            throw new UnsupportedMediaException("MP4 file has no moov box");
+        }
+        ByteBuffer mvhd = Mp4Boxes.child(moov, MVHD);
+        if (mvhd == null)
+        {
+            throw new UnsupportedMediaException("MP4 file has no movie header");
+        }
+        long durationMicros = readDurationMicros(mvhd);
+
+        String videoCodec = null;
+        String audioCodec = null;
+        int width = 0;
+        int height = 0;
+        double frameRate = 0;
+        for (ByteBuffer trak : Mp4Boxes.children(moov, TRAK))
+        {
+            ByteBuffer mdia = Mp4Boxes.child(trak, MDIA);
+            ByteBuffer hdlr = mdia == null ? null : Mp4Boxes.child(mdia, HDLR);
+            if (hdlr == null || hdlr.remaining() < 12)
+            {
+                continue;
+            }
+            int handler = hdlr.getInt(8);
+            ByteBuffer minf = Mp4Boxes.child(mdia, MINF);
+            ByteBuffer stbl = minf == null ? null : Mp4Boxes.child(minf, STBL);
+            String codec = stbl == null ? null : readSampleEntryType(stbl);
+
+            if (handler == VIDE && videoCodec == null)
+            {
+                videoCodec = codec;
+                ByteBuffer tkhd = Mp4Boxes.child(trak, TKHD);
+                if (tkhd != null)
+                {
+                    int offset = tkhd.get(0) == 1 ? 88 : 76;
+                    if (tkhd.remaining() >= offset + 8)
+                    {
+                        width = tkhd.getInt(offset) >>> 16;
+                        height = tkhd.getInt(offset + 4) >>> 16;
+                    }
+                }
+                ByteBuffer mdhd = Mp4Boxes.child(mdia, MDHD);
+                ByteBuffer stts = stbl == null ? null : Mp4Boxes.child(stbl, STTS);
+                if (mdhd != null && stts != null)
+                {
+                    long trackMicros = readDurationMicros(mdhd);
+                    if (trackMicros > 0)
+                    {
+                        frameRate = countSamples(stts) * 1000000.0 / trackMicros;
+                    }
+                }
+            }
+            else if (handler == SOUN && audioCodec == null)
+            {
+                audioCodec = codec;
+            }
+        }
+
+        if (videoCodec == null && audioCodec == null)
+        {
+            throw new UnsupportedMediaException("MP4 file has no audio or video track");
+        }
+        long bitrate = durationMicros > 0 ? channel.size() * 8 * 1000000 / durationMicros : 0;
+        return new ProbeResult("mp4", videoCodec, audioCodec, durationMicros, width, height, bitrate, frameRate,
+                               new HashMap<>());
+    }
+
+    /**
+     * Reads timescale and duration from an mvhd or mdhd payload.
+     */
+    private static long readDurationMicros(ByteBuffer header)
+    {
+        long timescale;
+        long duration;
+        if (header.get(0) == 1)
+        {
+            timescale = header.getInt(20) & 0xFFFFFFFFL;
+            duration = header.getLong(24);
+        }
+        else
+        {
+            timescale = header.getInt(12) & 0xFFFFFFFFL;
+            duration = header.getInt(16) & 0xFFFFFFFFL;
+        }
+        return timescale == 0 ? 0 : duration * 1000000 / timescale;
+    }
+
+    /**
+     * @return type of the first sample entry in stsd, e.g. "avc1" or "mp4a"
+     */
+    private static String readSampleEntryType(ByteBuffer stbl)
+    {
+        ByteBuffer stsd = Mp4Boxes.child(stbl, STSD);
+        if (stsd == null || stsd.remaining() < 16 || stsd.getInt(4) == 0)
+        {
+            return null;
+        }
+        return Mp4Boxes.fourCcString(stsd.getInt(12));
+    }
+
+    private static long countSamples(ByteBuffer stts)
+    {
+        int entries = stts.getInt(4);
+        long samples = 0;
+        for (int i = 0, offset = 8; i < entries && offset + 8 <= stts.limit(); i++, offset += 8)
+        {
+            samples += stts.getInt(offset) & 0xFFFFFFFFL;
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-stage timings of a single media open, from request to first rendered frame.
+ */
+public class OpenTimings
+{
+    /**
+     * Stages of the open pipeline, in order.
+     */
+    public enum Stage
+    {
+        RESOLVE,
+        PROBE,
+        CONSTRUCT,
+        READY,
+        FIRST_FRAME
+    }
+
+    private final long requestedNanos = System.nanoTime();
+    private final Map<Stage, Long> stageEndNanos = new EnumMap<>(Stage.class);
+
+    /**
+     * Records the end of a stage. Only the first call for a stage counts.
+     *
+     * @param stage
+     *         Stage that just completed
+     */
+    public synchronized void markEnd(Stage stage)
+    {
+        stageEndNanos.putIfAbsent(stage, System.nanoTime());
+    }
+
+    /**
+     * @param stage
+     *         Stage to query
+     * @return whether the stage has completed
+     */
+    public synchronized boolean isDone(Stage stage)
+    {
+        return stageEndNanos.containsKey(stage);
+    }
+
+    /**
+     * @param stage
+     *         Stage to query
+     * @return time spent in the stage in nanoseconds, or -1 if it has not completed
+     */
+    public synchronized long getStageNanos(Stage stage)
+    {
+        Long end = stageEndNanos.get(stage);
+        if (end == null)
+        {
+            return -1;
+        }
+        long start = requestedNanos;
+        for (int i = stage.ordinal() - 1; i >= 0; i--)
+        {
+            Long previous = stageEndNanos.get(Stage.values()[i]);
+            if (previous != null)
+            {
+                start = previous;
+                break;
+            }
+        }
+        return end - start;
+    }
+
+    /**
+     * @param stage
+     *         Stage to query
+     * @return time from the open request to the end of the stage in nanoseconds, or -1
+     */
+    public synchronized long getElapsedNanos(Stage stage)
+    {
+        Long end = stageEndNanos.get(stage);
+        return end == null ? -1 : end - requestedNanos;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values())
+        {
+            long nanos = getStageNanos(stage);
+            if (nanos >= 0)
+            {
+                if (sb.length() > 0)
+                {
+                    sb.append(", ");
+                }
+                sb.append(stage.name().toLowerCase()).append('=').append(nanos / 1000000).append("ms");
+            }
+        }
+        return sb.toString();
+    }
+}
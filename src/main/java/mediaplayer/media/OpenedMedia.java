@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import javafx.scene.media.MediaPlayer;
+
+/**
+ * A media player that has finished opening and reached READY.
+ */
+public class OpenedMedia
+{
+    private final String url;
+    private final MediaPlayer mediaPlayer;
+    private final ProbeResult probe;
+    private final double[] chapters;
+    private final double[] keyframes;
+    private final OpenTimings timings;
+
+    OpenedMedia(String url, MediaPlayer mediaPlayer, ProbeResult probe, double[] chapters, double[] keyframes,
+                OpenTimings timings)
+    {
+        this.url = url;
+        this.mediaPlayer = mediaPlayer;
+        this.probe = probe;
+        this.chapters = chapters;
+        this.keyframes = keyframes;
+        this.timings = timings;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public MediaPlayer getMediaPlayer()
+    {
+        return mediaPlayer;
+    }
+
+    /**
+     * @return container details read without the media stack, or null if the media was not probed
+     */
+    public ProbeResult getProbe()
+    {
+        return probe;
+    }
+
+    /**
+     * @return chapter start times in seconds from a sidecar file or the container, possibly empty
+     */
+    public double[] getChapters()
+    {
+        return chapters;
+    }
+
+    /**
+     * @return keyframe times in seconds of MP4 video, empty where unknown or every frame is a keyframe
+     */
+    public double[] getKeyframes()
+    {
+        return keyframes;
+    }
+
+    public OpenTimings getTimings()
+    {
+        return timings;
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ordered list of media to play back-to-back.
+ * <p>
+ * The next {@code lookahead} items after the current one are preloaded through the
+ * {@link MediaOpener}, so that by the time the current item ends its successor is
+ * already READY and can be handed to the view without a gap.
+ * <p>
+ * A queue started with {@link #play(List, int)} is backed by the given list, such as the
+ * live view of a playlist, so a six-figure playlist is not copied to be played; the list
+ * is only copied once media is appended.
+ * Must only be used from the FX application thread.
+ */
+public class PlayQueue
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** Number of items preloaded ahead of the current one, overridable with -Dmediaplayer.queue.lookahead */
+    public static final int DEFAULT_LOOKAHEAD = Integer.getInteger("mediaplayer.queue.lookahead", 1);
+
+    private final MediaOpener opener;
+    private final int lookahead;
+    private List<String> items = new ArrayList<>();
+    /** Whether items is a list of the queue's own, rather than one it was handed to play */
+    private boolean ownsItems = true;
+    private final Map<Integer, CompletableFuture<OpenedMedia>> preloads = new HashMap<>();
+    private int currentIndex = -1;
+
+    /**
+     * @param opener
+     *         Opener used for preloading
+     * @param lookahead
+     *         Number of items to keep preloaded ahead of the current one
+     */
+    public PlayQueue(MediaOpener opener, int lookahead)
+    {
+        this.opener = opener;
+        this.lookahead = Math.max(0, lookahead);
+    }
+
+    /**
+     * Replaces the queue contents, discarding any preloaded players.
+     *
+     * @param urls
+     *         Media to play, in order
+     * @return URL of the first item, or null if the queue is empty
+     */
+    public String replace(Collection<String> urls)
+    {
+        discardPreloads(Integer.MAX_VALUE);
+        items = new ArrayList<>(urls);
+        ownsItems = true;
+        currentIndex = items.isEmpty() ? -1 : 0;
+        preloadAhead();
+        return getCurrent();
+    }
+
+    /**
+     * Plays a list from one of its items, discarding any preloaded players. The queue is
+     * backed by the list rather than a copy of it.
+     *
+     * @param urls
+     *         Media to play, in order; must not change except through {@link #reorder(int)}
+     * @param index
+     *         Index of the item to start at
+     * @return URL of that item, or null if the index is outside the list
+     */
+    public String play(List<String> urls, int index)
+    {
+        discardPreloads(Integer.MAX_VALUE);
+        items = urls;
+        ownsItems = false;
+        currentIndex = index >= 0 && index < urls.size() ? index : -1;
+        preloadAhead();
+        return getCurrent();
+    }
+
+    /**
+     * Follows a reordering of the list the queue is backed by, preloading the items that
+     * now follow the current one.
+     *
+     * @param index
+     *         Index of the current item after the reordering
+     */
+    public void reorder(int index)
+    {
+        discardPreloads(Integer.MAX_VALUE);
+        currentIndex = index;
+        preloadAhead();
+    }
+
+    /**
+     * Appends media to the end of the queue.
+     *
+     * @param urls
+     *         Media to append
+     */
+    public void addAll(Collection<String> urls)
+    {
+        if (!ownsItems)
+        {
+            items = new ArrayList<>(items);
+            ownsItems = true;
+        }
+        items.addAll(urls);
+        preloadAhead();
+    }
+
+    /**
+     * @return URL of the current item, or null if the queue is empty
+     */
+    public String getCurrent()
+    {
+        return currentIndex >= 0 && currentIndex < items.size() ? items.get(currentIndex) : null;
+    }
+
+    /**
+     * @return queued items, the list handed to {@link #play(List, int)} if the queue is backed by one
+     */
+    public List<String> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * @return index of the current item, or -1 if the queue is empty
+     */
+    public int getCurrentIndex()
+    {
+        return currentIndex;
+    }
+
+    /**
+     * @return whether there is an item after the current one
+     */
+    public boolean hasNext()
+    {
+        return currentIndex + 1 < items.size();
+    }
+
+    /**
+     * @return number of queued items
+     */
+    public int size()
+    {
+        return items.size();
+    }
+
+    /**
+     * Moves to the next item and returns its open. If the item was preloaded the
+     * returned future is usually already complete.
+     *
+     * @return open of the next item
+     * @throws IllegalStateException
+     *         if there is no next item
+     */
+    public CompletableFuture<OpenedMedia> advance()
+    {
+        if (!hasNext())
+        {
+            throw new IllegalStateException("No next item in play queue");
+        }
+        currentIndex++;
+        CompletableFuture<OpenedMedia> open = preloads.remove(currentIndex);
+        if (open == null)
+        {
+            logger.debug("Next item {} was not preloaded.", currentIndex);
+            open = opener.open(items.get(currentIndex));
+        }
+        preloadAhead();
+        return open;
+    }
+
+    /**
+     * Discards all preloaded players and empties the queue.
+     */
+    public void clear()
+    {
+        replace(new ArrayList<>());
+    }
+
+    private void preloadAhead()
+    {
+        discardPreloads(currentIndex);
+        if (currentIndex < 0)
+        {
+            return;
+        }
+        int last = Math.min(items.size() - 1, currentIndex + lookahead);
+        for (int i = currentIndex + 1; i <= last; i++)
+        {
+            if (!preloads.containsKey(i))
+            {
+                logger.debug("Preloading queue item {}: {}", i, items.get(i));
+                preloads.put(i, opener.preload(items.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Cancels preloads at or before an index, disposing players that already opened.
+     */
+    private void discardPreloads(int upToIndex)
+    {
+        Iterator<Map.Entry<Integer, CompletableFuture<OpenedMedia>>> iterator = preloads.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<Integer, CompletableFuture<OpenedMedia>> entry = iterator.next();
+            if (entry.getKey() <= upToIndex)
+            {
+                discard(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void discard(CompletableFuture<OpenedMedia> open)
+    {
+        if (!open.cancel(false) && !open.isCompletedExceptionally())
+        {
+            opener.getPlayers().dispose(open.join().getMediaPlayer());
+        }
+    }
+}
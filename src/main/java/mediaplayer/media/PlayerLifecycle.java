@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+
+import mediaplayer.metrics.PlaybackMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Owns the native resources of media players: every player is created and disposed here.
+ * <p>
+ * A player the view has finished with is released rather than dropped. Up to
+ * {@code warmLimit} released players are kept paused with their handlers detached, so
+ * reopening recent media skips construction; beyond that the least recently released
+ * player is disposed at once instead of holding its decoder and buffers until a
+ * garbage collection. Together with the current player, queue preloads and an open in
+ * flight this bounds the number of live native players.
+ * <p>
+ * {@link #create(Media)} and {@link #dispose(MediaPlayer)} are safe from any thread;
+ * warm players must only be used from the FX application thread.
+ */
+public class PlayerLifecycle
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** Released players kept warm, overridable with -Dmediaplayer.players.warm */
+    public static final int DEFAULT_WARM_PLAYERS = Integer.getInteger("mediaplayer.players.warm", 1);
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    private final int warmLimit;
+    /** Warm players by URL, least recently released first */
+    private final Map<String, OpenedMedia> warm = new LinkedHashMap<>();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong disposed = new AtomicLong();
+    private final PlaybackMetrics metrics = PlaybackMetrics.getInstance();
+    private volatile Consumer<String> disposeListener;
+
+    /**
+     * @param warmLimit
+     *         Number of released players to keep warm, 0 to dispose them at once
+     */
+    public PlayerLifecycle(int warmLimit)
+    {
+        this.warmLimit = Math.max(0, warmLimit);
+    }
+
+    /**
+     * @param disposeListener
+     *         Called with the media source of every player disposed from now on, on the disposing
+     *         thread; null for none
+     */
+    public void setDisposeListener(Consumer<String> disposeListener)
+    {
+        this.disposeListener = disposeListener;
+    }
+
+    /**
+     * Constructs a player for media.
+     *
+     * @param media
+     *         Media to play
+     * @return new player
+     */
+    public MediaPlayer create(Media media)
+    {
+        MediaPlayer mediaPlayer = new MediaPlayer(media);
+        created.incrementAndGet();
+        metrics.setLivePlayers(getLivePlayers());
+        return mediaPlayer;
+    }
+
+    /**
+     * Detaches a player's handlers and releases its native resources.
+     *
+     * @param mediaPlayer
+     *         Player that is no longer used anywhere
+     */
+    public void dispose(MediaPlayer mediaPlayer)
+    {
+        detachHandlers(mediaPlayer);
+        mediaPlayer.dispose();
+        disposed.incrementAndGet();
+        metrics.setLivePlayers(getLivePlayers());
+        Consumer<String> listener = disposeListener;
+        if (listener != null)
+        {
+            listener.accept(mediaPlayer.getMedia().getSource());
+        }
+    }
+
+    /**
+     * Takes a warm player for media, rewound to the start.
+     *
+     * @param url
+     *         URL of the media to open
+     * @return media with its warm player, or null if none is warm
+     */
+    public OpenedMedia takeWarm(String url)
+    {
+        OpenedMedia openedMedia = warm.remove(url);
+        if (openedMedia == null)
+        {
+            return null;
+        }
+        metrics.setWarmPlayers(warm.size());
+        OpenTimings timings = new OpenTimings();
+        for (OpenTimings.Stage stage : OpenTimings.Stage.values())
+        {
+            if (stage != OpenTimings.Stage.FIRST_FRAME)
+            {
+                timings.markEnd(stage);
+            }
+        }
+        MediaPlayer mediaPlayer = openedMedia.getMediaPlayer();
+        mediaPlayer.seek(mediaPlayer.getStartTime());
+        logger.debug("Reusing warm player for {}.", url);
+        return new OpenedMedia(openedMedia.getUrl(), mediaPlayer, openedMedia.getProbe(),
+                               openedMedia.getChapters(), openedMedia.getKeyframes(), timings);
+    }
+
+    /**
+     * Releases media the view no longer shows. The caller must have removed any listeners
+     * it added and cleared the player from the media view.
+     *
+     * @param openedMedia
+     *         Media whose player is released
+     */
+    public void release(OpenedMedia openedMedia)
+    {
+        MediaPlayer mediaPlayer = openedMedia.getMediaPlayer();
+        detachHandlers(mediaPlayer);
+        MediaPlayer.Status status = mediaPlayer.getStatus();
+        if (warmLimit == 0 || status == MediaPlayer.Status.HALTED || status == MediaPlayer.Status.DISPOSED)
+        {
+            dispose(mediaPlayer);
+            return;
+        }
+        mediaPlayer.pause();
+        OpenedMedia replaced = warm.remove(openedMedia.getUrl());
+        if (replaced != null && replaced.getMediaPlayer() != mediaPlayer)
+        {
+            dispose(replaced.getMediaPlayer());
+        }
+        warm.put(openedMedia.getUrl(), openedMedia);
+        Iterator<OpenedMedia> eldest = warm.values().iterator();
+        while (warm.size() > warmLimit)
+        {
+            dispose(eldest.next().getMediaPlayer());
+            eldest.remove();
+        }
+        metrics.setWarmPlayers(warm.size());
+    }
+
+    /**
+     * Disposes all warm players.
+     */
+    public void clear()
+    {
+        for (OpenedMedia openedMedia : warm.values())
+        {
+            dispose(openedMedia.getMediaPlayer());
+        }
+        warm.clear();
+        metrics.setWarmPlayers(0);
+    }
+
+    /**
+     * @return players created and not yet disposed, including warm ones
+     */
+    public long getLivePlayers()
+    {
+        return created.get() - disposed.get();
+    }
+
+    /**
+     * @return player counts with heap, direct and mapped buffer use, and resident set size
+     *         where the platform reports it
+     */
+    public String describeFootprint()
+    {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long directBytes = 0;
+        long mappedBytes = 0;
+        List<BufferPoolMXBean> pools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        for (BufferPoolMXBean pool : pools)
+        {
+            if ("direct".equals(pool.getName()))
+            {
+                directBytes = pool.getMemoryUsed();
+            }
+            else if ("mapped".equals(pool.getName()))
+            {
+                mappedBytes = pool.getMemoryUsed();
+            }
+        }
+        long rssBytes = residentSetBytes();
+        return String.format("players live=%d warm=%d created=%d, heap=%.1f MB, direct=%.1f MB, mapped=%.1f MB, rss=%s",
+                             getLivePlayers(), warm.size(), created.get(), toMegabytes(heap.getUsed()),
+                             toMegabytes(directBytes), toMegabytes(mappedBytes),
+                             rssBytes < 0 ? "n/a" : String.format("%.1f MB", toMegabytes(rssBytes)));
+    }
+
+    private static void detachHandlers(MediaPlayer mediaPlayer)
+    {
+        mediaPlayer.setOnReady(null);
+        mediaPlayer.setOnPlaying(null);
+        mediaPlayer.setOnPaused(null);
+        mediaPlayer.setOnStopped(null);
+        mediaPlayer.setOnStalled(null);
+        mediaPlayer.setOnEndOfMedia(null);
+        mediaPlayer.setOnRepeat(null);
+        mediaPlayer.setOnHalted(null);
+        mediaPlayer.setOnError(null);
+        mediaPlayer.setOnMarker(null);
+        mediaPlayer.setAudioSpectrumListener(null);
+    }
+
+    /**
+     * @return resident set size from /proc, or -1 where unavailable
+     */
+    private static long residentSetBytes()
+    {
+        if (!Files.isReadable(PROC_STATUS))
+        {
+            return -1;
+        }
+        try
+        {
+            for (String line : Files.readAllLines(PROC_STATUS))
+            {
+                if (line.startsWith("VmRSS:"))
+                {
+                    String kilobytes = line.substring("VmRSS:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        }
+        catch (IOException | NumberFormatException ex)
+        {
+            // Not worth failing a report over
+        }
+        return -1;
+    }
+
+    private static double toMegabytes(long bytes)
+    {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Container facts read by {@link MediaProbe} without opening a media player.
+ */
+public final class ProbeResult
+{
+    private final String container;
+    private final String videoCodec;
+    private final String audioCodec;
+    private final long durationMicros;
+    private final int width;
+    private final int height;
+    private final long bitrate;
+    private final double frameRate;
+    private final Map<String, String> tags;
+
+    ProbeResult(String container, String videoCodec, String audioCodec, long durationMicros, int width, int height,
+                long bitrate, double frameRate, Map<String, String> tags)
+    {
+        this.container = container;
+        this.videoCodec = videoCodec;
+        this.audioCodec = audioCodec;
+        this.durationMicros = durationMicros;
+        this.width = width;
+        this.height = height;
+        this.bitrate = bitrate;
+        this.frameRate = frameRate;
+        this.tags = Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * @return container format, "mp4" or "mp3"
+     */
+    public String getContainer()
+    {
+        return container;
+    }
+
+    /**
+     * @return video sample entry type such as "avc1", or null for audio-only media
+     */
+    public String getVideoCodec()
+    {
+        return videoCodec;
+    }
+
+    /**
+     * @return audio codec such as "mp4a" or "mp3", or null for media without audio
+     */
+    public String getAudioCodec()
+    {
+        return audioCodec;
+    }
+
+    /**
+     * @return duration in microseconds, or 0 if unknown
+     */
+    public long getDurationMicros()
+    {
+        return durationMicros;
+    }
+
+    /**
+     * @return video width in pixels, or 0 for audio-only media
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return video height in pixels, or 0 for audio-only media
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return average bitrate in bits per second, or 0 if unknown
+     */
+    public long getBitrate()
+    {
+        return bitrate;
+    }
+
+    /**
+     * @return average video frame rate, or 0 if unknown or audio-only
+     */
+    public double getFrameRate()
+    {
+        return frameRate;
+    }
+
+    /**
+     * @return textual tags such as title, artist and album; possibly empty
+     */
+    public Map<String, String> getTags()
+    {
+        return tags;
+    }
+
+    @Override
+    public String toString()
+    {
+        return container + "[video=" + videoCodec + " " + width + "x" + height + " @" + frameRate
+                + "fps, audio=" + audioCodec + ", duration=" + durationMicros + "us, bitrate=" + bitrate
+                + ", tags=" + tags + "]";
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.media;
+
+import java.io.IOException;
+
+/**
+ * Thrown when media is malformed or uses a format the JavaFX media stack cannot play.
+ */
+public class UnsupportedMediaException extends IOException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message
+     *         Why the media was rejected
+     */
+    public UnsupportedMediaException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations with power-of-two nanosecond buckets.
+ * <p>
+ * Recording is a leading-zero count and two atomic increments, cheap enough for the
+ * FX pulse. Bucket {@code i} counts durations below {@code 2^i} ns (and at least
+ * {@code 2^(i-1)} ns), so quantiles are accurate to within a factor of two.
+ */
+public final class LatencyHistogram
+{
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param nanos
+     *         Duration to record; negative values are recorded as 0
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sumNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value))
+        {
+            max = maxNanos.get();
+        }
+    }
+
+    static int bucketOf(long nanos)
+    {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * @param bucket
+     *         Bucket index
+     * @return exclusive upper bound of the bucket in nanoseconds
+     */
+    public static long upperBoundNanos(int bucket)
+    {
+        return bucket >= 63 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    public int getBucketCount()
+    {
+        return BUCKETS;
+    }
+
+    /**
+     * @param bucket
+     *         Bucket index
+     * @return number of durations recorded in the bucket
+     */
+    public long getBucket(int bucket)
+    {
+        return buckets.get(bucket);
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getSumNanos()
+    {
+        return sumNanos.sum();
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return mean duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getMeanNanos()
+    {
+        long total = getCount();
+        return total == 0 ? 0 : getSumNanos() / total;
+    }
+
+    /**
+     * Estimates a quantile as the upper bound of the bucket containing it, capped at the maximum.
+     *
+     * @param quantile
+     *         Quantile between 0 and 1, e.g. 0.99
+     * @return estimated duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getQuantileNanos(double quantile)
+    {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+            {
+                return Math.min(upperBoundNanos(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves {@link PlaybackMetrics} in Prometheus text format at {@code /metrics}.
+ * Binds to the loopback address only, so the metrics are not reachable from other hosts.
+ */
+public class MetricsServer
+{
+    private static final Logger logger = LoggerFactory.getLogger(MetricsServer.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PlaybackMetrics metrics;
+    private final HttpServer server;
+
+    /**
+     * @param metrics
+     *         Metrics to serve
+     * @param port
+     *         Loopback port, 0 for any free port
+     * @throws IOException
+     *         if the port cannot be bound
+     */
+    public MetricsServer(PlaybackMetrics metrics, int port) throws IOException
+    {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Starts the server if -Dmediaplayer.metrics.port is set.
+     *
+     * @return running server, or null if no port is configured or it cannot be bound
+     */
+    public static MetricsServer startFromSystemProperties()
+    {
+        Integer port = Integer.getInteger("mediaplayer.metrics.port");
+        if (port == null)
+        {
+            return null;
+        }
+        try
+        {
+            MetricsServer metricsServer = new MetricsServer(PlaybackMetrics.getInstance(), port);
+            metricsServer.start();
+            return metricsServer;
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not start metrics endpoint on port " + port, ex);
+            return null;
+        }
+    }
+
+    public void start()
+    {
+        server.start();
+        logger.info("Serving metrics at http://{}:{}/metrics.", server.getAddress().getHostString(),
+                    server.getAddress().getPort());
+    }
+
+    public void stop()
+    {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if (!"GET".equals(exchange.getRequestMethod()))
+            {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = format().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return all metrics in Prometheus text exposition format
+     */
+    String format()
+    {
+        StringBuilder text = new StringBuilder(4096);
+        histogram(text, "mediaplayer_open_to_ready_seconds", "Time from constructing media to READY",
+                  metrics.getOpenToReady());
+        counter(text, "mediaplayer_open_failures_total", "Opens that failed", metrics.getOpenFailureCount());
+        histogram(text, "mediaplayer_seek_seconds", "Time from issuing a seek to reaching the target",
+                  metrics.getSeek());
+        histogram(text, "mediaplayer_key_seek_seconds", "Time from a seek key press to reaching the target",
+                  metrics.getKeySeek());
+        counter(text, "mediaplayer_rate_changes_total", "Playback rate changes", metrics.getRateChangeCount());
+        counter(text, "mediaplayer_stalls_total", "Times the player stalled", metrics.getStallCount());
+        histogram(text, "mediaplayer_stall_seconds", "Time spent stalled", metrics.getStall());
+        gauge(text, "mediaplayer_buffer_ahead_seconds", "Media buffered ahead of the position",
+              metrics.getBufferAheadSeconds());
+        counter(text, "mediaplayer_errors_total", "Media errors", metrics.getErrorCount());
+        gauge(text, "mediaplayer_live_players", "Media players holding native resources",
+              metrics.getLivePlayerCount());
+        gauge(text, "mediaplayer_warm_players", "Released media players kept for reuse",
+              metrics.getWarmPlayerCount());
+        histogram(text, "mediaplayer_pulse_work_seconds", "Time spent in the FX pulse handler",
+                  metrics.getPulseWork());
+        histogram(text, "mediaplayer_pulse_interval_seconds", "Time between FX pulses", metrics.getPulseInterval());
+        histogram(text, "mediaplayer_loop_boundary_seconds", "Time lost jumping back at a loop boundary",
+                  metrics.getLoopBoundary());
+        counter(text, "mediaplayer_cache_served_bytes_total", "Remote media bytes served from the cache proxy",
+                metrics.getCacheServedBytes());
+        counter(text, "mediaplayer_cache_fetched_bytes_total", "Remote media bytes fetched from origins",
+                metrics.getCacheFetchedBytes());
+        gauge(text, "mediaplayer_cache_saved_bytes", "Remote media bytes served beyond those fetched",
+              metrics.getCacheSavedBytes());
+        histogram(text, "mediaplayer_cache_stall_seconds", "Time a cache proxy request waited for the origin",
+                  metrics.getCacheStall());
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value)
+    {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder text, String name, String help, double value)
+    {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" gauge\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder text, String name, String help, LatencyHistogram histogram)
+    {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" histogram\n");
+
+        // Buckets from 1 us up to the highest one in use
+        int last = 10;
+        for (int i = histogram.getBucketCount() - 2; i > last; i--)
+        {
+            if (histogram.getBucket(i) > 0)
+            {
+                last = i;
+                break;
+            }
+        }
+        long cumulative = 0;
+        for (int i = 0; i <= last; i++)
+        {
+            cumulative += histogram.getBucket(i);
+            if (i >= 10)
+            {
+                text.append(name).append("_bucket{le=\"")
+                    .append(LatencyHistogram.upperBoundNanos(i) / 1e9).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+        }
+        // Count from the buckets so +Inf matches them even while recording continues
+        long count = cumulative;
+        for (int i = last + 1; i < histogram.getBucketCount(); i++)
+        {
+            count += histogram.getBucket(i);
+        }
+        text.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+        text.append(name).append("_sum ").append(histogram.getSumNanos() / 1e9).append('\n');
+        text.append(name).append("_count ").append(count).append('\n');
+    }
+}
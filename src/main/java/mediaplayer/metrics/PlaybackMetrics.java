@@ -0,0 +1,443 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide playback metrics: open, seek, key-to-seek, stall, pulse, loop boundary and
+ * cache stall latencies, plus rate change, error and failure counts and remote media cache traffic.
+ * <p>
+ * Recording methods are lock-free and safe from any thread. The metrics are
+ * published as the MXBean {@code mediaplayer:type=PlaybackMetrics} and, if
+ * -Dmediaplayer.metrics.port is set, in Prometheus text format by {@link MetricsServer}.
+ */
+public final class PlaybackMetrics implements PlaybackMetricsMXBean
+{
+    private static final Logger logger = LoggerFactory.getLogger(PlaybackMetrics.class);
+
+    /** JMX name the metrics are registered under */
+    public static final String OBJECT_NAME = "mediaplayer:type=PlaybackMetrics";
+
+    private static final PlaybackMetrics INSTANCE = new PlaybackMetrics();
+
+    private final LatencyHistogram openToReady = new LatencyHistogram();
+    private final LatencyHistogram seek = new LatencyHistogram();
+    private final LatencyHistogram keySeek = new LatencyHistogram();
+    private final LatencyHistogram stall = new LatencyHistogram();
+    private final LatencyHistogram pulseWork = new LatencyHistogram();
+    private final LatencyHistogram pulseInterval = new LatencyHistogram();
+    private final LatencyHistogram loopBoundary = new LatencyHistogram();
+    private final LatencyHistogram cacheStall = new LatencyHistogram();
+    private final LongAdder openFailures = new LongAdder();
+    private final LongAdder rateChanges = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder cacheServedBytes = new LongAdder();
+    private final LongAdder cacheFetchedBytes = new LongAdder();
+    private volatile double bufferAheadSeconds;
+    private volatile long livePlayers;
+    private volatile int warmPlayers;
+
+    private PlaybackMetrics()
+    {
+    }
+
+    /**
+     * @return the process-wide metrics
+     */
+    public static PlaybackMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Safe to call more than once.
+     */
+    public void registerMBean()
+    {
+        try
+        {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            }
+        }
+        catch (JMException ex)
+        {
+            logger.warn("Could not register playback metrics MBean", ex);
+        }
+    }
+
+    /**
+     * @param nanos
+     *         Time from constructing the media to the player reporting READY
+     */
+    public void recordOpenToReady(long nanos)
+    {
+        openToReady.record(nanos);
+    }
+
+    public void recordOpenFailure()
+    {
+        openFailures.increment();
+    }
+
+    /**
+     * @param nanos
+     *         Time from issuing a seek to the player reporting the target position
+     */
+    public void recordSeek(long nanos)
+    {
+        seek.record(nanos);
+    }
+
+    /**
+     * @param nanos
+     *         Time from a seek or frame step key press to the player reporting the target position
+     */
+    public void recordKeySeek(long nanos)
+    {
+        keySeek.record(nanos);
+    }
+
+    public void recordRateChange()
+    {
+        rateChanges.increment();
+    }
+
+    /**
+     * Counts the start of a stall; its length is recorded by {@link #recordStallEnd(long)}.
+     */
+    public void recordStallStart()
+    {
+        stalls.increment();
+    }
+
+    /**
+     * @param nanos
+     *         Time the player spent stalled
+     */
+    public void recordStallEnd(long nanos)
+    {
+        stall.record(nanos);
+    }
+
+    /**
+     * @param seconds
+     *         Media buffered ahead of the playback position
+     */
+    public void setBufferAheadSeconds(double seconds)
+    {
+        bufferAheadSeconds = seconds;
+    }
+
+    public void recordError()
+    {
+        errors.increment();
+    }
+
+    /**
+     * @param count
+     *         Media players holding native resources
+     */
+    public void setLivePlayers(long count)
+    {
+        livePlayers = count;
+    }
+
+    /**
+     * @param count
+     *         Released media players kept for reuse
+     */
+    public void setWarmPlayers(int count)
+    {
+        warmPlayers = count;
+    }
+
+    /**
+     * @param workNanos
+     *         Time spent in the pulse handler
+     * @param intervalNanos
+     *         Time since the previous pulse, or a negative value for the first pulse
+     */
+    public void recordPulse(long workNanos, long intervalNanos)
+    {
+        pulseWork.record(workNanos);
+        if (intervalNanos >= 0)
+        {
+            pulseInterval.record(intervalNanos);
+        }
+    }
+
+    /**
+     * @param nanos
+     *         Time lost jumping from the end of a loop back to its start, beyond the
+     *         media time played across the boundary
+     */
+    public void recordLoopBoundary(long nanos)
+    {
+        loopBoundary.record(nanos);
+    }
+
+    /**
+     * @param bytes
+     *         Remote media bytes served to the media stack by the caching proxy
+     */
+    public void recordCacheServed(long bytes)
+    {
+        cacheServedBytes.add(bytes);
+    }
+
+    /**
+     * @param bytes
+     *         Remote media bytes fetched from the origin, on request or ahead of it
+     */
+    public void recordCacheFetched(long bytes)
+    {
+        cacheFetchedBytes.add(bytes);
+    }
+
+    /**
+     * @param nanos
+     *         Time a request to the caching proxy waited for a block from the origin
+     */
+    public void recordCacheStall(long nanos)
+    {
+        cacheStall.record(nanos);
+    }
+
+    public LatencyHistogram getOpenToReady()
+    {
+        return openToReady;
+    }
+
+    public LatencyHistogram getSeek()
+    {
+        return seek;
+    }
+
+    public LatencyHistogram getKeySeek()
+    {
+        return keySeek;
+    }
+
+    public LatencyHistogram getStall()
+    {
+        return stall;
+    }
+
+    public LatencyHistogram getPulseWork()
+    {
+        return pulseWork;
+    }
+
+    public LatencyHistogram getPulseInterval()
+    {
+        return pulseInterval;
+    }
+
+    public LatencyHistogram getLoopBoundary()
+    {
+        return loopBoundary;
+    }
+
+    public LatencyHistogram getCacheStall()
+    {
+        return cacheStall;
+    }
+
+    @Override
+    public long getOpenCount()
+    {
+        return openToReady.getCount();
+    }
+
+    @Override
+    public long getOpenFailureCount()
+    {
+        return openFailures.sum();
+    }
+
+    @Override
+    public double getOpenToReadyMeanMillis()
+    {
+        return toMillis(openToReady.getMeanNanos());
+    }
+
+    @Override
+    public double getOpenToReadyP99Millis()
+    {
+        return toMillis(openToReady.getQuantileNanos(0.99));
+    }
+
+    @Override
+    public long getSeekCount()
+    {
+        return seek.getCount();
+    }
+
+    @Override
+    public double getSeekMeanMillis()
+    {
+        return toMillis(seek.getMeanNanos());
+    }
+
+    @Override
+    public double getSeekP99Millis()
+    {
+        return toMillis(seek.getQuantileNanos(0.99));
+    }
+
+    @Override
+    public long getKeySeekCount()
+    {
+        return keySeek.getCount();
+    }
+
+    @Override
+    public double getKeySeekMeanMillis()
+    {
+        return toMillis(keySeek.getMeanNanos());
+    }
+
+    @Override
+    public double getKeySeekP99Millis()
+    {
+        return toMillis(keySeek.getQuantileNanos(0.99));
+    }
+
+    @Override
+    public long getRateChangeCount()
+    {
+        return rateChanges.sum();
+    }
+
+    @Override
+    public long getStallCount()
+    {
+        return stalls.sum();
+    }
+
+    @Override
+    public double getStallMeanMillis()
+    {
+        return toMillis(stall.getMeanNanos());
+    }
+
+    @Override
+    public double getBufferAheadSeconds()
+    {
+        return bufferAheadSeconds;
+    }
+
+    @Override
+    public long getLivePlayerCount()
+    {
+        return livePlayers;
+    }
+
+    @Override
+    public int getWarmPlayerCount()
+    {
+        return warmPlayers;
+    }
+
+    @Override
+    public long getErrorCount()
+    {
+        return errors.sum();
+    }
+
+    @Override
+    public long getPulseCount()
+    {
+        return pulseWork.getCount();
+    }
+
+    @Override
+    public double getPulseWorkP99Millis()
+    {
+        return toMillis(pulseWork.getQuantileNanos(0.99));
+    }
+
+    @Override
+    public double getPulseIntervalP99Millis()
+    {
+        return toMillis(pulseInterval.getQuantileNanos(0.99));
+    }
+
+    @Override
+    public double getPulseIntervalMaxMillis()
+    {
+        return toMillis(pulseInterval.getMaxNanos());
+    }
+
+    @Override
+    public long getLoopCount()
+    {
+        return loopBoundary.getCount();
+    }
+
+    @Override
+    public double getLoopBoundaryMeanMillis()
+    {
+        return toMillis(loopBoundary.getMeanNanos());
+    }
+
+    @Override
+    public double getLoopBoundaryP99Millis()
+    {
+        return toMillis(loopBoundary.getQuantileNanos(0.99));
+    }
+
+    @Override
+    public double getLoopBoundaryMaxMillis()
+    {
+        return toMillis(loopBoundary.getMaxNanos());
+    }
+
+    @Override
+    public long getCacheServedBytes()
+    {
+        return cacheServedBytes.sum();
+    }
+
+    @Override
+    public long getCacheFetchedBytes()
+    {
+        return cacheFetchedBytes.sum();
+    }
+
+    @Override
+    public long getCacheSavedBytes()
+    {
+        return Math.max(0, getCacheServedBytes() - getCacheFetchedBytes());
+    }
+
+    @Override
+    public long getCacheStallCount()
+    {
+        return cacheStall.getCount();
+    }
+
+    @Override
+    public double getCacheStallMeanMillis()
+    {
+        return toMillis(cacheStall.getMeanNanos());
+    }
+
+    private static double toMillis(long nanos)
+    {
+        return nanos / 1000000.0;
+    }
+}
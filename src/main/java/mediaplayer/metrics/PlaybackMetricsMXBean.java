@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.metrics;
+
+/**
+ * JMX view of {@link PlaybackMetrics}. Latencies are in milliseconds.
+ */
+public interface PlaybackMetricsMXBean
+{
+    long getOpenCount();
+
+    long getOpenFailureCount();
+
+    double getOpenToReadyMeanMillis();
+
+    double getOpenToReadyP99Millis();
+
+    long getSeekCount();
+
+    double getSeekMeanMillis();
+
+    double getSeekP99Millis();
+
+    long getKeySeekCount();
+
+    double getKeySeekMeanMillis();
+
+    double getKeySeekP99Millis();
+
+    long getRateChangeCount();
+
+    long getStallCount();
+
+    double getStallMeanMillis();
+
+    double getBufferAheadSeconds();
+
+    long getLivePlayerCount();
+
+    int getWarmPlayerCount();
+
+    long getErrorCount();
+
+    long getPulseCount();
+
+    double getPulseWorkP99Millis();
+
+    double getPulseIntervalP99Millis();
+
+    double getPulseIntervalMaxMillis();
+
+    long getLoopCount();
+
+    double getLoopBoundaryMeanMillis();
+
+    double getLoopBoundaryP99Millis();
+
+    double getLoopBoundaryMaxMillis();
+
+    long getCacheServedBytes();
+
+    long getCacheFetchedBytes();
+
+    /**
+     * @return remote media bytes served beyond those fetched from the origin
+     */
+    long getCacheSavedBytes();
+
+    long getCacheStallCount();
+
+    double getCacheStallMeanMillis();
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+/**
+ * Player operations the {@link PlaybackEngine} drives. The UI adapts this onto a
+ * JavaFX MediaPlayer; headless callers can substitute their own implementation.
+ * All calls are made from the thread running {@link PlaybackEngine#pulse()}.
+ */
+public interface PlaybackBackend
+{
+    void play();
+
+    void pause();
+
+    void stop();
+
+    /**
+     * @param seconds
+     *         Position to seek to
+     */
+    void seek(double seconds);
+
+    /**
+     * @param rate
+     *         Playback rate
+     */
+    void setRate(double rate);
+
+    /**
+     * @param muted
+     *         Whether audio is muted
+     */
+    void setMute(boolean muted);
+}
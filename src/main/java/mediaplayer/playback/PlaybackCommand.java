@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+/**
+ * A command queued to the {@link PlaybackEngine}. Commands without an argument
+ * are shared constants, so issuing them from UI handlers does not allocate.
+ */
+public final class PlaybackCommand
+{
+    /**
+     * Kinds of command understood by the engine.
+     */
+    public enum Type
+    {
+        /** Play/pause button: pause, or resume at regular speed */
+        PLAY_PAUSE,
+        /** Single click on the scene: pause or resume keeping the current rate */
+        TOGGLE_PLAY,
+        STOP,
+        FAST_FORWARD,
+        REWIND,
+        SKIP_FORWARD,
+        SKIP_BACKWARD,
+        /** Seek to the position in value, coalesced with other seeks */
+        SEEK,
+        /** Seek by the seconds in value from the newest seek target, or from the position if there is none */
+        SEEK_BY,
+        /** Pause and seek by the seconds in value, one frame, like {@link #SEEK_BY} */
+        STEP_FRAME,
+        /** Play at the rate in value, negative for backwards */
+        SET_RATE,
+        /**
+         * Media finished opening; value holds its duration in seconds, seekIndex its chapters
+         * and keyframes its keyframe times if known
+         */
+        MEDIA_READY,
+        END_OF_MEDIA,
+        /** Media is being replaced */
+        RESET
+    }
+
+    public static final PlaybackCommand PLAY_PAUSE = new PlaybackCommand(Type.PLAY_PAUSE, 0, null, null);
+    public static final PlaybackCommand TOGGLE_PLAY = new PlaybackCommand(Type.TOGGLE_PLAY, 0, null, null);
+    public static final PlaybackCommand STOP = new PlaybackCommand(Type.STOP, 0, null, null);
+    public static final PlaybackCommand FAST_FORWARD = new PlaybackCommand(Type.FAST_FORWARD, 0, null, null);
+    public static final PlaybackCommand REWIND = new PlaybackCommand(Type.REWIND, 0, null, null);
+    public static final PlaybackCommand SKIP_FORWARD = new PlaybackCommand(Type.SKIP_FORWARD, 0, null, null);
+    public static final PlaybackCommand SKIP_BACKWARD = new PlaybackCommand(Type.SKIP_BACKWARD, 0, null, null);
+    public static final PlaybackCommand END_OF_MEDIA = new PlaybackCommand(Type.END_OF_MEDIA, 0, null, null);
+    public static final PlaybackCommand RESET = new PlaybackCommand(Type.RESET, 0, null, null);
+
+    private final Type type;
+    private final double value;
+    private final SeekIndex seekIndex;
+    private final SeekIndex keyframes;
+    private final long requestedNanos;
+
+    private PlaybackCommand(Type type, double value, SeekIndex seekIndex, SeekIndex keyframes)
+    {
+        this(type, value, seekIndex, keyframes, 0);
+    }
+
+    private PlaybackCommand(Type type, double value, SeekIndex seekIndex, SeekIndex keyframes, long requestedNanos)
+    {
+        this.type = type;
+        this.value = value;
+        this.seekIndex = seekIndex;
+        this.keyframes = keyframes;
+        this.requestedNanos = requestedNanos;
+    }
+
+    /**
+     * @param durationSeconds
+     *         Duration of the opened media
+     * @return command announcing that media is ready to play, using evenly spaced seek points
+     */
+    public static PlaybackCommand mediaReady(double durationSeconds)
+    {
+        return mediaReady(durationSeconds, null);
+    }
+
+    /**
+     * @param durationSeconds
+     *         Duration of the opened media
+     * @param seekIndex
+     *         Chapters or markers of the media; null or empty for evenly spaced seek points
+     * @return command announcing that media is ready to play
+     */
+    public static PlaybackCommand mediaReady(double durationSeconds, SeekIndex seekIndex)
+    {
+        return mediaReady(durationSeconds, seekIndex, null);
+    }
+
+    /**
+     * @param durationSeconds
+     *         Duration of the opened media
+     * @param seekIndex
+     *         Chapters or markers of the media; null or empty for evenly spaced seek points
+     * @param keyframes
+     *         Keyframe times that scans snap to; null or empty to scan to any position
+     * @return command announcing that media is ready to play
+     */
+    public static PlaybackCommand mediaReady(double durationSeconds, SeekIndex seekIndex, SeekIndex keyframes)
+    {
+        return new PlaybackCommand(Type.MEDIA_READY, durationSeconds, seekIndex, keyframes);
+    }
+
+    /**
+     * @param seconds
+     *         Target position
+     * @return command seeking to a position
+     */
+    public static PlaybackCommand seek(double seconds)
+    {
+        return new PlaybackCommand(Type.SEEK, seconds, null, null);
+    }
+
+    /**
+     * Seeks relative to the newest target, so that repeated requests, such as a held key,
+     * add up while being coalesced into a single pending seek.
+     *
+     * @param seconds
+     *         Seconds to move, negative to move back
+     * @param requestedNanos
+     *         {@link System#nanoTime()} of the input that asked for the seek, for its latency
+     * @return command seeking by an offset
+     */
+    public static PlaybackCommand seekBy(double seconds, long requestedNanos)
+    {
+        return new PlaybackCommand(Type.SEEK_BY, seconds, null, null, requestedNanos);
+    }
+
+    /**
+     * @param frames
+     *         Frames to step, negative to step back
+     * @param frameRate
+     *         Frames per second of the media
+     * @param requestedNanos
+     *         {@link System#nanoTime()} of the input that asked for the step, for its latency
+     * @return command pausing and stepping by whole frames
+     * @throws IllegalArgumentException
+     *         if the frame rate is not positive
+     */
+    public static PlaybackCommand stepFrames(int frames, double frameRate, long requestedNanos)
+    {
+        if (!(frameRate > 0) || Double.isInfinite(frameRate))
+        {
+            throw new IllegalArgumentException("Invalid frame rate: " + frameRate);
+        }
+        return new PlaybackCommand(Type.STEP_FRAME, frames / frameRate, null, null, requestedNanos);
+    }
+
+    /**
+     * @param rate
+     *         Playback rate, negative to scan backwards; rates beyond what the player
+     *         plays natively are scanned by seeking from keyframe to keyframe
+     * @return command playing at the rate
+     * @throws IllegalArgumentException
+     *         if the rate is zero or not finite
+     */
+    public static PlaybackCommand setRate(double rate)
+    {
+        if (rate == 0 || Double.isNaN(rate) || Double.isInfinite(rate))
+        {
+            throw new IllegalArgumentException("Invalid playback rate: " + rate);
+        }
+        return new PlaybackCommand(Type.SET_RATE, rate, null, null);
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public double getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return seek points carried by a MEDIA_READY command, or null
+     */
+    public SeekIndex getSeekIndex()
+    {
+        return seekIndex;
+    }
+
+    /**
+     * @return keyframe times carried by a MEDIA_READY command, or null
+     */
+    public SeekIndex getKeyframes()
+    {
+        return keyframes;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the input behind a SEEK_BY or STEP_FRAME command, or 0
+     */
+    public long getRequestedNanos()
+    {
+        return requestedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + "(" + value + ")";
+    }
+}
@@ -0,0 +1,545 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * UI-independent playback state machine.
+ * <p>
+ * The engine owns status, rate, mute and seek index. Commands may be submitted
+ * from any thread; they are queued and applied on the next {@link #pulse()}, which
+ * drives the {@link PlaybackBackend} and notifies the listener once if anything changed.
+ * The backend's own status is never queried. Rates the backend cannot play, backwards
+ * or beyond {@link TrickPlay#MAX_NATIVE_RATE}, are played as a {@link TrickPlay} scan
+ * while the status stays PLAYING.
+ */
+public class PlaybackEngine
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final int NUM_SEEK_POINTS = 3;
+
+    private final PlaybackBackend backend;
+    private final SeekScheduler seekScheduler;
+    private final TrickPlay trickPlay;
+    private final Queue<PlaybackCommand> commands = new ConcurrentLinkedQueue<>();
+    private PlaybackListener listener;
+
+    private PlaybackStatus status = PlaybackStatus.NO_MEDIA;
+    private RateTier rateTier = RateTier.NORMAL;
+    private double rate = 1.0;
+    private boolean muted;
+    private int seekIndex = -1;
+    private double durationSeconds;
+    private SeekIndex seekPoints = SeekIndex.EMPTY;
+    private SeekIndex keyframes = SeekIndex.EMPTY;
+    private volatile double positionSeconds;
+    private volatile double sampledSeconds;
+
+    private boolean changed;
+    private PlaybackState state = new PlaybackState(status, rateTier, rate, muted, seekIndex);
+
+    /**
+     * @param backend
+     *         Player operations to drive
+     */
+    public PlaybackEngine(PlaybackBackend backend)
+    {
+        this.backend = backend;
+        this.seekScheduler = new SeekScheduler(backend);
+        this.trickPlay = new TrickPlay(seekScheduler);
+    }
+
+    /**
+     * @param listener
+     *         Receives the new state after each pulse that changed it
+     */
+    public void setListener(PlaybackListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a command for the next pulse. Safe to call from any thread.
+     *
+     * @param command
+     *         Command to apply
+     */
+    public void submit(PlaybackCommand command)
+    {
+        commands.offer(command);
+    }
+
+    /**
+     * Records the current media position, as reported by the player.
+     *
+     * @param seconds
+     *         Current position
+     */
+    public void updatePosition(double seconds)
+    {
+        positionSeconds = seconds;
+        sampledSeconds = seconds;
+    }
+
+    /**
+     * @return last position reported through {@link #updatePosition(double)}
+     */
+    public double getPosition()
+    {
+        return positionSeconds;
+    }
+
+    /**
+     * @return duration of the current media in seconds, or 0 if none is ready
+     */
+    public double getDuration()
+    {
+        return durationSeconds;
+    }
+
+    /**
+     * @return scheduler coalescing this engine's seeks, for its latency statistics
+     */
+    public SeekScheduler getSeekScheduler()
+    {
+        return seekScheduler;
+    }
+
+    /**
+     * @return scanner stepping through rates the backend cannot play, for its step count
+     */
+    public TrickPlay getTrickPlay()
+    {
+        return trickPlay;
+    }
+
+    /**
+     * @return state published by the last pulse
+     */
+    public PlaybackState getState()
+    {
+        return state;
+    }
+
+    /**
+     * Applies all queued commands and publishes the resulting state if it changed.
+     * Must be called from the thread that owns the backend.
+     *
+     * @return true if the state changed
+     */
+    public boolean pulse()
+    {
+        PlaybackCommand command;
+        while ((command = commands.poll()) != null)
+        {
+            apply(command);
+        }
+        long nowNanos = System.nanoTime();
+        onScanProgress(trickPlay.onPulse(nowNanos));
+        seekScheduler.onPulse(sampledSeconds, nowNanos);
+
+        if (!changed)
+        {
+            return false;
+        }
+        changed = false;
+        state = new PlaybackState(status, rateTier, rate, muted, seekIndex);
+        if (listener != null)
+        {
+            listener.stateChanged(state);
+        }
+        return true;
+    }
+
+    private void apply(PlaybackCommand command)
+    {
+        switch (command.getType())
+        {
+            case PLAY_PAUSE:
+                if (status == PlaybackStatus.PLAYING)
+                {
+                    logger.debug("Pausing media.");
+                    pause();
+                    setTier(RateTier.NORMAL);
+                }
+                else if (status != PlaybackStatus.NO_MEDIA)
+                {
+                    logger.debug("Playing media at regular speed.");
+                    setTier(RateTier.NORMAL);
+                    play();
+                }
+                break;
+            case TOGGLE_PLAY:
+                if (status == PlaybackStatus.PLAYING)
+                {
+                    logger.debug("Pausing video with single-click.");
+                    pause();
+                }
+                else if (status != PlaybackStatus.NO_MEDIA)
+                {
+                    logger.debug("Playing video with single-click.");
+                    play();
+                }
+                break;
+            case STOP:
+                if (status == PlaybackStatus.PLAYING || status == PlaybackStatus.PAUSED)
+                {
+                    stop();
+                    setTier(RateTier.NORMAL);
+                    logger.debug("Media stopped.");
+                }
+                break;
+            case FAST_FORWARD:
+                fastForward();
+                break;
+            case REWIND:
+                rewind();
+                break;
+            case SKIP_FORWARD:
+                if (status != PlaybackStatus.NO_MEDIA)
+                {
+                    setTier(RateTier.NORMAL);
+                    logger.debug("Skipping forward.");
+                    skipForward(positionSeconds);
+                }
+                break;
+            case SKIP_BACKWARD:
+                if (status == PlaybackStatus.PLAYING || status == PlaybackStatus.PAUSED)
+                {
+                    if (positionSeconds == 0.0)
+                    {
+                        stop();
+                        logger.debug("Already at start of media.");
+                    }
+                    else
+                    {
+                        logger.debug("Skipping backward.");
+                        skipBackward(positionSeconds);
+                    }
+                }
+                break;
+            case SEEK:
+                if (status != PlaybackStatus.NO_MEDIA)
+                {
+                    seek(command.getValue(), seekIndex);
+                    if (trickPlay.isActive())
+                    {
+                        // Carry on scanning from where the user seeked to
+                        startScan();
+                    }
+                }
+                break;
+            case SEEK_BY:
+                if (status != PlaybackStatus.NO_MEDIA)
+                {
+                    seekBy(command.getValue(), command.getRequestedNanos());
+                    if (trickPlay.isActive())
+                    {
+                        startScan();
+                    }
+                }
+                break;
+            case STEP_FRAME:
+                if (status == PlaybackStatus.PLAYING || status == PlaybackStatus.PAUSED)
+                {
+                    if (status == PlaybackStatus.PLAYING)
+                    {
+                        pause();
+                    }
+                    seekBy(command.getValue(), command.getRequestedNanos());
+                }
+                break;
+            case SET_RATE:
+                if (status != PlaybackStatus.NO_MEDIA)
+                {
+                    logger.debug("Playing media at {}x.", command.getValue());
+                    setRate(command.getValue());
+                    if (status != PlaybackStatus.PLAYING)
+                    {
+                        play();
+                    }
+                }
+                break;
+            case MEDIA_READY:
+                durationSeconds = command.getValue();
+                seekPoints = command.getSeekIndex() != null && command.getSeekIndex().size() > 0
+                             ? command.getSeekIndex()
+                             : SeekIndex.evenlySpaced(durationSeconds, NUM_SEEK_POINTS);
+                keyframes = command.getKeyframes() != null ? command.getKeyframes() : SeekIndex.EMPTY;
+                logger.debug("Using {} seek points and {} keyframes.", seekPoints.size(), keyframes.size());
+                setTier(RateTier.NORMAL);
+                seekIndex = -1;
+                play();
+                logger.debug("Playing media at regular speed.");
+                break;
+            case END_OF_MEDIA:
+                stop();
+                logger.info("End of media reached.");
+                break;
+            case RESET:
+                status = PlaybackStatus.NO_MEDIA;
+                rateTier = RateTier.NORMAL;
+                rate = 1.0;
+                muted = false;
+                seekIndex = -1;
+                durationSeconds = 0;
+                seekPoints = SeekIndex.EMPTY;
+                keyframes = SeekIndex.EMPTY;
+                trickPlay.stop();
+                positionSeconds = 0;
+                sampledSeconds = 0;
+                seekScheduler.reset();
+                changed = true;
+                break;
+        }
+    }
+
+    private void fastForward()
+    {
+        // Permits fast-forwarding from a paused state
+        if (status == PlaybackStatus.PAUSED)
+        {
+            logger.debug("Fast-forwarding from paused state.");
+            setTier(RateTier.X1_3);
+            play();
+        }
+        // Permits increasing rate on each press, returning to normal play after max is reached
+        else if (status == PlaybackStatus.PLAYING)
+        {
+            setTier(RateTier.nextForward(rate));
+            logRate();
+        }
+    }
+
+    private void rewind()
+    {
+        if (status == PlaybackStatus.NO_MEDIA)
+        {
+            return;
+        }
+        // Nothing to scan back over: play from the start
+        if (status == PlaybackStatus.STOPPED || positionSeconds == 0.0)
+        {
+            seek(0, -1);
+            logger.debug("Rewinding media.");
+            setTier(RateTier.NORMAL);
+            play();
+            logger.debug("Playing media from start.");
+        }
+        // Permits scanning backwards from a paused state
+        else if (status == PlaybackStatus.PAUSED)
+        {
+            logger.debug("Scanning backwards from paused state.");
+            setTier(RateTier.REVERSE_X2);
+            play();
+        }
+        // Permits scanning backwards faster on each press, returning to normal play after max is reached
+        else
+        {
+            setTier(RateTier.nextReverse(rate));
+            logRate();
+        }
+    }
+
+    private void logRate()
+    {
+        if (rateTier == RateTier.NORMAL)
+        {
+            logger.debug("Playing media at regular speed.");
+        }
+        else
+        {
+            logger.debug("Playing media at {}x.", rate);
+        }
+    }
+
+    /**
+     * Returns to regular play when a scan runs into either end of the media. At the end
+     * the player is left to reach it itself, so the usual end-of-media handling runs.
+     */
+    private void onScanProgress(TrickPlay.Progress progress)
+    {
+        switch (progress)
+        {
+            case REACHED_START:
+                logger.debug("Scan reached start of media, playing from start.");
+                seek(0, -1);
+                setTier(RateTier.NORMAL);
+                play();
+                break;
+            case REACHED_END:
+                logger.debug("Scan reached end of media.");
+                seek(durationSeconds, seekIndex);
+                setTier(RateTier.NORMAL);
+                play();
+                break;
+            case SCANNING:
+                break;
+        }
+    }
+
+    private void skipForward(double currentLocation)
+    {
+        int next = seekPoints.nextIndex(currentLocation);
+        if (next >= 0)
+        {
+            seek(seekPoints.get(next), next);
+            logger.debug("Skipping to seek point {}.", next + 1);
+        }
+        else
+        {
+            logger.debug("End of media reached, setting back to start.");
+            seek(0, -1);
+        }
+        play();
+    }
+
+    private void skipBackward(double currentLocation)
+    {
+        int previous = seekPoints.previousIndex(currentLocation);
+        if (previous >= 0)
+        {
+            seek(seekPoints.get(previous), previous);
+            pause();
+        }
+        else
+        {
+            seek(0, -1);
+            logger.debug("Start of media.");
+        }
+    }
+
+    private void play()
+    {
+        if (TrickPlay.isNeeded(rate))
+        {
+            startScan();
+        }
+        else
+        {
+            trickPlay.stop();
+            backend.play();
+        }
+        setStatus(PlaybackStatus.PLAYING);
+    }
+
+    /**
+     * Pauses the backend and scans from the newest seek target, or the current position.
+     */
+    private void startScan()
+    {
+        double target = seekScheduler.getTarget();
+        double from = Double.isNaN(target) ? positionSeconds : target;
+        backend.pause();
+        trickPlay.start(rate, from, durationSeconds, keyframes, System.nanoTime());
+        logger.debug("Scanning at {}x from {} s over {} keyframes.", rate, from, keyframes.size());
+    }
+
+    private void pause()
+    {
+        trickPlay.stop();
+        backend.pause();
+        setStatus(PlaybackStatus.PAUSED);
+    }
+
+    private void stop()
+    {
+        trickPlay.stop();
+        backend.stop();
+        seekScheduler.reset();
+        positionSeconds = 0;
+        seekIndex = -1;
+        setStatus(PlaybackStatus.STOPPED);
+    }
+
+    /**
+     * Seeks from the newest target rather than the sampled position, which lags behind seeks
+     * still in flight, so that repeated relative seeks add up.
+     */
+    private void seekBy(double seconds, long requestedNanos)
+    {
+        double target = seekScheduler.getTarget();
+        double from = Double.isNaN(target) ? positionSeconds : target;
+        double to = Math.max(0, from + seconds);
+        if (durationSeconds > 0)
+        {
+            to = Math.min(durationSeconds, to);
+        }
+        seek(to, seekIndex, requestedNanos);
+    }
+
+    private void seek(double seconds, int index)
+    {
+        seek(seconds, index, 0);
+    }
+
+    private void seek(double seconds, int index, long requestedNanos)
+    {
+        seekScheduler.request(seconds, requestedNanos);
+        positionSeconds = seconds;
+        if (seekIndex != index)
+        {
+            seekIndex = index;
+            changed = true;
+        }
+    }
+
+    private void setStatus(PlaybackStatus newStatus)
+    {
+        if (status != newStatus)
+        {
+            status = newStatus;
+            changed = true;
+        }
+    }
+
+    private void setTier(RateTier tier)
+    {
+        setRate(tier.getRate());
+    }
+
+    /**
+     * Changes the rate. Native rates go to the backend; switching to or from a rate that
+     * must be scanned while playing starts or ends the scan.
+     */
+    private void setRate(double newRate)
+    {
+        if (rate != newRate)
+        {
+            boolean wasScanning = TrickPlay.isNeeded(rate);
+            rate = newRate;
+            rateTier = RateTier.forRate(newRate);
+            changed = true;
+            if (!TrickPlay.isNeeded(newRate))
+            {
+                backend.setRate(newRate);
+            }
+            if (status == PlaybackStatus.PLAYING)
+            {
+                if (TrickPlay.isNeeded(newRate))
+                {
+                    startScan();
+                }
+                else if (wasScanning)
+                {
+                    trickPlay.stop();
+                    backend.play();
+                }
+            }
+        }
+        boolean mute = RateTier.isMutedAt(newRate);
+        if (muted != mute)
+        {
+            muted = mute;
+            backend.setMute(muted);
+            changed = true;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+/**
+ * Receives engine state changes.
+ */
+@FunctionalInterface
+public interface PlaybackListener
+{
+    /**
+     * @param state
+     *         State after all commands of the pulse were applied
+     */
+    void stateChanged(PlaybackState state);
+}
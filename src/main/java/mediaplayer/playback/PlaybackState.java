@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+/**
+ * Immutable snapshot of the engine state, published at most once per pulse.
+ */
+public final class PlaybackState
+{
+    private final PlaybackStatus status;
+    private final RateTier rateTier;
+    private final double rate;
+    private final boolean muted;
+    private final int seekIndex;
+
+    PlaybackState(PlaybackStatus status, RateTier rateTier, double rate, boolean muted, int seekIndex)
+    {
+        this.status = status;
+        this.rateTier = rateTier;
+        this.rate = rate;
+        this.muted = muted;
+        this.seekIndex = seekIndex;
+    }
+
+    public PlaybackStatus getStatus()
+    {
+        return status;
+    }
+
+    public RateTier getRateTier()
+    {
+        return rateTier;
+    }
+
+    /**
+     * @return playback rate, negative when scanning backwards
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    public boolean isMuted()
+    {
+        return muted;
+    }
+
+    /**
+     * @return index of the seek point last skipped to, or -1 for the start of media
+     */
+    public int getSeekIndex()
+    {
+        return seekIndex;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PlaybackState[" + status + ", " + rateTier + ", rate=" + rate + ", muted=" + muted + ", seekIndex=" + seekIndex + "]";
+    }
+}
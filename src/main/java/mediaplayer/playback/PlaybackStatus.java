@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+/**
+ * Playback status as tracked by the {@link PlaybackEngine}.
+ */
+public enum PlaybackStatus
+{
+    /** No media loaded, or media still opening */
+    NO_MEDIA,
+    PLAYING,
+    PAUSED,
+    STOPPED
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+/**
+ * Steps of the fast-forward and rewind rate ladders. Each press of fast-forward moves
+ * to the next forward tier and each press of rewind to the next reverse tier; the last
+ * tier of either ladder wraps back to regular speed. Rates the player cannot play
+ * natively are scanned by {@link TrickPlay}.
+ */
+public enum RateTier
+{
+    NORMAL(1.0),
+    X1_3(1.3),
+    X2(2.0),
+    X4(4.0),
+    X8(8.0),
+    X16(16.0),
+    X32(32.0),
+    REVERSE_X2(-2.0),
+    REVERSE_X4(-4.0),
+    REVERSE_X8(-8.0),
+    REVERSE_X16(-16.0),
+    REVERSE_X32(-32.0),
+    /** A rate off the ladders, chosen from the rate menu or through the API */
+    CUSTOM(Double.NaN);
+
+    private static final RateTier[] FORWARD = {X1_3, X2, X4, X8, X16, X32};
+    private static final RateTier[] REVERSE = {REVERSE_X2, REVERSE_X4, REVERSE_X8, REVERSE_X16, REVERSE_X32};
+
+    private final double rate;
+
+    RateTier(double rate)
+    {
+        this.rate = rate;
+    }
+
+    /**
+     * @return playback rate of this tier, NaN for {@link #CUSTOM}
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * @return whether audio is muted at this tier
+     */
+    public boolean isMuted()
+    {
+        return isMutedAt(rate);
+    }
+
+    /**
+     * @param rate
+     *         Playback rate
+     * @return whether audio is muted at the rate: when scanning backwards or at double speed and above
+     */
+    public static boolean isMutedAt(double rate)
+    {
+        return rate < 0 || rate >= 2.0;
+    }
+
+    /**
+     * @return next tier on the ladder, wrapping to {@link #NORMAL} after the fastest
+     */
+    public RateTier next()
+    {
+        return rate < 0 ? nextReverse(rate) : nextForward(rate);
+    }
+
+    /**
+     * @param rate
+     *         Current playback rate
+     * @return first forward tier faster than the rate, {@link #X1_3} when going backwards,
+     *         or {@link #NORMAL} after the fastest
+     */
+    public static RateTier nextForward(double rate)
+    {
+        for (RateTier tier : FORWARD)
+        {
+            if (tier.rate > rate)
+            {
+                return tier;
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * @param rate
+     *         Current playback rate
+     * @return first reverse tier faster backwards than the rate, {@link #REVERSE_X2} when
+     *         going forwards, or {@link #NORMAL} after the fastest
+     */
+    public static RateTier nextReverse(double rate)
+    {
+        for (RateTier tier : REVERSE)
+        {
+            if (tier.rate < rate)
+            {
+                return tier;
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * @param rate
+     *         Playback rate
+     * @return tier with exactly the rate, or {@link #CUSTOM}
+     */
+    public static RateTier forRate(double rate)
+    {
+        for (RateTier tier : values())
+        {
+            if (tier.rate == rate)
+            {
+                return tier;
+            }
+        }
+        return CUSTOM;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, sorted set of seek points (chapters or markers) in seconds.
+ * Next/previous lookups are binary searches, so skipping stays O(log n)
+ * for media with thousands of markers.
+ */
+public final class SeekIndex
+{
+    /** Index without any seek points */
+    public static final SeekIndex EMPTY = new SeekIndex(new double[0]);
+
+    private final double[] points;
+
+    private SeekIndex(double[] points)
+    {
+        this.points = points;
+    }
+
+    /**
+     * Builds an index from unordered points. Points at or before the start of
+     * media, NaNs and duplicates are dropped.
+     *
+     * @param seconds
+     *         Seek points in seconds
+     * @return index over the points
+     */
+    public static SeekIndex of(double[] seconds)
+    {
+        double[] sorted = seconds.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (double point : sorted)
+        {
+            if (point > 0 && !Double.isNaN(point) && (count == 0 || point != sorted[count - 1]))
+            {
+                sorted[count++] = point;
+            }
+        }
+        return count == 0 ? EMPTY : new SeekIndex(Arrays.copyOf(sorted, count));
+    }
+
+    /**
+     * Builds evenly spaced seek points, dividing the media into {@code count + 1} segments.
+     *
+     * @param durationSeconds
+     *         Media duration
+     * @param count
+     *         Number of seek points
+     * @return index over the points
+     */
+    public static SeekIndex evenlySpaced(double durationSeconds, int count)
+    {
+        double[] points = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            points[i] = durationSeconds / (count + 1) * (i + 1);
+        }
+        return of(points);
+    }
+
+    /**
+     * @return number of seek points
+     */
+    public int size()
+    {
+        return points.length;
+    }
+
+    /**
+     * @param index
+     *         Seek point index
+     * @return position of the seek point in seconds
+     */
+    public double get(int index)
+    {
+        return points[index];
+    }
+
+    /**
+     * @param seconds
+     *         Current position
+     * @return index of the first seek point after the position, or -1 if there is none
+     */
+    public int nextIndex(double seconds)
+    {
+        int low = 0;
+        int high = points.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (points[mid] <= seconds)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low < points.length ? low : -1;
+    }
+
+    /**
+     * @param seconds
+     *         Current position
+     * @return index of the last seek point before the position, or -1 if there is none
+     */
+    public int previousIndex(double seconds)
+    {
+        int low = 0;
+        int high = points.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (points[mid] < seconds)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Latest-wins seek coalescer.
+ * <p>
+ * At most one seek is in flight at a time. Requests arriving while a seek is in flight
+ * only replace the pending target, so a fast scrub issues one seek per completed seek
+ * instead of flooding the player. A seek counts as complete once the sampled position
+ * reaches its target, or after a timeout for positions the player never reports. A seek
+ * shorter than the arrival tolerance, such as a frame step, only counts once the sampled
+ * position has moved.
+ * <p>
+ * Requests may carry the time of the input behind them; the latency from the newest
+ * such input to the seek landing is reported separately from the issue-to-landing time.
+ * Not thread-safe; driven from {@link PlaybackEngine#pulse()}.
+ */
+public class SeekScheduler
+{
+    /** Distance from the target at which a seek is considered to have landed */
+    static final double ARRIVAL_TOLERANCE_SECONDS = 0.25;
+
+    /** Time after which an in-flight seek is given up on and the next one issued */
+    static final long TIMEOUT_NANOS = 1000000000L;
+
+    private final PlaybackBackend backend;
+    private LongConsumer latencyListener;
+    private LongConsumer inputLatencyListener;
+
+    private boolean hasPending;
+    private double pendingTarget;
+    private long pendingRequestedNanos;
+    private boolean inFlight;
+    private double inFlightTarget;
+    private long inFlightRequestedNanos;
+    private double issuedFromSeconds;
+    private long issuedNanos;
+
+    private long issuedSeeks;
+    private long completedSeeks;
+    private long droppedSeeks;
+    private long timedOutSeeks;
+    private long lastLatencyNanos;
+    private long maxLatencyNanos;
+    private long totalLatencyNanos;
+
+    /**
+     * @param backend
+     *         Player the seeks are issued to
+     */
+    public SeekScheduler(PlaybackBackend backend)
+    {
+        this.backend = backend;
+    }
+
+    /**
+     * @param listener
+     *         Receives the completion latency in nanoseconds of every landed seek; may be null
+     */
+    public void setLatencyListener(LongConsumer listener)
+    {
+        this.latencyListener = listener;
+    }
+
+    /**
+     * @param listener
+     *         Receives the time in nanoseconds from the input behind a landed seek to its landing; may be null
+     */
+    public void setInputLatencyListener(LongConsumer listener)
+    {
+        this.inputLatencyListener = listener;
+    }
+
+    /**
+     * Requests a seek. Replaces any target that has not been issued yet.
+     *
+     * @param seconds
+     *         Target position
+     */
+    public void request(double seconds)
+    {
+        request(seconds, 0);
+    }
+
+    /**
+     * Requests a seek on behalf of an input. Replaces any target that has not been issued yet.
+     *
+     * @param seconds
+     *         Target position
+     * @param requestedNanos
+     *         {@link System#nanoTime()} of the input, or 0 if the seek was not asked for by one
+     */
+    public void request(double seconds, long requestedNanos)
+    {
+        if (inFlight && !hasPending && seconds == inFlightTarget)
+        {
+            return;
+        }
+        if (hasPending)
+        {
+            droppedSeeks++;
+        }
+        hasPending = true;
+        pendingTarget = seconds;
+        pendingRequestedNanos = requestedNanos;
+    }
+
+    /**
+     * Completes the in-flight seek if it has landed, then issues the pending target if any.
+     *
+     * @param sampledSeconds
+     *         Position last reported by the player
+     * @param nowNanos
+     *         Current {@link System#nanoTime()}
+     */
+    public void onPulse(double sampledSeconds, long nowNanos)
+    {
+        if (inFlight)
+        {
+            // A target within the tolerance of where the seek started is only reached once the position moves
+            boolean moved = sampledSeconds != issuedFromSeconds || inFlightTarget == issuedFromSeconds;
+            if (moved && Math.abs(sampledSeconds - inFlightTarget) <= ARRIVAL_TOLERANCE_SECONDS)
+            {
+                complete(nowNanos);
+            }
+            else if (nowNanos - issuedNanos > TIMEOUT_NANOS)
+            {
+                timedOutSeeks++;
+                inFlight = false;
+            }
+            else
+            {
+                return;
+            }
+        }
+
+        if (hasPending)
+        {
+            hasPending = false;
+            inFlight = true;
+            inFlightTarget = pendingTarget;
+            inFlightRequestedNanos = pendingRequestedNanos;
+            issuedFromSeconds = sampledSeconds;
+            issuedNanos = nowNanos;
+            issuedSeeks++;
+            backend.seek(inFlightTarget);
+        }
+    }
+
+    private void complete(long nowNanos)
+    {
+        inFlight = false;
+        completedSeeks++;
+        lastLatencyNanos = nowNanos - issuedNanos;
+        totalLatencyNanos += lastLatencyNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, lastLatencyNanos);
+        if (latencyListener != null)
+        {
+            latencyListener.accept(lastLatencyNanos);
+        }
+        if (inputLatencyListener != null && inFlightRequestedNanos != 0)
+        {
+            inputLatencyListener.accept(nowNanos - inFlightRequestedNanos);
+        }
+    }
+
+    /**
+     * Forgets pending and in-flight seeks, e.g. when media is replaced. Statistics are kept.
+     */
+    public void reset()
+    {
+        hasPending = false;
+        inFlight = false;
+    }
+
+    /**
+     * @return true if no seek is pending or in flight
+     */
+    public boolean isIdle()
+    {
+        return !hasPending && !inFlight;
+    }
+
+    /**
+     * @return the newest requested target, pending or in flight, or NaN if idle
+     */
+    public double getTarget()
+    {
+        if (hasPending)
+        {
+            return pendingTarget;
+        }
+        return inFlight ? inFlightTarget : Double.NaN;
+    }
+
+    /**
+     * @return number of seeks issued to the player
+     */
+    public long getIssuedSeeks()
+    {
+        return issuedSeeks;
+    }
+
+    /**
+     * @return number of seeks that landed on their target
+     */
+    public long getCompletedSeeks()
+    {
+        return completedSeeks;
+    }
+
+    /**
+     * @return number of requested targets replaced before they were issued
+     */
+    public long getDroppedSeeks()
+    {
+        return droppedSeeks;
+    }
+
+    /**
+     * @return number of seeks abandoned after the timeout
+     */
+    public long getTimedOutSeeks()
+    {
+        return timedOutSeeks;
+    }
+
+    /**
+     * @return completion latency of the last landed seek in nanoseconds
+     */
+    public long getLastLatencyNanos()
+    {
+        return lastLatencyNanos;
+    }
+
+    /**
+     * @return highest completion latency seen in nanoseconds
+     */
+    public long getMaxLatencyNanos()
+    {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * @return mean completion latency in nanoseconds, or 0 before the first completed seek
+     */
+    public long getMeanLatencyNanos()
+    {
+        return completedSeeks == 0 ? 0 : totalLatencyNanos / completedSeeks;
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playback;
+
+/**
+ * Scans media at rates the player cannot play: backwards, or faster than
+ * {@link #MAX_NATIVE_RATE}.
+ * <p>
+ * The player stays paused while a scan runs as a timed sequence of seeks. A scan clock
+ * advances from the starting position at the requested rate; each step seeks to the
+ * keyframe at or before the clock, where the decoder can show a frame without decoding
+ * a whole group of pictures. Steps are issued through the {@link SeekScheduler}, at most
+ * one in flight and no more often than the frame budget allows
+ * (-Dmediaplayer.trickplay.stepsPerSecond, default 8). A slow seek therefore never
+ * queues more work on the FX thread; the next step simply lands further along, so the
+ * scan keeps its rate and shows fewer frames.
+ * <p>
+ * Not thread-safe; driven from {@link PlaybackEngine#pulse()}.
+ */
+public class TrickPlay
+{
+    /** Fastest rate the JavaFX media player plays natively */
+    public static final double MAX_NATIVE_RATE = 8.0;
+
+    private static final int STEPS_PER_SECOND = Integer.getInteger("mediaplayer.trickplay.stepsPerSecond", 8);
+    private static final long MIN_STEP_NANOS = 1000000000L / Math.max(1, STEPS_PER_SECOND);
+
+    /**
+     * Outcome of a pulse of a running scan.
+     */
+    public enum Progress
+    {
+        /** Scan continues */
+        SCANNING,
+        /** Reverse scan reached the start of media */
+        REACHED_START,
+        /** Forward scan reached the end of media */
+        REACHED_END
+    }
+
+    private final SeekScheduler seekScheduler;
+
+    private boolean active;
+    private double rate;
+    private double originSeconds;
+    private long originNanos;
+    private double durationSeconds;
+    private SeekIndex keyframes = SeekIndex.EMPTY;
+    private long lastStepNanos;
+    private double lastTarget;
+    private long steps;
+
+    /**
+     * @param seekScheduler
+     *         Scheduler the steps are issued through
+     */
+    public TrickPlay(SeekScheduler seekScheduler)
+    {
+        this.seekScheduler = seekScheduler;
+    }
+
+    /**
+     * @param rate
+     *         Playback rate
+     * @return whether the rate has to be scanned rather than played natively
+     */
+    public static boolean isNeeded(double rate)
+    {
+        return rate < 0 || rate > MAX_NATIVE_RATE;
+    }
+
+    /**
+     * Starts or restarts a scan. The first step is issued on the next pulse.
+     *
+     * @param rate
+     *         Scan rate, negative for backwards
+     * @param fromSeconds
+     *         Position to scan from
+     * @param durationSeconds
+     *         Duration of the media
+     * @param keyframes
+     *         Keyframe times to snap steps to; empty to step to any position
+     * @param nowNanos
+     *         Current {@link System#nanoTime()}
+     */
+    public void start(double rate, double fromSeconds, double durationSeconds, SeekIndex keyframes, long nowNanos)
+    {
+        this.active = true;
+        this.rate = rate;
+        this.originSeconds = fromSeconds;
+        this.originNanos = nowNanos;
+        this.durationSeconds = durationSeconds;
+        this.keyframes = keyframes;
+        this.lastStepNanos = nowNanos - MIN_STEP_NANOS;
+        this.lastTarget = fromSeconds;
+    }
+
+    /**
+     * Ends the scan. Seeks already handed to the scheduler still complete.
+     */
+    public void stop()
+    {
+        active = false;
+    }
+
+    /**
+     * @return whether a scan is running
+     */
+    public boolean isActive()
+    {
+        return active;
+    }
+
+    /**
+     * Issues the next step if the last one has landed and the step interval has passed.
+     * Must be called before the scheduler's own pulse so a step is issued in the same pulse.
+     *
+     * @param nowNanos
+     *         Current {@link System#nanoTime()}
+     * @return whether the scan continues or ran into either end of the media
+     */
+    public Progress onPulse(long nowNanos)
+    {
+        if (!active || nowNanos - lastStepNanos < MIN_STEP_NANOS || !seekScheduler.isIdle())
+        {
+            return Progress.SCANNING;
+        }
+        double clock = originSeconds + rate * (nowNanos - originNanos) / 1e9;
+        if (clock <= 0)
+        {
+            active = false;
+            return Progress.REACHED_START;
+        }
+        if (durationSeconds > 0 && clock >= durationSeconds)
+        {
+            active = false;
+            return Progress.REACHED_END;
+        }
+
+        double target = snap(clock);
+        if (target != lastTarget)
+        {
+            seekScheduler.request(target);
+            lastTarget = target;
+            lastStepNanos = nowNanos;
+            steps++;
+        }
+        return Progress.SCANNING;
+    }
+
+    /**
+     * @return the keyframe at or before the position, or the position itself without keyframes
+     */
+    private double snap(double seconds)
+    {
+        if (keyframes.size() == 0)
+        {
+            return seconds;
+        }
+        int index = keyframes.previousIndex(Math.nextUp(seconds));
+        return index < 0 ? 0 : keyframes.get(index);
+    }
+
+    /**
+     * @return current scan rate
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * @return number of steps issued since construction
+     */
+    public long getSteps()
+    {
+        return steps;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playlist;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * Read-only list of playlist positions for a list view, backed by an int array or
+ * standing for all positions in order without any array at all.
+ * <p>
+ * Replaced as a whole when the rows change, so a list view over 100,000 entries holds one
+ * int per row at most and boxes only the rows it asks for.
+ */
+final class IntRows extends ObservableListBase<Integer>
+{
+    private final int[] rows;
+    private final int size;
+
+    private IntRows(int[] rows, int size)
+    {
+        this.rows = rows;
+        this.size = size;
+    }
+
+    /**
+     * @param size
+     *         Number of positions
+     * @return rows 0 to size - 1
+     */
+    static IntRows all(int size)
+    {
+        return new IntRows(null, size);
+    }
+
+    /**
+     * @param rows
+     *         Positions, owned by the list from now on
+     * @param size
+     *         Number of positions used
+     * @return rows of the given positions
+     */
+    static IntRows of(int[] rows, int size)
+    {
+        return new IntRows(rows, size);
+    }
+
+    @Override
+    public Integer get(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Row " + index + " of " + size);
+        }
+        return rows != null ? rows[index] : index;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param position
+     *         Playlist position
+     * @return row showing the position, or -1
+     */
+    int rowOf(int position)
+    {
+        if (rows == null)
+        {
+            return position < size ? position : -1;
+        }
+        // Rows are in play order, so ascending
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            if (rows[middle] < position)
+            {
+                low = middle + 1;
+            }
+            else if (rows[middle] > position)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+}
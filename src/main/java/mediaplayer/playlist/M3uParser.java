@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playlist;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming parser for M3U and M3U8 playlists.
+ * <p>
+ * Lines are read one at a time and handed on as entries, so memory use does not grow with
+ * the file beyond what the receiver keeps. {@code #EXTINF} lines supply the duration and
+ * title of the entry that follows; other comments are skipped. Locations relative to the
+ * playlist are resolved against its directory, once per distinct directory.
+ */
+public final class M3uParser
+{
+    private static final String EXTINF = "#EXTINF:";
+    /** Tag only found in HLS playlists, which are media rather than lists of media */
+    private static final String HLS_TAG = "#EXT-X-";
+    private static final int HLS_PEEK_BYTES = 4096;
+
+    /**
+     * Receives parsed entries.
+     */
+    @FunctionalInterface
+    public interface Sink
+    {
+        /**
+         * @param directory
+         *         Absolute directory or URL prefix of the entry, ending with its separator
+         * @param name
+         *         File name
+         * @param title
+         *         Title from {@code #EXTINF}, or null
+         * @param durationSeconds
+         *         Duration from {@code #EXTINF}, or {@link PlaylistStore#UNKNOWN_DURATION}
+         */
+        void entry(String directory, String name, String title, int durationSeconds);
+    }
+
+    private M3uParser()
+    {
+    }
+
+    /**
+     * @param path
+     *         File path or URL
+     * @return whether the path names an M3U or M3U8 file, which may still be an HLS playlist
+     */
+    public static boolean isPlaylistFile(String path)
+    {
+        String lower = path.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".m3u") || lower.endsWith(".m3u8");
+    }
+
+    /**
+     * @param file
+     *         M3U or M3U8 file
+     * @return whether the file is an HLS playlist, to be played as media rather than imported
+     * @throws IOException
+     *         if the file cannot be read
+     */
+    public static boolean isHls(Path file) throws IOException
+    {
+        byte[] head = new byte[HLS_PEEK_BYTES];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(file))
+        {
+            int count;
+            while (length < head.length && (count = in.read(head, length, head.length - length)) > 0)
+            {
+                length += count;
+            }
+        }
+        return new String(head, 0, length, StandardCharsets.ISO_8859_1).contains(HLS_TAG);
+    }
+
+    /**
+     * Parses a playlist.
+     *
+     * @param reader
+     *         Playlist text
+     * @param baseDirectory
+     *         Directory relative locations are resolved against
+     * @param sink
+     *         Receives the entries in order
+     * @return number of entries
+     * @throws IOException
+     *         if the playlist cannot be read
+     */
+    public static int parse(BufferedReader reader, Path baseDirectory, Sink sink) throws IOException
+    {
+        Map<String, String> resolvedDirectories = new HashMap<>();
+        boolean windowsSeparators = File.separatorChar == '\\';
+        String title = null;
+        int durationSeconds = PlaylistStore.UNKNOWN_DURATION;
+        int entries = 0;
+
+        String line = reader.readLine();
+        if (line != null && !line.isEmpty() && line.charAt(0) == '\uFEFF')
+        {
+            // Byte order mark
+            line = line.substring(1);
+        }
+        for (; line != null; line = reader.readLine())
+        {
+            line = line.trim();
+            if (line.isEmpty())
+            {
+                continue;
+            }
+            if (line.charAt(0) == '#')
+            {
+                if (line.startsWith(EXTINF))
+                {
+                    int comma = titleComma(line);
+                    durationSeconds = parseDuration(line, comma);
+                    title = comma >= 0 && comma + 1 < line.length() ? line.substring(comma + 1).trim() : null;
+                }
+                continue;
+            }
+
+            String location = line;
+            if (location.startsWith("file:"))
+            {
+                location = toPath(location);
+            }
+            boolean url = location.indexOf("://") > 0;
+            if (!url && !windowsSeparators)
+            {
+                // Exports made on Windows
+                location = location.replace('\\', '/');
+            }
+            int query = url ? location.indexOf('?') : -1;
+            int slash = lastSeparator(location, query >= 0 ? query : location.length());
+            String directory = location.substring(0, slash + 1);
+            String name = location.substring(slash + 1);
+            if (!url)
+            {
+                directory = resolvedDirectories.computeIfAbsent(directory,
+                                                                raw -> resolveDirectory(baseDirectory, raw));
+            }
+            sink.entry(directory, name, title, durationSeconds);
+            entries++;
+            title = null;
+            durationSeconds = PlaylistStore.UNKNOWN_DURATION;
+        }
+        return entries;
+    }
+
+    /**
+     * @return index of the comma before the title, skipping commas in quoted attributes
+     */
+    private static int titleComma(String line)
+    {
+        boolean quoted = false;
+        for (int i = EXTINF.length(); i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (c == '"')
+            {
+                quoted = !quoted;
+            }
+            else if (c == ',' && !quoted)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whole seconds before the first space or comma, or unknown for -1 and malformed values
+     */
+    private static int parseDuration(String line, int comma)
+    {
+        int end = comma >= 0 ? comma : line.length();
+        int space = line.indexOf(' ', EXTINF.length());
+        if (space >= 0 && space < end)
+        {
+            end = space;
+        }
+        try
+        {
+            double seconds = Double.parseDouble(line.substring(EXTINF.length(), end));
+            return seconds >= 0 ? (int) Math.min(Integer.MAX_VALUE, Math.round(seconds))
+                                : PlaylistStore.UNKNOWN_DURATION;
+        }
+        catch (NumberFormatException ex)
+        {
+            return PlaylistStore.UNKNOWN_DURATION;
+        }
+    }
+
+    private static int lastSeparator(String location, int end)
+    {
+        for (int i = end - 1; i >= 0; i--)
+        {
+            char c = location.charAt(i);
+            if (c == '/' || c == '\\')
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return file path of a file URL, with escaped characters decoded; the URL itself if malformed
+     */
+    private static String toPath(String fileUrl)
+    {
+        try
+        {
+            return Paths.get(URI.create(fileUrl)).toString();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return fileUrl;
+        }
+    }
+
+    /**
+     * @return absolute directory with a trailing separator; the raw directory if it is not a valid path
+     */
+    private static String resolveDirectory(Path baseDirectory, String directory)
+    {
+        try
+        {
+            String path = baseDirectory.resolve(directory).normalize().toString();
+            return path.endsWith(File.separator) ? path : path + File.separator;
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return directory;
+        }
+    }
+}
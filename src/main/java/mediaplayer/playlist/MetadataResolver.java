@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playlist;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.application.Platform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mediaplayer.media.MediaProbe;
+import mediaplayer.media.ProbeResult;
+
+/**
+ * Reads durations and titles of playlist entries from the media itself, only for entries
+ * that are on screen.
+ * <p>
+ * Cells ask for the entries they show and give them up when they are reused. Requests are
+ * served newest first on one background thread, and entries scrolled out of view before
+ * their turn are skipped, so flinging through a large playlist only probes the rows it
+ * comes to rest on. Local MP3 and MP4 files are probed; other entries are marked
+ * unresolvable so they are not asked for again. Results are applied on the FX application
+ * thread, followed by a single refresh for however many arrived together.
+ */
+class MetadataResolver
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "playlist-metadata");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PlaylistStore store;
+    private final Runnable refresh;
+    private final Set<Integer> visible = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> requested = ConcurrentHashMap.newKeySet();
+    private final Deque<Integer> pending = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    /** Only used on the FX application thread */
+    private boolean refreshScheduled;
+
+    /**
+     * @param store
+     *         Entries to resolve
+     * @param refresh
+     *         Called on the FX application thread after results were applied
+     */
+    MetadataResolver(PlaylistStore store, Runnable refresh)
+    {
+        this.store = store;
+        this.refresh = refresh;
+    }
+
+    /**
+     * Marks an entry as shown, resolving it if its duration is not known yet.
+     *
+     * @param entry
+     *         Entry index
+     */
+    void show(int entry)
+    {
+        visible.add(entry);
+        if (store.getDurationSeconds(entry) == PlaylistStore.UNKNOWN_DURATION && requested.add(entry))
+        {
+            pending.addFirst(entry);
+            if (draining.compareAndSet(false, true))
+            {
+                executor.execute(this::drain);
+            }
+        }
+    }
+
+    /**
+     * Marks an entry as no longer shown.
+     *
+     * @param entry
+     *         Entry index
+     */
+    void hide(int entry)
+    {
+        visible.remove(entry);
+    }
+
+    /**
+     * Stops resolving; results still in flight are dropped.
+     */
+    void shutdown()
+    {
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private void drain()
+    {
+        while (true)
+        {
+            Integer entry = pending.pollFirst();
+            if (entry == null)
+            {
+                draining.set(false);
+                // A request may have been queued after the poll but before the flag was cleared
+                if (pending.isEmpty() || !draining.compareAndSet(false, true))
+                {
+                    return;
+                }
+                continue;
+            }
+            if (!visible.contains(entry))
+            {
+                // Scrolled away before its turn; asked for again if it comes back
+                requested.remove(entry);
+                continue;
+            }
+            resolve(entry);
+        }
+    }
+
+    private void resolve(int entry)
+    {
+        String location = store.getLocation(entry);
+        int durationSeconds = PlaylistStore.UNRESOLVABLE_DURATION;
+        String title = null;
+        try
+        {
+            Path file = location.contains("://") ? null : Paths.get(location);
+            if (file != null && MediaProbe.canProbe(file))
+            {
+                ProbeResult probe = MediaProbe.probe(file);
+                durationSeconds = (int) Math.round(probe.getDurationMicros() / 1000000.0);
+                title = probe.getTags().get("title");
+            }
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            logger.debug("Could not probe playlist entry {}: {}", location, ex.getMessage());
+        }
+
+        int resolvedSeconds = durationSeconds;
+        String resolvedTitle = title;
+        Platform.runLater(() ->
+        {
+            store.setResolved(entry, resolvedSeconds, resolvedTitle);
+            // Results applied before the refresh runs are shown by it too
+            if (!refreshScheduled)
+            {
+                refreshScheduled = true;
+                Platform.runLater(() ->
+                {
+                    refreshScheduled = false;
+                    refresh.run();
+                });
+            }
+        });
+    }
+}
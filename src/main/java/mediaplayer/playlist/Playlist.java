@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playlist;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link PlaylistStore} with a play order that can be shuffled and searched.
+ * <p>
+ * Positions are places in the play order and entries are places in the store; without
+ * shuffling the two are the same. The play order is an int array, so shuffling 100,000
+ * entries is a single pass over 400 KB. {@link #getUrls()} is a view in play order rather
+ * than a copy, so a play queue can be backed by the playlist without building a string
+ * per entry. The order must only be changed from the FX application thread.
+ */
+public class Playlist
+{
+    private final String name;
+    private final PlaylistStore store;
+    private final List<String> urls = new UrlView();
+    private int[] order;
+    private boolean shuffled;
+
+    /**
+     * @param name
+     *         Name to show for the playlist
+     * @param store
+     *         Entries, no longer appended to
+     */
+    public Playlist(String name, PlaylistStore store)
+    {
+        this.name = name;
+        this.store = store;
+        this.order = identity(store.size());
+    }
+
+    /**
+     * Imports an M3U or M3U8 file. M3U8 files are UTF-8; M3U files are read as UTF-8 if they
+     * decode cleanly and as ISO-8859-1 otherwise.
+     *
+     * @param file
+     *         Playlist file
+     * @return playlist of the file's entries
+     * @throws IOException
+     *         if the file cannot be read
+     */
+    public static Playlist importM3u(Path file) throws IOException
+    {
+        boolean utf8Only = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".m3u8");
+        PlaylistStore store;
+        try
+        {
+            store = read(file, StandardCharsets.UTF_8, !utf8Only);
+        }
+        catch (CharacterCodingException ex)
+        {
+            store = read(file, StandardCharsets.ISO_8859_1, false);
+        }
+        return new Playlist(file.getFileName().toString(), store);
+    }
+
+    private static PlaylistStore read(Path file, Charset charset, boolean strict) throws IOException
+    {
+        CodingErrorAction onError = strict ? CodingErrorAction.REPORT : CodingErrorAction.REPLACE;
+        PlaylistStore store = new PlaylistStore();
+        Path base = file.toAbsolutePath().getParent();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(file), charset.newDecoder().onMalformedInput(onError)
+                                                   .onUnmappableCharacter(onError)), 64 * 1024))
+        {
+            M3uParser.parse(reader, base, store::add);
+        }
+        return store;
+    }
+
+    /**
+     * @return name of the playlist, usually its file name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    public PlaylistStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size()
+    {
+        return order.length;
+    }
+
+    /**
+     * @param position
+     *         Place in the play order
+     * @return entry at the position
+     */
+    public int getEntry(int position)
+    {
+        return order[position];
+    }
+
+    /**
+     * @return URLs of the entries in play order, a live view reflecting later shuffles
+     */
+    public List<String> getUrls()
+    {
+        return urls;
+    }
+
+    /**
+     * @return whether the play order is shuffled
+     */
+    public boolean isShuffled()
+    {
+        return shuffled;
+    }
+
+    /**
+     * Shuffles the play order, keeping the entry at one position where it is so playback
+     * can continue from it.
+     *
+     * @param keepPosition
+     *         Position whose entry stays put, or -1
+     * @param random
+     *         Source of randomness
+     */
+    public void shuffle(int keepPosition, Random random)
+    {
+        int kept = keepPosition >= 0 ? order[keepPosition] : -1;
+        for (int i = order.length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        if (kept >= 0)
+        {
+            // One more pass to find where the kept entry went; still linear
+            for (int i = 0; i < order.length; i++)
+            {
+                if (order[i] == kept)
+                {
+                    order[i] = order[keepPosition];
+                    order[keepPosition] = kept;
+                    break;
+                }
+            }
+        }
+        shuffled = true;
+    }
+
+    /**
+     * Shuffles the play order with a thread-local random source.
+     *
+     * @param keepPosition
+     *         Position whose entry stays put, or -1
+     */
+    public void shuffle(int keepPosition)
+    {
+        shuffle(keepPosition, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Restores the playlist's own order.
+     *
+     * @param position
+     *         Position of an entry to follow, or -1
+     * @return position of that entry in the restored order, or -1
+     */
+    public int unshuffle(int position)
+    {
+        int entry = position >= 0 ? order[position] : -1;
+        order = identity(order.length);
+        shuffled = false;
+        return entry;
+    }
+
+    /**
+     * Finds the positions of entries whose shown title contains the query, ignoring the case
+     * of ASCII letters.
+     * <p>
+     * Entries are tested in store order, which reads the text pool front to back whatever
+     * the play order, and the matches are then collected in play order.
+     *
+     * @param query
+     *         Text to find
+     * @param positions
+     *         Receives the matching positions in play order; at least {@link #size()} long
+     * @return number of matches
+     */
+    public int search(String query, int[] positions)
+    {
+        byte[] folded = PlaylistStore.foldQuery(query);
+        long[] signature = PlaylistStore.querySignature(folded);
+        long[] matched = new long[(order.length + 63) >>> 6];
+        int matches = 0;
+        for (int entry = 0; entry < order.length; entry++)
+        {
+            if (store.matches(entry, folded, signature))
+            {
+                matched[entry >>> 6] |= 1L << entry;
+                matches++;
+            }
+        }
+        if (!shuffled)
+        {
+            return collect(matched, positions);
+        }
+        int count = 0;
+        for (int position = 0; position < order.length && count < matches; position++)
+        {
+            int entry = order[position];
+            if ((matched[entry >>> 6] & 1L << entry) != 0)
+            {
+                positions[count++] = position;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of set bits, whose indexes are written to the positions in ascending order
+     */
+    private static int collect(long[] bits, int[] positions)
+    {
+        int count = 0;
+        for (int word = 0; word < bits.length; word++)
+        {
+            long remaining = bits[word];
+            while (remaining != 0)
+            {
+                positions[count++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+            }
+        }
+        return count;
+    }
+
+    private static int[] identity(int size)
+    {
+        int[] identity = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            identity[i] = i;
+        }
+        return identity;
+    }
+
+    /**
+     * Entry URLs in the current play order, built on access.
+     */
+    private class UrlView extends AbstractList<String>
+    {
+        @Override
+        public String get(int position)
+        {
+            return store.getUrl(order[position]);
+        }
+
+        @Override
+        public int size()
+        {
+            return order.length;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playlist;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mediaplayer.progress.ElapsedTimeFormatter;
+
+/**
+ * Window listing an imported playlist, with search and shuffle.
+ * <p>
+ * The list view is virtualized with a fixed row height, so only the rows on screen have
+ * cells, and its items are playlist positions rather than entry objects. Cells read the
+ * title and duration straight from the {@link PlaylistStore} and ask the
+ * {@link MetadataResolver} for durations the playlist did not list. Searching replaces
+ * the items with the matching positions and runs on every keystroke.
+ * <p>
+ * Playlists are imported on a background thread and start playing from the first entry
+ * once imported. Must only be used from the FX application thread.
+ */
+public class PlaylistPanel
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final double ROW_HEIGHT = 24;
+    private static final double WIDTH = 480;
+    private static final double HEIGHT = 600;
+    private static final String PLAYING_STYLE = "-fx-font-weight: bold;";
+
+    /**
+     * Receives what the user does in the panel.
+     */
+    public interface Listener
+    {
+        /**
+         * @param position
+         *         Playlist position chosen to play
+         */
+        void onPlay(int position);
+
+        /**
+         * Called after the play order was shuffled or restored.
+         *
+         * @param playingPosition
+         *         New position of the playing entry, or -1 if none is playing
+         */
+        void onReorder(int playingPosition);
+    }
+
+    private final ExecutorService importer = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "playlist-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Stage owner;
+    private final Listener listener;
+    private Stage stage;
+    private TextField searchField;
+    private ToggleButton shuffleButton;
+    private Label countLabel;
+    private ListView<Integer> listView;
+    private Playlist playlist;
+    private MetadataResolver resolver;
+    private IntRows rows;
+    private int[] matches;
+    private int playingPosition = -1;
+
+    /**
+     * @param owner
+     *         Window the panel belongs to
+     * @param listener
+     *         Receives plays and reorders
+     */
+    public PlaylistPanel(Stage owner, Listener listener)
+    {
+        this.owner = owner;
+        this.listener = listener;
+    }
+
+    /**
+     * Imports an M3U or M3U8 file in the background, then shows it and plays its first entry.
+     *
+     * @param file
+     *         Playlist file
+     */
+    public void importFile(Path file)
+    {
+        importer.execute(() ->
+        {
+            long startNanos = System.nanoTime();
+            try
+            {
+                Playlist imported = Playlist.importM3u(file);
+                logger.info("Imported {} entries from {} in {} ms, {} bytes per entry.", imported.size(), file,
+                            (System.nanoTime() - startNanos) / 1000000,
+                            imported.size() > 0 ? imported.getStore().getFootprintBytes() / imported.size() : 0);
+                Platform.runLater(() ->
+                {
+                    setPlaylist(imported);
+                    if (imported.size() > 0)
+                    {
+                        listener.onPlay(0);
+                    }
+                });
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Could not import playlist " + file, ex);
+            }
+        });
+    }
+
+    /**
+     * @return the shown playlist, or null before the first import
+     */
+    public Playlist getPlaylist()
+    {
+        return playlist;
+    }
+
+    /**
+     * @return URLs of the shown playlist in play order, a live view; empty before the first import
+     */
+    public List<String> getUrls()
+    {
+        return playlist != null ? playlist.getUrls() : Collections.emptyList();
+    }
+
+    /**
+     * Highlights the playing entry.
+     *
+     * @param position
+     *         Position of the playing entry, or -1 if the playlist is not playing
+     */
+    public void setPlaying(int position)
+    {
+        if (position == playingPosition)
+        {
+            return;
+        }
+        playingPosition = position;
+        if (listView != null)
+        {
+            listView.refresh();
+        }
+    }
+
+    /**
+     * Stops background work and closes the window.
+     */
+    public void shutdown()
+    {
+        importer.shutdownNow();
+        if (resolver != null)
+        {
+            resolver.shutdown();
+        }
+        if (stage != null)
+        {
+            stage.close();
+        }
+    }
+
+    private void setPlaylist(Playlist imported)
+    {
+        ensureStage();
+        if (resolver != null)
+        {
+            resolver.shutdown();
+        }
+        playlist = imported;
+        resolver = new MetadataResolver(imported.getStore(), listView::refresh);
+        matches = new int[imported.size()];
+        playingPosition = -1;
+        shuffleButton.setSelected(false);
+        searchField.clear();
+        applySearch();
+
+        stage.setTitle(imported.getName());
+        stage.show();
+        stage.toFront();
+    }
+
+    private void ensureStage()
+    {
+        if (stage != null)
+        {
+            return;
+        }
+        searchField = new TextField();
+        searchField.setPromptText("Search");
+        searchField.textProperty().addListener((observable, oldText, newText) -> applySearch());
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+
+        shuffleButton = new ToggleButton("Shuffle");
+        shuffleButton.setOnAction(event -> toggleShuffle());
+        countLabel = new Label();
+
+        HBox toolbar = new HBox(6, searchField, shuffleButton, countLabel);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        toolbar.setPadding(new Insets(6));
+
+        listView = new ListView<>();
+        // Fixed height rows are laid out without measuring every cell
+        listView.setFixedCellSize(ROW_HEIGHT);
+        listView.setCellFactory(view -> new EntryCell());
+        listView.setOnMouseClicked(event ->
+        {
+            if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2)
+            {
+                playSelected();
+            }
+        });
+        listView.setOnKeyPressed(event ->
+        {
+            if (event.getCode() == KeyCode.ENTER)
+            {
+                playSelected();
+            }
+        });
+        VBox.setVgrow(listView, Priority.ALWAYS);
+
+        stage = new Stage();
+        stage.initOwner(owner);
+        stage.setScene(new Scene(new VBox(toolbar, listView), WIDTH, HEIGHT));
+    }
+
+    private void playSelected()
+    {
+        Integer position = listView.getSelectionModel().getSelectedItem();
+        if (position != null)
+        {
+            listener.onPlay(position);
+        }
+    }
+
+    /**
+     * Shuffles or restores the play order, keeping the playing entry playing.
+     */
+    private void toggleShuffle()
+    {
+        if (shuffleButton.isSelected())
+        {
+            playlist.shuffle(playingPosition);
+        }
+        else
+        {
+            playingPosition = playlist.unshuffle(playingPosition);
+        }
+        listener.onReorder(playingPosition);
+        applySearch();
+    }
+
+    /**
+     * Shows the positions matching the search text, or all of them without any.
+     */
+    private void applySearch()
+    {
+        String query = searchField.getText();
+        if (query.isEmpty())
+        {
+            rows = IntRows.all(playlist.size());
+        }
+        else
+        {
+            long startNanos = System.nanoTime();
+            int count = playlist.search(query, matches);
+            rows = IntRows.of(Arrays.copyOf(matches, count), count);
+            logger.debug("Found {} of {} entries matching '{}' in {} us.", count, playlist.size(), query,
+                         (System.nanoTime() - startNanos) / 1000);
+        }
+        listView.setItems(rows);
+        countLabel.setText(query.isEmpty() ? playlist.size() + " entries" : rows.size() + " of " + playlist.size());
+
+        int playingRow = rows.rowOf(playingPosition);
+        if (query.isEmpty() && playingRow >= 0)
+        {
+            listView.scrollTo(playingRow);
+        }
+    }
+
+    /**
+     * Row showing the title and duration of the entry at a position.
+     */
+    private class EntryCell extends ListCell<Integer>
+    {
+        private final Label title = new Label();
+        private final Label duration = new Label();
+        private final HBox content;
+        private int entry = -1;
+
+        EntryCell()
+        {
+            Region spacer = new Region();
+            HBox.setHgrow(spacer, Priority.ALWAYS);
+            title.setMinWidth(0);
+            duration.setMinWidth(Region.USE_PREF_SIZE);
+            content = new HBox(8, title, spacer, duration);
+            content.setAlignment(Pos.CENTER_LEFT);
+        }
+
+        @Override
+        protected void updateItem(Integer position, boolean empty)
+        {
+            super.updateItem(position, empty);
+            if (entry >= 0)
+            {
+                resolver.hide(entry);
+                entry = -1;
+            }
+            if (empty || position == null)
+            {
+                setGraphic(null);
+                return;
+            }
+
+            PlaylistStore store = playlist.getStore();
+            entry = playlist.getEntry(position);
+            title.setText(store.getTitle(entry));
+            int seconds = store.getDurationSeconds(entry);
+            duration.setText(seconds >= 0 ? ElapsedTimeFormatter.toHhMmSs(seconds) : "");
+            setStyle(position == playingPosition ? PLAYING_STYLE : "");
+            setGraphic(content);
+            resolver.show(entry);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.playlist;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Playlist entries in parallel primitive arrays, so that a six-figure playlist holds no
+ * object per entry.
+ * <p>
+ * Each entry is a directory, stored once per distinct directory, plus a file name and
+ * title encoded as UTF-8 back to back in one shared byte pool. A title that only repeats
+ * the file name without its extension is not stored at all. Durations are whole seconds,
+ * {@link #UNKNOWN_DURATION} until known.
+ * <p>
+ * Searches look at the title shown for an entry: its title from the playlist or, once
+ * resolved, from the media tags, otherwise its file name without the extension. Resolved
+ * titles are appended to the pool after the entries. Every entry carries a 128-bit
+ * signature of the letters, digits and adjacent pairs of them in the shown title, renewed
+ * when a title is resolved. {@link #matches(int, byte[], long[])} rejects entries lacking
+ * any of the query's bits without reading their text, and answers a single letter or digit
+ * from the signature alone.
+ * <p>
+ * Entries are only appended while importing, on one thread. Once handed over, locations
+ * and durations may be read from any thread, but titles must only be read, and durations
+ * and resolved titles only set, on the FX application thread, as are searches.
+ */
+public class PlaylistStore
+{
+    /** Duration of an entry that has not been resolved */
+    public static final int UNKNOWN_DURATION = -1;
+    /** Duration of an entry that could not be resolved, so it is not tried again */
+    public static final int UNRESOLVABLE_DURATION = -2;
+
+    private static final int INITIAL_ENTRIES = 1024;
+    private static final int INITIAL_TEXT_BYTES = 64 * 1024;
+    /** Bits 0-35 of the first signature word flag letters and digits */
+    private static final int SYMBOLS = 36;
+    /** The other 28 bits of the first word and all of the second flag hashed pairs of letters and digits */
+    private static final int PAIR_BITS = 128 - SYMBOLS;
+
+    private final List<String> directories = new ArrayList<>();
+    private final Map<String, Integer> directoryIds = new HashMap<>();
+    /** Pool range of titles read from the media tags, start in the upper half and end in the lower */
+    private final Map<Integer, Long> resolvedTitles = new HashMap<>();
+
+    private byte[] text = new byte[INITIAL_TEXT_BYTES];
+    private int textLength;
+    private int[] directory = new int[INITIAL_ENTRIES];
+    private int[] nameStart = new int[INITIAL_ENTRIES];
+    private int[] titleStart = new int[INITIAL_ENTRIES];
+    private int[] duration = new int[INITIAL_ENTRIES];
+    private long[] signature = new long[2 * INITIAL_ENTRIES];
+    private int size;
+    /** End of the last entry in the pool, before any resolved titles */
+    private int entriesEnd;
+
+    /**
+     * Appends an entry.
+     *
+     * @param directoryPath
+     *         Directory or URL prefix of the entry, ending with its separator
+     * @param name
+     *         File name
+     * @param title
+     *         Title, or null to show the file name
+     * @param durationSeconds
+     *         Duration, or {@link #UNKNOWN_DURATION}
+     */
+    public void add(String directoryPath, String name, String title, int durationSeconds)
+    {
+        if (size == directory.length)
+        {
+            int capacity = size + (size >> 1);
+            directory = Arrays.copyOf(directory, capacity);
+            nameStart = Arrays.copyOf(nameStart, capacity);
+            titleStart = Arrays.copyOf(titleStart, capacity);
+            duration = Arrays.copyOf(duration, capacity);
+            signature = Arrays.copyOf(signature, 2 * capacity);
+        }
+        Integer directoryId = directoryIds.get(directoryPath);
+        if (directoryId == null)
+        {
+            directoryId = directories.size();
+            directories.add(directoryPath);
+            directoryIds.put(directoryPath, directoryId);
+        }
+
+        directory[size] = directoryId;
+        nameStart[size] = textLength;
+        append(name);
+        titleStart[size] = textLength;
+        if (title != null && !title.isEmpty() && !title.equals(stem(name)))
+        {
+            append(title);
+        }
+        duration[size] = durationSeconds;
+        entriesEnd = textLength;
+        if (titleStart[size] < textLength)
+        {
+            sign(text, titleStart[size], textLength, signature, 2 * size);
+        }
+        else
+        {
+            sign(text, nameStart[size], stemEnd(size), signature, 2 * size);
+        }
+        size++;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param entry
+     *         Entry index
+     * @return absolute path or URL of the entry, as listed in the playlist
+     */
+    public String getLocation(int entry)
+    {
+        return directories.get(directory[entry]) + decode(nameStart[entry], titleStart[entry]);
+    }
+
+    /**
+     * @param entry
+     *         Entry index
+     * @return URL the media stack can open
+     */
+    public String getUrl(int entry)
+    {
+        String location = getLocation(entry);
+        if (location.contains("://") || location.startsWith("file:"))
+        {
+            return location;
+        }
+        try
+        {
+            return Paths.get(location).toUri().toString();
+        }
+        catch (InvalidPathException ex)
+        {
+            return location;
+        }
+    }
+
+    /**
+     * @param entry
+     *         Entry index
+     * @return title from the playlist or the media tags, otherwise the file name without its extension
+     */
+    public String getTitle(int entry)
+    {
+        int end = endOf(entry);
+        if (titleStart[entry] < end)
+        {
+            return decode(titleStart[entry], end);
+        }
+        Long resolved = resolvedTitles.get(entry);
+        return resolved != null ? decode((int) (resolved >>> 32), (int) (long) resolved)
+                                : stem(decode(nameStart[entry], titleStart[entry]));
+    }
+
+    /**
+     * @param entry
+     *         Entry index
+     * @return duration in seconds, {@link #UNKNOWN_DURATION} or {@link #UNRESOLVABLE_DURATION}
+     */
+    public int getDurationSeconds(int entry)
+    {
+        return duration[entry];
+    }
+
+    /**
+     * Fills in metadata read from the media itself. A title is appended to the pool and the
+     * entry signed again, so that searches find the entry by it.
+     *
+     * @param entry
+     *         Entry index
+     * @param durationSeconds
+     *         Duration, or {@link #UNRESOLVABLE_DURATION}
+     * @param title
+     *         Title from the media tags, or null; only shown if the playlist has none
+     */
+    public void setResolved(int entry, int durationSeconds, String title)
+    {
+        duration[entry] = durationSeconds;
+        if (title != null && !title.isEmpty() && titleStart[entry] == endOf(entry)
+                && !resolvedTitles.containsKey(entry))
+        {
+            int start = textLength;
+            append(title);
+            resolvedTitles.put(entry, (long) start << 32 | textLength);
+            sign(text, start, textLength, signature, 2 * entry);
+        }
+    }
+
+    /**
+     * @return bytes held by the entry arrays, byte pool and directory table, excluding spare capacity
+     *         of the directory collections
+     */
+    public long getFootprintBytes()
+    {
+        long bytes = text.length + 4L * (directory.length + nameStart.length + titleStart.length + duration.length)
+                + 8L * signature.length;
+        for (String path : directories)
+        {
+            // String object, its char array and a map entry
+            bytes += 40 + 2L * path.length() + 48;
+        }
+        // Map entry with boxed key and range per resolved title
+        bytes += 80L * resolvedTitles.size();
+        return bytes;
+    }
+
+    /**
+     * Prepares a query for {@link #matches(int, byte[], long[])}.
+     *
+     * @param query
+     *         Text to find
+     * @return the query as UTF-8 with ASCII letters in lower case
+     */
+    public static byte[] foldQuery(String query)
+    {
+        byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = fold(bytes[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * @param foldedQuery
+     *         Query from {@link #foldQuery(String)}
+     * @return signature bits every entry containing the query has
+     */
+    public static long[] querySignature(byte[] foldedQuery)
+    {
+        long[] signature = new long[2];
+        sign(foldedQuery, 0, foldedQuery.length, signature, 0);
+        return signature;
+    }
+
+    /**
+     * Tests whether the title shown for an entry contains the query, ignoring the case of ASCII letters.
+     *
+     * @param entry
+     *         Entry index
+     * @param foldedQuery
+     *         Query from {@link #foldQuery(String)}
+     * @param querySignature
+     *         Signature from {@link #querySignature(byte[])}
+     * @return whether the entry matches
+     */
+    public boolean matches(int entry, byte[] foldedQuery, long[] querySignature)
+    {
+        if ((signature[2 * entry] & querySignature[0]) != querySignature[0]
+                || (signature[2 * entry + 1] & querySignature[1]) != querySignature[1])
+        {
+            return false;
+        }
+        if (foldedQuery.length == 1 && symbol(foldedQuery[0]) >= 0)
+        {
+            // The signature has a bit per letter and digit, so it is exact for one of them
+            return true;
+        }
+        int end = endOf(entry);
+        if (titleStart[entry] < end)
+        {
+            return contains(titleStart[entry], end, foldedQuery);
+        }
+        Long resolved = resolvedTitles.isEmpty() ? null : resolvedTitles.get(entry);
+        if (resolved != null)
+        {
+            return contains((int) (resolved >>> 32), (int) (long) resolved, foldedQuery);
+        }
+        return contains(nameStart[entry], stemEnd(entry), foldedQuery);
+    }
+
+    private boolean contains(int start, int end, byte[] query)
+    {
+        if (query.length == 0)
+        {
+            return true;
+        }
+        // Both cases of the first byte are compared directly, as most bytes are rejected there
+        byte first = query[0];
+        byte firstUpper = first >= 'a' && first <= 'z' ? (byte) (first - ('a' - 'A')) : first;
+        int last = end - query.length;
+        outer:
+        for (int i = start; i <= last; i++)
+        {
+            byte b = text[i];
+            if (b != first && b != firstUpper)
+            {
+                continue;
+            }
+            for (int j = 1; j < query.length; j++)
+            {
+                if (fold(text[i + j]) != query[j])
+                {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return end of the file name of an entry without its extension, like {@link #stem(String)}
+     */
+    private int stemEnd(int entry)
+    {
+        for (int i = titleStart[entry] - 1; i > nameStart[entry]; i--)
+        {
+            if (text[i] == '.')
+            {
+                return i;
+            }
+        }
+        return titleStart[entry];
+    }
+
+    private int endOf(int entry)
+    {
+        return entry + 1 < size ? nameStart[entry + 1] : entriesEnd;
+    }
+
+    /**
+     * Appends a string to the pool as UTF-8, copying ASCII directly.
+     */
+    private void append(String value)
+    {
+        int length = value.length();
+        ensureText(length);
+        for (int i = 0; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c >= 0x80)
+            {
+                byte[] bytes = value.substring(i).getBytes(StandardCharsets.UTF_8);
+                ensureText(bytes.length);
+                System.arraycopy(bytes, 0, text, textLength, bytes.length);
+                textLength += bytes.length;
+                return;
+            }
+            text[textLength++] = (byte) c;
+        }
+    }
+
+    private void ensureText(int extra)
+    {
+        if (textLength + extra > text.length)
+        {
+            text = Arrays.copyOf(text, Math.max(textLength + extra, text.length + (text.length >> 1)));
+        }
+    }
+
+    private String decode(int start, int end)
+    {
+        return new String(text, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sets the signature bits of some text in two words of a signature array.
+     */
+    private static void sign(byte[] bytes, int start, int end, long[] signatures, int offset)
+    {
+        long low = 0;
+        long high = 0;
+        int previous = -1;
+        for (int i = start; i < end; i++)
+        {
+            int symbol = symbol(fold(bytes[i]));
+            if (symbol < 0)
+            {
+                previous = -1;
+                continue;
+            }
+            low |= 1L << symbol;
+            if (previous >= 0)
+            {
+                int bit = SYMBOLS + (previous * SYMBOLS + symbol) % PAIR_BITS;
+                if (bit < 64)
+                {
+                    low |= 1L << bit;
+                }
+                else
+                {
+                    high |= 1L << (bit - 64);
+                }
+            }
+            previous = symbol;
+        }
+        signatures[offset] = low;
+        signatures[offset + 1] = high;
+    }
+
+    /**
+     * @return 0-25 for letters, 26-35 for digits, -1 for anything else
+     */
+    private static int symbol(byte folded)
+    {
+        if (folded >= 'a' && folded <= 'z')
+        {
+            return folded - 'a';
+        }
+        if (folded >= '0' && folded <= '9')
+        {
+            return 26 + folded - '0';
+        }
+        return -1;
+    }
+
+    private static byte fold(byte b)
+    {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static String stem(String name)
+    {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
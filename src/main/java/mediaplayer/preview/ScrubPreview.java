@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.preview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.control.Slider;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.media.MediaView;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+import javafx.stage.Popup;
+
+import mediaplayer.AppDataDirectory;
+import mediaplayer.progress.SliderTrack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shows frame thumbnails above the position slider while hovering or dragging.
+ * <p>
+ * Thumbnails are captured from the media view at a fixed interval during playback,
+ * kept in a {@link ThumbnailCache} with a hard byte budget and saved per media file
+ * by a {@link ThumbnailStore} when the media is replaced or the player exits, so they
+ * are available immediately on the next open.
+ * <p>
+ * Settings: -Dmediaplayer.thumbnails.interval (seconds, default 10),
+ * -Dmediaplayer.thumbnails.budgetMb (default 64) and
+ * -Dmediaplayer.thumbnails.offHeap (default false).
+ */
+public class ScrubPreview
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final int THUMBNAIL_WIDTH = 160;
+    private static final double POPUP_GAP = 8;
+
+    private static final double INTERVAL_SECONDS =
+            Double.parseDouble(System.getProperty("mediaplayer.thumbnails.interval", "10"));
+    private static final long BUDGET_BYTES =
+            Long.getLong("mediaplayer.thumbnails.budgetMb", 64) * 1024 * 1024;
+    private static final boolean OFF_HEAP = Boolean.getBoolean("mediaplayer.thumbnails.offHeap");
+
+    private final MediaView mediaView;
+    private final Slider slider;
+    private final ThumbnailCache cache = new ThumbnailCache(BUDGET_BYTES, OFF_HEAP);
+    private final ThumbnailStore store;
+    private final ExecutorService storeExecutor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "thumbnail-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+    private WritableImage captureImage;
+
+    private final Popup popup = new Popup();
+    private final ImageView previewView = new ImageView();
+    private WritableImage previewImage;
+    private Thumbnail shownThumbnail;
+
+    private String currentUrl;
+    private boolean hasVideo;
+
+    /**
+     * @param mediaView
+     *         View the thumbnails are captured from
+     * @param slider
+     *         Position slider the preview is shown above
+     */
+    public ScrubPreview(MediaView mediaView, Slider slider)
+    {
+        this.mediaView = mediaView;
+        this.slider = slider;
+        this.store = createStore();
+
+        snapshotParameters.setFill(Color.BLACK);
+        popup.getContent().add(previewView);
+
+        slider.addEventHandler(MouseEvent.MOUSE_MOVED, this::showPreview);
+        slider.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::showPreview);
+        slider.addEventHandler(MouseEvent.MOUSE_EXITED, event -> hidePreview());
+        slider.addEventHandler(MouseEvent.MOUSE_RELEASED, event -> hidePreview());
+    }
+
+    private ThumbnailStore createStore()
+    {
+        try
+        {
+            return new ThumbnailStore(AppDataDirectory.resolve("thumbnails"));
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Thumbnails will not be persisted", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Starts previews for newly opened media, loading any saved thumbnails in the background.
+     *
+     * @param url
+     *         Media URL
+     * @param video
+     *         Whether the media has a video track to capture
+     */
+    public void attach(String url, boolean video)
+    {
+        currentUrl = url;
+        hasVideo = video;
+        cache.clear();
+        // Sized for the new media on its first capture
+        captureImage = null;
+        if (store == null || !video)
+        {
+            return;
+        }
+        storeExecutor.execute(() ->
+        {
+            try
+            {
+                Map<Integer, Thumbnail> loaded = store.load(url, intervalMillis(), cache::allocate);
+                if (!loaded.isEmpty())
+                {
+                    Platform.runLater(() ->
+                    {
+                        if (url.equals(currentUrl))
+                        {
+                            cache.putAll(loaded);
+                            logger.debug("Loaded {} saved thumbnails for {}.", loaded.size(), url);
+                        }
+                    });
+                }
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Could not load thumbnails for " + url, ex);
+            }
+        });
+    }
+
+    /**
+     * Saves the current media's thumbnails in the background and clears the cache.
+     */
+    public void detach()
+    {
+        hidePreview();
+        if (store != null && currentUrl != null && cache.size() > 0)
+        {
+            String url = currentUrl;
+            List<Thumbnail> thumbnails = cache.getAll();
+            storeExecutor.execute(() ->
+            {
+                try
+                {
+                    store.save(url, intervalMillis(), thumbnails);
+                }
+                catch (IOException ex)
+                {
+                    logger.warn("Could not save thumbnails for " + url, ex);
+                }
+            });
+        }
+        currentUrl = null;
+        cache.clear();
+    }
+
+    /**
+     * Waits briefly for queued thumbnail loads and saves, so those of the media open at exit
+     * are not cut off. Call {@link #detach()} first to queue the save.
+     */
+    public void shutdown()
+    {
+        storeExecutor.shutdown();
+        try
+        {
+            storeExecutor.awaitTermination(2, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Captures a thumbnail if playback entered an interval that has none yet.
+     * Called once per pulse.
+     *
+     * @param positionSeconds
+     *         Current media position
+     * @param playing
+     *         Whether the media is playing, so the view shows a fresh frame
+     */
+    public void onPulse(double positionSeconds, boolean playing)
+    {
+        if (!playing || !hasVideo || currentUrl == null)
+        {
+            return;
+        }
+        int bucket = bucketOf(positionSeconds);
+        if (!cache.contains(bucket))
+        {
+            capture(bucket);
+        }
+    }
+
+    private void capture(int bucket)
+    {
+        Bounds bounds = mediaView.getBoundsInLocal();
+        if (bounds.getWidth() <= 0 || bounds.getHeight() <= 0)
+        {
+            return;
+        }
+        double scale = THUMBNAIL_WIDTH / bounds.getWidth();
+        int width = THUMBNAIL_WIDTH;
+        int height = (int) Math.ceil(bounds.getHeight() * scale);
+        // A snapshot into a smaller image is clipped, so grow it for taller media or views
+        if (captureImage == null || captureImage.getWidth() < width || captureImage.getHeight() < height)
+        {
+            captureImage = new WritableImage(width, height);
+        }
+        snapshotParameters.setTransform(Transform.scale(scale, scale));
+        mediaView.snapshot(snapshotParameters, captureImage);
+
+        ByteBuffer pixels = cache.allocate(width * height * 4);
+        captureImage.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(),
+                                                pixels, width * 4);
+        pixels.rewind();
+        cache.put(new Thumbnail(bucket, width, height, pixels));
+    }
+
+    private void showPreview(MouseEvent event)
+    {
+        if (currentUrl == null || slider.getWidth() <= 0)
+        {
+            return;
+        }
+        // Mapped through the track like a click, so the thumbnail is of the time a click here seeks to
+        Thumbnail thumbnail = cache.getNearest(bucketOf(SliderTrack.valueAt(slider, event.getX())));
+        if (thumbnail == null)
+        {
+            hidePreview();
+            return;
+        }
+
+        if (thumbnail != shownThumbnail)
+        {
+            if (previewImage == null || previewImage.getWidth() != thumbnail.getWidth()
+                    || previewImage.getHeight() != thumbnail.getHeight())
+            {
+                previewImage = new WritableImage(thumbnail.getWidth(), thumbnail.getHeight());
+                previewView.setImage(previewImage);
+            }
+            previewImage.getPixelWriter().setPixels(0, 0, thumbnail.getWidth(), thumbnail.getHeight(),
+                                                    PixelFormat.getByteBgraPreInstance(), thumbnail.getPixels(),
+                                                    thumbnail.getWidth() * 4);
+            shownThumbnail = thumbnail;
+        }
+
+        Point2D anchor = slider.localToScreen(event.getX() - thumbnail.getWidth() / 2.0,
+                                              -thumbnail.getHeight() - POPUP_GAP);
+        if (anchor == null)
+        {
+            return;
+        }
+        if (popup.isShowing())
+        {
+            popup.setX(anchor.getX());
+            popup.setY(anchor.getY());
+        }
+        else
+        {
+            popup.show(slider, anchor.getX(), anchor.getY());
+        }
+    }
+
+    private void hidePreview()
+    {
+        popup.hide();
+    }
+
+    private static int bucketOf(double seconds)
+    {
+        return (int) (seconds / INTERVAL_SECONDS);
+    }
+
+    private static int intervalMillis()
+    {
+        return (int) (INTERVAL_SECONDS * 1000);
+    }
+}
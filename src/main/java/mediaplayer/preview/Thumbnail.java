@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.preview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A captured frame, stored as premultiplied BGRA pixels. The pixel buffer is
+ * never modified after capture, so it may be shared between cache and store.
+ */
+public final class Thumbnail
+{
+    private final int bucket;
+    private final int width;
+    private final int height;
+    private final ByteBuffer pixels;
+
+    /**
+     * @param bucket
+     *         Capture interval the frame belongs to
+     * @param width
+     *         Width in pixels
+     * @param height
+     *         Height in pixels
+     * @param pixels
+     *         BGRA premultiplied pixels, {@code width * 4} bytes per row
+     */
+    public Thumbnail(int bucket, int width, int height, ByteBuffer pixels)
+    {
+        this.bucket = bucket;
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public int getBucket()
+    {
+        return bucket;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return read-only view of the pixels, positioned at the start
+     */
+    public ByteBuffer getPixels()
+    {
+        return pixels.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return size of the pixel data in bytes
+     */
+    public int getByteSize()
+    {
+        return pixels.capacity();
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.preview;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of thumbnails for the current media, bounded by a hard byte budget.
+ * Pixel buffers can be allocated off-heap so a large budget does not grow the Java heap.
+ * Must only be used from the FX application thread.
+ */
+public class ThumbnailCache
+{
+    /** Number of neighbouring buckets searched when the requested one has not been captured */
+    private static final int NEAREST_SEARCH_BUCKETS = 2;
+
+    private final long budgetBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<Integer, Thumbnail> thumbnails = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes;
+
+    /**
+     * @param budgetBytes
+     *         Upper bound for the pixel data held by the cache
+     * @param offHeap
+     *         Whether pixel buffers are allocated as direct buffers
+     */
+    public ThumbnailCache(long budgetBytes, boolean offHeap)
+    {
+        this.budgetBytes = budgetBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * @param bytes
+     *         Buffer size
+     * @return empty pixel buffer of the configured kind
+     */
+    public ByteBuffer allocate(int bytes)
+    {
+        return offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+    }
+
+    /**
+     * Adds a thumbnail, evicting the least recently used ones to stay within budget.
+     *
+     * @param thumbnail
+     *         Thumbnail to add
+     */
+    public void put(Thumbnail thumbnail)
+    {
+        if (thumbnail.getByteSize() > budgetBytes)
+        {
+            return;
+        }
+        Thumbnail previous = thumbnails.put(thumbnail.getBucket(), thumbnail);
+        if (previous != null)
+        {
+            usedBytes -= previous.getByteSize();
+        }
+        usedBytes += thumbnail.getByteSize();
+
+        Iterator<Thumbnail> eldest = thumbnails.values().iterator();
+        while (usedBytes > budgetBytes && eldest.hasNext())
+        {
+            usedBytes -= eldest.next().getByteSize();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @param bucket
+     *         Capture interval
+     * @return whether a thumbnail for the bucket is cached
+     */
+    public boolean contains(int bucket)
+    {
+        return thumbnails.containsKey(bucket);
+    }
+
+    /**
+     * Returns the thumbnail for a bucket, or the closest cached neighbour.
+     *
+     * @param bucket
+     *         Capture interval
+     * @return thumbnail, or null if none is cached nearby
+     */
+    public Thumbnail getNearest(int bucket)
+    {
+        Thumbnail thumbnail = thumbnails.get(bucket);
+        for (int distance = 1; thumbnail == null && distance <= NEAREST_SEARCH_BUCKETS; distance++)
+        {
+            thumbnail = thumbnails.get(bucket - distance);
+            if (thumbnail == null)
+            {
+                thumbnail = thumbnails.get(bucket + distance);
+            }
+        }
+        return thumbnail;
+    }
+
+    /**
+     * @return snapshot of the cached thumbnails, least recently used first
+     */
+    public List<Thumbnail> getAll()
+    {
+        return new ArrayList<>(thumbnails.values());
+    }
+
+    /**
+     * Drops all thumbnails.
+     */
+    public void clear()
+    {
+        thumbnails.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * @return bytes of pixel data held
+     */
+    public long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * @return number of cached thumbnails
+     */
+    public int size()
+    {
+        return thumbnails.size();
+    }
+
+    /**
+     * Adds all thumbnails from a map, e.g. one loaded from disk.
+     *
+     * @param loaded
+     *         Thumbnails by bucket
+     */
+    public void putAll(Map<Integer, Thumbnail> loaded)
+    {
+        for (Thumbnail thumbnail : loaded.values())
+        {
+            put(thumbnail);
+        }
+    }
+}
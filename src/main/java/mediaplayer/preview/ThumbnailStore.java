@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.preview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persists thumbnails per media file so that a second open shows previews immediately.
+ * Each media URL maps to one compressed file named after the URL's SHA-1.
+ */
+public class ThumbnailStore
+{
+    private static final int MAGIC = 0x4D505448;  // "MPTH"
+    private static final int VERSION = 1;
+
+    private final Path directory;
+
+    /**
+     * @param directory
+     *         Directory holding the thumbnail files
+     */
+    public ThumbnailStore(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the thumbnails saved for a media URL.
+     *
+     * @param url
+     *         Media URL
+     * @param intervalMillis
+     *         Capture interval the caller uses; files captured at another interval are ignored
+     * @param allocator
+     *         Allocates pixel buffers of the given size
+     * @return thumbnails by bucket, empty if none were saved
+     * @throws IOException
+     *         if the file exists but cannot be read
+     */
+    public Map<Integer, Thumbnail> load(String url, int intervalMillis, IntFunction<ByteBuffer> allocator)
+            throws IOException
+    {
+        Map<Integer, Thumbnail> thumbnails = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(fileFor(url))))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != intervalMillis)
+            {
+                return thumbnails;
+            }
+            int count = in.readInt();
+            byte[] row = new byte[0];
+            for (int i = 0; i < count; i++)
+            {
+                int bucket = in.readInt();
+                int width = in.readUnsignedShort();
+                int height = in.readUnsignedShort();
+                int length = width * height * 4;
+                if (row.length < length)
+                {
+                    row = new byte[length];
+                }
+                in.readFully(row, 0, length);
+                ByteBuffer pixels = allocator.apply(length);
+                pixels.put(row, 0, length).flip();
+                thumbnails.put(bucket, new Thumbnail(bucket, width, height, pixels));
+            }
+        }
+        catch (NoSuchFileException ex)
+        {
+            // Nothing captured for this media yet
+        }
+        return thumbnails;
+    }
+
+    /**
+     * Saves thumbnails for a media URL, replacing any earlier file.
+     *
+     * @param url
+     *         Media URL
+     * @param intervalMillis
+     *         Capture interval of the thumbnails
+     * @param thumbnails
+     *         Thumbnails to save
+     * @throws IOException
+     *         if the file cannot be written
+     */
+    public void save(String url, int intervalMillis, List<Thumbnail> thumbnails) throws IOException
+    {
+        Path file = fileFor(url);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(intervalMillis);
+            out.writeInt(thumbnails.size());
+            byte[] row = new byte[0];
+            for (Thumbnail thumbnail : thumbnails)
+            {
+                ByteBuffer pixels = thumbnail.getPixels();
+                if (row.length < pixels.remaining())
+                {
+                    row = new byte[pixels.remaining()];
+                }
+                int length = pixels.remaining();
+                pixels.get(row, 0, length);
+                out.writeInt(thumbnail.getBucket());
+                out.writeShort(thumbnail.getWidth());
+                out.writeShort(thumbnail.getHeight());
+                out.write(row, 0, length);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path fileFor(String url)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + 7);
+            for (byte b : digest)
+            {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return directory.resolve(name.append(".thumbs").toString());
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException("SHA-1 not available", ex);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.progress;
+
+/**
+ * Formats the "elapsed / remaining" time label into a reused character buffer.
+ * The buffer is only rewritten when one of the displayed seconds changes.
+ */
+public final class ElapsedTimeFormatter
+{
+    private static final String SEPARATOR = " / ";
+    private static final int FIELD_LENGTH = 8;  // HH:MM:SS
+
+    private final char[] buffer = ("00:00:00" + SEPARATOR + "00:00:00").toCharArray();
+    private long lastElapsed = -1;
+    private long lastRemaining = -1;
+
+    /**
+     * Updates the buffer for a new position.
+     *
+     * @param elapsedSeconds
+     *         Current position
+     * @param durationSeconds
+     *         Media duration
+     * @return true if the displayed text changed
+     */
+    public boolean update(double elapsedSeconds, double durationSeconds)
+    {
+        long elapsed = (long) elapsedSeconds;
+        long remaining = Math.max(0, (long) (durationSeconds - elapsed));
+        if (elapsed == lastElapsed && remaining == lastRemaining)
+        {
+            return false;
+        }
+        lastElapsed = elapsed;
+        lastRemaining = remaining;
+        writeHhMmSs(elapsed, buffer, 0);
+        writeHhMmSs(remaining, buffer, FIELD_LENGTH + SEPARATOR.length());
+        return true;
+    }
+
+    /**
+     * Forgets the last displayed value so the next {@link #update(double, double)} rewrites the buffer.
+     */
+    public void reset()
+    {
+        lastElapsed = -1;
+        lastRemaining = -1;
+    }
+
+    /**
+     * @return elapsed seconds currently displayed, or -1 before the first update
+     */
+    public long getDisplayedElapsed()
+    {
+        return lastElapsed;
+    }
+
+    /**
+     * @return current label text
+     */
+    public String getText()
+    {
+        return new String(buffer);
+    }
+
+    /**
+     * Writes whole seconds as HH:MM:SS.
+     *
+     * @param seconds
+     *         Seconds to format
+     * @param dst
+     *         Destination buffer, with at least 8 characters free at offset
+     * @param offset
+     *         Index of the first character to write
+     */
+    public static void writeHhMmSs(long seconds, char[] dst, int offset)
+    {
+        long s = seconds % 60;
+        long m = (seconds / 60) % 60;
+        long h = (seconds / (60 * 60)) % 24;
+        writeTwoDigits(h, dst, offset);
+        dst[offset + 2] = ':';
+        writeTwoDigits(m, dst, offset + 3);
+        dst[offset + 5] = ':';
+        writeTwoDigits(s, dst, offset + 6);
+    }
+
+    /**
+     * @param seconds
+     *         Seconds to format
+     * @return seconds formatted as HH:MM:SS
+     */
+    public static String toHhMmSs(double seconds)
+    {
+        char[] text = new char[FIELD_LENGTH];
+        writeHhMmSs((long) seconds, text, 0);
+        return new String(text);
+    }
+
+    private static void writeTwoDigits(long value, char[] dst, int offset)
+    {
+        dst[offset] = (char) ('0' + value / 10);
+        dst[offset + 1] = (char) ('0' + value % 10);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.progress;
+
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+
+/**
+ * Renders playback progress into the position slider and the time label.
+ * <p>
+ * {@link #render(double)} is called once per pulse with the sampled position and
+ * only touches the scene graph when the displayed second changes.
+ */
+public class ProgressRenderer
+{
+    private final Slider slider;
+    private final Label label;
+    private final ElapsedTimeFormatter formatter = new ElapsedTimeFormatter();
+    private double durationSeconds = -1;
+
+    /**
+     * @param slider
+     *         Position slider
+     * @param label
+     *         Elapsed / remaining time label
+     */
+    public ProgressRenderer(Slider slider, Label label)
+    {
+        this.slider = slider;
+        this.label = label;
+    }
+
+    /**
+     * Starts rendering for newly opened media.
+     *
+     * @param durationSeconds
+     *         Media duration, cached for the lifetime of the media
+     */
+    public void start(double durationSeconds)
+    {
+        this.durationSeconds = durationSeconds;
+        formatter.reset();
+        slider.setValue(0);
+        slider.setMax(durationSeconds);
+        render(0);
+    }
+
+    /**
+     * Stops rendering until the next {@link #start(double)}.
+     */
+    public void stop()
+    {
+        durationSeconds = -1;
+    }
+
+    /**
+     * Renders a position sample.
+     *
+     * @param positionSeconds
+     *         Current media position
+     */
+    public void render(double positionSeconds)
+    {
+        if (durationSeconds < 0 || !formatter.update(positionSeconds, durationSeconds))
+        {
+            return;
+        }
+        // Leave the slider alone while the user is dragging it
+        if (!slider.isValueChanging())
+        {
+            slider.setValue(formatter.getDisplayedElapsed());
+        }
+        label.setText(formatter.getText());
+    }
+}
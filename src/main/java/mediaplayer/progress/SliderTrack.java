@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.progress;
+
+import javafx.scene.Node;
+import javafx.scene.control.Slider;
+
+/**
+ * Maps positions over a slider to values the way the slider's skin does, through its track
+ * rather than the whole control, so a position maps to the value a click there selects.
+ */
+public final class SliderTrack
+{
+    private SliderTrack()
+    {
+    }
+
+    /**
+     * @param slider
+     *         Horizontal slider
+     * @param x
+     *         Horizontal position within the slider
+     * @return slider value under the position, clamped to the slider's range
+     */
+    public static double valueAt(Slider slider, double x)
+    {
+        Node track = slider.lookup(".track");
+        double start = track != null ? track.getBoundsInParent().getMinX() : 0;
+        double width = track != null ? track.getBoundsInParent().getWidth() : slider.getWidth();
+        double fraction = width > 0 ? Math.max(0, Math.min(1, (x - start) / width)) : 0;
+        return slider.getMin() + fraction * (slider.getMax() - slider.getMin());
+    }
+}
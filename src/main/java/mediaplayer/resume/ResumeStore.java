@@ -0,0 +1,504 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.resume;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import mediaplayer.AppDataDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resume positions of media, kept in a memory-mapped open-addressing hash table.
+ * <p>
+ * Media are keyed by a 64-bit hash of their URL, so a slot is a fixed 12 bytes
+ * (key and position in milliseconds) however long the URL, and a lookup touches one
+ * or two pages of the file whatever the number of entries. The table doubles into a
+ * new file when it is three-quarters full.
+ * <p>
+ * Checkpoints only record the latest position per key in memory. A background thread
+ * writes them to the table at most every {@value #FLUSH_DELAY_MILLIS} ms, so callers on
+ * the FX thread never touch the file. Lookups are answered from the unwritten
+ * checkpoints when possible, otherwise on the background thread.
+ * <p>
+ * File format: the magic "MPRS", a format version, the slot count (a power of two) and
+ * the entry count, then the slots: the key (0 for empty) and the position in
+ * milliseconds. The slot count is also part of the file name, resume-&lt;slots&gt;.dat.
+ */
+public class ResumeStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(ResumeStore.class);
+
+    static final int MAGIC = 0x4D505253;  // "MPRS"
+    static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 12;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final long FLUSH_DELAY_MILLIS = 2000;
+
+    /** Pending value that removes the entry */
+    private static final int REMOVED = -1;
+
+    private final Path directory;
+    private final Map<Long, Integer> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable ->
+    {
+        Thread thread = new Thread(runnable, "resume-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on the executor thread
+    private Path file;
+    private MappedByteBuffer table;
+    private int capacity;
+    private int count;
+    private boolean full;
+
+    /**
+     * @param directory
+     *         Directory holding the table file
+     */
+    public ResumeStore(Path directory)
+    {
+        this.directory = directory;
+        // close() flushes everything itself, so a pending delayed flush need not hold up exit
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.execute(this::open);
+    }
+
+    /**
+     * Creates the store in the data directory unless -Dmediaplayer.resume=false.
+     *
+     * @return store, or null if disabled or the directory cannot be created
+     */
+    public static ResumeStore fromSystemProperties()
+    {
+        if (!Boolean.parseBoolean(System.getProperty("mediaplayer.resume", "true")))
+        {
+            return null;
+        }
+        try
+        {
+            return new ResumeStore(AppDataDirectory.resolve("resume"));
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Resume positions will not be kept", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Hashes a media URL to its key: 64-bit FNV-1a over the UTF-8 bytes, finished with
+     * a bit mixer so the low bits used as the slot index are well distributed.
+     *
+     * @param url
+     *         Media URL
+     * @return non-zero key
+     */
+    public static long keyFor(String url)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Records the position of media. Only the latest position per key is written.
+     *
+     * @param key
+     *         Key from {@link #keyFor(String)}
+     * @param seconds
+     *         Position to resume from
+     */
+    public void checkpoint(long key, double seconds)
+    {
+        pending.put(key, (int) Math.min(Integer.MAX_VALUE, Math.max(0, Math.round(seconds * 1000))));
+        scheduleFlush();
+    }
+
+    /**
+     * Forgets the position of media, for example once it has played to the end.
+     *
+     * @param key
+     *         Key from {@link #keyFor(String)}
+     */
+    public void remove(long key)
+    {
+        pending.put(key, REMOVED);
+        scheduleFlush();
+    }
+
+    /**
+     * @param key
+     *         Key from {@link #keyFor(String)}
+     * @return position to resume from in seconds, or 0 if there is none
+     */
+    public CompletableFuture<Double> lookup(long key)
+    {
+        Integer millis = pending.get(key);
+        if (millis != null)
+        {
+            return CompletableFuture.completedFuture(millis == REMOVED ? 0 : millis / 1000.0);
+        }
+        return CompletableFuture.supplyAsync(() ->
+        {
+            // Checked again: a checkpoint may have arrived since
+            Integer latest = pending.get(key);
+            int stored = latest != null ? latest : read(key);
+            return stored <= 0 ? 0 : stored / 1000.0;
+        }, executor);
+    }
+
+    /**
+     * Writes outstanding checkpoints and stops the background thread.
+     */
+    public void close()
+    {
+        executor.execute(() ->
+        {
+            flush();
+            if (table != null)
+            {
+                table.force();
+            }
+        });
+        executor.shutdown();
+        try
+        {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scheduleFlush()
+    {
+        if (flushScheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                executor.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                logger.debug("Resume store closed; checkpoint dropped.");
+            }
+        }
+    }
+
+    /**
+     * Opens the largest table in the directory, or creates one, and deletes the others.
+     */
+    private void open()
+    {
+        try (DirectoryStream<Path> tables = Files.newDirectoryStream(directory, "resume-*.dat"))
+        {
+            Path best = null;
+            int bestCapacity = 0;
+            for (Path candidate : tables)
+            {
+                int candidateCapacity = parseCapacity(candidate);
+                if (candidateCapacity > bestCapacity)
+                {
+                    if (best != null)
+                    {
+                        Files.deleteIfExists(best);
+                    }
+                    best = candidate;
+                    bestCapacity = candidateCapacity;
+                }
+                else
+                {
+                    Files.deleteIfExists(candidate);
+                }
+            }
+            if (best != null && map(best, bestCapacity, false))
+            {
+                logger.info("Loaded {} resume positions.", count);
+                return;
+            }
+            if (best != null)
+            {
+                logger.warn("Discarding unreadable resume table {}.", best);
+                Files.deleteIfExists(best);
+            }
+            map(directory.resolve(fileName(INITIAL_CAPACITY)), INITIAL_CAPACITY, true);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Resume positions will not be kept", ex);
+            table = null;
+        }
+    }
+
+    /**
+     * @return whether the file held a valid table (always true when creating)
+     */
+    private boolean map(Path path, int slots, boolean create) throws IOException
+    {
+        long size = HEADER_BYTES + (long) slots * SLOT_BYTES;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE))
+        {
+            if (!create && channel.size() != size)
+            {
+                return false;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (create)
+            {
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, VERSION);
+                mapped.putInt(8, slots);
+                mapped.putInt(12, 0);
+            }
+            else if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != slots)
+            {
+                return false;
+            }
+            file = path;
+            table = mapped;
+            capacity = slots;
+            count = mapped.getInt(12);
+            full = false;
+            return true;
+        }
+    }
+
+    private void flush()
+    {
+        flushScheduled.set(false);
+        if (table == null)
+        {
+            pending.clear();
+            return;
+        }
+        Iterator<Map.Entry<Long, Integer>> entries = pending.entrySet().iterator();
+        while (entries.hasNext())
+        {
+            Map.Entry<Long, Integer> entry = entries.next();
+            long key = entry.getKey();
+            int millis = entry.getValue();
+            if (millis == REMOVED)
+            {
+                delete(key);
+            }
+            else
+            {
+                write(key, millis);
+            }
+            // Keep the entry if a newer checkpoint replaced it meanwhile
+            pending.remove(key, millis);
+        }
+        table.putInt(12, count);
+    }
+
+    private int read(long key)
+    {
+        if (table == null)
+        {
+            return 0;
+        }
+        int mask = capacity - 1;
+        for (int slot = (int) key & mask; ; slot = (slot + 1) & mask)
+        {
+            long slotKey = table.getLong(offset(slot));
+            if (slotKey == key)
+            {
+                return table.getInt(offset(slot) + 8);
+            }
+            if (slotKey == 0)
+            {
+                return 0;
+            }
+        }
+    }
+
+    private void write(long key, int millis)
+    {
+        int mask = capacity - 1;
+        int slot = (int) key & mask;
+        long slotKey;
+        while ((slotKey = table.getLong(offset(slot))) != 0 && slotKey != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        if (slotKey == key)
+        {
+            table.putInt(offset(slot) + 8, millis);
+            return;
+        }
+        if (count + 1 > capacity / 4 * 3)
+        {
+            if (!grow())
+            {
+                return;
+            }
+            write(key, millis);
+            return;
+        }
+        table.putInt(offset(slot) + 8, millis);
+        table.putLong(offset(slot), key);
+        count++;
+    }
+
+    /**
+     * Removes an entry with backward-shift deletion, so no tombstones are left behind.
+     */
+    private void delete(long key)
+    {
+        int mask = capacity - 1;
+        int slot = (int) key & mask;
+        long slotKey;
+        while ((slotKey = table.getLong(offset(slot))) != key)
+        {
+            if (slotKey == 0)
+            {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask)
+        {
+            long nextKey = table.getLong(offset(next));
+            if (nextKey == 0)
+            {
+                break;
+            }
+            int home = (int) nextKey & mask;
+            // Move the entry back if its home slot is not between the hole and its position
+            boolean movable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if (movable)
+            {
+                table.putLong(offset(hole), nextKey);
+                table.putInt(offset(hole) + 8, table.getInt(offset(next) + 8));
+                hole = next;
+            }
+        }
+        table.putLong(offset(hole), 0);
+        table.putInt(offset(hole) + 8, 0);
+        count--;
+    }
+
+    /**
+     * Rehashes into a table of twice the size, written to a new file and then renamed,
+     * so a crash leaves either the old or the new table intact.
+     *
+     * @return whether the table grew
+     */
+    private boolean grow()
+    {
+        if (capacity >= MAX_CAPACITY)
+        {
+            if (!full)
+            {
+                full = true;
+                logger.warn("Resume table is full; new positions are not kept.");
+            }
+            return false;
+        }
+        MappedByteBuffer oldTable = table;
+        int oldCapacity = capacity;
+        int oldCount = count;
+        Path oldFile = file;
+        int newCapacity = oldCapacity * 2;
+        Path target = directory.resolve(fileName(newCapacity));
+        Path temp = directory.resolve(fileName(newCapacity) + ".tmp");
+        try
+        {
+            Files.deleteIfExists(temp);
+            map(temp, newCapacity, true);
+            for (int slot = 0; slot < oldCapacity; slot++)
+            {
+                long key = oldTable.getLong(offset(slot));
+                if (key != 0)
+                {
+                    write(key, oldTable.getInt(offset(slot) + 8));
+                }
+            }
+            table.putInt(12, count);
+            table.force();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            file = target;
+            logger.info("Resume table grew to {} slots.", newCapacity);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not grow resume table", ex);
+            table = oldTable;
+            capacity = oldCapacity;
+            file = oldFile;
+            count = oldCount;
+            return false;
+        }
+        try
+        {
+            // May fail while the old mapping is still open on some platforms; cleaned up on next open
+            Files.deleteIfExists(oldFile);
+        }
+        catch (IOException ex)
+        {
+            logger.debug("Could not delete old resume table {}", oldFile, ex);
+        }
+        return true;
+    }
+
+    private static int offset(int slot)
+    {
+        // At most MAX_CAPACITY slots, so this stays below 2 GB
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static String fileName(int slots)
+    {
+        return "resume-" + slots + ".dat";
+    }
+
+    private static int parseCapacity(Path path)
+    {
+        String name = path.getFileName().toString();
+        try
+        {
+            int slots = Integer.parseInt(name.substring("resume-".length(), name.length() - ".dat".length()));
+            return slots > 0 && Integer.bitCount(slots) == 1 && slots <= MAX_CAPACITY ? slots : 0;
+        }
+        catch (NumberFormatException ex)
+        {
+            return 0;
+        }
+    }
+}
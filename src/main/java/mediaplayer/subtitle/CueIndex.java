@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.subtitle;
+
+import java.util.Arrays;
+
+/**
+ * Immutable interval index over subtitle cues.
+ * <p>
+ * Cues are kept sorted by start time in parallel primitive arrays, together with a sparse
+ * table giving the latest-ending cue of any run of cues in constant time. A lookup
+ * binary-searches the cues that have started, then splits that run at its latest-ending
+ * cue, stopping wherever even that cue has ended. Every split either finds an active cue
+ * or ends a branch, so finding k active cues is O(log n + k) however long earlier cues
+ * last, and allocates nothing. The table takes n log n ints.
+ */
+public final class CueIndex
+{
+    /** Index without cues */
+    public static final CueIndex EMPTY = new CueIndex(new long[0], new long[0], new String[0]);
+
+    private final long[] starts;
+    private final long[] ends;
+    private final String[] texts;
+    /** Level j holds, for each cue i, the latest-ending cue of i to i + 2^j - 1 */
+    private final int[][] latestEnding;
+
+    private CueIndex(long[] starts, long[] ends, String[] texts)
+    {
+        this.starts = starts;
+        this.ends = ends;
+        this.texts = texts;
+        int levels = starts.length > 0 ? 32 - Integer.numberOfLeadingZeros(starts.length) : 0;
+        this.latestEnding = new int[levels][];
+        for (int level = 0; level < levels; level++)
+        {
+            int span = 1 << level;
+            int[] row = new int[starts.length - span + 1];
+            for (int i = 0; i < row.length; i++)
+            {
+                row[i] = level == 0 ? i : later(latestEnding[level - 1][i], latestEnding[level - 1][i + span / 2]);
+            }
+            latestEnding[level] = row;
+        }
+    }
+
+    /**
+     * @return number of cues
+     */
+    public int size()
+    {
+        return starts.length;
+    }
+
+    /**
+     * @param index
+     *         Cue index
+     * @return text of the cue
+     */
+    public String getText(int index)
+    {
+        return texts[index];
+    }
+
+    /**
+     * Finds the cues showing at a position.
+     *
+     * @param millis
+     *         Media position in milliseconds
+     * @param active
+     *         Receives the indexes of the active cues in start order; cues beyond its length are dropped
+     * @return number of indexes written
+     */
+    public int query(long millis, int[] active)
+    {
+        int low = 0;
+        int high = starts.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= millis)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        // Collected latest start first, so that the earliest are dropped if active is full
+        int count = collect(0, low, millis, active, 0);
+        for (int i = 0, j = count - 1; i < j; i++, j--)
+        {
+            int swap = active[i];
+            active[i] = active[j];
+            active[j] = swap;
+        }
+        return count;
+    }
+
+    /**
+     * Adds the cues among from to to - 1 still showing at a position, in descending order.
+     * Recurses only into runs whose latest-ending cue is active, so one level per active cue.
+     */
+    private int collect(int from, int to, long millis, int[] active, int count)
+    {
+        if (from >= to || count == active.length)
+        {
+            return count;
+        }
+        int level = 31 - Integer.numberOfLeadingZeros(to - from);
+        int latest = later(latestEnding[level][from], latestEnding[level][to - (1 << level)]);
+        if (ends[latest] <= millis)
+        {
+            return count;
+        }
+        count = collect(latest + 1, to, millis, active, count);
+        if (count < active.length)
+        {
+            active[count++] = latest;
+        }
+        return collect(from, latest, millis, active, count);
+    }
+
+    private int later(int a, int b)
+    {
+        return ends[a] >= ends[b] ? a : b;
+    }
+
+    /**
+     * Collects cues in any order and builds indexes over them.
+     */
+    public static final class Builder
+    {
+        private long[] starts = new long[64];
+        private long[] ends = new long[64];
+        private String[] texts = new String[64];
+        private int size;
+        private boolean sorted = true;
+
+        /**
+         * @param startMillis
+         *         Time the cue appears
+         * @param endMillis
+         *         Time the cue disappears
+         * @param text
+         *         Cue text
+         */
+        public void add(long startMillis, long endMillis, String text)
+        {
+            if (size == starts.length)
+            {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                texts = Arrays.copyOf(texts, size * 2);
+            }
+            if (size > 0 && startMillis < starts[size - 1])
+            {
+                sorted = false;
+            }
+            starts[size] = startMillis;
+            ends[size] = endMillis;
+            texts[size] = text;
+            size++;
+        }
+
+        /**
+         * @return number of cues added
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * Builds an index over the cues added so far; the builder can keep collecting.
+         *
+         * @return index over the cues
+         */
+        public CueIndex build()
+        {
+            if (size == 0)
+            {
+                return EMPTY;
+            }
+            if (sorted)
+            {
+                return new CueIndex(Arrays.copyOf(starts, size), Arrays.copyOf(ends, size),
+                                    Arrays.copyOf(texts, size));
+            }
+
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+            long[] sortedStarts = new long[size];
+            long[] sortedEnds = new long[size];
+            String[] sortedTexts = new String[size];
+            for (int i = 0; i < size; i++)
+            {
+                sortedStarts[i] = starts[order[i]];
+                sortedEnds[i] = ends[order[i]];
+                sortedTexts[i] = texts[order[i]];
+            }
+            return new CueIndex(sortedStarts, sortedEnds, sortedTexts);
+        }
+    }
+}
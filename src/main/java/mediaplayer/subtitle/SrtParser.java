@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.subtitle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming parser for SubRip (.srt) files.
+ * <p>
+ * Reads one line at a time and hands each cue to a handler as soon as its text block
+ * ends, so callers can show the first cues of a large file before the rest is read.
+ * Numbering lines are optional, '.' is accepted as the millisecond separator and
+ * simple formatting tags are removed.
+ */
+public final class SrtParser
+{
+    private static final Pattern TIMING = Pattern.compile(
+            "(\\d+):(\\d{1,2}):(\\d{1,2})[,.](\\d{1,3})\\s*-->\\s*(\\d+):(\\d{1,2}):(\\d{1,2})[,.](\\d{1,3}).*");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>|\\{\\\\[^}]*}");
+
+    /**
+     * Receives parsed cues.
+     */
+    @FunctionalInterface
+    public interface CueHandler
+    {
+        /**
+         * @param startMillis
+         *         Time the cue appears
+         * @param endMillis
+         *         Time the cue disappears
+         * @param text
+         *         Cue text, lines separated by '\n'
+         * @return false to stop parsing
+         */
+        boolean cue(long startMillis, long endMillis, String text);
+    }
+
+    private SrtParser()
+    {
+    }
+
+    /**
+     * Parses cues until the end of input or until the handler asks to stop.
+     *
+     * @param reader
+     *         SRT text
+     * @param handler
+     *         Receives each cue
+     * @throws IOException
+     *         if reading fails
+     */
+    public static void parse(BufferedReader reader, CueHandler handler) throws IOException
+    {
+        StringBuilder text = new StringBuilder();
+        long start = -1;
+        long end = -1;
+        String line = reader.readLine();
+        if (line != null && !line.isEmpty() && line.charAt(0) == '\uFEFF')
+        {
+            line = line.substring(1);
+        }
+        for (; line != null; line = reader.readLine())
+        {
+            Matcher timing = line.indexOf("-->") >= 0 ? TIMING.matcher(line.trim()) : null;
+            if (timing != null && timing.matches())
+            {
+                // A timing line without a blank line before it still starts a new cue;
+                // the numbering line in front of it is not part of the previous cue's text
+                int lastLine = text.lastIndexOf("\n") + 1;
+                if (isNumber(text, lastLine))
+                {
+                    text.setLength(Math.max(lastLine - 1, 0));
+                }
+                if (start >= 0 && !emit(start, end, text, handler))
+                {
+                    return;
+                }
+                text.setLength(0);
+                start = toMillis(timing, 1);
+                end = toMillis(timing, 5);
+            }
+            else if (line.trim().isEmpty())
+            {
+                if (start >= 0 && !emit(start, end, text, handler))
+                {
+                    return;
+                }
+                start = -1;
+            }
+            else if (start >= 0)
+            {
+                if (text.length() > 0)
+                {
+                    text.append('\n');
+                }
+                text.append(line.trim());
+            }
+            // Lines outside a cue (numbering, garbage) are ignored
+        }
+        if (start >= 0)
+        {
+            emit(start, end, text, handler);
+        }
+    }
+
+    private static boolean emit(long start, long end, StringBuilder text, CueHandler handler)
+    {
+        String cue = TAG.matcher(text).replaceAll("");
+        text.setLength(0);
+        return cue.isEmpty() || end <= start || handler.cue(start, end, cue);
+    }
+
+    private static boolean isNumber(CharSequence text, int from)
+    {
+        if (from >= text.length())
+        {
+            return false;
+        }
+        for (int i = from; i < text.length(); i++)
+        {
+            if (!Character.isDigit(text.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toMillis(Matcher timing, int group)
+    {
+        String millis = timing.group(group + 3);
+        long fraction = Long.parseLong(millis);
+        for (int i = millis.length(); i < 3; i++)
+        {
+            fraction *= 10;
+        }
+        return ((Long.parseLong(timing.group(group)) * 60 + Long.parseLong(timing.group(group + 1))) * 60
+                + Long.parseLong(timing.group(group + 2))) * 1000 + fraction;
+    }
+}
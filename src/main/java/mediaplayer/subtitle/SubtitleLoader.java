@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.subtitle;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses subtitle files on a background thread.
+ * <p>
+ * Cues are published as a growing series of {@link CueIndex} snapshots, the first after
+ * a small batch and each later one after twice as many cues, so subtitles for the start
+ * of the media show up immediately while the rest of a large file is still being read.
+ * Starting a new load abandons the previous one.
+ */
+public class SubtitleLoader
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final int FIRST_BATCH = 64;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "subtitle-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param mediaUrl
+     *         URL of the media
+     * @return readable .srt file next to a local media file with the same base name, or null
+     */
+    public static Path sidecarFor(String mediaUrl)
+    {
+        URI uri;
+        try
+        {
+            uri = URI.create(mediaUrl);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return null;
+        }
+        if (!"file".equals(uri.getScheme()))
+        {
+            return null;
+        }
+        Path media = new File(uri).toPath();
+        String name = media.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path sidecar = media.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".srt");
+        return Files.isReadable(sidecar) ? sidecar : null;
+    }
+
+    /**
+     * @param path
+     *         File path or URL
+     * @return whether the file is a subtitle file this loader reads
+     */
+    public static boolean isSubtitleFile(String path)
+    {
+        return path.toLowerCase(Locale.ROOT).endsWith(".srt");
+    }
+
+    /**
+     * Starts loading a subtitle file, abandoning any load still running.
+     *
+     * @param file
+     *         SRT file
+     * @param listener
+     *         Called on the loader thread with each snapshot, the last one holding every cue
+     */
+    public void load(Path file, Consumer<CueIndex> listener)
+    {
+        long loadGeneration = generation.incrementAndGet();
+        executor.execute(() ->
+        {
+            long startNanos = System.nanoTime();
+            CueIndex.Builder builder = new CueIndex.Builder();
+            int[] nextPublish = {FIRST_BATCH};
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file),
+                                                                                  decoder)))
+            {
+                SrtParser.parse(reader, (start, end, text) ->
+                {
+                    if (generation.get() != loadGeneration)
+                    {
+                        return false;
+                    }
+                    builder.add(start, end, text);
+                    if (builder.size() == nextPublish[0])
+                    {
+                        listener.accept(builder.build());
+                        nextPublish[0] *= 2;
+                    }
+                    return true;
+                });
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Failed to load subtitle file " + file, ex);
+            }
+            if (generation.get() == loadGeneration)
+            {
+                listener.accept(builder.build());
+                logger.debug("Loaded {} subtitle cues from {} in {} ms.", builder.size(), file,
+                             (System.nanoTime() - startNanos) / 1000000);
+            }
+        });
+    }
+
+    /**
+     * Abandons any load still running.
+     */
+    public void cancel()
+    {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Shuts down the background loader thread.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+}
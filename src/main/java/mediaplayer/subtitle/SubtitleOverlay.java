@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.subtitle;
+
+import javafx.scene.control.Label;
+
+/**
+ * Shows the active subtitle cues in a label over the media view.
+ * <p>
+ * Queried once per pulse; the label text is only rebuilt when the set of active
+ * cues changes, and unchanged ticks allocate nothing.
+ */
+public class SubtitleOverlay
+{
+    private static final int MAX_ACTIVE = 8;
+
+    private final Label label;
+    private CueIndex cues = CueIndex.EMPTY;
+    private int[] active = new int[MAX_ACTIVE];
+    private int[] shown = new int[MAX_ACTIVE];
+    private int shownCount;
+
+    /**
+     * @param label
+     *         Label the cue text is shown in
+     */
+    public SubtitleOverlay(Label label)
+    {
+        this.label = label;
+        label.setMouseTransparent(true);
+        label.setVisible(false);
+    }
+
+    /**
+     * Replaces the cues, e.g. with a larger snapshot of a file still loading.
+     *
+     * @param cueIndex
+     *         Cues to show
+     */
+    public void setCues(CueIndex cueIndex)
+    {
+        cues = cueIndex;
+        // Indexes refer to the previous snapshot; force a re-render on the next pulse
+        shownCount = -1;
+    }
+
+    /**
+     * Removes all cues and hides the overlay.
+     */
+    public void clear()
+    {
+        cues = CueIndex.EMPTY;
+        shownCount = 0;
+        label.setText("");
+        label.setVisible(false);
+    }
+
+    /**
+     * Updates the overlay for the current media position.
+     *
+     * @param positionSeconds
+     *         Current media position
+     */
+    public void onPulse(double positionSeconds)
+    {
+        int count = cues.query((long) (positionSeconds * 1000), active);
+        if (!changed(count))
+        {
+            return;
+        }
+        int[] previous = shown;
+        shown = active;
+        active = previous;
+        shownCount = count;
+        render();
+    }
+
+    private boolean changed(int count)
+    {
+        if (count != shownCount)
+        {
+            return true;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            if (active[i] != shown[i])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void render()
+    {
+        if (shownCount == 0)
+        {
+            label.setVisible(false);
+            label.setText("");
+            return;
+        }
+        String text = cues.getText(shown[0]);
+        if (shownCount > 1)
+        {
+            StringBuilder builder = new StringBuilder(text);
+            for (int i = 1; i < shownCount; i++)
+            {
+                builder.append('\n').append(cues.getText(shown[i]));
+            }
+            text = builder.toString();
+        }
+        label.setText(text);
+        label.setVisible(true);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.visualizer;
+
+/**
+ * Smoothed spectrum levels and falling peaks, kept in preallocated arrays.
+ * <p>
+ * Magnitudes arrive in decibels from the media player's spectrum listener and are
+ * normalized to 0..1 against the threshold, then blended with the previous levels.
+ * Updating and reading allocate nothing.
+ */
+public final class SpectrumBands
+{
+    /** Peak fall per update, as a fraction of full scale */
+    private static final float PEAK_DECAY = 0.02f;
+
+    private final float[] levels;
+    private final float[] peaks;
+    private final float smoothing;
+    private final float threshold;
+    private boolean dirty;
+
+    /**
+     * @param bandCount
+     *         Number of bands
+     * @param smoothing
+     *         Weight of the previous level, 0 (none) to just below 1
+     * @param threshold
+     *         Magnitude in dB shown as an empty band, e.g. -60
+     */
+    public SpectrumBands(int bandCount, float smoothing, float threshold)
+    {
+        this.levels = new float[bandCount];
+        this.peaks = new float[bandCount];
+        this.smoothing = Math.max(0, Math.min(0.99f, smoothing));
+        this.threshold = threshold;
+    }
+
+    /**
+     * Blends in a new set of magnitudes.
+     *
+     * @param magnitudes
+     *         Magnitudes in dB, one per band; extra values are ignored
+     */
+    public void update(float[] magnitudes)
+    {
+        int count = Math.min(magnitudes.length, levels.length);
+        for (int i = 0; i < count; i++)
+        {
+            float level = Math.max(0, Math.min(1, (magnitudes[i] - threshold) / -threshold));
+            level = levels[i] * smoothing + level * (1 - smoothing);
+            levels[i] = level;
+            peaks[i] = Math.max(level, peaks[i] - PEAK_DECAY);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Drops all levels to zero.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < levels.length; i++)
+        {
+            levels[i] = 0;
+            peaks[i] = 0;
+        }
+        dirty = true;
+    }
+
+    public int getBandCount()
+    {
+        return levels.length;
+    }
+
+    /**
+     * @param band
+     *         Band index
+     * @return smoothed level, 0 to 1
+     */
+    public float getLevel(int band)
+    {
+        return levels[band];
+    }
+
+    /**
+     * @param band
+     *         Band index
+     * @return peak level, 0 to 1
+     */
+    public float getPeak(int band)
+    {
+        return peaks[band];
+    }
+
+    /**
+     * Returns and clears the flag set by updates since the last call.
+     *
+     * @return whether the levels changed since the last call
+     */
+    public boolean takeDirty()
+    {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.visualizer;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.media.AudioSpectrumListener;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws the audio spectrum of audio-only media on a canvas over the media view.
+ * <p>
+ * The spectrum listener only smooths the new magnitudes into {@link SpectrumBands};
+ * the canvas is redrawn at most once per pulse and only after new data arrived.
+ * Neither path allocates once playback is running.
+ * <p>
+ * Settings: -Dmediaplayer.spectrum.bands (default 64), -Dmediaplayer.spectrum.interval
+ * (seconds between updates, default 0.05) and -Dmediaplayer.spectrum.smoothing (0 to 0.99, default 0.6).
+ */
+public class SpectrumVisualizer
+{
+    private static final int BAND_COUNT = Integer.getInteger("mediaplayer.spectrum.bands", 64);
+    private static final double INTERVAL_SECONDS =
+            Double.parseDouble(System.getProperty("mediaplayer.spectrum.interval", "0.05"));
+    private static final float SMOOTHING =
+            Float.parseFloat(System.getProperty("mediaplayer.spectrum.smoothing", "0.6"));
+    private static final int THRESHOLD_DB = -60;
+
+    private static final double BAND_GAP = 2;
+    private static final double PEAK_HEIGHT = 2;
+    private static final Color BAR_COLOR = Color.rgb(80, 160, 255, 0.85);
+    private static final Color PEAK_COLOR = Color.rgb(255, 255, 255, 0.9);
+
+    private final Canvas canvas;
+    private final SpectrumBands bands = new SpectrumBands(BAND_COUNT, SMOOTHING, THRESHOLD_DB);
+    private final AudioSpectrumListener listener =
+            (timestamp, duration, magnitudes, phases) -> bands.update(magnitudes);
+    private MediaPlayer mediaPlayer;
+
+    /**
+     * @param canvas
+     *         Canvas the spectrum is drawn on
+     */
+    public SpectrumVisualizer(Canvas canvas)
+    {
+        this.canvas = canvas;
+        canvas.setMouseTransparent(true);
+        canvas.setVisible(false);
+        // A resized canvas is cleared, so draw again on the next pulse
+        canvas.widthProperty().addListener(observable -> bands.reset());
+        canvas.heightProperty().addListener(observable -> bands.reset());
+    }
+
+    /**
+     * Starts showing the spectrum of newly attached media if it has no video.
+     *
+     * @param player
+     *         Ready media player
+     * @param audioOnly
+     *         Whether the media has no video track
+     */
+    public void attach(MediaPlayer player, boolean audioOnly)
+    {
+        detach();
+        if (!audioOnly)
+        {
+            return;
+        }
+        mediaPlayer = player;
+        player.setAudioSpectrumNumBands(BAND_COUNT);
+        player.setAudioSpectrumInterval(INTERVAL_SECONDS);
+        player.setAudioSpectrumThreshold(THRESHOLD_DB);
+        player.setAudioSpectrumListener(listener);
+        bands.reset();
+        canvas.setVisible(true);
+    }
+
+    /**
+     * Stops listening to the current player and hides the spectrum.
+     */
+    public void detach()
+    {
+        if (mediaPlayer != null)
+        {
+            mediaPlayer.setAudioSpectrumListener(null);
+            mediaPlayer = null;
+        }
+        canvas.setVisible(false);
+        canvas.getGraphicsContext2D().clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    }
+
+    /**
+     * Redraws the spectrum if new data arrived since the last pulse.
+     */
+    public void onPulse()
+    {
+        if (mediaPlayer == null || !bands.takeDirty())
+        {
+            return;
+        }
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, width, height);
+
+        int count = bands.getBandCount();
+        double bandWidth = width / count;
+        double barWidth = Math.max(1, bandWidth - BAND_GAP);
+        graphics.setFill(BAR_COLOR);
+        for (int i = 0; i < count; i++)
+        {
+            double barHeight = bands.getLevel(i) * height;
+            graphics.fillRect(i * bandWidth, height - barHeight, barWidth, barHeight);
+        }
+        graphics.setFill(PEAK_COLOR);
+        for (int i = 0; i < count; i++)
+        {
+            double peak = bands.getPeak(i);
+            if (peak > 0)
+            {
+                graphics.fillRect(i * bandWidth, height - peak * height - PEAK_HEIGHT, barWidth, PEAK_HEIGHT);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.wall;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how far the video wall has to degrade to keep up its frame rate.
+ * <p>
+ * Pulses are counted over one-second windows. Two windows in a row below the target
+ * frame rate raise the degradation level; a run of windows at or above it lowers the
+ * level again. Each fall back into degradation soon after recovering doubles the run
+ * needed to recover, so the wall does not oscillate between levels.
+ */
+final class FrameBudget
+{
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int DEGRADE_WINDOWS = 2;
+    private static final int MIN_RECOVER_WINDOWS = 5;
+    private static final int MAX_RECOVER_WINDOWS = 60;
+
+    private final double targetFps;
+    private final int maxLevel;
+
+    private long windowStartNanos = -1;
+    private int windowFrames;
+    private double lastFps;
+    private int level;
+    private int slowWindows;
+    private int fastWindows;
+    private int recoverWindows = MIN_RECOVER_WINDOWS;
+    private int windowsSinceRecovery = Integer.MAX_VALUE;
+
+    /**
+     * @param targetFps
+     *         Frame rate to sustain
+     * @param maxLevel
+     *         Highest degradation level
+     */
+    FrameBudget(double targetFps, int maxLevel)
+    {
+        this.targetFps = targetFps;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * Counts a pulse.
+     *
+     * @param nowNanos
+     *         Pulse time
+     * @return whether a window ended with this pulse, so {@link #getLastFps()} is new
+     */
+    boolean onPulse(long nowNanos)
+    {
+        if (windowStartNanos < 0)
+        {
+            windowStartNanos = nowNanos;
+            return false;
+        }
+        windowFrames++;
+        long elapsed = nowNanos - windowStartNanos;
+        if (elapsed < WINDOW_NANOS)
+        {
+            return false;
+        }
+        lastFps = windowFrames * 1e9 / elapsed;
+        windowStartNanos = nowNanos;
+        windowFrames = 0;
+        endWindow();
+        return true;
+    }
+
+    private void endWindow()
+    {
+        if (windowsSinceRecovery < Integer.MAX_VALUE)
+        {
+            windowsSinceRecovery++;
+        }
+        if (lastFps < targetFps)
+        {
+            fastWindows = 0;
+            if (++slowWindows >= DEGRADE_WINDOWS && level < maxLevel)
+            {
+                level++;
+                slowWindows = 0;
+                if (windowsSinceRecovery <= recoverWindows)
+                {
+                    recoverWindows = Math.min(MAX_RECOVER_WINDOWS, recoverWindows * 2);
+                }
+            }
+        }
+        else
+        {
+            slowWindows = 0;
+            if (++fastWindows >= recoverWindows && level > 0)
+            {
+                level--;
+                fastWindows = 0;
+                windowsSinceRecovery = 0;
+            }
+        }
+    }
+
+    /**
+     * @return frame rate over the last complete window
+     */
+    double getLastFps()
+    {
+        return lastFps;
+    }
+
+    /**
+     * @return current degradation level, 0 for none
+     */
+    int getLevel()
+    {
+        return level;
+    }
+}
@@ -0,0 +1,466 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.wall;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.RowConstraints;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mediaplayer.media.MediaOpener;
+import mediaplayer.media.OpenedMedia;
+import mediaplayer.media.PlayerLifecycle;
+import mediaplayer.metrics.PlaybackMetrics;
+
+/**
+ * Video wall: many feeds tiled in a grid in one stage, playing in step.
+ * <p>
+ * A single animation timer drives the whole wall. Each pulse it advances a wall clock
+ * and lets every tile sample its player and correct its drift from that clock, so no
+ * tile registers listeners of its own. Feeds loop, and all start together once every
+ * feed has opened.
+ * <p>
+ * When the pulse rate stays below the frame budget (-Dmediaplayer.wall.fps, default 50)
+ * the wall degrades in steps: first video frames are scaled without smoothing, then
+ * tiles scrolled out of view or in a minimized window are paused. It recovers in reverse
+ * order once the rate holds again. The sustained frame rate is logged against the
+ * number of tiles and playing feeds every few seconds.
+ * <p>
+ * With -Dmediaplayer.wall.ramp=&lt;seconds&gt; the wall starts with one tile, adds the next
+ * feed after each interval, prints the sustained frame rate for every tile count to
+ * standard output and exits after the last.
+ * <p>
+ * Launched with {@code --wall [--columns=<n>] <files, folders or URLs>}.
+ */
+public class VideoWall
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** Command-line option selecting the video wall */
+    public static final String WALL_OPTION = "--wall";
+    private static final String COLUMNS_OPTION = "--columns=";
+
+    private static final double TARGET_FPS = Double.parseDouble(System.getProperty("mediaplayer.wall.fps", "50"));
+    private static final long RAMP_STEP_NANOS = TimeUnit.SECONDS.toNanos(Integer.getInteger("mediaplayer.wall.ramp", 0));
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    /** Frame rate windows at the start of a ramp step left out while the new feed settles */
+    private static final int RAMP_SETTLE_WINDOWS = 2;
+
+    /** Degradation level at which video is scaled without smoothing */
+    private static final int LEVEL_NO_SMOOTHING = 1;
+    /** Degradation level at which tiles out of view are paused */
+    private static final int LEVEL_PAUSE_HIDDEN = 2;
+
+    private static final double MIN_TILE_WIDTH = 240;
+    private static final double MIN_TILE_HEIGHT = 135;
+    private static final int DEFAULT_WIDTH = 1280;
+    private static final int DEFAULT_HEIGHT = 720;
+
+    private final Stage stage;
+    private final List<String> urls;
+    private final int columns;
+    private final PlayerLifecycle players = new PlayerLifecycle(0);
+    private final MediaOpener opener = new MediaOpener(players);
+    private final PlaybackMetrics metrics = PlaybackMetrics.getInstance();
+    private final FrameBudget budget = new FrameBudget(TARGET_FPS, LEVEL_PAUSE_HIDDEN);
+    private final List<WallTile> tiles = new ArrayList<>();
+    private final List<CompletableFuture<OpenedMedia>> opens = new ArrayList<>();
+    private final GridPane grid = new GridPane();
+    private final ScrollPane scrollPane = new ScrollPane(grid);
+    private final List<String> rampResults = new ArrayList<>();
+
+    private AnimationTimer pulseTimer;
+    private long startNanos = -1;
+    private long lastPulseNanos = -1;
+    private long lastReportNanos = -1;
+    private long rampStepNanos = -1;
+    private int appliedLevel;
+    private double rampFpsSum;
+    private int rampWindows;
+
+    /**
+     * @param stage
+     *         Stage to show the wall in
+     * @param urls
+     *         URLs of the feeds, one tile each
+     * @param columns
+     *         Number of grid columns
+     */
+    public VideoWall(Stage stage, List<String> urls, int columns)
+    {
+        this.stage = stage;
+        this.urls = new ArrayList<>(urls);
+        this.columns = Math.max(1, columns);
+    }
+
+    /**
+     * @param args
+     *         Command-line arguments
+     * @return whether the arguments ask for the video wall
+     */
+    public static boolean isRequested(List<String> args)
+    {
+        return args.contains(WALL_OPTION);
+    }
+
+    /**
+     * Creates a wall from command-line arguments. Folders are expanded to the playable
+     * files they contain; without a valid --columns the grid is as close to square as possible.
+     *
+     * @param stage
+     *         Stage to show the wall in
+     * @param args
+     *         Command-line arguments including --wall
+     * @return video wall, not yet shown
+     */
+    public static VideoWall fromArguments(Stage stage, List<String> args)
+    {
+        List<String> urls = new ArrayList<>();
+        int columns = 0;
+        for (String arg : args)
+        {
+            if (arg.startsWith(COLUMNS_OPTION))
+            {
+                columns = parseColumns(arg.substring(COLUMNS_OPTION.length()));
+            }
+            else if (arg.startsWith("--"))
+            {
+                continue;
+            }
+            else if (arg.contains(":/"))
+            {
+                urls.add(arg);
+            }
+            else
+            {
+                addFiles(new File(arg), urls);
+            }
+        }
+        if (columns <= 0)
+        {
+            columns = (int) Math.ceil(Math.sqrt(Math.max(1, urls.size())));
+        }
+        return new VideoWall(stage, urls, columns);
+    }
+
+    /**
+     * @return the positive column count given, or 0 for the automatic grid
+     */
+    private static int parseColumns(String value)
+    {
+        try
+        {
+            int columns = Integer.parseInt(value.trim());
+            if (columns > 0)
+            {
+                return columns;
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            // Warned below
+        }
+        LoggerFactory.getLogger(VideoWall.class).warn("Ignoring {}{}, not a positive number of columns",
+                                                      COLUMNS_OPTION, value);
+        return 0;
+    }
+
+    private static void addFiles(File file, List<String> urls)
+    {
+        if (!file.isDirectory())
+        {
+            urls.add(file.toURI().toString());
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(file.toPath()))
+        {
+            paths.filter(Files::isRegularFile)
+                 .filter(path -> MediaOpener.isSupported(path.toString()))
+                 .sorted()
+                 .forEach(path -> urls.add(path.toUri().toString()));
+        }
+        catch (IOException | UncheckedIOException ex)
+        {
+            LoggerFactory.getLogger(VideoWall.class).warn("Could not list folder " + file, ex);
+        }
+    }
+
+    /**
+     * Lays out the grid, shows the stage and starts opening the feeds.
+     */
+    public void show()
+    {
+        int rows = (urls.size() + columns - 1) / columns;
+        for (int column = 0; column < columns; column++)
+        {
+            ColumnConstraints constraints = new ColumnConstraints();
+            constraints.setPercentWidth(100.0 / columns);
+            grid.getColumnConstraints().add(constraints);
+        }
+        for (int row = 0; row < rows; row++)
+        {
+            RowConstraints constraints = new RowConstraints();
+            constraints.setPercentHeight(100.0 / rows);
+            grid.getRowConstraints().add(constraints);
+        }
+        // Tiles never shrink below a legible size; a small window scrolls instead
+        grid.setMinSize(columns * MIN_TILE_WIDTH, rows * MIN_TILE_HEIGHT);
+        grid.setStyle("-fx-background-color: black;");
+        scrollPane.setFitToWidth(true);
+        scrollPane.setFitToHeight(true);
+        scrollPane.setStyle("-fx-background: black; -fx-background-color: black;");
+
+        Scene scene = new Scene(scrollPane, DEFAULT_WIDTH, DEFAULT_HEIGHT, Color.BLACK);
+        scene.setOnMouseClicked(mouseEvent ->
+        {
+            if (mouseEvent.getButton() == MouseButton.PRIMARY && mouseEvent.getClickCount() == 2)
+            {
+                stage.setFullScreen(!stage.isFullScreen());
+            }
+        });
+        stage.setScene(scene);
+        stage.setTitle("JavaFX Media Player - Video Wall");
+        stage.getIcons().add(new Image("/images/media-player-icon.png"));
+        stage.show();
+
+        int initialTiles = RAMP_STEP_NANOS > 0 ? Math.min(1, urls.size()) : urls.size();
+        for (int i = 0; i < initialTiles; i++)
+        {
+            addTile();
+        }
+        logger.info("Video wall of {} feeds in {} columns, frame budget {} fps.", urls.size(), columns, TARGET_FPS);
+
+        pulseTimer = new AnimationTimer()
+        {
+            @Override
+            public void handle(long now)
+            {
+                long workStartNanos = System.nanoTime();
+                pulse(now);
+                metrics.recordPulse(System.nanoTime() - workStartNanos,
+                                    lastPulseNanos < 0 ? -1 : now - lastPulseNanos);
+                lastPulseNanos = now;
+            }
+        };
+        pulseTimer.start();
+    }
+
+    /**
+     * Adds the next feed to the grid and opens it.
+     */
+    private void addTile()
+    {
+        int index = tiles.size();
+        WallTile tile = new WallTile(urls.get(index));
+        tile.setSmooth(appliedLevel < LEVEL_NO_SMOOTHING);
+        tiles.add(tile);
+        grid.add(tile.getNode(), index % columns, index / columns);
+
+        CompletableFuture<OpenedMedia> open = opener.preload(tile.getUrl());
+        opens.add(open);
+        open.whenCompleteAsync((openedMedia, ex) ->
+        {
+            if (pulseTimer == null)
+            {
+                // Wall already shut down
+                if (openedMedia != null)
+                {
+                    players.dispose(openedMedia.getMediaPlayer());
+                }
+                return;
+            }
+            if (ex != null)
+            {
+                logger.warn("Could not open wall feed {}: {}", tile.getUrl(), ex.toString());
+                tile.showFailure();
+                return;
+            }
+            tile.attach(openedMedia);
+            if (startNanos >= 0)
+            {
+                // Joins a running wall, in step with the others
+                long now = System.nanoTime();
+                tile.start(wallSeconds(now), now);
+            }
+        }, Platform::runLater);
+    }
+
+    /**
+     * Advances the wall by one pulse.
+     */
+    private void pulse(long now)
+    {
+        if (startNanos < 0)
+        {
+            if (!opens.stream().allMatch(CompletableFuture::isDone))
+            {
+                return;
+            }
+            startNanos = now;
+            lastReportNanos = now;
+            rampStepNanos = now;
+            for (WallTile tile : tiles)
+            {
+                tile.start(0, now);
+            }
+        }
+
+        double wallSeconds = wallSeconds(now);
+        for (WallTile tile : tiles)
+        {
+            tile.pulse(wallSeconds, now);
+        }
+
+        if (budget.onPulse(now))
+        {
+            applyLevel(budget.getLevel(), wallSeconds, now);
+            if (rampWindows >= RAMP_SETTLE_WINDOWS)
+            {
+                rampFpsSum += budget.getLastFps();
+            }
+            rampWindows++;
+        }
+        if (RAMP_STEP_NANOS > 0)
+        {
+            if (now - rampStepNanos >= RAMP_STEP_NANOS)
+            {
+                endRampStep(now);
+            }
+        }
+        else if (now - lastReportNanos >= REPORT_INTERVAL_NANOS)
+        {
+            lastReportNanos = now;
+            logger.info("Video wall: {}.", describe());
+        }
+    }
+
+    private double wallSeconds(long now)
+    {
+        return (now - startNanos) / 1e9;
+    }
+
+    /**
+     * Brings smoothing and paused tiles in line with a degradation level. Visibility is
+     * checked again on every call, so tiles follow scrolling within a second.
+     */
+    private void applyLevel(int level, double wallSeconds, long now)
+    {
+        if (level != appliedLevel)
+        {
+            logger.info("Video wall at {} fps, degradation level {} -> {}.",
+                        String.format("%.1f", budget.getLastFps()), appliedLevel, level);
+        }
+        boolean smooth = level < LEVEL_NO_SMOOTHING;
+        if (smooth != (appliedLevel < LEVEL_NO_SMOOTHING))
+        {
+            for (WallTile tile : tiles)
+            {
+                tile.setSmooth(smooth);
+            }
+        }
+        appliedLevel = level;
+
+        Bounds viewport = stage.isIconified()
+                ? new BoundingBox(0, 0, 0, 0)
+                : scrollPane.localToScene(scrollPane.getLayoutBounds());
+        for (WallTile tile : tiles)
+        {
+            if (level >= LEVEL_PAUSE_HIDDEN && !tile.isVisibleIn(viewport))
+            {
+                tile.pauseForBudget();
+            }
+            else
+            {
+                tile.resumeFromBudget(wallSeconds, now);
+            }
+        }
+    }
+
+    /**
+     * Records the sustained frame rate of the finished ramp step and adds the next feed,
+     * or prints all steps and exits after the last.
+     */
+    private void endRampStep(long now)
+    {
+        int measured = rampWindows - RAMP_SETTLE_WINDOWS;
+        String line = String.format("wall sustained-fps=%.1f %s",
+                                    measured > 0 ? rampFpsSum / measured : budget.getLastFps(), describe());
+        System.out.println(line);
+        rampResults.add(line);
+        rampFpsSum = 0;
+        rampWindows = 0;
+        rampStepNanos = now;
+        if (tiles.size() < urls.size())
+        {
+            addTile();
+            return;
+        }
+        System.out.println("wall ramp complete:");
+        rampResults.forEach(result -> System.out.println("  " + result));
+        Platform.exit();
+    }
+
+    /**
+     * @return tile and playing feed counts, last frame rate, degradation level and largest drift
+     */
+    private String describe()
+    {
+        int playing = 0;
+        double maxDrift = 0;
+        for (WallTile tile : tiles)
+        {
+            if (tile.isAttached() && !tile.isPausedForBudget())
+            {
+                playing++;
+                maxDrift = Math.max(maxDrift, Math.abs(tile.getLastDrift()));
+            }
+        }
+        return String.format("tiles=%d playing=%d last-fps=%.1f level=%d max-drift=%.0fms",
+                             tiles.size(), playing, budget.getLastFps(), appliedLevel, maxDrift * 1000);
+    }
+
+    /**
+     * Stops the pulse and disposes every feed's player.
+     */
+    public void shutdown()
+    {
+        if (pulseTimer != null)
+        {
+            pulseTimer.stop();
+            pulseTimer = null;
+        }
+        for (CompletableFuture<OpenedMedia> open : opens)
+        {
+            open.cancel(false);
+        }
+        for (WallTile tile : tiles)
+        {
+            tile.dispose(players);
+        }
+        opener.shutdown();
+    }
+}
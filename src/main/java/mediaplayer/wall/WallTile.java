@@ -0,0 +1,317 @@
+/**
+ * Copyright (c) 2016 by Justin Bellars under MIT License
+ */
+package mediaplayer.wall;
+
+import java.util.concurrent.TimeUnit;
+
+import javafx.geometry.Bounds;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaView;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.util.Duration;
+
+import mediaplayer.media.OpenedMedia;
+import mediaplayer.media.PlayerLifecycle;
+
+/**
+ * One feed of the video wall: a media view with a name, time and progress overlay.
+ * <p>
+ * A tile registers no listeners on its player. The wall samples every tile once per
+ * pulse, and the tile steers its player towards the wall clock: small drift is taken
+ * up by nudging the playback rate, large drift by seeking. Feeds without a known
+ * duration, such as live streams, are left to run free.
+ * <p>
+ * Tiles must only be used from the FX application thread.
+ */
+final class WallTile
+{
+    /** Drift below which the playback rate is left at normal speed */
+    private static final double NUDGE_THRESHOLD_SECONDS = 0.04;
+    /** Drift above which the player is seeked rather than nudged */
+    private static final double SEEK_THRESHOLD_SECONDS = 0.5;
+    /** Rate change per second of drift */
+    private static final double NUDGE_GAIN = 0.5;
+    private static final double MAX_NUDGE = 0.1;
+    /** Minimum time between seeks of one tile, so a slow seek is not repeated */
+    private static final long SEEK_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double PROGRESS_HEIGHT = 3;
+
+    private final String url;
+    private final StackPane node = new StackPane();
+    private final MediaView mediaView = new MediaView();
+    private final Label label = new Label();
+    private final Rectangle progress = new Rectangle(0, PROGRESS_HEIGHT, Color.web("#3a8ee6"));
+
+    private MediaPlayer mediaPlayer;
+    private double durationSeconds = Double.NaN;
+    private long lastSeekNanos = Long.MIN_VALUE / 2;
+    private long shownSecond = -1;
+    private boolean pausedForBudget;
+    private double lastDrift;
+
+    /**
+     * @param url
+     *         URL of the feed
+     */
+    WallTile(String url)
+    {
+        this.url = url;
+        mediaView.setPreserveRatio(true);
+        mediaView.fitWidthProperty().bind(node.widthProperty());
+        mediaView.fitHeightProperty().bind(node.heightProperty());
+        label.setTextFill(Color.WHITE);
+        label.setText(nameOf(url));
+        StackPane.setAlignment(label, Pos.TOP_LEFT);
+        StackPane.setAlignment(progress, Pos.BOTTOM_LEFT);
+        progress.setManaged(false);
+        node.setStyle("-fx-background-color: black;");
+        node.setMinSize(0, 0);
+        node.getChildren().addAll(mediaView, label, progress);
+    }
+
+    /**
+     * @return scene graph node of the tile
+     */
+    StackPane getNode()
+    {
+        return node;
+    }
+
+    /**
+     * @return URL of the feed
+     */
+    String getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * @return whether the feed has been opened
+     */
+    boolean isAttached()
+    {
+        return mediaPlayer != null;
+    }
+
+    /**
+     * @return whether the tile was paused to save frame budget
+     */
+    boolean isPausedForBudget()
+    {
+        return pausedForBudget;
+    }
+
+    /**
+     * @return drift from the wall clock at the last sample, in seconds
+     */
+    double getLastDrift()
+    {
+        return lastDrift;
+    }
+
+    /**
+     * Shows an opened feed, muted and looping. The feed stays paused until the wall starts it.
+     *
+     * @param openedMedia
+     *         Opened feed
+     */
+    void attach(OpenedMedia openedMedia)
+    {
+        mediaPlayer = openedMedia.getMediaPlayer();
+        mediaPlayer.setMute(true);
+        mediaPlayer.setCycleCount(MediaPlayer.INDEFINITE);
+        Duration duration = mediaPlayer.getMedia().getDuration();
+        if (duration != null && !duration.isUnknown() && !duration.isIndefinite() && duration.toSeconds() > 0)
+        {
+            durationSeconds = duration.toSeconds();
+        }
+        mediaView.setMediaPlayer(mediaPlayer);
+    }
+
+    /**
+     * Shows that the feed could not be opened.
+     */
+    void showFailure()
+    {
+        label.setText(nameOf(url) + " - unavailable");
+        label.setTextFill(Color.ORANGERED);
+    }
+
+    /**
+     * Starts the feed at the wall clock.
+     *
+     * @param wallSeconds
+     *         Wall clock
+     * @param nowNanos
+     *         Current time
+     */
+    void start(double wallSeconds, long nowNanos)
+    {
+        if (mediaPlayer == null)
+        {
+            return;
+        }
+        if (!Double.isNaN(durationSeconds))
+        {
+            mediaPlayer.seek(Duration.seconds(wallSeconds % durationSeconds));
+            lastSeekNanos = nowNanos;
+        }
+        mediaPlayer.setRate(1.0);
+        mediaPlayer.play();
+    }
+
+    /**
+     * Samples the player, updates the overlay and corrects drift from the wall clock.
+     * Called once per pulse.
+     *
+     * @param wallSeconds
+     *         Wall clock
+     * @param nowNanos
+     *         Current pulse time
+     */
+    void pulse(double wallSeconds, long nowNanos)
+    {
+        if (mediaPlayer == null || pausedForBudget || mediaPlayer.getStatus() != MediaPlayer.Status.PLAYING)
+        {
+            return;
+        }
+        double position = mediaPlayer.getCurrentTime().toSeconds();
+        updateOverlay(position);
+        if (Double.isNaN(durationSeconds))
+        {
+            return;
+        }
+
+        double expected = wallSeconds % durationSeconds;
+        double drift = position - expected;
+        // Compare around the loop point: being just past the start is close to being just before the end
+        if (drift > durationSeconds / 2)
+        {
+            drift -= durationSeconds;
+        }
+        else if (drift < -durationSeconds / 2)
+        {
+            drift += durationSeconds;
+        }
+        lastDrift = drift;
+
+        double magnitude = Math.abs(drift);
+        if (magnitude > SEEK_THRESHOLD_SECONDS)
+        {
+            if (nowNanos - lastSeekNanos >= SEEK_COOLDOWN_NANOS)
+            {
+                mediaPlayer.seek(Duration.seconds(expected));
+                lastSeekNanos = nowNanos;
+                setRate(1.0);
+            }
+        }
+        else if (magnitude > NUDGE_THRESHOLD_SECONDS)
+        {
+            // Ahead runs slower, behind runs faster
+            double nudge = Math.max(-MAX_NUDGE, Math.min(MAX_NUDGE, drift * NUDGE_GAIN));
+            setRate(1.0 - nudge);
+        }
+        else
+        {
+            setRate(1.0);
+        }
+    }
+
+    private void setRate(double rate)
+    {
+        // Rate changes are not free for the decoder, so ignore tiny adjustments
+        if (Math.abs(mediaPlayer.getRate() - rate) >= 0.005 || rate == 1.0 && mediaPlayer.getRate() != 1.0)
+        {
+            mediaPlayer.setRate(rate);
+        }
+    }
+
+    private void updateOverlay(double position)
+    {
+        long second = (long) position;
+        if (second != shownSecond)
+        {
+            shownSecond = second;
+            label.setText(String.format("%s  %d:%02d", nameOf(url), second / 60, second % 60));
+        }
+        double fraction = Double.isNaN(durationSeconds) ? 0 : Math.min(1, position / durationSeconds);
+        progress.setWidth(node.getWidth() * fraction);
+        progress.setY(node.getHeight() - PROGRESS_HEIGHT);
+    }
+
+    /**
+     * @param smooth
+     *         Whether to scale video frames with the higher quality filter
+     */
+    void setSmooth(boolean smooth)
+    {
+        mediaView.setSmooth(smooth);
+    }
+
+    /**
+     * @param viewport
+     *         Visible area in scene coordinates
+     * @return whether any part of the tile is visible
+     */
+    boolean isVisibleIn(Bounds viewport)
+    {
+        return node.localToScene(node.getLayoutBounds()).intersects(viewport);
+    }
+
+    /**
+     * Pauses the feed to save frame budget.
+     */
+    void pauseForBudget()
+    {
+        if (mediaPlayer != null && !pausedForBudget)
+        {
+            pausedForBudget = true;
+            mediaPlayer.pause();
+        }
+    }
+
+    /**
+     * Resumes a feed paused to save frame budget, back in step with the wall clock.
+     *
+     * @param wallSeconds
+     *         Wall clock
+     * @param nowNanos
+     *         Current time
+     */
+    void resumeFromBudget(double wallSeconds, long nowNanos)
+    {
+        if (pausedForBudget)
+        {
+            pausedForBudget = false;
+            start(wallSeconds, nowNanos);
+        }
+    }
+
+    /**
+     * Detaches and releases the player.
+     *
+     * @param players
+     *         Lifecycle that created the player
+     */
+    void dispose(PlayerLifecycle players)
+    {
+        if (mediaPlayer == null)
+        {
+            return;
+        }
+        mediaView.setMediaPlayer(null);
+        players.dispose(mediaPlayer);
+        mediaPlayer = null;
+    }
+
+    private static String nameOf(String url)
+    {
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        return name.isEmpty() ? url : name;
+    }
+}